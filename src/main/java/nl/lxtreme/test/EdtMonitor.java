@@ -0,0 +1,531 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test;
+
+
+import java.awt.*;
+import java.awt.event.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import javax.management.*;
+import javax.swing.*;
+
+import nl.lxtreme.test.util.*;
+
+
+/**
+ * Monitors the health of the event dispatch thread (EDT) with a low overhead,
+ * so it can be used in production.
+ * <p>
+ * It measures the time between posting and dispatching each event (latency),
+ * the time needed to dispatch each event, and the time needed for each paint
+ * cycle, and keeps them in {@link LatencyHistogram histograms}. When a single
+ * event keeps the EDT busy for longer than the stall threshold, a stack sample
+ * of the EDT is taken and logged, so it is known which call froze the UI.
+ * </p>
+ * <p>
+ * All statistics and the most recent stall reports are available through JMX,
+ * as {@value #OBJECT_NAME}.
+ * </p>
+ */
+public final class EdtMonitor implements IEdtMonitorMXBean
+{
+  // INNER TYPES
+
+  /**
+   * Provides an event queue that times the dispatching of each event.
+   */
+  final class MonitoringEventQueue extends EventQueue
+  {
+    // VARIABLES
+
+    /** the nesting depth of dispatched events, only accessed on the EDT. */
+    private int depth;
+    /** whether the outermost event dispatched nested events. */
+    private boolean nested;
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void dispatchEvent( final AWTEvent aEvent )
+    {
+      final long postTime = getPostTime( aEvent );
+      if ( postTime > 0L )
+      {
+        EdtMonitor.this.dispatchLatencies.record( ( System.currentTimeMillis() - postTime ) * 1000L );
+      }
+
+      final int level = this.depth++;
+      if ( level > 0 )
+      {
+        this.nested = true;
+      }
+
+      final long start = System.nanoTime();
+      EdtMonitor.this.edtThread = Thread.currentThread();
+      EdtMonitor.this.dispatchStart = start;
+
+      try
+      {
+        super.dispatchEvent( aEvent );
+      }
+      finally
+      {
+        final long duration = System.nanoTime() - start;
+
+        this.depth = level;
+        // An event that dispatched nested events, for example, by showing a
+        // modal dialog, was waiting rather than stalling the EDT...
+        EdtMonitor.this.dispatchStart = 0L;
+        if ( ( level > 0 ) || !this.nested )
+        {
+          EdtMonitor.this.dispatchDurations.record( duration / 1000L );
+        }
+        if ( level == 0 )
+        {
+          this.nested = false;
+        }
+      }
+    }
+
+    /**
+     * Removes this event queue again.
+     */
+    void uninstall()
+    {
+      pop();
+    }
+  }
+
+  /**
+   * Periodically checks whether the EDT is stalled.
+   */
+  final class Watchdog implements Runnable
+  {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run()
+    {
+      try
+      {
+        while ( !Thread.currentThread().isInterrupted() )
+        {
+          Thread.sleep( Math.max( 10L, EdtMonitor.this.stallThreshold / 4L ) );
+          checkForStall();
+        }
+      }
+      catch ( InterruptedException exception )
+      {
+        // Stopped...
+      }
+    }
+  }
+
+  // CONSTANTS
+
+  /** the JMX object name of the monitor. */
+  public static final String OBJECT_NAME = "nl.lxtreme.test:type=EdtMonitor";
+  /** the system property holding the stall threshold, in milliseconds. */
+  public static final String STALL_THRESHOLD_PROPERTY = "nl.lxtreme.test.edtStallThreshold";
+
+  private static final long DEFAULT_STALL_THRESHOLD = 500L;
+  /** the maximum number of stall reports to keep. */
+  private static final int MAX_STALL_REPORTS = 16;
+  /** the maximum number of stack frames in a stall report. */
+  private static final int MAX_STACK_DEPTH = 32;
+
+  private static final Logger LOG = Logger.getLogger( EdtMonitor.class.getName() );
+
+  private static EdtMonitor instance;
+
+  // VARIABLES
+
+  private final LatencyHistogram dispatchLatencies;
+  private final LatencyHistogram dispatchDurations;
+  private final LatencyHistogram paintDurations;
+  private final AtomicLong stallCount;
+  /** the most recent stall reports, most recent first, guarded by itself. */
+  private final LinkedList<String> stallReports;
+
+  private volatile long stallThreshold;
+  /** the start time of the event being dispatched, or 0 if the EDT is idle. */
+  private volatile long dispatchStart;
+  private volatile Thread edtThread;
+  /** the start time of the last reported stall, only accessed by the watchdog. */
+  private long lastStallStart;
+
+  private MonitoringEventQueue eventQueue;
+  private Thread watchdog;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new EdtMonitor instance.
+   * 
+   * @param aStallThreshold
+   *          the stall threshold, in milliseconds, > 0.
+   */
+  EdtMonitor( final long aStallThreshold )
+  {
+    this.dispatchLatencies = new LatencyHistogram();
+    this.dispatchDurations = new LatencyHistogram();
+    this.paintDurations = new LatencyHistogram();
+    this.stallCount = new AtomicLong();
+    this.stallReports = new LinkedList<String>();
+
+    setStallThreshold( aStallThreshold );
+  }
+
+  // METHODS
+
+  /**
+   * Creates a new {@link EdtMonitor}, installs it on the system event queue
+   * and the current repaint manager, and registers it with the platform
+   * MBean server.
+   * <p>
+   * Once installed, subsequent calls return the installed monitor.
+   * </p>
+   * 
+   * @return the installed monitor, never <code>null</code>.
+   */
+  public static synchronized EdtMonitor install()
+  {
+    if ( instance == null )
+    {
+      final EdtMonitor monitor = new EdtMonitor( Long.getLong( STALL_THRESHOLD_PROPERTY, DEFAULT_STALL_THRESHOLD )
+          .longValue() );
+      monitor.start();
+
+      RepaintManager.setCurrentManager( new ThreadViolationDetectionRepaintManager( monitor ) );
+
+      try
+      {
+        ManagementFactory.getPlatformMBeanServer().registerMBean( monitor, new ObjectName( OBJECT_NAME ) );
+      }
+      catch ( JMException exception )
+      {
+        LOG.log( Level.WARNING, "Failed to register EDT monitor with JMX!", exception );
+      }
+
+      instance = monitor;
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the time at which the given event was posted, if known.
+   */
+  private static long getPostTime( final AWTEvent aEvent )
+  {
+    if ( aEvent instanceof InputEvent )
+    {
+      return ( ( InputEvent )aEvent ).getWhen();
+    }
+    else if ( aEvent instanceof InvocationEvent )
+    {
+      return ( ( InvocationEvent )aEvent ).getWhen();
+    }
+    else if ( aEvent instanceof ActionEvent )
+    {
+      return ( ( ActionEvent )aEvent ).getWhen();
+    }
+    return -1L;
+  }
+
+  /**
+   * Converts the given duration to milliseconds.
+   */
+  private static double toMillis( final long aMicros )
+  {
+    return aMicros / 1000.0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getDispatchCount()
+  {
+    return this.dispatchDurations.getCount();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getDispatchDuration99thPercentile()
+  {
+    return toMillis( this.dispatchDurations.getPercentile( 99.0 ) );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getDispatchDurationMax()
+  {
+    return toMillis( this.dispatchDurations.getMax() );
+  }
+
+  /**
+   * Returns the histogram of the time needed to dispatch an event.
+   * 
+   * @return a histogram, in microseconds, never <code>null</code>.
+   */
+  public LatencyHistogram getDispatchDurations()
+  {
+    return this.dispatchDurations;
+  }
+
+  /**
+   * Returns the histogram of the time between posting and dispatching an
+   * event.
+   * 
+   * @return a histogram, in microseconds, never <code>null</code>.
+   */
+  public LatencyHistogram getDispatchLatencies()
+  {
+    return this.dispatchLatencies;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getDispatchLatency99thPercentile()
+  {
+    return toMillis( this.dispatchLatencies.getPercentile( 99.0 ) );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getDispatchLatencyMedian()
+  {
+    return toMillis( this.dispatchLatencies.getPercentile( 50.0 ) );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getPaintCount()
+  {
+    return this.paintDurations.getCount();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getPaintDuration99thPercentile()
+  {
+    return toMillis( this.paintDurations.getPercentile( 99.0 ) );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getPaintDurationMax()
+  {
+    return toMillis( this.paintDurations.getMax() );
+  }
+
+  /**
+   * Returns the histogram of the time needed to paint all dirty regions.
+   * 
+   * @return a histogram, in microseconds, never <code>null</code>.
+   */
+  public LatencyHistogram getPaintDurations()
+  {
+    return this.paintDurations;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getStallCount()
+  {
+    return this.stallCount.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String[] getStallReports()
+  {
+    synchronized ( this.stallReports )
+    {
+      return this.stallReports.toArray( new String[this.stallReports.size()] );
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getStallThreshold()
+  {
+    return this.stallThreshold;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset()
+  {
+    this.dispatchLatencies.reset();
+    this.dispatchDurations.reset();
+    this.paintDurations.reset();
+    this.stallCount.set( 0L );
+    synchronized ( this.stallReports )
+    {
+      this.stallReports.clear();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setStallThreshold( final long aThreshold )
+  {
+    if ( aThreshold <= 0L )
+    {
+      throw new IllegalArgumentException( "Threshold should be positive!" );
+    }
+    this.stallThreshold = aThreshold;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return "EDT latency [" + this.dispatchLatencies + "], dispatch [" + this.dispatchDurations + "], paint ["
+        + this.paintDurations + "], stalls: " + getStallCount();
+  }
+
+  /**
+   * Checks whether the EDT is busy with a single event for longer than the
+   * stall threshold, and if so, reports it together with a stack sample.
+   * Called by the watchdog.
+   */
+  final void checkForStall()
+  {
+    final long start = this.dispatchStart;
+    final Thread thread = this.edtThread;
+    if ( ( start == 0L ) || ( thread == null ) || ( start == this.lastStallStart ) )
+    {
+      return;
+    }
+
+    final long busy = ( System.nanoTime() - start ) / 1000000L;
+    if ( busy < this.stallThreshold )
+    {
+      return;
+    }
+
+    final StackTraceElement[] stack = thread.getStackTrace();
+    if ( this.dispatchStart != start )
+    {
+      // Completed in the meantime; the sample would be of another event...
+      return;
+    }
+    this.lastStallStart = start;
+    this.stallCount.incrementAndGet();
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append( "EDT stalled for at least " ).append( busy ).append( " ms at " ).append( new Date() );
+    for ( int i = 0; i < Math.min( stack.length, MAX_STACK_DEPTH ); i++ )
+    {
+      sb.append( "\n\tat " ).append( stack[i] );
+    }
+    final String report = sb.toString();
+
+    synchronized ( this.stallReports )
+    {
+      this.stallReports.addFirst( report );
+      while ( this.stallReports.size() > MAX_STALL_REPORTS )
+      {
+        this.stallReports.removeLast();
+      }
+    }
+
+    LOG.warning( report );
+  }
+
+  /**
+   * Records the duration of a single paint cycle. Called by the repaint
+   * manager.
+   * 
+   * @param aNanos
+   *          the duration of the paint cycle, in nanoseconds.
+   */
+  final void paintCompleted( final long aNanos )
+  {
+    this.paintDurations.record( aNanos / 1000L );
+  }
+
+  /**
+   * Starts monitoring the system event queue.
+   */
+  final synchronized void start()
+  {
+    if ( this.eventQueue == null )
+    {
+      this.eventQueue = new MonitoringEventQueue();
+      Toolkit.getDefaultToolkit().getSystemEventQueue().push( this.eventQueue );
+
+      this.watchdog = new Thread( new Watchdog(), "EdtWatchdog" );
+      this.watchdog.setDaemon( true );
+      this.watchdog.start();
+    }
+  }
+
+  /**
+   * Stops monitoring the system event queue.
+   */
+  final synchronized void stop()
+  {
+    if ( this.eventQueue != null )
+    {
+      this.watchdog.interrupt();
+      this.watchdog = null;
+
+      this.eventQueue.uninstall();
+      this.eventQueue = null;
+    }
+  }
+}
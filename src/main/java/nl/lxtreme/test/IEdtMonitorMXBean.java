@@ -0,0 +1,127 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test;
+
+
+/**
+ * Provides the management interface of the {@link EdtMonitor}, allowing the
+ * health of the event dispatch thread to be inspected with any JMX client,
+ * such as JConsole or Mission Control.
+ * <p>
+ * All durations are in milliseconds.
+ * </p>
+ */
+public interface IEdtMonitorMXBean
+{
+  // METHODS
+
+  /**
+   * Returns the number of events dispatched on the EDT.
+   * 
+   * @return an event count, >= 0.
+   */
+  long getDispatchCount();
+
+  /**
+   * Returns the 99th percentile of the time needed to dispatch an event.
+   * 
+   * @return a duration, in milliseconds.
+   */
+  double getDispatchDuration99thPercentile();
+
+  /**
+   * Returns the longest time needed to dispatch an event.
+   * 
+   * @return a duration, in milliseconds.
+   */
+  double getDispatchDurationMax();
+
+  /**
+   * Returns the median time between posting and dispatching an event.
+   * 
+   * @return a duration, in milliseconds.
+   */
+  double getDispatchLatencyMedian();
+
+  /**
+   * Returns the 99th percentile of the time between posting and dispatching an
+   * event.
+   * 
+   * @return a duration, in milliseconds.
+   */
+  double getDispatchLatency99thPercentile();
+
+  /**
+   * Returns the number of paint cycles.
+   * 
+   * @return a paint count, >= 0.
+   */
+  long getPaintCount();
+
+  /**
+   * Returns the 99th percentile of the time needed to paint all dirty regions.
+   * 
+   * @return a duration, in milliseconds.
+   */
+  double getPaintDuration99thPercentile();
+
+  /**
+   * Returns the longest time needed to paint all dirty regions.
+   * 
+   * @return a duration, in milliseconds.
+   */
+  double getPaintDurationMax();
+
+  /**
+   * Returns the number of times the EDT stalled longer than the threshold.
+   * 
+   * @return a stall count, >= 0.
+   */
+  long getStallCount();
+
+  /**
+   * Returns the stack samples of the most recent stalls, most recent first.
+   * 
+   * @return the stall reports, never <code>null</code>.
+   */
+  String[] getStallReports();
+
+  /**
+   * Returns the time the EDT must be busy with a single event before it is
+   * considered stalled.
+   * 
+   * @return a threshold, in milliseconds.
+   */
+  long getStallThreshold();
+
+  /**
+   * Clears all statistics and stall reports.
+   */
+  void reset();
+
+  /**
+   * Sets the time the EDT must be busy with a single event before it is
+   * considered stalled.
+   * 
+   * @param aThreshold
+   *          the threshold, in milliseconds, > 0.
+   */
+  void setStallThreshold( long aThreshold );
+}
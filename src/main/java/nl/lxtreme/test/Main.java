@@ -22,11 +22,13 @@ package nl.lxtreme.test;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.beans.*;
 import java.util.*;
 
 import javax.swing.*;
 
 import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.util.*;
 import nl.lxtreme.test.view.*;
 import nl.lxtreme.test.view.action.*;
 
@@ -264,6 +266,10 @@ public class Main
         final Main main = new Main();
 
         // ThreadViolationDetectionRepaintManager.install();
+        if ( !"false".equals( System.getProperty( "nl.lxtreme.test.edtMonitor" ) ) )
+        {
+          EdtMonitor.install();
+        }
 
         main.init();
         main.build();
@@ -363,7 +369,35 @@ public class Main
 
     wm.setMainContent( contentPane );
 
-    this.mainFrame.setContentPane( wm );
+    final ProgressIndicator progressIndicator = new ProgressIndicator();
+    final JLabel progressLabel = new JLabel( "Loading capture..." );
+
+    final JPanel statusBar = new JPanel( new FlowLayout( FlowLayout.LEADING, 4, 2 ) );
+    statusBar.add( progressIndicator );
+    statusBar.add( progressLabel );
+    statusBar.setVisible( this.controller.getSignalDiagramModel().getLoadProgress() >= 0 );
+
+    this.controller.addPropertyChangeListener( new PropertyChangeListener()
+    {
+      @Override
+      public void propertyChange( final PropertyChangeEvent aEvent )
+      {
+        if ( "loadProgress".equals( aEvent.getPropertyName() ) )
+        {
+          final int progress = ( ( Integer )aEvent.getNewValue() ).intValue();
+
+          progressIndicator.setProgress( progress );
+          progressLabel.setText( "Loading capture... " + Math.max( 0, progress ) + "%" );
+          statusBar.setVisible( progress >= 0 );
+        }
+      }
+    } );
+
+    final JPanel mainPane = new JPanel( new BorderLayout() );
+    mainPane.add( wm, BorderLayout.CENTER );
+    mainPane.add( statusBar, BorderLayout.PAGE_END );
+
+    this.mainFrame.setContentPane( mainPane );
     this.mainFrame.setJMenuBar( this.menuBar );
 
     this.mainFrame.pack();
@@ -418,6 +452,12 @@ public class Main
     final JMenu fileMenu = new JMenu( "File" );
     this.menuBar.add( fileMenu );
 
+    fileMenu.add( new JMenuItem( new OpenCaptureAction( this.controller ) ) );
+    fileMenu.add( new JMenuItem( new SaveCaptureAction( this.controller ) ) );
+    fileMenu.add( new JMenuItem( new ExportVcdAction( this.controller ) ) );
+    fileMenu.add( new JMenuItem( new ExportSamplesAction( this.controller ) ) );
+    fileMenu.addSeparator();
+
     final JMenuItem fileExitItem = new JMenuItem( new AbstractAction( "Exit" )
     {
       private static final long serialVersionUID = 1L;
@@ -434,6 +474,9 @@ public class Main
     final JMenu annotationMenu = new JMenu( "Annotations" );
     this.menuBar.add( annotationMenu );
 
+    annotationMenu.add( new JMenuItem( new DecodeAction( this.controller ) ) );
+    annotationMenu.addSeparator();
+
     final JMenuItem switchRenderStyle = new JCheckBoxMenuItem( new SwitchAnnotationRenderingAction( this.controller ) );
     annotationMenu.add( switchRenderStyle );
 
@@ -479,9 +522,13 @@ public class Main
     } );
     diagramMenu.add( diagramEnableMeasureModeItem );
 
-    // final SampleDataModel model = new SampleDataModel( 256 * 1024, new
-    // AlternatingDataWithSpacesProvider() );
-    final SampleDataModel model = new SampleDataModel( 512 * 1024, new CounterDataProvider() );
+    final JMenu glitchMenu = new JMenu( "Glitches" );
+    this.menuBar.add( glitchMenu );
+
+    glitchMenu.add( new JMenuItem( new DetectGlitchesAction( this.controller ) ) );
+    glitchMenu.addSeparator();
+    glitchMenu.add( new JMenuItem( new GotoGlitchAction( this.controller, true /* aForward */) ) );
+    glitchMenu.add( new JMenuItem( new GotoGlitchAction( this.controller, false /* aForward */) ) );
 
     this.signalDiagram = SignalDiagramComponent.create( this.controller );
     this.signalDetails = SignalDetailsView.create( this.controller );
@@ -489,9 +536,27 @@ public class Main
     this.cursorDetails = CursorDetailsView.create( this.controller );
     this.measurementDetails = MeasurementView.create( this.controller );
 
-    this.controller.setDataModel( model );
+    // Show an (empty) placeholder until the actual data is loaded...
+    this.controller.setDataModel( new SampleDataModel( 2, new ZeroDataProvider() ) );
 
     this.signalDiagram.zoomOriginal();
+
+    this.controller.loadCapture( new CaptureLoader( this.controller )
+    {
+      @Override
+      protected SampleDataModel load() throws Exception
+      {
+        // return new SampleDataModel( 256 * 1024, new
+        // AlternatingDataWithSpacesProvider() );
+        return new SampleDataModel( 512 * 1024, new CounterDataProvider() );
+      }
+
+      @Override
+      protected void shown( final SampleDataModel aDataModel )
+      {
+        Main.this.signalDiagram.zoomOriginal();
+      }
+    } );
   }
 
   /**
@@ -31,6 +31,11 @@ import javax.swing.*;
  * can be used to determine whether all Swing components are correctly created
  * on the EDT.
  * <p>
+ * When created for an {@link EdtMonitor}, it does not perform the (costly)
+ * thread violation checks, but only reports the duration of each paint cycle
+ * to the monitor, making it suitable for production use.
+ * </p>
+ * <p>
  * Code originates from the SwingHelper project, for more information see:
  * {@link "https://swinghelper.dev.java.net/"}.
  * </p>
@@ -40,6 +45,9 @@ public final class ThreadViolationDetectionRepaintManager extends RepaintManager
   // VARIABLES
 
   private final boolean completeCheck;
+  private final boolean detectViolations;
+  /** the monitor to report paint durations to, can be <code>null</code>. */
+  private final EdtMonitor monitor;
   /** The last component. */
   private WeakReference<JComponent> lastComponent;
 
@@ -63,6 +71,27 @@ public final class ThreadViolationDetectionRepaintManager extends RepaintManager
   public ThreadViolationDetectionRepaintManager( final boolean aCompleteCheck )
   {
     this.completeCheck = aCompleteCheck;
+    this.detectViolations = true;
+    this.monitor = null;
+  }
+
+  /**
+   * Creates a new ThreadViolationDetectionRepaintManager instance that only
+   * reports the duration of each paint cycle to the given monitor.
+   * 
+   * @param aMonitor
+   *          the monitor to report to, cannot be <code>null</code>.
+   */
+  public ThreadViolationDetectionRepaintManager( final EdtMonitor aMonitor )
+  {
+    if ( aMonitor == null )
+    {
+      throw new IllegalArgumentException( "Monitor cannot be null!" );
+    }
+
+    this.completeCheck = false;
+    this.detectViolations = false;
+    this.monitor = aMonitor;
   }
 
   // METHODS
@@ -146,6 +175,29 @@ public final class ThreadViolationDetectionRepaintManager extends RepaintManager
     super.addInvalidComponent( aComponent );
   }
 
+  /**
+   * @see javax.swing.RepaintManager#paintDirtyRegions()
+   */
+  @Override
+  public void paintDirtyRegions()
+  {
+    if ( this.monitor == null )
+    {
+      super.paintDirtyRegions();
+      return;
+    }
+
+    final long start = System.nanoTime();
+    try
+    {
+      super.paintDirtyRegions();
+    }
+    finally
+    {
+      this.monitor.paintCompleted( System.nanoTime() - start );
+    }
+  }
+
   /**
    * Check thread violations.
    * 
@@ -154,6 +206,11 @@ public final class ThreadViolationDetectionRepaintManager extends RepaintManager
    */
   private void checkThreadViolations( final JComponent aComponent )
   {
+    if ( !this.detectViolations )
+    {
+      return;
+    }
+
     if ( !SwingUtilities.isEventDispatchThread() && ( this.completeCheck || aComponent.isShowing() ) )
     {
       boolean repaint = false;
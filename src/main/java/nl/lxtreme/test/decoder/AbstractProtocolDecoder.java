@@ -0,0 +1,244 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.decoder;
+
+
+import java.util.*;
+
+import nl.lxtreme.test.model.*;
+
+
+/**
+ * Provides a base class for protocol decoders.
+ * <p>
+ * Protocol decoders consume the sample data as a stream of edges: they are
+ * only called for those samples in which one of the channels denoted by
+ * {@link #getEdgeMask()} changes. Each call provides the complete sample
+ * value, allowing decoders to read the state of other channels (such as data
+ * lines) as well.
+ * </p>
+ * <p>
+ * Decoders are stateful and not thread-safe; a single decoder instance should
+ * only be used for a single decoding run at a time.
+ * </p>
+ */
+public abstract class AbstractProtocolDecoder
+{
+  // CONSTANTS
+
+  /** The number of annotations to collect before publishing them. */
+  private static final int FLUSH_SIZE = 256;
+  /** The maximum time (in milliseconds) to hold on to annotations. */
+  private static final long FLUSH_INTERVAL = 50L;
+
+  // VARIABLES
+
+  private final String name;
+
+  private IAnnotationPublisher publisher;
+  private List<Annotation<?>> pending;
+  private long lastFlush;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new AbstractProtocolDecoder instance.
+   * 
+   * @param aName
+   *          the name of this decoder, cannot be <code>null</code> or empty.
+   * @throws IllegalArgumentException
+   *           in case the given name was <code>null</code> or empty.
+   */
+  protected AbstractProtocolDecoder( final String aName )
+  {
+    if ( ( aName == null ) || aName.trim().isEmpty() )
+    {
+      throw new IllegalArgumentException( "Name cannot be null or empty!" );
+    }
+    this.name = aName;
+  }
+
+  // METHODS
+
+  /**
+   * Returns the mask of all channels whose edges should be passed to this
+   * decoder.
+   * 
+   * @return a channel mask, != 0.
+   */
+  public abstract int getEdgeMask();
+
+  /**
+   * Returns the name of this decoder.
+   * 
+   * @return a name, never <code>null</code> or empty.
+   */
+  public final String getName()
+  {
+    return this.name;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return getName();
+  }
+
+  /**
+   * Adds an annotation for the given channel.
+   * 
+   * @param aChannel
+   *          the index of the channel to annotate;
+   * @param aText
+   *          the text of the annotation, cannot be <code>null</code>;
+   * @param aStartTime
+   *          the start timestamp of the annotation;
+   * @param aEndTime
+   *          the end timestamp of the annotation.
+   */
+  protected final void annotate( final int aChannel, final String aText, final long aStartTime, final long aEndTime )
+  {
+    this.pending.add( new SimpleAnnotation( aChannel, aText, aStartTime, aEndTime ) );
+
+    if ( this.pending.size() >= FLUSH_SIZE )
+    {
+      flush();
+    }
+  }
+
+  /**
+   * Called when one or more of the channels in the edge mask change.
+   * 
+   * @param aOldValue
+   *          the sample value before the edge;
+   * @param aNewValue
+   *          the sample value after the edge;
+   * @param aTimestamp
+   *          the timestamp of the edge.
+   */
+  protected abstract void edge( int aOldValue, int aNewValue, long aTimestamp );
+
+  /**
+   * Called after the last sample is decoded.
+   * 
+   * @param aTimestamp
+   *          the timestamp of the last sample.
+   */
+  protected void end( final long aTimestamp )
+  {
+    // NO-op
+  }
+
+  /**
+   * Called before the first edge is decoded.
+   * 
+   * @param aSampleRate
+   *          the sample rate, in Hertz;
+   * @param aValue
+   *          the value of the first sample;
+   * @param aTimestamp
+   *          the timestamp of the first sample.
+   */
+  protected abstract void start( int aSampleRate, int aValue, long aTimestamp );
+
+  /**
+   * Decodes the given sample data, publishing all annotations to the given
+   * publisher.
+   * 
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aSampleRate
+   *          the sample rate, in Hertz;
+   * @param aPublisher
+   *          the publisher to publish the annotations to.
+   * @throws InterruptedException
+   *           in case the decoding was interrupted.
+   */
+  final void decode( final int[] aValues, final long[] aTimestamps, final int aSampleRate,
+      final IAnnotationPublisher aPublisher ) throws InterruptedException
+  {
+    if ( aValues.length == 0 )
+    {
+      return;
+    }
+
+    this.publisher = aPublisher;
+    this.pending = new ArrayList<Annotation<?>>( FLUSH_SIZE );
+    this.lastFlush = System.currentTimeMillis();
+
+    try
+    {
+      final int mask = getEdgeMask();
+
+      int previous = aValues[0];
+      start( aSampleRate, previous, aTimestamps[0] );
+
+      for ( int i = 1; i < aValues.length; i++ )
+      {
+        final int current = aValues[i];
+        if ( ( ( previous ^ current ) & mask ) != 0 )
+        {
+          edge( previous, current, aTimestamps[i] );
+        }
+        previous = current;
+
+        if ( ( i & 0xFFFF ) == 0 )
+        {
+          if ( Thread.interrupted() )
+          {
+            throw new InterruptedException();
+          }
+          if ( ( System.currentTimeMillis() - this.lastFlush ) >= FLUSH_INTERVAL )
+          {
+            // Make sure partial results are shown while decoding...
+            flush();
+          }
+        }
+      }
+
+      end( aTimestamps[aTimestamps.length - 1] );
+
+      flush();
+    }
+    finally
+    {
+      this.publisher = null;
+      this.pending = null;
+    }
+  }
+
+  /**
+   * Publishes all pending annotations.
+   */
+  private void flush()
+  {
+    if ( !this.pending.isEmpty() )
+    {
+      this.publisher.publish( this, this.pending );
+      this.pending = new ArrayList<Annotation<?>>( FLUSH_SIZE );
+    }
+    this.lastFlush = System.currentTimeMillis();
+  }
+}
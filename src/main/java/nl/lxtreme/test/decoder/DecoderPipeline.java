@@ -0,0 +1,99 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.decoder;
+
+
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Runs a number of protocol decoders over the same sample data.
+ * <p>
+ * Each decoder runs as a separate task on the given executor, so multiple
+ * decoders run in parallel. Decoders publish their annotations in batches
+ * while decoding, allowing partial results to be shown before decoding is
+ * completed.
+ * </p>
+ */
+public final class DecoderPipeline
+{
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new DecoderPipeline instance, never used.
+   */
+  private DecoderPipeline()
+  {
+    // NO-op
+  }
+
+  // METHODS
+
+  /**
+   * Starts decoding the given sample data with all given decoders.
+   * 
+   * @param aValues
+   *          the sample values to decode;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aSampleRate
+   *          the sample rate, in Hertz;
+   * @param aDecoders
+   *          the decoders to run, cannot be <code>null</code>;
+   * @param aPublisher
+   *          the publisher to publish all annotations to, cannot be
+   *          <code>null</code>;
+   * @param aExecutor
+   *          the executor to run the decoders on, cannot be <code>null</code>.
+   * @return the (pending) result of each decoder, in the same order as the
+   *         given decoders. Cancelling a future stops its decoder.
+   * @throws IllegalArgumentException
+   *           in case the given decoders or publisher was <code>null</code>.
+   */
+  public static List<Future<?>> decode( final int[] aValues, final long[] aTimestamps, final int aSampleRate,
+      final Collection<? extends AbstractProtocolDecoder> aDecoders, final IAnnotationPublisher aPublisher,
+      final ExecutorService aExecutor )
+  {
+    if ( aDecoders == null )
+    {
+      throw new IllegalArgumentException( "Decoders cannot be null!" );
+    }
+    if ( aPublisher == null )
+    {
+      throw new IllegalArgumentException( "Publisher cannot be null!" );
+    }
+
+    final List<Future<?>> result = new ArrayList<Future<?>>( aDecoders.size() );
+    for ( final AbstractProtocolDecoder decoder : aDecoders )
+    {
+      result.add( aExecutor.submit( new Callable<Void>()
+      {
+        @Override
+        public Void call() throws Exception
+        {
+          decoder.decode( aValues, aTimestamps, aSampleRate, aPublisher );
+          return null;
+        }
+      } ) );
+    }
+    return result;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.decoder;
+
+
+/**
+ * Decodes I2C data, using a clock (SCL) and data (SDA) line.
+ * <p>
+ * The decoder annotates start and stop conditions, the address byte following
+ * each (repeated) start condition and all data bytes, including their
+ * acknowledge bit. All annotations are placed on the SDA channel.
+ * </p>
+ */
+public class I2CDecoder extends AbstractProtocolDecoder
+{
+  // VARIABLES
+
+  private final int sdaChannel;
+  private final int sclMask;
+  private final int sdaMask;
+
+  private boolean active;
+  private boolean addressByte;
+  /** the number of bits received of the current byte, including the ACK bit. */
+  private int bitCount;
+  private int data;
+  private long byteStart;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new I2CDecoder instance.
+   * 
+   * @param aSclChannel
+   *          the index of the clock channel;
+   * @param aSdaChannel
+   *          the index of the data channel.
+   * @throws IllegalArgumentException
+   *           in case both channels are the same.
+   */
+  public I2CDecoder( final int aSclChannel, final int aSdaChannel )
+  {
+    super( "I2C" );
+
+    if ( aSclChannel == aSdaChannel )
+    {
+      throw new IllegalArgumentException( "SCL and SDA cannot be the same channel!" );
+    }
+
+    this.sdaChannel = aSdaChannel;
+    this.sclMask = 1 << aSclChannel;
+    this.sdaMask = 1 << aSdaChannel;
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getEdgeMask()
+  {
+    return this.sclMask | this.sdaMask;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void edge( final int aOldValue, final int aNewValue, final long aTimestamp )
+  {
+    final int changed = aOldValue ^ aNewValue;
+    final boolean sclHigh = ( aOldValue & this.sclMask ) != 0;
+
+    if ( ( ( changed & this.sclMask ) == 0 ) && sclHigh )
+    {
+      // SDA changes while SCL is high: start or stop condition...
+      if ( ( aNewValue & this.sdaMask ) == 0 )
+      {
+        annotate( this.sdaChannel, this.active ? "RESTART" : "START", aTimestamp, aTimestamp );
+
+        this.active = true;
+        this.addressByte = true;
+        this.bitCount = 0;
+      }
+      else
+      {
+        annotate( this.sdaChannel, "STOP", aTimestamp, aTimestamp );
+
+        this.active = false;
+      }
+    }
+    else if ( this.active && !sclHigh && ( ( aNewValue & this.sclMask ) != 0 ) )
+    {
+      // Rising clock edge: sample SDA...
+      final int bit = ( aNewValue & this.sdaMask ) != 0 ? 1 : 0;
+
+      if ( this.bitCount == 0 )
+      {
+        this.byteStart = aTimestamp;
+        this.data = 0;
+      }
+
+      if ( ++this.bitCount <= 8 )
+      {
+        this.data = ( this.data << 1 ) | bit;
+      }
+      else
+      {
+        final String ack = ( bit == 0 ) ? "ACK" : "NACK";
+
+        final String text;
+        if ( this.addressByte )
+        {
+          text = String.format( "Address 0x%02X %s %s", Integer.valueOf( this.data >> 1 ),
+              ( this.data & 1 ) != 0 ? "R" : "W", ack );
+        }
+        else
+        {
+          text = String.format( "0x%02X %s", Integer.valueOf( this.data ), ack );
+        }
+
+        annotate( this.sdaChannel, text, this.byteStart, aTimestamp );
+
+        this.addressByte = false;
+        this.bitCount = 0;
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void start( final int aSampleRate, final int aValue, final long aTimestamp )
+  {
+    this.active = false;
+    this.addressByte = false;
+    this.bitCount = 0;
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.decoder;
+
+
+import java.util.*;
+
+import nl.lxtreme.test.model.*;
+
+
+/**
+ * Receives the annotations of a protocol decoder while it is decoding.
+ */
+public interface IAnnotationPublisher
+{
+  // METHODS
+
+  /**
+   * Publishes a batch of annotations.
+   * <p>
+   * This method is called from the thread running the decoder, and can be
+   * called several times for a single decoder run.
+   * </p>
+   * 
+   * @param aDecoder
+   *          the decoder that created the annotations, never <code>null</code>;
+   * @param aAnnotations
+   *          the annotations to publish, never <code>null</code>.
+   */
+  void publish( AbstractProtocolDecoder aDecoder, List<Annotation<?>> aAnnotations );
+}
@@ -0,0 +1,168 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.decoder;
+
+
+/**
+ * Decodes SPI data, using a clock, chip-select and one or two data lines.
+ * <p>
+ * Bytes are decoded most-significant bit first, and are only decoded while
+ * the (active-low) chip-select line is asserted. The SPI mode determines on
+ * which clock edge the data lines are sampled.
+ * </p>
+ */
+public class SpiDecoder extends AbstractProtocolDecoder
+{
+  // CONSTANTS
+
+  /** Denotes an unused data line. */
+  public static final int NO_CHANNEL = -1;
+
+  // VARIABLES
+
+  private final int clkMask;
+  private final int csMask;
+  private final int mosiChannel;
+  private final int misoChannel;
+  private final int mosiMask;
+  private final int misoMask;
+  private final boolean sampleOnRisingEdge;
+
+  private boolean selected;
+  private int bitCount;
+  private int mosiData;
+  private int misoData;
+  private long byteStart;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SpiDecoder instance.
+   * 
+   * @param aClkChannel
+   *          the index of the clock channel;
+   * @param aCsChannel
+   *          the index of the chip-select channel;
+   * @param aMosiChannel
+   *          the index of the MOSI channel, or {@link #NO_CHANNEL};
+   * @param aMisoChannel
+   *          the index of the MISO channel, or {@link #NO_CHANNEL};
+   * @param aMode
+   *          the SPI mode, 0..3.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was invalid.
+   */
+  public SpiDecoder( final int aClkChannel, final int aCsChannel, final int aMosiChannel, final int aMisoChannel,
+      final int aMode )
+  {
+    super( "SPI" );
+
+    if ( ( aMode < 0 ) || ( aMode > 3 ) )
+    {
+      throw new IllegalArgumentException( "Mode should be between 0 and 3!" );
+    }
+    if ( ( aMosiChannel == NO_CHANNEL ) && ( aMisoChannel == NO_CHANNEL ) )
+    {
+      throw new IllegalArgumentException( "At least one data line is needed!" );
+    }
+
+    this.clkMask = 1 << aClkChannel;
+    this.csMask = 1 << aCsChannel;
+    this.mosiChannel = aMosiChannel;
+    this.misoChannel = aMisoChannel;
+    this.mosiMask = ( aMosiChannel == NO_CHANNEL ) ? 0 : ( 1 << aMosiChannel );
+    this.misoMask = ( aMisoChannel == NO_CHANNEL ) ? 0 : ( 1 << aMisoChannel );
+    // Mode 0 and 3 sample on the rising edge, mode 1 and 2 on the falling edge...
+    this.sampleOnRisingEdge = ( ( aMode >> 1 ) == ( aMode & 1 ) );
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getEdgeMask()
+  {
+    return this.clkMask | this.csMask;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void edge( final int aOldValue, final int aNewValue, final long aTimestamp )
+  {
+    if ( ( ( aOldValue ^ aNewValue ) & this.csMask ) != 0 )
+    {
+      this.selected = ( aNewValue & this.csMask ) == 0;
+      // Partial bytes are discarded when the chip-select changes...
+      this.bitCount = 0;
+      this.byteStart = aTimestamp;
+    }
+
+    if ( !this.selected || ( ( ( aOldValue ^ aNewValue ) & this.clkMask ) == 0 ) )
+    {
+      return;
+    }
+
+    final boolean rising = ( aNewValue & this.clkMask ) != 0;
+    if ( rising != this.sampleOnRisingEdge )
+    {
+      return;
+    }
+
+    if ( this.bitCount == 0 )
+    {
+      this.byteStart = aTimestamp;
+      this.mosiData = 0;
+      this.misoData = 0;
+    }
+
+    this.mosiData = ( this.mosiData << 1 ) | ( ( aNewValue & this.mosiMask ) != 0 ? 1 : 0 );
+    this.misoData = ( this.misoData << 1 ) | ( ( aNewValue & this.misoMask ) != 0 ? 1 : 0 );
+
+    if ( ++this.bitCount == 8 )
+    {
+      if ( this.mosiChannel != NO_CHANNEL )
+      {
+        annotate( this.mosiChannel, String.format( "0x%02X", Integer.valueOf( this.mosiData ) ), this.byteStart,
+            aTimestamp );
+      }
+      if ( this.misoChannel != NO_CHANNEL )
+      {
+        annotate( this.misoChannel, String.format( "0x%02X", Integer.valueOf( this.misoData ) ), this.byteStart,
+            aTimestamp );
+      }
+      this.bitCount = 0;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void start( final int aSampleRate, final int aValue, final long aTimestamp )
+  {
+    this.selected = ( aValue & this.csMask ) == 0;
+    this.bitCount = 0;
+    this.byteStart = aTimestamp;
+  }
+}
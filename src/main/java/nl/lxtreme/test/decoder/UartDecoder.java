@@ -0,0 +1,201 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.decoder;
+
+
+/**
+ * Decodes asynchronous serial (UART) data on a single channel.
+ * <p>
+ * The decoder assumes an idle-high line, least-significant bit first, no
+ * parity and a single stop bit. As only the edges of the signal are provided,
+ * the decoder keeps track of the line level and samples each bit in its
+ * middle once an edge (or the end of the data) lies beyond that point.
+ * </p>
+ */
+public class UartDecoder extends AbstractProtocolDecoder
+{
+  // VARIABLES
+
+  private final int channel;
+  private final int mask;
+  private final int baudRate;
+  private final int dataBits;
+
+  private double bitTime;
+  private boolean level;
+  private boolean receiving;
+  private long frameStart;
+  /** the index of the next bit to sample, 0 is the start bit. */
+  private int bitIndex;
+  private int data;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new UartDecoder instance for 8 data bits.
+   * 
+   * @param aChannel
+   *          the index of the channel to decode;
+   * @param aBaudRate
+   *          the baud rate of the signal, > 0.
+   */
+  public UartDecoder( final int aChannel, final int aBaudRate )
+  {
+    this( aChannel, aBaudRate, 8 );
+  }
+
+  /**
+   * Creates a new UartDecoder instance.
+   * 
+   * @param aChannel
+   *          the index of the channel to decode;
+   * @param aBaudRate
+   *          the baud rate of the signal, > 0;
+   * @param aDataBits
+   *          the number of data bits, 5..9.
+   * @throws IllegalArgumentException
+   *           in case one of the given arguments was invalid.
+   */
+  public UartDecoder( final int aChannel, final int aBaudRate, final int aDataBits )
+  {
+    super( "UART" );
+
+    if ( aBaudRate <= 0 )
+    {
+      throw new IllegalArgumentException( "Baud rate should be positive!" );
+    }
+    if ( ( aDataBits < 5 ) || ( aDataBits > 9 ) )
+    {
+      throw new IllegalArgumentException( "Data bits should be between 5 and 9!" );
+    }
+
+    this.channel = aChannel;
+    this.mask = 1 << aChannel;
+    this.baudRate = aBaudRate;
+    this.dataBits = aDataBits;
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getEdgeMask()
+  {
+    return this.mask;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void edge( final int aOldValue, final int aNewValue, final long aTimestamp )
+  {
+    // Everything before this edge still has the old line level...
+    sampleUntil( aTimestamp );
+
+    this.level = ( aNewValue & this.mask ) != 0;
+
+    if ( !this.receiving && !this.level )
+    {
+      // Falling edge while idle: start bit...
+      this.receiving = true;
+      this.frameStart = aTimestamp;
+      this.bitIndex = 0;
+      this.data = 0;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void end( final long aTimestamp )
+  {
+    sampleUntil( aTimestamp + 1 );
+    // Incomplete frames are not reported...
+    this.receiving = false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void start( final int aSampleRate, final int aValue, final long aTimestamp )
+  {
+    this.bitTime = ( double )aSampleRate / this.baudRate;
+    this.level = ( aValue & this.mask ) != 0;
+    this.receiving = false;
+  }
+
+  /**
+   * Returns the timestamp at which the bit with the given index is sampled.
+   */
+  private long getSamplePoint( final int aBitIndex )
+  {
+    return this.frameStart + ( long )( ( aBitIndex + 0.5 ) * this.bitTime );
+  }
+
+  /**
+   * Samples all bits of the current frame that lie before the given timestamp.
+   */
+  private void sampleUntil( final long aTimestamp )
+  {
+    while ( this.receiving && ( getSamplePoint( this.bitIndex ) < aTimestamp ) )
+    {
+      if ( this.bitIndex == 0 )
+      {
+        if ( this.level )
+        {
+          // Start bit is no longer low: a glitch instead of a start bit...
+          this.receiving = false;
+        }
+      }
+      else if ( this.bitIndex <= this.dataBits )
+      {
+        if ( this.level )
+        {
+          this.data |= 1 << ( this.bitIndex - 1 );
+        }
+      }
+      else
+      {
+        final long frameEnd = this.frameStart + ( long )( ( this.dataBits + 2 ) * this.bitTime );
+
+        String text = String.format( "0x%02X", Integer.valueOf( this.data ) );
+        if ( ( this.data >= 0x20 ) && ( this.data < 0x7F ) )
+        {
+          text = text.concat( " '" ).concat( String.valueOf( ( char )this.data ) ).concat( "'" );
+        }
+        if ( !this.level )
+        {
+          text = text.concat( " (framing error)" );
+        }
+
+        annotate( this.channel, text, this.frameStart, frameEnd );
+
+        this.receiving = false;
+      }
+
+      this.bitIndex++;
+    }
+  }
+}
@@ -0,0 +1,655 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.io;
+
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import nl.lxtreme.test.*;
+import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.model.Cursor;
+import nl.lxtreme.test.util.*;
+
+
+/**
+ * Provides read access to an indexed binary capture file, as written by
+ * {@link CaptureFileWriter}.
+ * <p>
+ * Opening a capture file only reads its header, block index and metadata;
+ * the (compressed) blocks of sample data are read on demand, and only the
+ * most recently used blocks are kept in memory. This makes opening a capture
+ * file of any size instantaneous, and allows random access to any part of it
+ * by means of the block index.
+ * </p>
+ */
+public final class CaptureFile implements Closeable, IMemoryConsumer
+{
+  // INNER TYPES
+
+  /**
+   * Provides a single block of decoded sample data.
+   */
+  public static final class Block
+  {
+    // VARIABLES
+
+    private final int[] values;
+    private final long[] timestamps;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new Block instance.
+     */
+    Block( final int[] aValues, final long[] aTimestamps )
+    {
+      this.values = aValues;
+      this.timestamps = aTimestamps;
+    }
+
+    // METHODS
+
+    /**
+     * Returns the number of samples in this block.
+     * 
+     * @return a sample count, > 0.
+     */
+    public int getSampleCount()
+    {
+      return this.values.length;
+    }
+
+    /**
+     * Returns the timestamp of the sample with the given index.
+     * 
+     * @param aIndex
+     *          the index of the sample in this block.
+     * @return a timestamp.
+     */
+    public long getTimestamp( final int aIndex )
+    {
+      return this.timestamps[aIndex];
+    }
+
+    /**
+     * Returns the value of the sample with the given index.
+     * 
+     * @param aIndex
+     *          the index of the sample in this block.
+     * @return a sample value.
+     */
+    public int getValue( final int aIndex )
+    {
+      return this.values[aIndex];
+    }
+  }
+
+  // CONSTANTS
+
+  /** The maximum number of decoded blocks kept in memory. */
+  static final int MAX_CACHED_BLOCKS = 8;
+
+  // VARIABLES
+
+  private final RandomAccessFile file;
+  private final int sampleRate;
+  private final int size;
+  private final int blockSize;
+  /** the block index: first timestamp, file offset, length and sample count. */
+  private final long[] blockTimestamps;
+  private final long[] blockOffsets;
+  private final int[] blockLengths;
+  private final int[] blockSampleCounts;
+  /** the channel metadata. */
+  private final ChannelLayout channelLayout;
+  /** the cursor metadata. */
+  private final Cursor[] cursors;
+  /** the most recently used blocks, in access order. */
+  private final Map<Integer, Block> blockCache;
+  private final MemoryBudget.Account blockAccount;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new CaptureFile instance.
+   */
+  private CaptureFile( final RandomAccessFile aFile ) throws IOException
+  {
+    this.file = aFile;
+
+    if ( aFile.readInt() != CaptureFileWriter.MAGIC )
+    {
+      throw new IOException( "Not a capture file!" );
+    }
+    final int version = aFile.readInt();
+    if ( version != CaptureFileWriter.VERSION )
+    {
+      throw new IOException( "Unsupported capture file version: " + version + "!" );
+    }
+
+    this.sampleRate = aFile.readInt();
+    this.size = aFile.readInt();
+    this.blockSize = aFile.readInt();
+
+    final int blockCount = aFile.readInt();
+    final long indexOffset = aFile.readLong();
+    final long metadataOffset = aFile.readLong();
+
+    this.blockTimestamps = new long[blockCount];
+    this.blockOffsets = new long[blockCount];
+    this.blockLengths = new int[blockCount];
+    this.blockSampleCounts = new int[blockCount];
+
+    final DataInputStream index = readSection( indexOffset, metadataOffset );
+    for ( int i = 0; i < blockCount; i++ )
+    {
+      this.blockTimestamps[i] = index.readLong();
+      this.blockOffsets[i] = index.readLong();
+      this.blockLengths[i] = index.readInt();
+      this.blockSampleCounts[i] = index.readInt();
+    }
+
+    final DataInputStream metadata = readSection( metadataOffset, aFile.length() );
+
+    this.channelLayout = new ChannelLayout();
+
+    final int channelCount = metadata.readInt();
+    for ( int i = 0; i < channelCount; i++ )
+    {
+      final int channelIdx = metadata.readInt();
+      this.channelLayout.setChannelLabel( channelIdx, readString( metadata ) );
+      this.channelLayout.setChannelEnabled( channelIdx, metadata.readBoolean() );
+    }
+
+    final int groupCount = metadata.readInt();
+    for ( int i = 0; i < groupCount; i++ )
+    {
+      final String name = readString( metadata );
+      final boolean visible = metadata.readBoolean();
+      final int[] channels = new int[metadata.readInt()];
+      for ( int j = 0; j < channels.length; j++ )
+      {
+        channels[j] = metadata.readInt();
+      }
+      this.channelLayout.addChannelGroup( name, visible, channels );
+    }
+
+    final int cursorCount = metadata.readInt();
+    this.cursors = new Cursor[cursorCount];
+    for ( int i = 0; i < cursorCount; i++ )
+    {
+      final boolean defined = metadata.readBoolean();
+      final long timestamp = metadata.readLong();
+
+      this.cursors[i] = defined ? new Cursor( i, timestamp ) : new Cursor( i );
+      this.cursors[i].setLabel( readString( metadata ) );
+    }
+
+    this.blockAccount = MemoryBudget.getDefault().register( "Capture file blocks", 4 /* aWeight */, this );
+    this.blockCache = new LinkedHashMap<Integer, Block>( 16, 0.75f, true /* accessOrder */)
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry( final Map.Entry<Integer, Block> aEldest )
+      {
+        if ( size() > MAX_CACHED_BLOCKS )
+        {
+          CaptureFile.this.blockAccount.release( aEldest.getKey() );
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  // METHODS
+
+  /**
+   * Opens the given capture file, reading only its header, block index and
+   * metadata.
+   * 
+   * @param aFile
+   *          the capture file to open, cannot be <code>null</code>.
+   * @return the opened capture file, never <code>null</code>. Should be closed
+   *         by the caller when no longer needed.
+   * @throws IOException
+   *           in case the given file could not be read, or is not a valid
+   *           capture file.
+   */
+  public static CaptureFile open( final File aFile ) throws IOException
+  {
+    if ( aFile == null )
+    {
+      throw new IllegalArgumentException( "File cannot be null!" );
+    }
+
+    final RandomAccessFile file = new RandomAccessFile( aFile, "r" );
+    try
+    {
+      return new CaptureFile( file );
+    }
+    catch ( IOException exception )
+    {
+      file.close();
+      throw exception;
+    }
+    catch ( RuntimeException exception )
+    {
+      file.close();
+      throw exception;
+    }
+  }
+
+  /**
+   * Reads a (nullable) string.
+   */
+  private static String readString( final DataInputStream aInput ) throws IOException
+  {
+    return aInput.readBoolean() ? aInput.readUTF() : null;
+  }
+
+  /**
+   * Reads a variable-length encoded (unsigned) long value.
+   */
+  static long readVarLong( final DataInput aInput ) throws IOException
+  {
+    long result = 0L;
+    int shift = 0;
+    int b;
+    do
+    {
+      b = aInput.readUnsignedByte();
+      result |= ( long )( b & 0x7F ) << shift;
+      shift += 7;
+    }
+    while ( ( b & 0x80 ) != 0 );
+    return result;
+  }
+
+  /**
+   * Applies the persisted channel and channel group metadata to the given
+   * channel group manager, replacing its current channel groups.
+   * 
+   * @param aChannelGroupManager
+   *          the channel group manager to update, cannot be <code>null</code>.
+   */
+  public void applyChannelMetadata( final ChannelGroupManager aChannelGroupManager )
+  {
+    this.channelLayout.apply( aChannelGroupManager );
+  }
+
+  /**
+   * Applies the persisted cursor metadata to the given data model.
+   * 
+   * @param aDataModel
+   *          the data model to update, cannot be <code>null</code>.
+   */
+  public void applyCursors( final SampleDataModel aDataModel )
+  {
+    if ( aDataModel == null )
+    {
+      throw new IllegalArgumentException( "DataModel cannot be null!" );
+    }
+
+    final Cursor[] dmCursors = aDataModel.getCursors();
+    for ( int i = 0; i < Math.min( dmCursors.length, this.cursors.length ); i++ )
+    {
+      if ( this.cursors[i].isDefined() )
+      {
+        dmCursors[i].setTimestamp( this.cursors[i].getTimestamp() );
+      }
+      else
+      {
+        dmCursors[i].clear();
+      }
+      dmCursors[i].setLabel( this.cursors[i].getLabel() );
+    }
+  }
+
+  /**
+   * Returns a sample data provider that reads all sample data from this
+   * capture file.
+   * 
+   * @return a sample data provider, never <code>null</code>.
+   */
+  public SampleDataProvider asSampleDataProvider()
+  {
+    return asSampleDataProvider( null /* aListener */);
+  }
+
+  /**
+   * Returns a sample data provider that reads all sample data from this
+   * capture file, reporting its progress after each block.
+   * 
+   * @param aListener
+   *          the progress listener to notify, can be <code>null</code>.
+   * @return a sample data provider, never <code>null</code>.
+   */
+  public SampleDataProvider asSampleDataProvider( final IProgressListener aListener )
+  {
+    return new SampleDataProvider()
+    {
+      @Override
+      public int getSampleData( final int[] aValues, final long[] aTimestamps, final int aSize )
+      {
+        final int size = Math.min( aSize, CaptureFile.this.size );
+        final int blockSize = CaptureFile.this.blockSize;
+        try
+        {
+          for ( int idx = 0; idx < size; idx += blockSize )
+          {
+            if ( Thread.currentThread().isInterrupted() )
+            {
+              throw new InterruptedIOException( "Reading capture file interrupted!" );
+            }
+
+            final int length = Math.min( blockSize, size - idx );
+
+            final Block block = readBlock( idx / blockSize );
+            System.arraycopy( block.values, 0, aValues, idx, length );
+            System.arraycopy( block.timestamps, 0, aTimestamps, idx, length );
+
+            if ( aListener != null )
+            {
+              aListener.progressChanged( ( int )( ( 100L * ( idx + length ) ) / size ) );
+            }
+          }
+        }
+        catch ( IOException exception )
+        {
+          throw new RuntimeException( "Failed to read capture file!", exception );
+        }
+        return CaptureFile.this.sampleRate;
+      }
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException
+  {
+    synchronized ( this.file )
+    {
+      this.blockCache.clear();
+      this.file.close();
+    }
+    this.blockAccount.close();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void evict( final Object aKey )
+  {
+    synchronized ( this.file )
+    {
+      this.blockCache.remove( aKey );
+    }
+  }
+
+  /**
+   * Returns the index of the block containing the given timestamp.
+   * <p>
+   * This method only uses the block index, and does not read any sample data.
+   * </p>
+   * 
+   * @param aTimestamp
+   *          the timestamp to search for.
+   * @return the index of the last block whose first timestamp is less than or
+   *         equal to the given timestamp, or 0 if the given timestamp lies
+   *         before the first block. Returns -1 if this file contains no
+   *         blocks at all.
+   */
+  public int findBlock( final long aTimestamp )
+  {
+    int low = 0;
+    int high = this.blockTimestamps.length;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( this.blockTimestamps[mid] <= aTimestamp )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return ( this.blockTimestamps.length == 0 ) ? -1 : Math.max( 0, low - 1 );
+  }
+
+  /**
+   * Returns the number of blocks in this capture file.
+   * 
+   * @return a block count, >= 0.
+   */
+  public int getBlockCount()
+  {
+    return this.blockTimestamps.length;
+  }
+
+  /**
+   * Returns the number of samples per block.
+   * 
+   * @return a block size, > 0.
+   */
+  public int getBlockSize()
+  {
+    return this.blockSize;
+  }
+
+  /**
+   * Returns the timestamp of the first sample in the given block.
+   * 
+   * @param aBlockIdx
+   *          the index of the block.
+   * @return a timestamp.
+   */
+  public long getBlockTimestamp( final int aBlockIdx )
+  {
+    return this.blockTimestamps[aBlockIdx];
+  }
+
+  /**
+   * Returns the label of the channel with the given index.
+   * 
+   * @param aChannelIdx
+   *          the index of the channel.
+   * @return the channel label, or <code>null</code> if no label is given.
+   */
+  public String getChannelLabel( final int aChannelIdx )
+  {
+    return this.channelLayout.getChannelLabel( aChannelIdx );
+  }
+
+  /**
+   * Returns the persisted cursors.
+   * 
+   * @return a copy of the persisted cursors, never <code>null</code>.
+   */
+  public Cursor[] getCursors()
+  {
+    final Cursor[] result = new Cursor[this.cursors.length];
+    for ( int i = 0; i < result.length; i++ )
+    {
+      result[i] = this.cursors[i].clone();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the sample rate of the capture.
+   * 
+   * @return a sample rate, in Hertz.
+   */
+  public int getSampleRate()
+  {
+    return this.sampleRate;
+  }
+
+  /**
+   * Returns the total number of samples in this capture file.
+   * 
+   * @return a sample count, >= 0.
+   */
+  public int getSize()
+  {
+    return this.size;
+  }
+
+  /**
+   * Reads the block with the given index, either from the cache or from disk.
+   * 
+   * @param aBlockIdx
+   *          the index of the block to read.
+   * @return the decoded block, never <code>null</code>.
+   * @throws IOException
+   *           in case the block could not be read.
+   */
+  public Block readBlock( final int aBlockIdx ) throws IOException
+  {
+    if ( ( aBlockIdx < 0 ) || ( aBlockIdx >= this.blockTimestamps.length ) )
+    {
+      throw new IllegalArgumentException( "Invalid block index: " + aBlockIdx + "!" );
+    }
+
+    final Integer key = Integer.valueOf( aBlockIdx );
+
+    Block result;
+    boolean loaded = false;
+    synchronized ( this.file )
+    {
+      result = this.blockCache.get( key );
+      if ( result == null )
+      {
+        final byte[] data = new byte[this.blockLengths[aBlockIdx]];
+        this.file.seek( this.blockOffsets[aBlockIdx] );
+        this.file.readFully( data );
+
+        result = decodeBlock( aBlockIdx, data );
+        this.blockCache.put( key, result );
+        loaded = true;
+      }
+    }
+
+    // Do not hold the file lock while allocating, as that can evict others...
+    if ( loaded )
+    {
+      this.blockAccount.allocate( key, 12L * result.getSampleCount() );
+    }
+    else
+    {
+      this.blockAccount.touch( key );
+    }
+    return result;
+  }
+
+  /**
+   * Reads a consecutive range of samples into the given arrays.
+   * 
+   * @param aStartIdx
+   *          the index of the first sample to read;
+   * @param aLength
+   *          the number of samples to read;
+   * @param aValues
+   *          the array to store the sample values in;
+   * @param aTimestamps
+   *          the array to store the sample timestamps in.
+   * @throws IOException
+   *           in case the samples could not be read.
+   */
+  public void readSamples( final int aStartIdx, final int aLength, final int[] aValues, final long[] aTimestamps )
+      throws IOException
+  {
+    if ( ( aStartIdx < 0 ) || ( aLength < 0 ) || ( ( aStartIdx + aLength ) > this.size ) )
+    {
+      throw new IllegalArgumentException( "Invalid sample range!" );
+    }
+
+    int idx = aStartIdx;
+    int written = 0;
+    while ( written < aLength )
+    {
+      final Block block = readBlock( idx / this.blockSize );
+      final int offset = idx % this.blockSize;
+      final int count = Math.min( aLength - written, block.getSampleCount() - offset );
+
+      System.arraycopy( block.values, offset, aValues, written, count );
+      System.arraycopy( block.timestamps, offset, aTimestamps, written, count );
+
+      idx += count;
+      written += count;
+    }
+  }
+
+  /**
+   * Decompresses and decodes the given block data.
+   */
+  private Block decodeBlock( final int aBlockIdx, final byte[] aData ) throws IOException
+  {
+    final int count = this.blockSampleCounts[aBlockIdx];
+
+    final Inflater inflater = new Inflater();
+    final DataInputStream in = new DataInputStream( new BufferedInputStream( new InflaterInputStream(
+        new ByteArrayInputStream( aData ), inflater ) ) );
+    try
+    {
+      final int[] values = new int[count];
+      final long[] timestamps = new long[count];
+
+      for ( int i = 0; i < count; i++ )
+      {
+        values[i] = in.readInt();
+      }
+
+      long timestamp = this.blockTimestamps[aBlockIdx];
+      timestamps[0] = timestamp;
+      for ( int i = 1; i < count; i++ )
+      {
+        timestamp += readVarLong( in );
+        timestamps[i] = timestamp;
+      }
+
+      return new Block( values, timestamps );
+    }
+    finally
+    {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Reads the section of the file between the given offsets in one go.
+   */
+  private DataInputStream readSection( final long aStart, final long aEnd ) throws IOException
+  {
+    final byte[] data = new byte[( int )( aEnd - aStart )];
+    this.file.seek( aStart );
+    this.file.readFully( data );
+    return new DataInputStream( new ByteArrayInputStream( data ) );
+  }
+}
@@ -0,0 +1,329 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.io;
+
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.model.Cursor;
+
+
+/**
+ * Writes sample data, including its channel, channel group and cursor
+ * metadata, to an indexed binary capture file.
+ * <p>
+ * The file consists of a fixed-size header, followed by the (compressed)
+ * blocks of sample data, the block index and the metadata. Each block holds
+ * {@link #BLOCK_SIZE} samples: the values as-is and the timestamps
+ * delta-encoded as variable-length integers. The block index holds the first
+ * timestamp and file offset of each block, allowing any block to be located
+ * without reading the others.
+ * </p>
+ * 
+ * @see CaptureFile
+ */
+public final class CaptureFileWriter
+{
+  // CONSTANTS
+
+  /** The magic number identifying a capture file ("OLSC"). */
+  static final int MAGIC = 0x4F4C5343;
+  /** The current version of the file format. */
+  static final int VERSION = 1;
+  /** The size of the header, in bytes. */
+  static final int HEADER_SIZE = 40;
+  /** The number of samples in a single block. */
+  static final int BLOCK_SIZE = 64 * 1024;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new CaptureFileWriter instance, never used.
+   */
+  private CaptureFileWriter()
+  {
+    // NO-op
+  }
+
+  // METHODS
+
+  /**
+   * Writes the given data model to the given file.
+   * 
+   * @param aFile
+   *          the file to write to, cannot be <code>null</code>;
+   * @param aDataModel
+   *          the data model to write, cannot be <code>null</code>;
+   * @param aChannelLayout
+   *          the channel layout providing the channel (group) metadata, as
+   *          taken on the EDT, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public static void write( final File aFile, final SampleDataModel aDataModel,
+      final ChannelLayout aChannelLayout ) throws IOException
+  {
+    write( aFile, aDataModel.getValues(), aDataModel.getTimestamps(), aDataModel.getSampleRate(),
+        aDataModel.getCursors(), aChannelLayout );
+  }
+
+  /**
+   * Writes the given sample data to the given file.
+   * 
+   * @param aFile
+   *          the file to write to, cannot be <code>null</code>;
+   * @param aValues
+   *          the sample values to write;
+   * @param aTimestamps
+   *          the sample timestamps to write, in ascending order;
+   * @param aSampleRate
+   *          the sample rate, in Hertz;
+   * @param aCursors
+   *          the cursors to write, cannot be <code>null</code>;
+   * @param aChannelLayout
+   *          the channel layout providing the channel (group) metadata, as
+   *          taken on the EDT, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public static void write( final File aFile, final int[] aValues, final long[] aTimestamps, final int aSampleRate,
+      final Cursor[] aCursors, final ChannelLayout aChannelLayout ) throws IOException
+  {
+    if ( aFile == null )
+    {
+      throw new IllegalArgumentException( "File cannot be null!" );
+    }
+    if ( aChannelLayout == null )
+    {
+      throw new IllegalArgumentException( "ChannelLayout cannot be null!" );
+    }
+
+    final int size = aValues.length;
+    final int blockCount = ( size + BLOCK_SIZE - 1 ) / BLOCK_SIZE;
+
+    // Write to a temporary file first, so the existing file is only replaced
+    // once the new one is complete...
+    final File tempFile = new File( aFile.getPath() + ".tmp" );
+
+    final RandomAccessFile file = new RandomAccessFile( tempFile, "rw" );
+    boolean completed = false;
+    try
+    {
+      file.setLength( 0L );
+      file.seek( HEADER_SIZE );
+
+      final ByteArrayOutputStream index = new ByteArrayOutputStream( 24 * blockCount );
+      final DataOutputStream indexOut = new DataOutputStream( index );
+
+      final Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+      try
+      {
+        for ( int block = 0; block < blockCount; block++ )
+        {
+          final int startIdx = block * BLOCK_SIZE;
+          final int count = Math.min( BLOCK_SIZE, size - startIdx );
+
+          final byte[] data = compress( deflater, encodeBlock( aValues, aTimestamps, startIdx, count ) );
+
+          indexOut.writeLong( aTimestamps[startIdx] );
+          indexOut.writeLong( file.getFilePointer() );
+          indexOut.writeInt( data.length );
+          indexOut.writeInt( count );
+
+          file.write( data );
+        }
+      }
+      finally
+      {
+        deflater.end();
+      }
+
+      final long indexOffset = file.getFilePointer();
+      indexOut.flush();
+      file.write( index.toByteArray() );
+
+      final long metadataOffset = file.getFilePointer();
+      file.write( encodeMetadata( aCursors, aChannelLayout ) );
+
+      // Write the header last, so an incomplete file is never valid...
+      file.seek( 0L );
+      file.writeInt( MAGIC );
+      file.writeInt( VERSION );
+      file.writeInt( aSampleRate );
+      file.writeInt( size );
+      file.writeInt( BLOCK_SIZE );
+      file.writeInt( blockCount );
+      file.writeLong( indexOffset );
+      file.writeLong( metadataOffset );
+
+      completed = true;
+    }
+    finally
+    {
+      file.close();
+
+      if ( !completed )
+      {
+        tempFile.delete();
+      }
+    }
+
+    replaceFile( tempFile, aFile );
+  }
+
+  /**
+   * Replaces a given file by another one.
+   * 
+   * @param aSourceFile
+   *          the file to rename, cannot be <code>null</code>;
+   * @param aTargetFile
+   *          the file to replace, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case the target file could not be replaced, in which case the
+   *           source file is removed.
+   */
+  static void replaceFile( final File aSourceFile, final File aTargetFile ) throws IOException
+  {
+    if ( !aSourceFile.renameTo( aTargetFile ) )
+    {
+      // Some platforms do not allow an existing file to be replaced...
+      if ( !aTargetFile.delete() || !aSourceFile.renameTo( aTargetFile ) )
+      {
+        aSourceFile.delete();
+        throw new IOException( "Failed to replace " + aTargetFile.getName() + "!" );
+      }
+    }
+  }
+
+  /**
+   * Writes a variable-length encoded (unsigned) long value.
+   */
+  static void writeVarLong( final DataOutput aOutput, final long aValue ) throws IOException
+  {
+    long value = aValue;
+    while ( ( value & ~0x7FL ) != 0L )
+    {
+      aOutput.writeByte( ( int )( ( value & 0x7F ) | 0x80 ) );
+      value >>>= 7;
+    }
+    aOutput.writeByte( ( int )value );
+  }
+
+  /**
+   * Compresses the given data.
+   */
+  private static byte[] compress( final Deflater aDeflater, final byte[] aData )
+  {
+    aDeflater.reset();
+    aDeflater.setInput( aData );
+    aDeflater.finish();
+
+    final ByteArrayOutputStream result = new ByteArrayOutputStream( aData.length / 2 );
+    final byte[] buffer = new byte[8192];
+    while ( !aDeflater.finished() )
+    {
+      final int length = aDeflater.deflate( buffer );
+      result.write( buffer, 0, length );
+    }
+    return result.toByteArray();
+  }
+
+  /**
+   * Encodes a single block of samples: all values, followed by the
+   * delta-encoded timestamps (the first timestamp is stored in the index).
+   */
+  private static byte[] encodeBlock( final int[] aValues, final long[] aTimestamps, final int aStartIdx,
+      final int aCount ) throws IOException
+  {
+    final ByteArrayOutputStream result = new ByteArrayOutputStream( 6 * aCount );
+    final DataOutputStream out = new DataOutputStream( result );
+
+    for ( int i = 0; i < aCount; i++ )
+    {
+      out.writeInt( aValues[aStartIdx + i] );
+    }
+    for ( int i = 1; i < aCount; i++ )
+    {
+      writeVarLong( out, aTimestamps[aStartIdx + i] - aTimestamps[aStartIdx + i - 1] );
+    }
+
+    out.flush();
+    return result.toByteArray();
+  }
+
+  /**
+   * Encodes the channel, channel group and cursor metadata.
+   */
+  private static byte[] encodeMetadata( final Cursor[] aCursors, final ChannelLayout aChannelLayout )
+      throws IOException
+  {
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream( result );
+
+    final int channelCount = aChannelLayout.getChannelCount();
+    out.writeInt( channelCount );
+    for ( int i = 0; i < channelCount; i++ )
+    {
+      out.writeInt( i );
+      writeString( out, aChannelLayout.getChannelLabel( i ) );
+      out.writeBoolean( aChannelLayout.isChannelEnabled( i ) );
+    }
+
+    final List<ChannelLayout.ChannelGroupInfo> channelGroups = aChannelLayout.getChannelGroups();
+    out.writeInt( channelGroups.size() );
+    for ( ChannelLayout.ChannelGroupInfo channelGroup : channelGroups )
+    {
+      writeString( out, channelGroup.name );
+      out.writeBoolean( channelGroup.visible );
+
+      out.writeInt( channelGroup.channels.length );
+      for ( int channelIdx : channelGroup.channels )
+      {
+        out.writeInt( channelIdx );
+      }
+    }
+
+    out.writeInt( aCursors.length );
+    for ( Cursor cursor : aCursors )
+    {
+      out.writeBoolean( cursor.isDefined() );
+      out.writeLong( cursor.isDefined() ? cursor.getTimestamp() : 0L );
+      writeString( out, cursor.hasLabel() ? cursor.getLabel() : null );
+    }
+
+    out.flush();
+    return result.toByteArray();
+  }
+
+  /**
+   * Writes a (nullable) string.
+   */
+  private static void writeString( final DataOutputStream aOutput, final String aValue ) throws IOException
+  {
+    aOutput.writeBoolean( aValue != null );
+    if ( aValue != null )
+    {
+      aOutput.writeUTF( aValue );
+    }
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.io;
+
+
+import java.util.*;
+
+import nl.lxtreme.test.model.*;
+
+
+/**
+ * Describes the channel labels and channel groups of imported sample data, and
+ * applies them to a {@link ChannelGroupManager}.
+ * <p>
+ * A channel layout can also be taken from a channel group manager on the EDT,
+ * so that sample data can be exported with its channel labels and groups in
+ * the background, while the channel groups are being edited.
+ * </p>
+ */
+public final class ChannelLayout
+{
+  // INNER TYPES
+
+  /**
+   * Describes a single channel group.
+   */
+  static final class ChannelGroupInfo
+  {
+    // VARIABLES
+
+    final String name;
+    final boolean visible;
+    final int[] channels;
+    final int mask;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new ChannelGroupInfo instance.
+     */
+    ChannelGroupInfo( final String aName, final boolean aVisible, final int[] aChannels )
+    {
+      this.name = aName;
+      this.visible = aVisible;
+      this.channels = aChannels;
+
+      int channelMask = 0;
+      for ( int channelIdx : aChannels )
+      {
+        channelMask |= ( 1 << channelIdx );
+      }
+      this.mask = channelMask;
+    }
+  }
+
+  // VARIABLES
+
+  private final int channelCount;
+  private final Map<Integer, String> channelLabels;
+  private final Set<Integer> disabledChannels;
+  private final List<ChannelGroupInfo> channelGroups;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new, empty, ChannelLayout instance.
+   */
+  ChannelLayout()
+  {
+    this( 0 );
+  }
+
+  /**
+   * Creates a new, empty, ChannelLayout instance for the given number of
+   * channels.
+   */
+  private ChannelLayout( final int aChannelCount )
+  {
+    this.channelCount = aChannelCount;
+    this.channelLabels = new HashMap<Integer, String>();
+    this.disabledChannels = new HashSet<Integer>();
+    this.channelGroups = new ArrayList<ChannelGroupInfo>();
+  }
+
+  // METHODS
+
+  /**
+   * Takes the current channel labels and channel groups of the given channel
+   * group manager. Should be called on the EDT.
+   * 
+   * @param aChannelGroupManager
+   *          the channel group manager to take the layout of, cannot be
+   *          <code>null</code>.
+   * @return a new channel layout, which is not affected by later changes of
+   *         the given channel group manager, never <code>null</code>.
+   */
+  public static ChannelLayout valueOf( final ChannelGroupManager aChannelGroupManager )
+  {
+    if ( aChannelGroupManager == null )
+    {
+      throw new IllegalArgumentException( "ChannelGroupManager cannot be null!" );
+    }
+
+    final Channel[] channels = aChannelGroupManager.getAllChannels();
+
+    final ChannelLayout result = new ChannelLayout( channels.length );
+    for ( Channel channel : channels )
+    {
+      result.setChannelLabel( channel.getIndex(), channel.hasName() ? channel.getLabel() : null );
+      result.setChannelEnabled( channel.getIndex(), channel.isEnabled() );
+    }
+
+    for ( ChannelGroup channelGroup : aChannelGroupManager.getChannelGroups() )
+    {
+      final Channel[] groupChannels = channelGroup.getChannels();
+      final int[] channelIdxs = new int[groupChannels.length];
+      for ( int i = 0; i < groupChannels.length; i++ )
+      {
+        channelIdxs[i] = groupChannels[i].getIndex();
+      }
+      result.addChannelGroup( channelGroup.getName(), channelGroup.isVisible(), channelIdxs );
+    }
+
+    return result;
+  }
+
+  /**
+   * Adds a channel group.
+   * 
+   * @param aName
+   *          the name of the channel group;
+   * @param aVisible
+   *          whether or not the channel group is visible;
+   * @param aChannels
+   *          the indexes of the channels of the channel group, in order.
+   */
+  void addChannelGroup( final String aName, final boolean aVisible, final int[] aChannels )
+  {
+    this.channelGroups.add( new ChannelGroupInfo( aName, aVisible, aChannels ) );
+  }
+
+  /**
+   * Applies this layout to the given channel group manager, replacing its
+   * current channel groups. In case this layout defines no channel groups, the
+   * current channel groups are retained.
+   * 
+   * @param aChannelGroupManager
+   *          the channel group manager to update, cannot be <code>null</code>.
+   */
+  void apply( final ChannelGroupManager aChannelGroupManager )
+  {
+    if ( aChannelGroupManager == null )
+    {
+      throw new IllegalArgumentException( "ChannelGroupManager cannot be null!" );
+    }
+
+    for ( Channel channel : aChannelGroupManager.getAllChannels() )
+    {
+      final Integer channelIdx = Integer.valueOf( channel.getIndex() );
+      channel.setLabel( this.channelLabels.get( channelIdx ) );
+      channel.setEnabled( !this.disabledChannels.contains( channelIdx ) );
+    }
+
+    if ( this.channelGroups.isEmpty() )
+    {
+      // Keep the default channel groups...
+      return;
+    }
+
+    for ( ChannelGroup channelGroup : aChannelGroupManager.getChannelGroups() )
+    {
+      aChannelGroupManager.removeChannelGroup( channelGroup.getName() );
+    }
+
+    for ( ChannelGroupInfo info : this.channelGroups )
+    {
+      if ( info.channels.length == 0 )
+      {
+        continue;
+      }
+
+      final ChannelGroup channelGroup = aChannelGroupManager.addChannelGroup( info.name );
+      // Adding a channel group implicitly adds the first available channel;
+      // release it so the given channel order is retained...
+      for ( Channel channel : channelGroup.getChannels() )
+      {
+        aChannelGroupManager.removeChannel( channelGroup, channel );
+      }
+
+      final Channel[] allChannels = aChannelGroupManager.getAllChannels();
+      for ( int channelIdx : info.channels )
+      {
+        if ( ( channelIdx >= 0 ) && ( channelIdx < allChannels.length ) )
+        {
+          aChannelGroupManager.addChannel( channelGroup, allChannels[channelIdx] );
+        }
+      }
+
+      channelGroup.setVisible( info.visible );
+    }
+  }
+
+  /**
+   * Returns the number of channels of this layout.
+   * 
+   * @return a channel count, or 0 if this layout was not taken from a channel
+   *         group manager.
+   */
+  int getChannelCount()
+  {
+    return this.channelCount;
+  }
+
+  /**
+   * Returns the channel groups of this layout.
+   * 
+   * @return the channel groups, in order, never <code>null</code>.
+   */
+  List<ChannelGroupInfo> getChannelGroups()
+  {
+    return Collections.unmodifiableList( this.channelGroups );
+  }
+
+  /**
+   * Returns the label of the channel with the given index.
+   * 
+   * @param aChannelIdx
+   *          the index of the channel.
+   * @return the channel label, or <code>null</code> if no label is given.
+   */
+  String getChannelLabel( final int aChannelIdx )
+  {
+    return this.channelLabels.get( Integer.valueOf( aChannelIdx ) );
+  }
+
+  /**
+   * Returns whether or not the channel with the given index is enabled.
+   * 
+   * @param aChannelIdx
+   *          the index of the channel.
+   * @return <code>true</code> if the channel is enabled, <code>false</code>
+   *         otherwise.
+   */
+  boolean isChannelEnabled( final int aChannelIdx )
+  {
+    return !this.disabledChannels.contains( Integer.valueOf( aChannelIdx ) );
+  }
+
+  /**
+   * Sets the label of the channel with the given index.
+   * 
+   * @param aChannelIdx
+   *          the index of the channel;
+   * @param aLabel
+   *          the label to set, can be <code>null</code>.
+   */
+  void setChannelLabel( final int aChannelIdx, final String aLabel )
+  {
+    if ( aLabel == null )
+    {
+      this.channelLabels.remove( Integer.valueOf( aChannelIdx ) );
+    }
+    else
+    {
+      this.channelLabels.put( Integer.valueOf( aChannelIdx ), aLabel );
+    }
+  }
+
+  /**
+   * Sets whether or not the channel with the given index is enabled.
+   * 
+   * @param aChannelIdx
+   *          the index of the channel;
+   * @param aEnabled
+   *          <code>true</code> if the channel is enabled, <code>false</code>
+   *          otherwise.
+   */
+  void setChannelEnabled( final int aChannelIdx, final boolean aEnabled )
+  {
+    if ( aEnabled )
+    {
+      this.disabledChannels.remove( Integer.valueOf( aChannelIdx ) );
+    }
+    else
+    {
+      this.disabledChannels.add( Integer.valueOf( aChannelIdx ) );
+    }
+  }
+}
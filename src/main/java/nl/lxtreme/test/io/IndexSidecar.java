@@ -0,0 +1,407 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.io;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.*;
+import java.util.zip.*;
+
+import nl.lxtreme.test.model.*;
+
+
+/**
+ * Provides the derived indexes of a capture, such as its glitch index, that
+ * are persisted in a sidecar file next to the capture, so they need not be
+ * rebuilt each time the capture is opened.
+ * <p>
+ * The sidecar file consists of a fixed-size header, holding the content hash
+ * of the capture it belongs to and a checksum of the remainder of the file,
+ * followed by a table with the type and length of each section and the
+ * sections themselves. Sidecar files are memory-mapped when opened, and their
+ * sections are only decoded when first used. Sections of an unknown type are
+ * retained as-is. Since a sidecar is written to a temporary file that then
+ * replaces the existing one, a mapped sidecar file is never modified in place.
+ * </p>
+ * <p>
+ * A sidecar file whose version, checksum or content hash does not match is
+ * considered stale and ignored, causing its indexes to be rebuilt.
+ * </p>
+ */
+public final class IndexSidecar
+{
+  // CONSTANTS
+
+  /** The file extension of sidecar files, appended to that of the capture. */
+  public static final String EXTENSION = "idx";
+
+  /** The magic number identifying a sidecar file ("OLSI"). */
+  static final int MAGIC = 0x4F4C5349;
+  /** The current version of the file format. */
+  static final int VERSION = 1;
+  /** The size of the header, in bytes. */
+  static final int HEADER_SIZE = 24;
+  /** The section type of the glitch index. */
+  static final int SECTION_GLITCHES = 1;
+
+  private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+
+  // VARIABLES
+
+  private final long contentHash;
+  /** the (encoded) sections, in the order they are written. */
+  private final Map<Integer, ByteBuffer> sections;
+
+  private GlitchIndex glitchIndex;
+  private int glitchMask;
+  private long glitchMaxWidth;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new, empty, IndexSidecar instance.
+   * 
+   * @param aContentHash
+   *          the content hash of the capture this sidecar belongs to.
+   * @see #computeContentHash(int[], long[], int)
+   */
+  public IndexSidecar( final long aContentHash )
+  {
+    this.contentHash = aContentHash;
+    this.sections = new LinkedHashMap<Integer, ByteBuffer>();
+  }
+
+  // METHODS
+
+  /**
+   * Computes the content hash of the given sample data, used to determine
+   * whether a sidecar file still belongs to a capture.
+   * 
+   * @param aValues
+   *          the sample values, cannot be <code>null</code>;
+   * @param aTimestamps
+   *          the sample timestamps, cannot be <code>null</code>;
+   * @param aSampleRate
+   *          the sample rate, in Hertz.
+   * @return a 64-bit hash.
+   */
+  public static long computeContentHash( final int[] aValues, final long[] aTimestamps, final int aSampleRate )
+  {
+    // 64-bit FNV-1a over whole values instead of bytes...
+    final long prime = 0x100000001B3L;
+
+    long hash = 0xCBF29CE484222325L;
+    hash = ( hash ^ aValues.length ) * prime;
+    hash = ( hash ^ aSampleRate ) * prime;
+    for ( int i = 0; i < aValues.length; i++ )
+    {
+      hash = ( hash ^ aValues[i] ) * prime;
+      hash = ( hash ^ aTimestamps[i] ) * prime;
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the sidecar file belonging to the given capture file.
+   * 
+   * @param aCaptureFile
+   *          the capture file, cannot be <code>null</code>.
+   * @return the sidecar file, which need not exist, never <code>null</code>.
+   */
+  public static File getFile( final File aCaptureFile )
+  {
+    if ( aCaptureFile == null )
+    {
+      throw new IllegalArgumentException( "Capture file cannot be null!" );
+    }
+    return new File( aCaptureFile.getPath() + "." + EXTENSION );
+  }
+
+  /**
+   * Opens the given sidecar file, if it belongs to a capture with the given
+   * content hash.
+   * 
+   * @param aFile
+   *          the sidecar file to open, cannot be <code>null</code>;
+   * @param aContentHash
+   *          the content hash of the capture.
+   * @return the opened sidecar, or <code>null</code> if the given file does not
+   *         exist, is not a valid sidecar file, or belongs to a different
+   *         capture.
+   * @throws IOException
+   *           in case the given file could not be read.
+   */
+  public static IndexSidecar open( final File aFile, final long aContentHash ) throws IOException
+  {
+    if ( aFile == null )
+    {
+      throw new IllegalArgumentException( "File cannot be null!" );
+    }
+    if ( !aFile.isFile() || ( aFile.length() < HEADER_SIZE ) || ( aFile.length() > Integer.MAX_VALUE ) )
+    {
+      return null;
+    }
+
+    final ByteBuffer buffer;
+    final RandomAccessFile file = new RandomAccessFile( aFile, "r" );
+    try
+    {
+      // The mapping remains valid after the file is closed...
+      buffer = file.getChannel().map( MapMode.READ_ONLY, 0L, file.length() );
+    }
+    finally
+    {
+      file.close();
+    }
+
+    if ( ( buffer.getInt( 0 ) != MAGIC ) || ( buffer.getInt( 4 ) != VERSION )
+        || ( buffer.getLong( 8 ) != aContentHash ) )
+    {
+      return null;
+    }
+
+    final int sectionCount = buffer.getInt( 16 );
+    final int checksum = buffer.getInt( 20 );
+    if ( ( sectionCount < 0 ) || ( sectionCount > ( ( buffer.capacity() - HEADER_SIZE ) / 8 ) )
+        || ( checksum( buffer, HEADER_SIZE ) != checksum ) )
+    {
+      return null;
+    }
+
+    final IndexSidecar result = new IndexSidecar( aContentHash );
+
+    int offset = HEADER_SIZE + ( 8 * sectionCount );
+    for ( int i = 0; i < sectionCount; i++ )
+    {
+      final int type = buffer.getInt( HEADER_SIZE + ( 8 * i ) );
+      final int length = buffer.getInt( HEADER_SIZE + ( 8 * i ) + 4 );
+      if ( ( length < 0 ) || ( length > ( buffer.capacity() - offset ) ) )
+      {
+        return null;
+      }
+
+      final ByteBuffer section = buffer.duplicate();
+      section.limit( offset + length ).position( offset );
+      result.sections.put( Integer.valueOf( type ), section.slice() );
+
+      offset += length;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the content hash of the capture this sidecar belongs to.
+   * 
+   * @return a content hash.
+   */
+  public long getContentHash()
+  {
+    return this.contentHash;
+  }
+
+  /**
+   * Returns the persisted glitch index.
+   * 
+   * @return the glitch index, or <code>null</code> if no glitch index is
+   *         persisted.
+   * @see #getGlitchMask()
+   * @see #getGlitchMaxWidth()
+   */
+  public synchronized GlitchIndex getGlitchIndex()
+  {
+    if ( this.glitchIndex == null )
+    {
+      final ByteBuffer section = this.sections.get( Integer.valueOf( SECTION_GLITCHES ) );
+      if ( section != null )
+      {
+        decodeGlitches( section.duplicate() );
+      }
+    }
+    return this.glitchIndex;
+  }
+
+  /**
+   * Returns the mask of the channels that were scanned for the persisted
+   * glitch index.
+   * 
+   * @return a channel mask, or 0 if no glitch index is persisted.
+   */
+  public synchronized int getGlitchMask()
+  {
+    return ( getGlitchIndex() == null ) ? 0 : this.glitchMask;
+  }
+
+  /**
+   * Returns the (exclusive) maximum glitch width of the persisted glitch
+   * index.
+   * 
+   * @return a width, in timestamp units, or 0 if no glitch index is persisted.
+   */
+  public synchronized long getGlitchMaxWidth()
+  {
+    return ( getGlitchIndex() == null ) ? 0L : this.glitchMaxWidth;
+  }
+
+  /**
+   * Sets the glitch index to persist.
+   * 
+   * @param aMask
+   *          the mask of the channels that were scanned;
+   * @param aMaxWidth
+   *          the (exclusive) maximum width of a glitch, in timestamp units;
+   * @param aGlitchIndex
+   *          the glitch index to persist, cannot be <code>null</code>.
+   */
+  public synchronized void setGlitchIndex( final int aMask, final long aMaxWidth, final GlitchIndex aGlitchIndex )
+  {
+    if ( aGlitchIndex == null )
+    {
+      throw new IllegalArgumentException( "Glitch index cannot be null!" );
+    }
+
+    final int size = aGlitchIndex.size();
+
+    final ByteBuffer section = ByteBuffer.allocate( 16 + ( 20 * size ) );
+    section.putInt( aMask ).putLong( aMaxWidth ).putInt( size );
+    for ( int i = 0; i < size; i++ )
+    {
+      section.putInt( aGlitchIndex.getChannel( i ) );
+    }
+    for ( int i = 0; i < size; i++ )
+    {
+      section.putLong( aGlitchIndex.getStartTimestamp( i ) );
+    }
+    for ( int i = 0; i < size; i++ )
+    {
+      section.putLong( aGlitchIndex.getEndTimestamp( i ) );
+    }
+    section.flip();
+
+    this.sections.put( Integer.valueOf( SECTION_GLITCHES ), section );
+
+    this.glitchIndex = aGlitchIndex;
+    this.glitchMask = aMask;
+    this.glitchMaxWidth = aMaxWidth;
+  }
+
+  /**
+   * Writes this sidecar to the given file.
+   * <p>
+   * The sidecar is first written to a temporary file, which then replaces the
+   * given file, so an interrupted write never leaves a partial sidecar file.
+   * </p>
+   * 
+   * @param aFile
+   *          the file to write to, cannot be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems.
+   */
+  public synchronized void write( final File aFile ) throws IOException
+  {
+    if ( aFile == null )
+    {
+      throw new IllegalArgumentException( "File cannot be null!" );
+    }
+
+    int size = HEADER_SIZE + ( 8 * this.sections.size() );
+    for ( ByteBuffer section : this.sections.values() )
+    {
+      size += section.remaining();
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate( size );
+    buffer.putInt( MAGIC ).putInt( VERSION ).putLong( this.contentHash ).putInt( this.sections.size() ).putInt( 0 );
+    for ( Map.Entry<Integer, ByteBuffer> entry : this.sections.entrySet() )
+    {
+      buffer.putInt( entry.getKey().intValue() ).putInt( entry.getValue().remaining() );
+    }
+    for ( ByteBuffer section : this.sections.values() )
+    {
+      buffer.put( section.duplicate() );
+    }
+    buffer.putInt( 20, checksum( buffer, HEADER_SIZE ) );
+    buffer.flip();
+
+    final File tempFile = new File( aFile.getPath() + ".tmp" );
+    final FileOutputStream out = new FileOutputStream( tempFile );
+    try
+    {
+      final FileChannel channel = out.getChannel();
+      while ( buffer.hasRemaining() )
+      {
+        channel.write( buffer );
+      }
+    }
+    finally
+    {
+      out.close();
+    }
+
+    CaptureFileWriter.replaceFile( tempFile, aFile );
+  }
+
+  /**
+   * Calculates the CRC32 checksum of the given buffer from the given offset to
+   * its capacity.
+   */
+  private static int checksum( final ByteBuffer aBuffer, final int aOffset )
+  {
+    final ByteBuffer source = aBuffer.duplicate();
+    source.limit( source.capacity() ).position( aOffset );
+
+    final CRC32 crc = new CRC32();
+    final byte[] chunk = new byte[Math.min( CHECKSUM_BUFFER_SIZE, source.remaining() )];
+    while ( source.hasRemaining() )
+    {
+      final int length = Math.min( chunk.length, source.remaining() );
+      source.get( chunk, 0, length );
+      crc.update( chunk, 0, length );
+    }
+    return ( int )crc.getValue();
+  }
+
+  /**
+   * Decodes the glitch index from the given section.
+   */
+  private void decodeGlitches( final ByteBuffer aSection )
+  {
+    final int mask = aSection.getInt();
+    final long maxWidth = aSection.getLong();
+    final int size = aSection.getInt();
+
+    final int[] channels = new int[size];
+    aSection.asIntBuffer().get( channels );
+    aSection.position( aSection.position() + ( 4 * size ) );
+
+    final long[] starts = new long[size];
+    final long[] ends = new long[size];
+    final LongBuffer timestamps = aSection.asLongBuffer();
+    timestamps.get( starts );
+    timestamps.get( ends );
+
+    this.glitchIndex = GlitchIndex.valueOf( channels, starts, ends );
+    this.glitchMask = mask;
+    this.glitchMaxWidth = maxWidth;
+  }
+}
@@ -0,0 +1,492 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.io;
+
+
+import java.io.*;
+import java.util.*;
+
+import nl.lxtreme.test.*;
+import nl.lxtreme.test.model.*;
+
+
+/**
+ * Imports the textual capture files (*.ols) written by the OpenBench
+ * LogicSniffer client.
+ * <p>
+ * Such a file consists of a number of header lines, starting with a
+ * semicolon, like <tt>;Rate: 100000000</tt>, followed by one line per sample
+ * of the form <tt>&lt;hex value&gt;@&lt;decimal timestamp&gt;</tt>.
+ * </p>
+ * <p>
+ * The file is parsed directly from a fixed-size byte buffer, without creating
+ * a string (or any other object) per sample line. The sample arrays are
+ * preallocated using the <tt>;Size</tt> header, if present, and filled in
+ * place; progress is reported after each buffer.
+ * </p>
+ */
+public final class OlsImporter
+{
+  // CONSTANTS
+
+  /** The size of the read buffer, in bytes. */
+  static final int BUFFER_SIZE = 64 * 1024;
+  /** The number of samples after which the partial data is published. */
+  static final int PREVIEW_SIZE = 64 * 1024;
+  /** The initial capacity of the sample arrays when no size is given. */
+  static final int INITIAL_CAPACITY = 64 * 1024;
+
+  /** Denotes a missing sample rate; state captures have a sample rate of -1. */
+  private static final int NO_SAMPLE_RATE = Integer.MIN_VALUE;
+
+  private static final int STATE_LINE_START = 0;
+  private static final int STATE_HEADER = 1;
+  private static final int STATE_VALUE = 2;
+  private static final int STATE_TIMESTAMP = 3;
+
+  // VARIABLES
+
+  private int[] values;
+  private long[] timestamps;
+  private int count;
+
+  private IPartialDataListener partialDataListener;
+  private int sampleRate;
+  private int enabledChannelMask;
+  private final Long[] cursors;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new OlsImporter instance.
+   */
+  public OlsImporter()
+  {
+    this.sampleRate = NO_SAMPLE_RATE;
+    this.enabledChannelMask = -1;
+    this.cursors = new Long[Cursor.MAX_CURSORS];
+  }
+
+  // METHODS
+
+  /**
+   * Returns the value of the given hexadecimal digit.
+   */
+  private static int hexDigit( final int aChar )
+  {
+    if ( ( aChar >= '0' ) && ( aChar <= '9' ) )
+    {
+      return aChar - '0';
+    }
+    if ( ( aChar >= 'a' ) && ( aChar <= 'f' ) )
+    {
+      return ( aChar - 'a' ) + 10;
+    }
+    if ( ( aChar >= 'A' ) && ( aChar <= 'F' ) )
+    {
+      return ( aChar - 'A' ) + 10;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the mask of the channels that were enabled during the capture.
+   * 
+   * @return a channel mask, -1 (all channels) if the imported file did not
+   *         specify the enabled channels.
+   */
+  public int getEnabledChannelMask()
+  {
+    return this.enabledChannelMask;
+  }
+
+  /**
+   * Imports the given OLS file.
+   * 
+   * @param aFile
+   *          the file to import, cannot be <code>null</code>;
+   * @param aListener
+   *          the listener to report the progress to, can be
+   *          <code>null</code>.
+   * @return a new data model with the imported sample data and cursors, never
+   *         <code>null</code>.
+   * @throws IOException
+   *           in case the given file could not be read or is not a valid OLS
+   *           file;
+   * @throws InterruptedIOException
+   *           in case the current thread was interrupted during the import.
+   */
+  public SampleDataModel read( final File aFile, final IProgressListener aListener ) throws IOException
+  {
+    if ( aFile == null )
+    {
+      throw new IllegalArgumentException( "File cannot be null!" );
+    }
+
+    final InputStream input = new FileInputStream( aFile );
+    try
+    {
+      return read( input, aFile.length(), aListener );
+    }
+    finally
+    {
+      input.close();
+    }
+  }
+
+  /**
+   * Imports OLS data from the given input stream.
+   * 
+   * @param aInput
+   *          the input stream to read from, cannot be <code>null</code>. This
+   *          stream is not closed by this method;
+   * @param aLength
+   *          the total number of bytes that will be read, used for reporting
+   *          progress, or -1L if unknown;
+   * @param aListener
+   *          the listener to report the progress to, can be
+   *          <code>null</code>.
+   * @return a new data model with the imported sample data and cursors, never
+   *         <code>null</code>.
+   * @throws IOException
+   *           in case the given stream could not be read or contained no valid
+   *           OLS data;
+   * @throws InterruptedIOException
+   *           in case the current thread was interrupted during the import.
+   */
+  public SampleDataModel read( final InputStream aInput, final long aLength, final IProgressListener aListener )
+      throws IOException
+  {
+    if ( aInput == null )
+    {
+      throw new IllegalArgumentException( "Input cannot be null!" );
+    }
+
+    this.values = null;
+    this.timestamps = null;
+    this.count = 0;
+
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    final StringBuilder header = new StringBuilder();
+
+    int state = STATE_LINE_START;
+    int value = 0;
+    long timestamp = 0L;
+    int digits = 0;
+    int lineNo = 1;
+
+    long bytesRead = 0L;
+    int progress = -1;
+
+    int read;
+    while ( ( read = aInput.read( buffer ) ) >= 0 )
+    {
+      for ( int i = 0; i < read; i++ )
+      {
+        final int ch = buffer[i];
+
+        if ( state == STATE_LINE_START )
+        {
+          if ( ch == ';' )
+          {
+            header.setLength( 0 );
+            state = STATE_HEADER;
+          }
+          else if ( ch == '\n' )
+          {
+            lineNo++;
+          }
+          else if ( ( ch != '\r' ) && ( ch != ' ' ) && ( ch != '\t' ) )
+          {
+            value = 0;
+            digits = 0;
+            state = STATE_VALUE;
+          }
+        }
+
+        if ( state == STATE_HEADER )
+        {
+          if ( ( ch == '\n' ) || ( ch == '\r' ) )
+          {
+            handleHeader( header, lineNo );
+            if ( ch == '\n' )
+            {
+              lineNo++;
+            }
+            state = STATE_LINE_START;
+          }
+          else if ( ( ch != ';' ) || ( header.length() > 0 ) )
+          {
+            header.append( ( char )( ch & 0xFF ) );
+          }
+        }
+        else if ( state == STATE_VALUE )
+        {
+          if ( ch == '@' )
+          {
+            if ( digits == 0 )
+            {
+              throw new IOException( "Missing sample value at line " + lineNo + "!" );
+            }
+            timestamp = 0L;
+            digits = 0;
+            state = STATE_TIMESTAMP;
+          }
+          else
+          {
+            final int digit = hexDigit( ch );
+            if ( ( digit < 0 ) || ( ++digits > 8 ) )
+            {
+              throw new IOException( "Invalid sample value at line " + lineNo + "!" );
+            }
+            value = ( value << 4 ) | digit;
+          }
+        }
+        else if ( state == STATE_TIMESTAMP )
+        {
+          if ( ( ch >= '0' ) && ( ch <= '9' ) )
+          {
+            digits++;
+            if ( timestamp > ( ( Long.MAX_VALUE - ( ch - '0' ) ) / 10L ) )
+            {
+              throw new IOException( "Invalid timestamp at line " + lineNo + "!" );
+            }
+            timestamp = ( timestamp * 10L ) + ( ch - '0' );
+          }
+          else if ( ( ( ch == '\n' ) || ( ch == '\r' ) ) && ( digits > 0 ) )
+          {
+            addSample( value, timestamp );
+            if ( ch == '\n' )
+            {
+              lineNo++;
+            }
+            state = STATE_LINE_START;
+          }
+          else
+          {
+            throw new IOException( "Invalid timestamp at line " + lineNo + "!" );
+          }
+        }
+      }
+
+      bytesRead += read;
+      if ( Thread.currentThread().isInterrupted() )
+      {
+        throw new InterruptedIOException( "Import interrupted!" );
+      }
+      if ( ( aListener != null ) && ( aLength > 0L ) )
+      {
+        final int newProgress = ( int )Math.min( 100L, ( 100L * bytesRead ) / aLength );
+        if ( newProgress != progress )
+        {
+          progress = newProgress;
+          aListener.progressChanged( progress );
+        }
+      }
+    }
+
+    // Handle a last line without line terminator...
+    if ( state == STATE_HEADER )
+    {
+      handleHeader( header, lineNo );
+    }
+    else if ( state == STATE_VALUE )
+    {
+      throw new IOException( "Missing timestamp at line " + lineNo + "!" );
+    }
+    else if ( state == STATE_TIMESTAMP )
+    {
+      if ( digits == 0 )
+      {
+        throw new IOException( "Missing timestamp at line " + lineNo + "!" );
+      }
+      addSample( value, timestamp );
+    }
+
+    return createDataModel();
+  }
+
+  /**
+   * Sets the listener that is notified once the first part of the sample data
+   * is imported, allowing it to be shown before the import is completed.
+   * 
+   * @param aListener
+   *          the listener to set, can be <code>null</code>.
+   */
+  public void setPartialDataListener( final IPartialDataListener aListener )
+  {
+    this.partialDataListener = aListener;
+  }
+
+  /**
+   * Adds a single sample, growing the sample arrays if necessary.
+   */
+  private void addSample( final int aValue, final long aTimestamp )
+  {
+    if ( this.values == null )
+    {
+      this.values = new int[INITIAL_CAPACITY];
+      this.timestamps = new long[INITIAL_CAPACITY];
+    }
+    else if ( this.count == this.values.length )
+    {
+      final int newCapacity = this.count + Math.max( INITIAL_CAPACITY, this.count >> 1 );
+      this.values = Arrays.copyOf( this.values, newCapacity );
+      this.timestamps = Arrays.copyOf( this.timestamps, newCapacity );
+    }
+
+    this.values[this.count] = aValue;
+    this.timestamps[this.count] = aTimestamp;
+    this.count++;
+
+    if ( ( this.count == PREVIEW_SIZE ) && ( this.partialDataListener != null ) )
+    {
+      publishPartialData();
+    }
+  }
+
+  /**
+   * Sets the imported cursors on the given data model.
+   */
+  private void applyCursors( final SampleDataModel aDataModel )
+  {
+    for ( int i = 0; i < this.cursors.length; i++ )
+    {
+      if ( this.cursors[i] != null )
+      {
+        aDataModel.setCursor( i, this.cursors[i].longValue() );
+      }
+    }
+  }
+
+  /**
+   * Creates the data model for the imported sample data.
+   */
+  private SampleDataModel createDataModel() throws IOException
+  {
+    if ( this.count == 0 )
+    {
+      throw new IOException( "No samples found!" );
+    }
+    if ( this.sampleRate == NO_SAMPLE_RATE )
+    {
+      throw new IOException( "Missing sample rate!" );
+    }
+
+    int[] resultValues = this.values;
+    long[] resultTimestamps = this.timestamps;
+    if ( this.count < resultValues.length )
+    {
+      resultValues = Arrays.copyOf( resultValues, this.count );
+      resultTimestamps = Arrays.copyOf( resultTimestamps, this.count );
+    }
+    // Release our references, as the data model owns the arrays now...
+    this.values = null;
+    this.timestamps = null;
+
+    // State captures have no sample rate; their timestamps are sample indexes...
+    final SampleDataModel result = new SampleDataModel( resultValues, resultTimestamps, Math.max( 1,
+        this.sampleRate ) );
+    applyCursors( result );
+    return result;
+  }
+
+  /**
+   * Handles a single header line, like "Rate: 100000000".
+   */
+  private void handleHeader( final CharSequence aLine, final int aLineNo ) throws IOException
+  {
+    final String line = aLine.toString();
+    final int colonIdx = line.indexOf( ':' );
+    if ( colonIdx < 0 )
+    {
+      // Not a key-value pair; ignore it...
+      return;
+    }
+
+    final String key = line.substring( 0, colonIdx ).trim();
+    final String value = line.substring( colonIdx + 1 ).trim();
+
+    try
+    {
+      if ( "Size".equals( key ) )
+      {
+        final int size = Integer.parseInt( value );
+        if ( ( this.values == null ) && ( size > 0 ) )
+        {
+          // Preallocate the sample arrays so they never need to grow...
+          this.values = new int[size];
+          this.timestamps = new long[size];
+        }
+      }
+      else if ( "Rate".equals( key ) )
+      {
+        this.sampleRate = Integer.parseInt( value );
+      }
+      else if ( "EnabledChannels".equals( key ) )
+      {
+        this.enabledChannelMask = ( int )Long.parseLong( value );
+      }
+      else if ( "CursorA".equals( key ) || "CursorB".equals( key ) )
+      {
+        // Legacy cursors of older client versions...
+        setCursor( "CursorA".equals( key ) ? 0 : 1, Long.parseLong( value ) );
+      }
+      else if ( key.startsWith( "Cursor" ) && ( key.length() > 6 ) && Character.isDigit( key.charAt( 6 ) ) )
+      {
+        setCursor( Integer.parseInt( key.substring( 6 ) ), Long.parseLong( value ) );
+      }
+    }
+    catch ( NumberFormatException exception )
+    {
+      throw new IOException( "Invalid header at line " + aLineNo + ": " + line );
+    }
+  }
+
+  /**
+   * Publishes a copy of the samples imported so far.
+   */
+  private void publishPartialData()
+  {
+    if ( this.sampleRate == NO_SAMPLE_RATE )
+    {
+      // Cannot show anything sensible yet...
+      return;
+    }
+
+    final SampleDataModel partial = new SampleDataModel( Arrays.copyOf( this.values, this.count ), Arrays.copyOf(
+        this.timestamps, this.count ), Math.max( 1, this.sampleRate ) );
+    // The partial data is shown first, hence its cursors are shown too...
+    applyCursors( partial );
+
+    this.partialDataListener.partialDataAvailable( partial );
+  }
+
+  /**
+   * Sets the cursor with the given index, ignoring invalid cursors.
+   */
+  private void setCursor( final int aIndex, final long aTimestamp )
+  {
+    if ( ( aIndex >= 0 ) && ( aIndex < this.cursors.length ) && ( aTimestamp >= 0L ) )
+    {
+      this.cursors[aIndex] = Long.valueOf( aTimestamp );
+    }
+  }
+}
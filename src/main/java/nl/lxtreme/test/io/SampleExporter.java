@@ -0,0 +1,360 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.io;
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import nl.lxtreme.test.*;
+
+
+/**
+ * Exports the raw samples of a time range as text, either as comma-separated
+ * values or as hexadecimal OLS data.
+ * <p>
+ * The range is split into chunks of {@link #CHUNK_SIZE} samples, which are
+ * formatted in parallel into byte buffers without allocating any objects per
+ * sample. The formatted chunks are written in order through a
+ * {@link FileChannel}; only a limited number of chunks is formatted ahead of
+ * the writer, so memory usage does not depend on the size of the range.
+ * </p>
+ */
+public final class SampleExporter
+{
+  // INNER TYPES
+
+  /**
+   * The supported export formats.
+   */
+  public static enum Format
+  {
+    /** Comma-separated values: "timestamp,value", one line per sample. */
+    CSV,
+    /** OLS data: "value@timestamp", one line per sample, importable again. */
+    HEX;
+  }
+
+  // CONSTANTS
+
+  /** The number of samples formatted in a single chunk. */
+  static final int CHUNK_SIZE = 64 * 1024;
+  /** The maximum length of a single formatted line, in bytes. */
+  static final int MAX_LINE_LENGTH = 30;
+
+  private static final byte[] HEX_DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd',
+      'e', 'f' };
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SampleExporter instance, never used.
+   */
+  private SampleExporter()
+  {
+    // NO-op
+  }
+
+  // METHODS
+
+  /**
+   * Exports all samples in the given time range to the given file.
+   * 
+   * @param aFile
+   *          the file to write, cannot be <code>null</code>;
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aSampleRate
+   *          the sample rate, in Hertz;
+   * @param aMask
+   *          the mask of the channels to export, other channels are written
+   *          as zero;
+   * @param aStartTime
+   *          the timestamp of the first sample to export;
+   * @param aEndTime
+   *          the timestamp of the last sample to export (inclusive);
+   * @param aFormat
+   *          the export format, cannot be <code>null</code>;
+   * @param aExecutor
+   *          the executor to format the chunks with, cannot be
+   *          <code>null</code>;
+   * @param aListener
+   *          the listener to report the progress to, can be
+   *          <code>null</code>.
+   * @return the number of exported samples, >= 0.
+   * @throws IOException
+   *           in case of I/O problems;
+   * @throws InterruptedIOException
+   *           in case the current thread was interrupted during the export.
+   */
+  public static int export( final File aFile, final int[] aValues, final long[] aTimestamps, final int aSampleRate,
+      final int aMask, final long aStartTime, final long aEndTime, final Format aFormat,
+      final ExecutorService aExecutor, final IProgressListener aListener ) throws IOException
+  {
+    if ( aFile == null )
+    {
+      throw new IllegalArgumentException( "File cannot be null!" );
+    }
+    if ( aFormat == null )
+    {
+      throw new IllegalArgumentException( "Format cannot be null!" );
+    }
+
+    final int startIdx = lowerBound( aTimestamps, aStartTime );
+    final int endIdx = Math.max( startIdx, upperBound( aTimestamps, aEndTime ) );
+    final int window = 2 * Runtime.getRuntime().availableProcessors();
+
+    final LinkedList<Future<ByteBuffer>> pending = new LinkedList<Future<ByteBuffer>>();
+
+    final FileOutputStream stream = new FileOutputStream( aFile );
+    try
+    {
+      final FileChannel channel = stream.getChannel();
+      writeFully( channel, ByteBuffer.wrap( createHeader( aFormat, endIdx - startIdx, aSampleRate, aMask ) ) );
+
+      int nextIdx = startIdx;
+      int writtenIdx = startIdx;
+      int progress = -1;
+      while ( writtenIdx < endIdx )
+      {
+        // Keep a limited number of chunks formatting ahead of the writer...
+        while ( ( nextIdx < endIdx ) && ( pending.size() < window ) )
+        {
+          final int chunkStart = nextIdx;
+          final int chunkEnd = ( int )Math.min( endIdx, ( long )nextIdx + CHUNK_SIZE );
+
+          pending.add( aExecutor.submit( new Callable<ByteBuffer>()
+          {
+            @Override
+            public ByteBuffer call() throws Exception
+            {
+              return format( aValues, aTimestamps, aMask, chunkStart, chunkEnd, aFormat );
+            }
+          } ) );
+          nextIdx = chunkEnd;
+        }
+
+        final ByteBuffer chunk = pending.removeFirst().get();
+        writeFully( channel, chunk );
+        writtenIdx = ( int )Math.min( endIdx, ( long )writtenIdx + CHUNK_SIZE );
+
+        if ( aListener != null )
+        {
+          final int newProgress = ( int )( ( 100L * ( writtenIdx - startIdx ) ) / ( endIdx - startIdx ) );
+          if ( newProgress != progress )
+          {
+            progress = newProgress;
+            aListener.progressChanged( progress );
+          }
+        }
+      }
+
+      return endIdx - startIdx;
+    }
+    catch ( InterruptedException exception )
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Export interrupted!" );
+    }
+    catch ( ExecutionException exception )
+    {
+      throw new RuntimeException( "Failed to export samples!", exception.getCause() );
+    }
+    finally
+    {
+      for ( Future<ByteBuffer> future : pending )
+      {
+        future.cancel( true /* mayInterruptIfRunning */);
+      }
+      stream.close();
+    }
+  }
+
+  /**
+   * Formats the given range of samples.
+   * 
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aMask
+   *          the mask of the channels to export;
+   * @param aStartIdx
+   *          the index of the first sample to format;
+   * @param aEndIdx
+   *          the index of the last sample to format (exclusive);
+   * @param aFormat
+   *          the format to use.
+   * @return a buffer with the formatted samples, ready to be written.
+   */
+  static ByteBuffer format( final int[] aValues, final long[] aTimestamps, final int aMask, final int aStartIdx,
+      final int aEndIdx, final Format aFormat )
+  {
+    final byte[] buffer = new byte[( aEndIdx - aStartIdx ) * MAX_LINE_LENGTH];
+    int pos = 0;
+
+    if ( aFormat == Format.CSV )
+    {
+      for ( int i = aStartIdx; i < aEndIdx; i++ )
+      {
+        pos = putDecimal( buffer, pos, aTimestamps[i] );
+        buffer[pos++] = ',';
+        pos = putHex( buffer, pos, aValues[i] & aMask );
+        buffer[pos++] = '\n';
+      }
+    }
+    else
+    {
+      for ( int i = aStartIdx; i < aEndIdx; i++ )
+      {
+        pos = putHex( buffer, pos, aValues[i] & aMask );
+        buffer[pos++] = '@';
+        pos = putDecimal( buffer, pos, aTimestamps[i] );
+        buffer[pos++] = '\n';
+      }
+    }
+
+    return ByteBuffer.wrap( buffer, 0, pos );
+  }
+
+  /**
+   * Writes the given value as decimal number into the given buffer.
+   * 
+   * @return the position directly after the written number.
+   */
+  static int putDecimal( final byte[] aBuffer, final int aPos, final long aValue )
+  {
+    int pos = aPos;
+    if ( aValue < 0L )
+    {
+      aBuffer[pos++] = '-';
+    }
+
+    int digits = 1;
+    for ( long value = aValue / 10L; value != 0L; value /= 10L )
+    {
+      digits++;
+    }
+
+    long value = aValue;
+    for ( int i = ( pos + digits ) - 1; i >= pos; i-- )
+    {
+      aBuffer[i] = ( byte )( '0' + Math.abs( value % 10L ) );
+      value /= 10L;
+    }
+    return pos + digits;
+  }
+
+  /**
+   * Writes the given value as 8-digit hexadecimal number into the given
+   * buffer.
+   * 
+   * @return the position directly after the written number.
+   */
+  static int putHex( final byte[] aBuffer, final int aPos, final int aValue )
+  {
+    for ( int i = 0; i < 8; i++ )
+    {
+      aBuffer[aPos + i] = HEX_DIGITS[( aValue >>> ( 28 - ( 4 * i ) ) ) & 0xF];
+    }
+    return aPos + 8;
+  }
+
+  /**
+   * Creates the header for the given format.
+   */
+  private static byte[] createHeader( final Format aFormat, final int aSize, final int aSampleRate, final int aMask )
+      throws IOException
+  {
+    final String header;
+    if ( aFormat == Format.CSV )
+    {
+      header = "timestamp,value\n";
+    }
+    else
+    {
+      header = ";Size: " + aSize + "\n;Rate: " + aSampleRate + "\n;Channels: 32\n;EnabledChannels: " + aMask
+          + "\n;Compressed: true\n";
+    }
+    return header.getBytes( "US-ASCII" );
+  }
+
+  /**
+   * Returns the index of the first timestamp that is greater than or equal to
+   * the given key.
+   */
+  private static int lowerBound( final long[] aArray, final long aKey )
+  {
+    int low = 0;
+    int high = aArray.length;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( aArray[mid] < aKey )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the index of the first timestamp that is greater than the given
+   * key.
+   */
+  private static int upperBound( final long[] aArray, final long aKey )
+  {
+    int low = 0;
+    int high = aArray.length;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( aArray[mid] <= aKey )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Writes the given buffer completely to the given channel.
+   */
+  private static void writeFully( final FileChannel aChannel, final ByteBuffer aBuffer ) throws IOException
+  {
+    while ( aBuffer.hasRemaining() )
+    {
+      aChannel.write( aBuffer );
+    }
+  }
+}
@@ -0,0 +1,439 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.io;
+
+
+import java.io.*;
+
+import nl.lxtreme.test.*;
+
+
+/**
+ * Exports sample data as Value Change Dump (*.vcd) file.
+ * <p>
+ * Only the selected channels are exported, each as a scalar wire in the scope
+ * of its channel group, and only the samples in which one of those channels
+ * changes are written. The output is formatted directly into a fixed-size
+ * byte buffer, so exporting needs a constant amount of memory regardless of
+ * the size of the exported range.
+ * </p>
+ */
+public final class VcdExporter
+{
+  // CONSTANTS
+
+  /** The size of the write buffer, in bytes. */
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The VCD timescales, from large to small, with their value in fs. */
+  private static final String[] TIMESCALE_NAMES = { "1 s", "100 ms", "10 ms", "1 ms", "100 us", "10 us", "1 us",
+      "100 ns", "10 ns", "1 ns", "100 ps", "10 ps", "1 ps", "100 fs", "10 fs", "1 fs" };
+  private static final long[] TIMESCALE_VALUES = { 1000000000000000L, 100000000000000L, 10000000000000L,
+      1000000000000L, 100000000000L, 10000000000L, 1000000000L, 100000000L, 10000000L, 1000000L, 100000L,
+      10000L, 1000L, 100L, 10L, 1L };
+  /** The index of the 1 ps timescale. */
+  private static final int PICOSECOND_IDX = 12;
+
+  // VARIABLES
+
+  private final OutputStream output;
+  private final byte[] buffer;
+  private final byte[] scratch;
+  private int bufferPos;
+  private long lastTime;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new VcdExporter instance.
+   */
+  private VcdExporter( final OutputStream aOutput )
+  {
+    this.output = aOutput;
+    this.buffer = new byte[BUFFER_SIZE];
+    // Long.MIN_VALUE has 19 digits...
+    this.scratch = new byte[20];
+    this.lastTime = -1L;
+  }
+
+  // METHODS
+
+  /**
+   * Exports the given range of sample data to the given file.
+   * 
+   * @param aFile
+   *          the file to write to, cannot be <code>null</code>;
+   * @see #write(OutputStream, int[], long[], int, ChannelLayout, int, long,
+   *      long, IProgressListener)
+   */
+  public static void write( final File aFile, final int[] aValues, final long[] aTimestamps, final int aSampleRate,
+      final ChannelLayout aChannelLayout, final int aMask, final long aStartTime, final long aEndTime,
+      final IProgressListener aListener ) throws IOException
+  {
+    if ( aFile == null )
+    {
+      throw new IllegalArgumentException( "File cannot be null!" );
+    }
+
+    final OutputStream stream = new FileOutputStream( aFile );
+    try
+    {
+      write( stream, aValues, aTimestamps, aSampleRate, aChannelLayout, aMask, aStartTime, aEndTime, aListener );
+    }
+    finally
+    {
+      stream.close();
+    }
+  }
+
+  /**
+   * Exports the given range of sample data to the given output stream.
+   * 
+   * @param aOutput
+   *          the output stream to write to, cannot be <code>null</code>. This
+   *          stream is flushed, but not closed, by this method;
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aSampleRate
+   *          the sample rate, in Hertz;
+   * @param aChannelLayout
+   *          the channel labels and groups, cannot be <code>null</code>;
+   * @param aMask
+   *          the mask of the channels to export;
+   * @param aStartTime
+   *          the timestamp to start the export at;
+   * @param aEndTime
+   *          the timestamp to end the export at (inclusive);
+   * @param aListener
+   *          the listener to report the progress to, can be <code>null</code>.
+   * @throws IOException
+   *           in case of I/O problems;
+   * @throws InterruptedIOException
+   *           in case the current thread was interrupted during the export.
+   */
+  public static void write( final OutputStream aOutput, final int[] aValues, final long[] aTimestamps,
+      final int aSampleRate, final ChannelLayout aChannelLayout, final int aMask, final long aStartTime,
+      final long aEndTime, final IProgressListener aListener ) throws IOException
+  {
+    if ( aOutput == null )
+    {
+      throw new IllegalArgumentException( "Output cannot be null!" );
+    }
+    if ( aChannelLayout == null )
+    {
+      throw new IllegalArgumentException( "ChannelLayout cannot be null!" );
+    }
+    if ( aSampleRate <= 0 )
+    {
+      throw new IllegalArgumentException( "Sample rate should be positive!" );
+    }
+
+    final VcdExporter exporter = new VcdExporter( aOutput );
+    exporter.writeDeclarations( aSampleRate, aChannelLayout, aMask );
+    exporter.writeValueChanges( aValues, aTimestamps, aSampleRate, aMask, aStartTime, aEndTime, aListener );
+    exporter.flush();
+    aOutput.flush();
+  }
+
+  /**
+   * Returns the index of the timescale to use for the given sample rate.
+   */
+  static int getTimescaleIndex( final int aSampleRate )
+  {
+    if ( ( TIMESCALE_VALUES[0] % aSampleRate ) != 0L )
+    {
+      // No exact timescale exists; approximate using picoseconds...
+      return PICOSECOND_IDX;
+    }
+
+    final long period = TIMESCALE_VALUES[0] / aSampleRate;
+    for ( int i = 0; i < TIMESCALE_VALUES.length; i++ )
+    {
+      if ( ( period % TIMESCALE_VALUES[i] ) == 0L )
+      {
+        return i;
+      }
+    }
+    return TIMESCALE_VALUES.length - 1;
+  }
+
+  /**
+   * Makes the given name usable as VCD identifier.
+   */
+  private static String sanitize( final String aName )
+  {
+    final StringBuilder sb = new StringBuilder( aName.trim() );
+    for ( int i = 0; i < sb.length(); i++ )
+    {
+      final char ch = sb.charAt( i );
+      if ( ( ch <= ' ' ) || ( ch > '~' ) || ( ch == '$' ) )
+      {
+        sb.setCharAt( i, '_' );
+      }
+    }
+    return sb.length() == 0 ? "_" : sb.toString();
+  }
+
+  /**
+   * Writes all buffered bytes to the output stream.
+   */
+  private void flush() throws IOException
+  {
+    this.output.write( this.buffer, 0, this.bufferPos );
+    this.bufferPos = 0;
+  }
+
+  /**
+   * Writes a single ASCII character.
+   */
+  private void write( final int aChar ) throws IOException
+  {
+    if ( this.bufferPos == this.buffer.length )
+    {
+      flush();
+    }
+    this.buffer[this.bufferPos++] = ( byte )aChar;
+  }
+
+  /**
+   * Writes the given ASCII string.
+   */
+  private void write( final String aText ) throws IOException
+  {
+    for ( int i = 0; i < aText.length(); i++ )
+    {
+      write( aText.charAt( i ) );
+    }
+  }
+
+  /**
+   * Writes the declaration of the given channel.
+   */
+  private void writeChannel( final ChannelLayout aChannelLayout, final int aChannelIdx ) throws IOException
+  {
+    final String label = aChannelLayout.getChannelLabel( aChannelIdx );
+    final String name = ( label != null ) ? label : ( "channel" + aChannelIdx );
+
+    write( "$var wire 1 " );
+    write( '!' + aChannelIdx );
+    write( ' ' );
+    write( sanitize( name ) );
+    write( " $end\n" );
+  }
+
+  /**
+   * Writes the declaration section.
+   */
+  private void writeDeclarations( final int aSampleRate, final ChannelLayout aChannelLayout, final int aMask )
+      throws IOException
+  {
+    write( "$version OLS signal view $end\n" );
+    write( "$timescale " );
+    write( TIMESCALE_NAMES[getTimescaleIndex( aSampleRate )] );
+    write( " $end\n" );
+    write( "$scope module capture $end\n" );
+
+    int remaining = aMask;
+    for ( ChannelLayout.ChannelGroupInfo channelGroup : aChannelLayout.getChannelGroups() )
+    {
+      if ( ( channelGroup.mask & aMask ) == 0 )
+      {
+        continue;
+      }
+
+      write( "$scope module " );
+      write( sanitize( channelGroup.name ) );
+      write( " $end\n" );
+      for ( int channelIdx : channelGroup.channels )
+      {
+        final int channelMask = 1 << channelIdx;
+        if ( ( channelMask & aMask ) != 0 )
+        {
+          writeChannel( aChannelLayout, channelIdx );
+          remaining &= ~channelMask;
+        }
+      }
+      write( "$upscope $end\n" );
+    }
+
+    // Channels that are not assigned to any channel group...
+    for ( int channelIdx = 0; channelIdx < aChannelLayout.getChannelCount(); channelIdx++ )
+    {
+      if ( ( ( 1 << channelIdx ) & remaining ) != 0 )
+      {
+        writeChannel( aChannelLayout, channelIdx );
+      }
+    }
+
+    write( "$upscope $end\n" );
+    write( "$enddefinitions $end\n" );
+  }
+
+  /**
+   * Writes the given value as decimal number.
+   */
+  private void writeDecimal( final long aValue ) throws IOException
+  {
+    if ( aValue < 0L )
+    {
+      write( '-' );
+    }
+
+    long value = aValue;
+    int digits = 0;
+    do
+    {
+      this.scratch[digits++] = ( byte )( '0' + Math.abs( value % 10L ) );
+      value /= 10L;
+    }
+    while ( value != 0L );
+
+    while ( digits > 0 )
+    {
+      write( this.scratch[--digits] );
+    }
+  }
+
+  /**
+   * Writes a "#time" line.
+   */
+  private void writeTime( final long aTimestamp, final int aSampleRate, final int aTimescaleIdx )
+      throws IOException
+  {
+    final long timescale = TIMESCALE_VALUES[aTimescaleIdx];
+    long time;
+    if ( ( TIMESCALE_VALUES[0] % aSampleRate ) == 0L )
+    {
+      time = aTimestamp * ( ( TIMESCALE_VALUES[0] / aSampleRate ) / timescale );
+    }
+    else
+    {
+      time = Math.round( ( aTimestamp * ( double )( TIMESCALE_VALUES[0] / timescale ) ) / aSampleRate );
+    }
+
+    if ( time == this.lastTime )
+    {
+      // Already written; times should be strictly ascending...
+      return;
+    }
+    this.lastTime = time;
+
+    write( '#' );
+    writeDecimal( time );
+    write( '\n' );
+  }
+
+  /**
+   * Writes the given channels of a sample value.
+   */
+  private void writeValue( final int aValue, final int aMask ) throws IOException
+  {
+    int mask = aMask;
+    while ( mask != 0 )
+    {
+      final int channelIdx = Integer.numberOfTrailingZeros( mask );
+      mask &= mask - 1;
+
+      write( ( ( aValue >>> channelIdx ) & 1 ) != 0 ? '1' : '0' );
+      write( '!' + channelIdx );
+      write( '\n' );
+    }
+  }
+
+  /**
+   * Writes the initial value and all value changes in the given time range.
+   */
+  private void writeValueChanges( final int[] aValues, final long[] aTimestamps, final int aSampleRate,
+      final int aMask, final long aStartTime, final long aEndTime, final IProgressListener aListener )
+      throws IOException
+  {
+    if ( aValues.length == 0 )
+    {
+      return;
+    }
+
+    final int timescaleIdx = getTimescaleIndex( aSampleRate );
+
+    // The last sample at or before the start time provides the initial value...
+    int low = 0;
+    int high = aTimestamps.length;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( aTimestamps[mid] <= aStartTime )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    int idx = Math.max( 0, low - 1 );
+
+    final long startTime = Math.max( aStartTime, aTimestamps[0] );
+    final long endTime = Math.min( aEndTime, aTimestamps[aTimestamps.length - 1] );
+
+    writeTime( startTime, aSampleRate, timescaleIdx );
+    write( "$dumpvars\n" );
+    int previous = aValues[idx];
+    writeValue( previous, aMask );
+    write( "$end\n" );
+
+    int progress = 0;
+
+    for ( idx++; ( idx < aValues.length ) && ( aTimestamps[idx] <= endTime ); idx++ )
+    {
+      final int changed = ( aValues[idx] ^ previous ) & aMask;
+      if ( changed != 0 )
+      {
+        writeTime( aTimestamps[idx], aSampleRate, timescaleIdx );
+        writeValue( aValues[idx], changed );
+        previous = aValues[idx];
+      }
+
+      if ( ( idx & 0xFFFF ) == 0 )
+      {
+        if ( Thread.currentThread().isInterrupted() )
+        {
+          throw new InterruptedIOException( "Export interrupted!" );
+        }
+
+        if ( ( aListener != null ) && ( endTime > startTime ) )
+        {
+          final int newProgress = ( int )( ( 100L * ( aTimestamps[idx] - startTime ) ) / ( endTime - startTime ) );
+          if ( newProgress != progress )
+          {
+            progress = newProgress;
+            aListener.progressChanged( progress );
+          }
+        }
+      }
+    }
+
+    // Mark the end of the exported range...
+    if ( endTime > startTime )
+    {
+      writeTime( endTime, aSampleRate, timescaleIdx );
+    }
+  }
+}
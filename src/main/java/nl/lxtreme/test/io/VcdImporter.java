@@ -0,0 +1,814 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.io;
+
+
+import java.io.*;
+import java.util.*;
+
+import nl.lxtreme.test.*;
+import nl.lxtreme.test.model.*;
+
+
+/**
+ * Imports Value Change Dump (*.vcd) files, as written by most HDL simulators.
+ * <p>
+ * The bits of the declared variables are mapped onto channels in declaration
+ * order, until all channels are used; any remaining variables are ignored.
+ * Each vector variable becomes a channel group of its own, while scalar
+ * variables are grouped by their scope.
+ * </p>
+ * <p>
+ * Only the declarations are parsed into strings; the value changes are parsed
+ * directly from a fixed-size byte buffer, without allocating any objects. A
+ * sample is only added when the value of the mapped channels actually
+ * changes, so memory usage only depends on the number of changes of the
+ * imported channels.
+ * </p>
+ */
+public final class VcdImporter
+{
+  // CONSTANTS
+
+  /** The size of the read buffer, in bytes. */
+  static final int BUFFER_SIZE = 64 * 1024;
+  /** The number of samples after which the partial data is published. */
+  static final int PREVIEW_SIZE = 64 * 1024;
+  /** The initial capacity of the sample arrays. */
+  static final int INITIAL_CAPACITY = 64 * 1024;
+  /** The maximum length of a single token, in bytes. */
+  static final int MAX_TOKEN_LENGTH = 4096;
+
+  /** The maximum number of channels that can be imported. */
+  private static final int MAX_CHANNELS = Channel.MAX_CHANNELS;
+  /** One nanosecond, in femtoseconds. */
+  private static final long NANOSECOND = 1000000L;
+  /** One second, in femtoseconds. */
+  private static final long SECOND = 1000000000000000L;
+
+  // VARIABLES
+
+  private final byte[] buffer;
+  private final byte[] token;
+  private InputStream input;
+  private int bufferPos;
+  private int bufferLimit;
+  private long bytesRead;
+
+  private final ChannelLayout channelLayout;
+  /** the identifier codes of the mapped variables, and their channels. */
+  private final long[] varCodes;
+  private final int[] varFirstChannels;
+  private final int[] varWidths;
+  private int varCount;
+  private int channelCount;
+  /** the pending channel group of consecutive scalar variables. */
+  private String scalarScope;
+  private int[] scalarChannels;
+
+  /** the timescale, in femtoseconds. */
+  private long timescale;
+
+  private int[] values;
+  private long[] timestamps;
+  private int count;
+
+  private IPartialDataListener partialDataListener;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new VcdImporter instance.
+   */
+  public VcdImporter()
+  {
+    this.buffer = new byte[BUFFER_SIZE];
+    this.token = new byte[MAX_TOKEN_LENGTH];
+
+    this.channelLayout = new ChannelLayout();
+    this.varCodes = new long[MAX_CHANNELS];
+    this.varFirstChannels = new int[MAX_CHANNELS];
+    this.varWidths = new int[MAX_CHANNELS];
+  }
+
+  // METHODS
+
+  /**
+   * Returns the identifier code of the given identifier.
+   * 
+   * @return the code of the identifier, or -1L if the identifier is too long
+   *         to be mapped.
+   */
+  static long getIdentifierCode( final byte[] aToken, final int aOffset, final int aLength )
+  {
+    if ( ( aLength <= 0 ) || ( aLength > 9 ) )
+    {
+      return -1L;
+    }
+
+    long result = 0L;
+    for ( int i = aOffset; i < ( aOffset + aLength ); i++ )
+    {
+      // Identifiers consist of the printable ASCII characters '!'..'~'...
+      result = ( result * 95L ) + ( ( aToken[i] & 0xFF ) - 31 );
+    }
+    return result;
+  }
+
+  /**
+   * Applies the imported channel labels and channel groups to the given
+   * channel group manager.
+   * 
+   * @param aChannelGroupManager
+   *          the channel group manager to update, cannot be <code>null</code>.
+   */
+  public void applyChannelMetadata( final ChannelGroupManager aChannelGroupManager )
+  {
+    this.channelLayout.apply( aChannelGroupManager );
+  }
+
+  /**
+   * Returns the number of channels the imported variables are mapped on.
+   * 
+   * @return a channel count, >= 0.
+   */
+  public int getChannelCount()
+  {
+    return this.channelCount;
+  }
+
+  /**
+   * Returns the label of the imported channel with the given index.
+   * 
+   * @param aChannelIdx
+   *          the index of the channel.
+   * @return the channel label, or <code>null</code> if no variable is mapped
+   *         onto the given channel.
+   */
+  public String getChannelLabel( final int aChannelIdx )
+  {
+    return this.channelLayout.getChannelLabel( aChannelIdx );
+  }
+
+  /**
+   * Imports the given VCD file.
+   * 
+   * @param aFile
+   *          the file to import, cannot be <code>null</code>;
+   * @param aListener
+   *          the listener to report the progress to, can be
+   *          <code>null</code>.
+   * @return a new data model with the imported sample data, never
+   *         <code>null</code>.
+   * @throws IOException
+   *           in case the given file could not be read or is not a valid VCD
+   *           file;
+   * @throws InterruptedIOException
+   *           in case the current thread was interrupted during the import.
+   */
+  public SampleDataModel read( final File aFile, final IProgressListener aListener ) throws IOException
+  {
+    if ( aFile == null )
+    {
+      throw new IllegalArgumentException( "File cannot be null!" );
+    }
+
+    final InputStream stream = new FileInputStream( aFile );
+    try
+    {
+      return read( stream, aFile.length(), aListener );
+    }
+    finally
+    {
+      stream.close();
+    }
+  }
+
+  /**
+   * Imports VCD data from the given input stream.
+   * 
+   * @param aInput
+   *          the input stream to read from, cannot be <code>null</code>. This
+   *          stream is not closed by this method;
+   * @param aLength
+   *          the total number of bytes that will be read, used for reporting
+   *          progress, or -1L if unknown;
+   * @param aListener
+   *          the listener to report the progress to, can be
+   *          <code>null</code>.
+   * @return a new data model with the imported sample data, never
+   *         <code>null</code>.
+   * @throws IOException
+   *           in case the given stream could not be read or contained no valid
+   *           VCD data;
+   * @throws InterruptedIOException
+   *           in case the current thread was interrupted during the import.
+   */
+  public SampleDataModel read( final InputStream aInput, final long aLength, final IProgressListener aListener )
+      throws IOException
+  {
+    if ( aInput == null )
+    {
+      throw new IllegalArgumentException( "Input cannot be null!" );
+    }
+
+    this.input = aInput;
+    this.bufferPos = 0;
+    this.bufferLimit = 0;
+    this.bytesRead = 0L;
+    this.varCount = 0;
+    this.channelCount = 0;
+    this.scalarScope = null;
+    this.scalarChannels = new int[0];
+    this.timescale = NANOSECOND;
+    this.values = new int[INITIAL_CAPACITY];
+    this.timestamps = new long[INITIAL_CAPACITY];
+    this.count = 0;
+
+    try
+    {
+      readDeclarations();
+      readValueChanges( aLength, aListener );
+
+      return createDataModel();
+    }
+    finally
+    {
+      this.input = null;
+      this.values = null;
+      this.timestamps = null;
+    }
+  }
+
+  /**
+   * Sets the listener that is notified once the first part of the sample data
+   * is imported, allowing it to be shown before the import is completed.
+   * 
+   * @param aListener
+   *          the listener to set, can be <code>null</code>.
+   */
+  public void setPartialDataListener( final IPartialDataListener aListener )
+  {
+    this.partialDataListener = aListener;
+  }
+
+  /**
+   * Adds a sample, replacing the last sample if it has the same timestamp.
+   */
+  private void addSample( final long aTimestamp, final int aValue )
+  {
+    if ( ( this.count > 0 ) && ( this.timestamps[this.count - 1] == aTimestamp ) )
+    {
+      this.values[this.count - 1] = aValue;
+      return;
+    }
+
+    if ( this.count == this.values.length )
+    {
+      final int newCapacity = this.count + Math.max( INITIAL_CAPACITY, this.count >> 1 );
+      this.values = Arrays.copyOf( this.values, newCapacity );
+      this.timestamps = Arrays.copyOf( this.timestamps, newCapacity );
+    }
+
+    this.values[this.count] = aValue;
+    this.timestamps[this.count] = aTimestamp;
+    this.count++;
+
+    if ( ( this.count == PREVIEW_SIZE ) && ( this.partialDataListener != null ) )
+    {
+      publishPartialData();
+    }
+  }
+
+  /**
+   * Creates the data model for the imported sample data.
+   */
+  private SampleDataModel createDataModel() throws IOException
+  {
+    if ( this.count == 0 )
+    {
+      throw new IOException( "No value changes found!" );
+    }
+
+    return new SampleDataModel( Arrays.copyOf( this.values, this.count ),
+        Arrays.copyOf( this.timestamps, this.count ), getSampleRate() );
+  }
+
+  /**
+   * Finds the index of the mapped variable with the given identifier.
+   * 
+   * @return the variable index, or -1 if the identifier is not mapped.
+   */
+  private int findVariable( final int aOffset, final int aLength )
+  {
+    final long code = getIdentifierCode( this.token, aOffset, aLength );
+    if ( code >= 0L )
+    {
+      for ( int i = 0; i < this.varCount; i++ )
+      {
+        if ( this.varCodes[i] == code )
+        {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds the pending channel group of scalar variables, if any.
+   */
+  private void flushScalarGroup()
+  {
+    if ( this.scalarChannels.length > 0 )
+    {
+      this.channelLayout.addChannelGroup( this.scalarScope, true /* aVisible */, this.scalarChannels );
+      this.scalarChannels = new int[0];
+    }
+  }
+
+  /**
+   * Returns the sample rate corresponding to the timescale.
+   */
+  private int getSampleRate()
+  {
+    if ( this.timescale >= NANOSECOND )
+    {
+      return ( int )( SECOND / this.timescale );
+    }
+    // Timestamps are scaled to nanoseconds, see toTimestamp()...
+    return ( int )( SECOND / NANOSECOND );
+  }
+
+  /**
+   * Returns whether the current token equals the given keyword.
+   */
+  private boolean isToken( final int aLength, final String aKeyword )
+  {
+    if ( aLength != aKeyword.length() )
+    {
+      return false;
+    }
+    for ( int i = 0; i < aLength; i++ )
+    {
+      if ( this.token[i] != aKeyword.charAt( i ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the next whitespace-delimited token into the token buffer.
+   * 
+   * @return the length of the token, or -1 at the end of the input.
+   */
+  private int nextToken() throws IOException
+  {
+    int length = 0;
+    for ( ;; )
+    {
+      if ( this.bufferPos == this.bufferLimit )
+      {
+        final int read = this.input.read( this.buffer );
+        if ( read < 0 )
+        {
+          return ( length > 0 ) ? length : -1;
+        }
+        this.bufferPos = 0;
+        this.bufferLimit = read;
+        this.bytesRead += read;
+      }
+
+      final byte ch = this.buffer[this.bufferPos++];
+      if ( ( ch == ' ' ) || ( ch == '\n' ) || ( ch == '\r' ) || ( ch == '\t' ) )
+      {
+        if ( length > 0 )
+        {
+          return length;
+        }
+      }
+      else
+      {
+        if ( length == MAX_TOKEN_LENGTH )
+        {
+          throw new IOException( "Token too long at offset " + this.bytesRead + "!" );
+        }
+        this.token[length++] = ch;
+      }
+    }
+  }
+
+  /**
+   * Reads the next token as string.
+   */
+  private String nextTokenString() throws IOException
+  {
+    final int length = nextToken();
+    if ( length < 0 )
+    {
+      throw new IOException( "Unexpected end of file!" );
+    }
+    return new String( this.token, 0, length, "US-ASCII" );
+  }
+
+  /**
+   * Parses the given timescale, like "10ns".
+   */
+  private void parseTimescale( final String aTimescale ) throws IOException
+  {
+    int idx = 0;
+    while ( ( idx < aTimescale.length() ) && Character.isDigit( aTimescale.charAt( idx ) ) )
+    {
+      idx++;
+    }
+
+    final String unit = aTimescale.substring( idx ).trim();
+    long result;
+    if ( "s".equals( unit ) )
+    {
+      result = SECOND;
+    }
+    else if ( "ms".equals( unit ) )
+    {
+      result = SECOND / 1000L;
+    }
+    else if ( "us".equals( unit ) )
+    {
+      result = NANOSECOND * 1000L;
+    }
+    else if ( "ns".equals( unit ) )
+    {
+      result = NANOSECOND;
+    }
+    else if ( "ps".equals( unit ) )
+    {
+      result = 1000L;
+    }
+    else if ( "fs".equals( unit ) )
+    {
+      result = 1L;
+    }
+    else
+    {
+      throw new IOException( "Invalid timescale: " + aTimescale );
+    }
+
+    final String number = aTimescale.substring( 0, idx );
+    if ( "10".equals( number ) )
+    {
+      result *= 10L;
+    }
+    else if ( "100".equals( number ) )
+    {
+      result *= 100L;
+    }
+    else if ( !"1".equals( number ) && !"".equals( number ) )
+    {
+      throw new IOException( "Invalid timescale: " + aTimescale );
+    }
+
+    this.timescale = result;
+  }
+
+  /**
+   * Reads a variable declaration, which is of the form
+   * "$var type size id reference [index] $end".
+   */
+  private void readVariable( final String aScope ) throws IOException
+  {
+    final String type = nextTokenString();
+    final String sizeToken = nextTokenString();
+    final int idLength = nextToken();
+    final long code = getIdentifierCode( this.token, 0, idLength );
+    final String reference = nextTokenString();
+    skipUntilEnd();
+
+    int width;
+    try
+    {
+      width = Integer.parseInt( sizeToken );
+    }
+    catch ( NumberFormatException exception )
+    {
+      throw new IOException( "Invalid variable size: " + sizeToken );
+    }
+
+    if ( "real".equals( type ) || "realtime".equals( type ) || ( code < 0L ) || ( width <= 0 )
+        || ( this.varCount == MAX_CHANNELS ) )
+    {
+      // Cannot be mapped onto channels...
+      return;
+    }
+    for ( int i = 0; i < this.varCount; i++ )
+    {
+      if ( this.varCodes[i] == code )
+      {
+        // An alias of an already mapped variable...
+        return;
+      }
+    }
+
+    final int mappedWidth = Math.min( width, MAX_CHANNELS - this.channelCount );
+    if ( mappedWidth <= 0 )
+    {
+      return;
+    }
+
+    final int[] channels = new int[mappedWidth];
+    for ( int i = 0; i < mappedWidth; i++ )
+    {
+      channels[i] = this.channelCount + i;
+      this.channelLayout.setChannelLabel( channels[i], ( width == 1 ) ? reference : ( reference + "[" + i + "]" ) );
+    }
+
+    if ( width == 1 )
+    {
+      // Consecutive scalars are grouped by their scope...
+      if ( !aScope.equals( this.scalarScope ) )
+      {
+        flushScalarGroup();
+        this.scalarScope = aScope;
+      }
+      this.scalarChannels = Arrays.copyOf( this.scalarChannels, this.scalarChannels.length + 1 );
+      this.scalarChannels[this.scalarChannels.length - 1] = channels[0];
+    }
+    else
+    {
+      flushScalarGroup();
+      this.channelLayout.addChannelGroup( reference, true /* aVisible */, channels );
+    }
+
+    this.varCodes[this.varCount] = code;
+    this.varFirstChannels[this.varCount] = this.channelCount;
+    this.varWidths[this.varCount] = mappedWidth;
+    this.varCount++;
+    this.channelCount += mappedWidth;
+  }
+
+  /**
+   * Reads the declaration section, up to and including
+   * "$enddefinitions $end".
+   */
+  private void readDeclarations() throws IOException
+  {
+    final LinkedList<String> scopes = new LinkedList<String>();
+
+    for ( ;; )
+    {
+      final String keyword = nextTokenString();
+      if ( "$enddefinitions".equals( keyword ) )
+      {
+        skipUntilEnd();
+        break;
+      }
+      else if ( "$timescale".equals( keyword ) )
+      {
+        final StringBuilder sb = new StringBuilder();
+        for ( String t = nextTokenString(); !"$end".equals( t ); t = nextTokenString() )
+        {
+          sb.append( t );
+        }
+        parseTimescale( sb.toString() );
+      }
+      else if ( "$scope".equals( keyword ) )
+      {
+        nextTokenString(); // type
+        final String name = nextTokenString();
+        skipUntilEnd();
+
+        scopes.addLast( scopes.isEmpty() ? name : ( scopes.getLast() + "." + name ) );
+      }
+      else if ( "$upscope".equals( keyword ) )
+      {
+        skipUntilEnd();
+        if ( !scopes.isEmpty() )
+        {
+          scopes.removeLast();
+        }
+      }
+      else if ( "$var".equals( keyword ) )
+      {
+        readVariable( scopes.isEmpty() ? "top" : scopes.getLast() );
+      }
+      else if ( keyword.startsWith( "$" ) )
+      {
+        // $date, $version, $comment, ...
+        skipUntilEnd();
+      }
+      else
+      {
+        throw new IOException( "Unexpected token in declarations: " + keyword );
+      }
+    }
+
+    flushScalarGroup();
+  }
+
+  /**
+   * Reads all value changes, adding a sample each time the value of the
+   * mapped channels has changed.
+   */
+  private void readValueChanges( final long aLength, final IProgressListener aListener ) throws IOException
+  {
+    int value = 0;
+    int lastValue = 0;
+    long time = 0L;
+    boolean hasTime = false;
+    int progress = -1;
+    long checkedBytes = 0L;
+
+    int length;
+    while ( ( length = nextToken() ) >= 0 )
+    {
+      final byte first = this.token[0];
+      if ( first == '#' )
+      {
+        final long newTime = toTimestamp( parseTime( length ) );
+        if ( newTime < time )
+        {
+          throw new IOException( "Timestamps not in ascending order at offset " + this.bytesRead + "!" );
+        }
+        // Value changes before the first time are the initial values...
+        if ( hasTime && ( ( this.count == 0 ) || ( value != lastValue ) ) )
+        {
+          addSample( time, value );
+          lastValue = value;
+        }
+        time = newTime;
+        hasTime = true;
+
+        if ( this.bytesRead != checkedBytes )
+        {
+          checkedBytes = this.bytesRead;
+          if ( Thread.currentThread().isInterrupted() )
+          {
+            throw new InterruptedIOException( "Import interrupted!" );
+          }
+          if ( ( aListener != null ) && ( aLength > 0L ) )
+          {
+            final int newProgress = ( int )Math.min( 100L, ( 100L * this.bytesRead ) / aLength );
+            if ( newProgress != progress )
+            {
+              progress = newProgress;
+              aListener.progressChanged( progress );
+            }
+          }
+        }
+      }
+      else if ( ( first == '0' ) || ( first == '1' ) || ( first == 'x' ) || ( first == 'X' ) || ( first == 'z' )
+          || ( first == 'Z' ) )
+      {
+        final int varIdx = findVariable( 1, length - 1 );
+        if ( varIdx >= 0 )
+        {
+          final int mask = 1 << this.varFirstChannels[varIdx];
+          // Unknown and high-impedance values are shown as low...
+          value = ( first == '1' ) ? ( value | mask ) : ( value & ~mask );
+        }
+      }
+      else if ( ( first == 'b' ) || ( first == 'B' ) )
+      {
+        value = updateVector( value, length );
+      }
+      else if ( ( first == 'r' ) || ( first == 'R' ) )
+      {
+        // Real values cannot be mapped onto channels; skip the identifier...
+        nextToken();
+      }
+      else if ( first == '$' )
+      {
+        if ( isToken( length, "$comment" ) )
+        {
+          skipUntilEnd();
+        }
+        // $dumpvars, $dumpall, $dumpon, $dumpoff and $end are ignored...
+      }
+      else
+      {
+        throw new IOException( "Unexpected token at offset " + this.bytesRead + "!" );
+      }
+    }
+
+    // Always keep the last timestamp, as it denotes the end of the capture...
+    if ( ( this.count == 0 ) || ( value != lastValue ) || ( time > this.timestamps[this.count - 1] ) )
+    {
+      addSample( time, value );
+    }
+
+    if ( aListener != null )
+    {
+      aListener.progressChanged( 100 );
+    }
+  }
+
+  /**
+   * Publishes a copy of the samples imported so far.
+   */
+  private void publishPartialData()
+  {
+    this.partialDataListener.partialDataAvailable( new SampleDataModel( Arrays.copyOf( this.values, this.count ),
+        Arrays.copyOf( this.timestamps, this.count ), getSampleRate() ) );
+  }
+
+  /**
+   * Parses the time of a "#time" token.
+   */
+  private long parseTime( final int aLength ) throws IOException
+  {
+    if ( ( aLength < 2 ) || ( aLength > 19 ) )
+    {
+      throw new IOException( "Invalid time at offset " + this.bytesRead + "!" );
+    }
+
+    long result = 0L;
+    for ( int i = 1; i < aLength; i++ )
+    {
+      final int digit = this.token[i] - '0';
+      if ( ( digit < 0 ) || ( digit > 9 ) )
+      {
+        throw new IOException( "Invalid time at offset " + this.bytesRead + "!" );
+      }
+      result = ( result * 10L ) + digit;
+    }
+    return result;
+  }
+
+  /**
+   * Skips all tokens up to and including the next "$end".
+   */
+  private void skipUntilEnd() throws IOException
+  {
+    int length;
+    while ( ( length = nextToken() ) >= 0 )
+    {
+      if ( isToken( length, "$end" ) )
+      {
+        return;
+      }
+    }
+    throw new IOException( "Unexpected end of file!" );
+  }
+
+  /**
+   * Converts a time in timescale units to a timestamp.
+   */
+  private long toTimestamp( final long aTime )
+  {
+    if ( this.timescale >= NANOSECOND )
+    {
+      return aTime;
+    }
+    // The sample rate cannot exceed 1GHz, so scale to nanoseconds...
+    return ( aTime * this.timescale ) / NANOSECOND;
+  }
+
+  /**
+   * Handles a vector value change, like "b1010 id".
+   */
+  private int updateVector( final int aValue, final int aLength ) throws IOException
+  {
+    // Keep the bits, as the identifier is read into the same buffer...
+    long bits = 0L;
+    final int bitCount = Math.min( aLength - 1, MAX_CHANNELS );
+    for ( int i = aLength - bitCount; i < aLength; i++ )
+    {
+      bits = ( bits << 1 ) | ( ( this.token[i] == '1' ) ? 1L : 0L );
+    }
+
+    final int idLength = nextToken();
+    if ( idLength < 0 )
+    {
+      throw new IOException( "Unexpected end of file!" );
+    }
+
+    final int varIdx = findVariable( 0, idLength );
+    if ( varIdx < 0 )
+    {
+      return aValue;
+    }
+
+    final int width = this.varWidths[varIdx];
+    final int shift = this.varFirstChannels[varIdx];
+    final int mask = ( int )( ( ( 1L << width ) - 1L ) << shift );
+    return ( aValue & ~mask ) | ( ( int )( bits << shift ) & mask );
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+/**
+ * Provides a summary of the signal activity of a capture, at several
+ * resolutions.
+ * <p>
+ * The capture is divided in a fixed number of equally long buckets, each
+ * counting the number of transitions of a group of channels. Each further
+ * level of the pyramid halves the number of buckets by adding up pairs of
+ * buckets. As the number of buckets does not depend on the number of samples,
+ * the activity of the entire capture can be obtained for any number of pixels
+ * in constant time, once the summary is computed.
+ * </p>
+ */
+public final class ActivitySummary
+{
+  // CONSTANTS
+
+  /** The default number of buckets of the most detailed level. */
+  public static final int DEFAULT_RESOLUTION = 4096;
+
+  // VARIABLES
+
+  private final int[] masks;
+  /** the activity per group, per level, per bucket. */
+  private final int[][][] levels;
+  private final long startTimestamp;
+  private final long length;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new ActivitySummary instance.
+   */
+  private ActivitySummary( final int[] aMasks, final int[][][] aLevels, final long aStartTimestamp,
+      final long aLength )
+  {
+    this.masks = aMasks;
+    this.levels = aLevels;
+    this.startTimestamp = aStartTimestamp;
+    this.length = aLength;
+  }
+
+  // METHODS
+
+  /**
+   * Computes the activity summary of the given sample data.
+   * 
+   * @param aValues
+   *          the sample values, cannot be <code>null</code>;
+   * @param aTimestamps
+   *          the sample timestamps, cannot be <code>null</code>;
+   * @param aMasks
+   *          the channel masks of the groups to summarize, cannot be
+   *          <code>null</code>;
+   * @param aResolution
+   *          the number of buckets of the most detailed level, is rounded up
+   *          to a power of two, > 0.
+   * @return the activity summary, never <code>null</code>.
+   */
+  public static ActivitySummary compute( final int[] aValues, final long[] aTimestamps, final int[] aMasks,
+      final int aResolution )
+  {
+    if ( ( aValues == null ) || ( aTimestamps == null ) )
+    {
+      throw new IllegalArgumentException( "Values and timestamps cannot be null!" );
+    }
+    if ( aMasks == null )
+    {
+      throw new IllegalArgumentException( "Masks cannot be null!" );
+    }
+    if ( aResolution <= 0 )
+    {
+      throw new IllegalArgumentException( "Resolution should be positive!" );
+    }
+
+    int resolution = 1;
+    while ( resolution < aResolution )
+    {
+      resolution <<= 1;
+    }
+    final int levelCount = Integer.numberOfTrailingZeros( resolution ) + 1;
+    final int groupCount = aMasks.length;
+
+    final int[][][] levels = new int[groupCount][levelCount][];
+    for ( int g = 0; g < groupCount; g++ )
+    {
+      levels[g][0] = new int[resolution];
+    }
+
+    final int sampleCount = Math.min( aValues.length, aTimestamps.length );
+    final long start = ( sampleCount > 0 ) ? aTimestamps[0] : 0L;
+    final long length = ( sampleCount > 0 ) ? ( ( aTimestamps[sampleCount - 1] + 1L ) - start ) : 0L;
+
+    // Count the transitions of each group in the most detailed level...
+    for ( int i = 1; i < sampleCount; i++ )
+    {
+      final int changed = aValues[i] ^ aValues[i - 1];
+      if ( changed == 0 )
+      {
+        continue;
+      }
+
+      final int bucket = Math.min( resolution - 1,
+          ( int )( ( ( double )( aTimestamps[i] - start ) * resolution ) / length ) );
+      for ( int g = 0; g < groupCount; g++ )
+      {
+        if ( ( changed & aMasks[g] ) != 0 )
+        {
+          levels[g][0][bucket]++;
+        }
+      }
+    }
+
+    // Build the coarser levels by adding up pairs of buckets...
+    for ( int g = 0; g < groupCount; g++ )
+    {
+      for ( int l = 1; l < levelCount; l++ )
+      {
+        final int[] finer = levels[g][l - 1];
+        final int[] coarser = new int[finer.length / 2];
+        for ( int b = 0; b < coarser.length; b++ )
+        {
+          coarser[b] = finer[2 * b] + finer[( 2 * b ) + 1];
+        }
+        levels[g][l] = coarser;
+      }
+    }
+
+    return new ActivitySummary( aMasks.clone(), levels, start, length );
+  }
+
+  /**
+   * Returns the activity of the given group, divided in the given number of
+   * equally long parts.
+   * <p>
+   * The coarsest level with at least the requested number of buckets is used,
+   * so each part adds up at most two buckets.
+   * </p>
+   * 
+   * @param aGroup
+   *          the index of the group, >= 0 && < {@link #getGroupCount()};
+   * @param aParts
+   *          the number of parts to divide the capture in, > 0.
+   * @return the number of transitions per part, never <code>null</code>.
+   */
+  public int[] getActivity( final int aGroup, final int aParts )
+  {
+    final int[][] groupLevels = this.levels[aGroup];
+
+    int level = groupLevels.length - 1;
+    while ( ( level > 0 ) && ( groupLevels[level].length < aParts ) )
+    {
+      level--;
+    }
+
+    final int[] buckets = groupLevels[level];
+    final int[] result = new int[aParts];
+    for ( int p = 0; p < aParts; p++ )
+    {
+      final int from = ( int )( ( ( long )p * buckets.length ) / aParts );
+      final int to = Math.max( from + 1, ( int )( ( ( long )( p + 1 ) * buckets.length ) / aParts ) );
+
+      int sum = 0;
+      for ( int b = from; b < to; b++ )
+      {
+        sum += buckets[b];
+      }
+      result[p] = sum;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of summarized groups.
+   * 
+   * @return a group count, >= 0.
+   */
+  public int getGroupCount()
+  {
+    return this.masks.length;
+  }
+
+  /**
+   * Returns the length of the summarized capture.
+   * 
+   * @return a length, in timestamp units, >= 0.
+   */
+  public long getLength()
+  {
+    return this.length;
+  }
+
+  /**
+   * Returns the channel mask of the given group.
+   * 
+   * @param aGroup
+   *          the index of the group, >= 0 && < {@link #getGroupCount()}.
+   * @return a channel mask.
+   */
+  public int getMask( final int aGroup )
+  {
+    return this.masks[aGroup];
+  }
+
+  /**
+   * Returns the first timestamp of the summarized capture.
+   * 
+   * @return a timestamp.
+   */
+  public long getStartTimestamp()
+  {
+    return this.startTimestamp;
+  }
+}
@@ -0,0 +1,437 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Provides the differences between two captures, as intervals per channel in
+ * which the channel has a different value in both captures.
+ * <p>
+ * Both captures are aligned by timestamp using a merge-join over their
+ * timestamp arrays, so captures with different sample moments (for example,
+ * run-length encoded ones) can be compared. Only the time range covered by
+ * both captures is compared. All channels are compared at once by XOR-ing the
+ * sample values, and the time range is split into chunks that are compared in
+ * parallel.
+ * </p>
+ */
+public final class CaptureDiff
+{
+  // CONSTANTS
+
+  /** The minimal number of samples to compare in a single chunk. */
+  static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+  // VARIABLES
+
+  /** the start and end timestamp of each difference, per channel. */
+  private final long[][] intervals;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new CaptureDiff instance.
+   */
+  private CaptureDiff( final long[][] aIntervals )
+  {
+    this.intervals = aIntervals;
+  }
+
+  // METHODS
+
+  /**
+   * Compares the given captures on all given channels.
+   * 
+   * @param aValues
+   *          the sample values of the first capture;
+   * @param aTimestamps
+   *          the sample timestamps of the first capture;
+   * @param aOtherValues
+   *          the sample values of the second capture;
+   * @param aOtherTimestamps
+   *          the sample timestamps of the second capture;
+   * @param aMask
+   *          the mask of the channels to compare;
+   * @param aExecutor
+   *          the executor to compare the individual chunks with, cannot be
+   *          <code>null</code>.
+   * @return the differences, never <code>null</code>.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           chunks to be compared.
+   */
+  public static CaptureDiff compare( final int[] aValues, final long[] aTimestamps, final int[] aOtherValues,
+      final long[] aOtherTimestamps, final int aMask, final ExecutorService aExecutor ) throws InterruptedException
+  {
+    final long[][] result = new long[Channel.MAX_CHANNELS][];
+    if ( ( aTimestamps.length == 0 ) || ( aOtherTimestamps.length == 0 ) )
+    {
+      return new CaptureDiff( result );
+    }
+
+    // Only compare the range covered by both captures...
+    final long startTime = Math.max( aTimestamps[0], aOtherTimestamps[0] );
+    final long endTime = Math.min( aTimestamps[aTimestamps.length - 1],
+        aOtherTimestamps[aOtherTimestamps.length - 1] );
+
+    // Use the timestamps of the largest capture as chunk boundaries...
+    final long[] boundaries = ( aTimestamps.length >= aOtherTimestamps.length ) ? aTimestamps : aOtherTimestamps;
+    final int length = boundaries.length;
+    final int chunkCount = Math.max( 1,
+        Math.min( 4 * Runtime.getRuntime().availableProcessors(), length / MIN_CHUNK_SIZE ) );
+    final int chunkSize = Math.max( 1, ( length + chunkCount - 1 ) / chunkCount );
+
+    final List<Future<long[][]>> chunks = new ArrayList<Future<long[][]>>( chunkCount );
+    try
+    {
+      long chunkStart = startTime;
+      for ( int idx = chunkSize; chunkStart < endTime; idx += chunkSize )
+      {
+        final long from = chunkStart;
+        final long to = ( idx < length ) ? Math.min( endTime, Math.max( from + 1, boundaries[idx] ) ) : endTime;
+
+        chunks.add( aExecutor.submit( new Callable<long[][]>()
+        {
+          @Override
+          public long[][] call() throws Exception
+          {
+            return compare( aValues, aTimestamps, aOtherValues, aOtherTimestamps, aMask, from, to );
+          }
+        } ) );
+
+        chunkStart = to;
+      }
+
+      final int[] counts = new int[Channel.MAX_CHANNELS];
+      for ( Future<long[][]> chunk : chunks )
+      {
+        final long[][] chunkResult = chunk.get();
+        for ( int bit = 0; bit < Channel.MAX_CHANNELS; bit++ )
+        {
+          final long[] chunkIntervals = chunkResult[bit];
+          if ( chunkIntervals == null )
+          {
+            continue;
+          }
+
+          int i = 0;
+          final int count = counts[bit];
+          if ( ( count > 0 ) && ( result[bit][count - 1] == chunkIntervals[0] ) )
+          {
+            // Difference continues across the chunk boundary...
+            result[bit][count - 1] = chunkIntervals[1];
+            i = 2;
+          }
+
+          result[bit] = append( result[bit], count, chunkIntervals, i );
+          counts[bit] = count + chunkIntervals.length - i;
+        }
+      }
+
+      for ( int bit = 0; bit < Channel.MAX_CHANNELS; bit++ )
+      {
+        if ( result[bit] != null )
+        {
+          result[bit] = Arrays.copyOf( result[bit], counts[bit] );
+        }
+      }
+
+      return new CaptureDiff( result );
+    }
+    catch ( ExecutionException exception )
+    {
+      throw new RuntimeException( "Failed to compare captures!", exception.getCause() );
+    }
+    finally
+    {
+      // Make sure no chunk keeps being compared when we're interrupted...
+      for ( Future<long[][]> chunk : chunks )
+      {
+        chunk.cancel( true );
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the first difference of the given channel that ends
+   * after the given timestamp.
+   * 
+   * @param aChannel
+   *          the index of the channel;
+   * @param aTimestamp
+   *          the timestamp to search from.
+   * @return the index of the difference, or {@link #getDifferenceCount(int)} if
+   *         there is no such difference.
+   */
+  public int findFirstDifference( final int aChannel, final long aTimestamp )
+  {
+    final long[] channelIntervals = this.intervals[aChannel];
+    if ( channelIntervals == null )
+    {
+      return 0;
+    }
+
+    int low = 0;
+    int high = channelIntervals.length / 2;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( channelIntervals[( 2 * mid ) + 1] <= aTimestamp )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the number of differences of the given channel.
+   * 
+   * @param aChannel
+   *          the index of the channel.
+   * @return a difference count, >= 0.
+   */
+  public int getDifferenceCount( final int aChannel )
+  {
+    final long[] channelIntervals = this.intervals[aChannel];
+    return ( channelIntervals == null ) ? 0 : ( channelIntervals.length / 2 );
+  }
+
+  /**
+   * Returns the end timestamp (exclusive) of the given difference.
+   * 
+   * @param aChannel
+   *          the index of the channel;
+   * @param aIndex
+   *          the index of the difference.
+   * @return a timestamp.
+   */
+  public long getEndTimestamp( final int aChannel, final int aIndex )
+  {
+    return this.intervals[aChannel][( 2 * aIndex ) + 1];
+  }
+
+  /**
+   * Returns the start timestamp of the given difference.
+   * 
+   * @param aChannel
+   *          the index of the channel;
+   * @param aIndex
+   *          the index of the difference.
+   * @return a timestamp.
+   */
+  public long getStartTimestamp( final int aChannel, final int aIndex )
+  {
+    return this.intervals[aChannel][2 * aIndex];
+  }
+
+  /**
+   * Returns whether both captures are equal on all compared channels.
+   * 
+   * @return <code>true</code> if there are no differences, <code>false</code>
+   *         otherwise.
+   */
+  public boolean isEmpty()
+  {
+    for ( long[] channelIntervals : this.intervals )
+    {
+      if ( ( channelIntervals != null ) && ( channelIntervals.length > 0 ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compares the given captures in the given time range.
+   * 
+   * @param aValues
+   *          the sample values of the first capture;
+   * @param aTimestamps
+   *          the sample timestamps of the first capture;
+   * @param aOtherValues
+   *          the sample values of the second capture;
+   * @param aOtherTimestamps
+   *          the sample timestamps of the second capture;
+   * @param aMask
+   *          the mask of the channels to compare;
+   * @param aStartTime
+   *          the start of the time range, should be covered by both captures;
+   * @param aEndTime
+   *          the end of the time range (exclusive).
+   * @return the start and end timestamps of all differences, per channel, or
+   *         <code>null</code> for channels without differences.
+   */
+  static long[][] compare( final int[] aValues, final long[] aTimestamps, final int[] aOtherValues,
+      final long[] aOtherTimestamps, final int aMask, final long aStartTime, final long aEndTime )
+  {
+    final long[][] result = new long[Channel.MAX_CHANNELS][];
+    final int[] counts = new int[Channel.MAX_CHANNELS];
+    final long[] starts = new long[Channel.MAX_CHANNELS];
+
+    // The samples that are "active" at the start time...
+    int i = floorIndex( aTimestamps, aStartTime );
+    int j = floorIndex( aOtherTimestamps, aStartTime );
+
+    int diff = ( aValues[i] ^ aOtherValues[j] ) & aMask;
+    for ( int bits = diff; bits != 0; bits &= bits - 1 )
+    {
+      starts[Integer.numberOfTrailingZeros( bits )] = aStartTime;
+    }
+
+    final int lastI = aTimestamps.length - 1;
+    final int lastJ = aOtherTimestamps.length - 1;
+
+    int iterations = 0;
+    while ( true )
+    {
+      // Merge-join: advance to the next sample moment of either capture...
+      final long nextI = ( i < lastI ) ? aTimestamps[i + 1] : Long.MAX_VALUE;
+      final long nextJ = ( j < lastJ ) ? aOtherTimestamps[j + 1] : Long.MAX_VALUE;
+      final long next = Math.min( nextI, nextJ );
+      if ( next >= aEndTime )
+      {
+        break;
+      }
+      if ( nextI == next )
+      {
+        i++;
+      }
+      if ( nextJ == next )
+      {
+        j++;
+      }
+
+      final int newDiff = ( aValues[i] ^ aOtherValues[j] ) & aMask;
+      for ( int changed = diff ^ newDiff; changed != 0; changed &= changed - 1 )
+      {
+        final int bit = Integer.numberOfTrailingZeros( changed );
+        if ( ( newDiff & ( 1 << bit ) ) != 0 )
+        {
+          starts[bit] = next;
+        }
+        else
+        {
+          add( result, counts, bit, starts[bit], next );
+        }
+      }
+      diff = newDiff;
+
+      if ( ( ( ++iterations & 0xFFFF ) == 0 ) && Thread.currentThread().isInterrupted() )
+      {
+        // Comparison is cancelled...
+        break;
+      }
+    }
+
+    // Close all differences that are still open...
+    for ( int bits = diff; bits != 0; bits &= bits - 1 )
+    {
+      final int bit = Integer.numberOfTrailingZeros( bits );
+      add( result, counts, bit, starts[bit], aEndTime );
+    }
+
+    for ( int bit = 0; bit < Channel.MAX_CHANNELS; bit++ )
+    {
+      if ( result[bit] != null )
+      {
+        result[bit] = Arrays.copyOf( result[bit], counts[bit] );
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Adds a difference to the given per-channel intervals, growing them if
+   * needed.
+   */
+  private static void add( final long[][] aIntervals, final int[] aCounts, final int aChannel, final long aStart,
+      final long aEnd )
+  {
+    final int count = aCounts[aChannel];
+    if ( aIntervals[aChannel] == null )
+    {
+      aIntervals[aChannel] = new long[16];
+    }
+    else if ( count == aIntervals[aChannel].length )
+    {
+      aIntervals[aChannel] = Arrays.copyOf( aIntervals[aChannel], 2 * count );
+    }
+    aIntervals[aChannel][count] = aStart;
+    aIntervals[aChannel][count + 1] = aEnd;
+    aCounts[aChannel] = count + 2;
+  }
+
+  /**
+   * Appends the given source intervals, starting at the given index, to the
+   * given target intervals.
+   */
+  private static long[] append( final long[] aTarget, final int aTargetCount, final long[] aSource,
+      final int aSourceIdx )
+  {
+    final int length = aSource.length - aSourceIdx;
+
+    long[] result = aTarget;
+    if ( result == null )
+    {
+      result = new long[Math.max( 16, length )];
+    }
+    else if ( ( aTargetCount + length ) > result.length )
+    {
+      result = Arrays.copyOf( result, Math.max( 2 * result.length, aTargetCount + length ) );
+    }
+
+    System.arraycopy( aSource, aSourceIdx, result, aTargetCount, length );
+    return result;
+  }
+
+  /**
+   * Returns the index of the last timestamp that is less than or equal to the
+   * given timestamp.
+   */
+  private static int floorIndex( final long[] aTimestamps, final long aTimestamp )
+  {
+    int low = 0;
+    int high = aTimestamps.length;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( aTimestamps[mid] <= aTimestamp )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return Math.max( 0, low - 1 );
+  }
+}
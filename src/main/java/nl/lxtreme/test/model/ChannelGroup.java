@@ -74,6 +74,7 @@ public class ChannelGroup
 
   // VARIABLES
 
+  private final ChannelGroupManager manager;
   private final List<Channel> channels;
 
   private int index;
@@ -94,6 +95,9 @@ public class ChannelGroup
   /**
    * Creates a new ChannelGroup instance.
    * 
+   * @param aManager
+   *          the channel group manager to notify about (un)assigned channels,
+   *          can be <code>null</code>;
    * @param aIndex
    *          the index of this channel group, >= 0;
    * @param aName
@@ -102,13 +106,14 @@ public class ChannelGroup
    * @throws IllegalArgumentException
    *           in case the given name was <code>null</code> or empty.
    */
-  ChannelGroup( final int aIndex, final String aName )
+  ChannelGroup( final ChannelGroupManager aManager, final int aIndex, final String aName )
   {
     if ( ( aName == null ) || aName.trim().isEmpty() )
     {
       throw new IllegalArgumentException( "Name cannot be null or empty!" );
     }
 
+    this.manager = aManager;
     this.index = aIndex;
     this.name = aName;
     this.mask = 0;
@@ -158,6 +163,11 @@ public class ChannelGroup
 
     // Update our local mask...
     this.mask |= aChannel.getMask();
+
+    if ( this.manager != null )
+    {
+      this.manager.channelAssigned( aChannel );
+    }
   }
 
   /**
@@ -334,7 +344,8 @@ public class ChannelGroup
       throw new IllegalArgumentException( "Channel cannot be null!" );
     }
 
-    return this.channels.contains( aChannel );
+    // A channel can only belong to a single group...
+    return aChannel.getChannelGroup() == this;
   }
 
   /**
@@ -427,6 +438,11 @@ public class ChannelGroup
 
     // Update our local mask...
     this.mask |= aChannel.getMask();
+
+    if ( this.manager != null )
+    {
+      this.manager.channelAssigned( aChannel );
+    }
   }
 
   /**
@@ -451,6 +467,11 @@ public class ChannelGroup
 
       // Remove channel's mask from our local mask...
       this.mask &= ~aChannel.getMask();
+
+      if ( this.manager != null )
+      {
+        this.manager.channelUnassigned( aChannel );
+      }
     }
   }
 
@@ -23,10 +23,10 @@ package nl.lxtreme.test.model;
 
 import java.util.*;
 
-import javax.swing.event.*;
-
 import nl.lxtreme.test.*;
 import nl.lxtreme.test.IChannelChangeListener.*;
+import nl.lxtreme.test.util.*;
+import nl.lxtreme.test.util.EventBus.Delivery;
 
 
 /**
@@ -34,6 +34,135 @@ import nl.lxtreme.test.IChannelChangeListener.*;
  */
 public final class ChannelGroupManager implements IDataModelChangeListener
 {
+  // INNER TYPES
+
+  /**
+   * Delivers a change of a channel property; multiple changes of the same
+   * property of a channel are merged.
+   */
+  private static final class ChangeEvent extends EventBus.Event<IChannelChangeListener>
+  {
+    // VARIABLES
+
+    private final ChannelChangeEvent event;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new ChangeEvent instance.
+     */
+    ChangeEvent( final ChannelChangeEvent aEvent )
+    {
+      super( IChannelChangeListener.class, aEvent.getPropertyName() );
+      this.event = aEvent;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EventBus.Event<IChannelChangeListener> coalesce( final EventBus.Event<IChannelChangeListener> aPrevious )
+    {
+      final ChannelChangeEvent previous = ( ( ChangeEvent )aPrevious ).event;
+      return new ChangeEvent( new ChannelChangeEvent( this.event.getChannel(), this.event.getPropertyName(),
+          previous.getOldValue(), this.event.getNewValue() ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dispatch( final IChannelChangeListener aListener )
+    {
+      aListener.channelChanged( this.event );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getCoalesceKey()
+    {
+      return Arrays.asList( "channel", Integer.valueOf( this.event.getChannel().getIndex() ), getPropertyName() );
+    }
+  }
+
+  /**
+   * Delivers the movement of a channel.
+   */
+  private static final class MoveEvent extends EventBus.Event<IChannelChangeListener>
+  {
+    // VARIABLES
+
+    private final ChannelMoveEvent event;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new MoveEvent instance.
+     */
+    MoveEvent( final ChannelMoveEvent aEvent )
+    {
+      super( IChannelChangeListener.class, null );
+      this.event = aEvent;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dispatch( final IChannelChangeListener aListener )
+    {
+      aListener.channelMoved( this.event );
+    }
+  }
+
+  /**
+   * Delivers a change of the channel group structure; multiple changes are
+   * merged into the last one.
+   */
+  private static final class StructureEvent extends EventBus.Event<IChannelChangeListener>
+  {
+    // VARIABLES
+
+    private final Collection<Channel> channels;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new StructureEvent instance.
+     */
+    StructureEvent( final Collection<Channel> aChannels )
+    {
+      super( IChannelChangeListener.class, null );
+      this.channels = aChannels;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dispatch( final IChannelChangeListener aListener )
+    {
+      aListener.channelGroupStructureChanged( this.channels );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getCoalesceKey()
+    {
+      return StructureEvent.class;
+    }
+  }
+
   // CONSTANTS
 
   public static final int MAX_CHANNEL_GROUPS = Channel.MAX_CHANNELS;
@@ -41,9 +170,15 @@ public final class ChannelGroupManager implements IDataModelChangeListener
   // VARIABLES
 
   private final List<ChannelGroup> channelGroups;
-  private final EventListenerList eventListeners;
+  private final EventBus eventBus;
+  /** the indexes of all channels that are assigned to a channel group. */
+  private final BitSet assignedChannels;
 
+  /** all channels, indexed by their channel index. */
   private Channel[] channels;
+  /** lazily created sets of (un)assigned channels. */
+  private SortedSet<Channel> assignedChannelSet;
+  private SortedSet<Channel> unassignedChannelSet;
 
   // CONSTRUCTORS
 
@@ -52,8 +187,28 @@ public final class ChannelGroupManager implements IDataModelChangeListener
    */
   public ChannelGroupManager()
   {
+    this( new EventBus() );
+  }
+
+  /**
+   * Creates a new {@link ChannelGroupManager} instance.
+   * 
+   * @param aEventBus
+   *          the event bus to post the channel events on, cannot be
+   *          <code>null</code>.
+   */
+  public ChannelGroupManager( final EventBus aEventBus )
+  {
+    if ( aEventBus == null )
+    {
+      throw new IllegalArgumentException( "Event bus cannot be null!" );
+    }
+
     this.channelGroups = new ArrayList<ChannelGroup>();
-    this.eventListeners = new EventListenerList();
+    this.eventBus = aEventBus;
+    this.assignedChannels = new BitSet();
+
+    this.channels = new Channel[0];
   }
 
   // METHODS
@@ -117,17 +272,36 @@ public final class ChannelGroupManager implements IDataModelChangeListener
     {
       this.channelGroups.remove( oldCG );
     }
+
+    fireChannelGroupStructureChangeEvent( getAssignedChannels() );
   }
 
   /**
-   * Adds a channel change listener.
+   * Adds a channel change listener, which is notified in batches on the EDT.
    * 
    * @param aListener
    *          the listener to add, cannot be <code>null</code>.
    */
   public void addChannelChangeListener( final IChannelChangeListener aListener )
   {
-    this.eventListeners.add( IChannelChangeListener.class, aListener );
+    this.eventBus.subscribe( IChannelChangeListener.class, aListener );
+  }
+
+  /**
+   * Adds a channel change listener.
+   * 
+   * @param aListener
+   *          the listener to add, cannot be <code>null</code>;
+   * @param aDelivery
+   *          how the events are to be delivered, cannot be <code>null</code>;
+   * @param aProperties
+   *          the channel properties to be notified of, if omitted, all
+   *          changes are notified.
+   */
+  public void addChannelChangeListener( final IChannelChangeListener aListener, final Delivery aDelivery,
+      final String... aProperties )
+  {
+    this.eventBus.subscribe( IChannelChangeListener.class, aListener, aDelivery, aProperties );
   }
 
   /**
@@ -144,17 +318,9 @@ public final class ChannelGroupManager implements IDataModelChangeListener
    */
   public ChannelGroup addChannelGroup( final String aName )
   {
-    final Channel firstAvailableChannel = getFirstUnassignedChannel();
-    if ( firstAvailableChannel == null )
-    {
-      throw new IllegalStateException( "No channels left!" );
-    }
+    final ChannelGroup result = createChannelGroup( aName );
 
-    ChannelGroup result = new ChannelGroup( this.channelGroups.size(), aName );
-    // For convenience, add the first available channel to this group...
-    result.addChannel( firstAvailableChannel );
-
-    this.channelGroups.add( result );
+    fireChannelGroupStructureChangeEvent( getAssignedChannels() );
 
     return result;
   }
@@ -167,7 +333,7 @@ public final class ChannelGroupManager implements IDataModelChangeListener
    */
   public boolean canAddChannelGroup()
   {
-    return !getUnassignedChannels().isEmpty();
+    return this.assignedChannels.cardinality() < this.channels.length;
   }
 
   /**
@@ -176,14 +342,23 @@ public final class ChannelGroupManager implements IDataModelChangeListener
   @Override
   public void dataModelChanged( final SampleDataModel aDataModel )
   {
+    // Reset channel groups so they align with the given data model...
+    for ( ChannelGroup cg : getChannelGroups() )
+    {
+      for ( Channel channel : cg.getChannels() )
+      {
+        cg.removeChannel( channel );
+      }
+    }
+    this.channelGroups.clear();
+
     this.channels = createChannels( aDataModel.getWidth() );
 
-    // Reset channel groups so they align with the given data model...
     final int maxI = 4;
     final int maxJ = Channel.MAX_CHANNELS / maxI;
     for ( int i = 0; i < maxI; i++ )
     {
-      ChannelGroup channelGroup = addChannelGroup( "Group " + ( i + 1 ) );
+      ChannelGroup channelGroup = createChannelGroup( "Group " + ( i + 1 ) );
       // channelGroup.setVisible( ( i % 2 ) == 0 );
 
       for ( int j = 0; j < maxJ; j++ )
@@ -200,11 +375,17 @@ public final class ChannelGroupManager implements IDataModelChangeListener
    */
   public void fireChannelChangeEvent( final ChannelChangeEvent aEvent )
   {
-    final IChannelChangeListener[] listeners = this.eventListeners.getListeners( IChannelChangeListener.class );
-    for ( IChannelChangeListener listener : listeners )
-    {
-      listener.channelChanged( aEvent );
-    }
+    this.eventBus.post( new ChangeEvent( aEvent ) );
+  }
+
+  /**
+   * Notifies all listeners that the structure of the channel groups has
+   * changed, for example, because one of the signal elements of a channel
+   * group is shown or hidden.
+   */
+  public void fireChannelGroupStructureChangeEvent()
+  {
+    fireChannelGroupStructureChangeEvent( getAssignedChannels() );
   }
 
   /**
@@ -212,11 +393,32 @@ public final class ChannelGroupManager implements IDataModelChangeListener
    */
   public void fireChannelMoveEvent( final ChannelMoveEvent aEvent )
   {
-    final IChannelChangeListener[] listeners = this.eventListeners.getListeners( IChannelChangeListener.class );
-    for ( IChannelChangeListener listener : listeners )
+    this.eventBus.post( new MoveEvent( aEvent ) );
+  }
+
+  /**
+   * Creates a new channel group without notifying any listeners.
+   * 
+   * @param aName
+   *          the name of the new channel group, cannot be <code>null</code> or
+   *          empty.
+   * @return the newly added channel group, never <code>null</code>.
+   */
+  private ChannelGroup createChannelGroup( final String aName )
+  {
+    final Channel firstAvailableChannel = getFirstUnassignedChannel();
+    if ( firstAvailableChannel == null )
     {
-      listener.channelMoved( aEvent );
+      throw new IllegalStateException( "No channels left!" );
     }
+
+    ChannelGroup result = new ChannelGroup( this, this.channelGroups.size(), aName );
+    // For convenience, add the first available channel to this group...
+    result.addChannel( firstAvailableChannel );
+
+    this.channelGroups.add( result );
+
+    return result;
   }
 
   /**
@@ -232,18 +434,16 @@ public final class ChannelGroupManager implements IDataModelChangeListener
   /**
    * Returns a sorted set of all assigned (not available) channels.
    * 
-   * @return a sorted set of all assigned channels, never <code>null</code>.
+   * @return an immutable sorted set of all assigned channels, never
+   *         <code>null</code>.
    */
   public SortedSet<Channel> getAssignedChannels()
   {
-    SortedSet<Channel> channelIndexes = new TreeSet<Channel>();
-
-    for ( ChannelGroup cg : this.channelGroups )
+    if ( this.assignedChannelSet == null )
     {
-      channelIndexes.addAll( Arrays.asList( cg.getChannels() ) );
+      this.assignedChannelSet = createChannelSet( true /* aAssigned */);
     }
-
-    return channelIndexes;
+    return this.assignedChannelSet;
   }
 
   /**
@@ -253,19 +453,11 @@ public final class ChannelGroupManager implements IDataModelChangeListener
    *          the index of the channel to return.
    * @return the channel with the given index, or <code>null</code> if no such
    *         channel was found.
+   * @see #getChannelByIndex(int)
    */
   public Channel getChannel( final int aIndex )
   {
-    Channel result = null;
-    Iterator<ChannelGroup> channelGroupIter = this.channelGroups.iterator();
-
-    while ( channelGroupIter.hasNext() && ( result == null ) )
-    {
-      ChannelGroup cg = channelGroupIter.next();
-      result = cg.getChannel( aIndex );
-    }
-
-    return result;
+    return getChannelByIndex( aIndex );
   }
 
   /**
@@ -274,20 +466,16 @@ public final class ChannelGroupManager implements IDataModelChangeListener
    * @param aIndex
    *          the index of the channel to return.
    * @return the channel with the given index, or <code>null</code> if no such
-   *         channel was found.
+   *         channel was found, or if the channel is not assigned to any
+   *         channel group.
    */
   public Channel getChannelByIndex( final int aIndex )
   {
-    Channel result = null;
-    Iterator<ChannelGroup> channelGroupIter = this.channelGroups.iterator();
-
-    while ( channelGroupIter.hasNext() && ( result == null ) )
+    if ( !isAssigned( aIndex ) )
     {
-      ChannelGroup cg = channelGroupIter.next();
-      result = cg.getChannelByIndex( aIndex );
+      return null;
     }
-
-    return result;
+    return this.channels[aIndex];
   }
 
   /**
@@ -332,19 +520,16 @@ public final class ChannelGroupManager implements IDataModelChangeListener
   /**
    * Returns a sorted set of all unassigned (= available) channels.
    * 
-   * @return a sorted set of unassigned channels, never <code>null</code>.
+   * @return an immutable sorted set of unassigned channels, never
+   *         <code>null</code>.
    */
   public SortedSet<Channel> getUnassignedChannels()
   {
-    SortedSet<Channel> channelIndexes = new TreeSet<Channel>();
-    channelIndexes.addAll( Arrays.asList( this.channels ) );
-
-    for ( ChannelGroup cg : this.channelGroups )
+    if ( this.unassignedChannelSet == null )
     {
-      channelIndexes.removeAll( Arrays.asList( cg.getChannels() ) );
+      this.unassignedChannelSet = createChannelSet( false /* aAssigned */);
     }
-
-    return channelIndexes;
+    return this.unassignedChannelSet;
   }
 
   /**
@@ -359,13 +544,31 @@ public final class ChannelGroupManager implements IDataModelChangeListener
     {
       if ( cg.isVisible() )
       {
-        count += cg.getChannels().length;
+        count += cg.getChannelCount();
       }
     }
 
     return count;
   }
 
+  /**
+   * Returns whether or not the channel with the given index is assigned to a
+   * channel group.
+   * 
+   * @param aIndex
+   *          the index of the channel to test.
+   * @return <code>true</code> if the channel with the given index exists and is
+   *         assigned to a channel group, <code>false</code> otherwise.
+   */
+  public boolean isAssigned( final int aIndex )
+  {
+    if ( ( aIndex < 0 ) || ( aIndex >= this.channels.length ) )
+    {
+      return false;
+    }
+    return this.assignedChannels.get( aIndex );
+  }
+
   /**
    * Moves a channel with a given index to a new index.
    * 
@@ -378,8 +581,13 @@ public final class ChannelGroupManager implements IDataModelChangeListener
   {
     if ( ( aMovedChannel != null ) && ( aInsertChannel != null ) )
     {
+      final ChannelGroup oldCG = aMovedChannel.getChannelGroup();
+      final int oldIndex = aMovedChannel.getVirtualIndex();
+
       final ChannelGroup cg = aInsertChannel.getChannelGroup();
       cg.moveChannel( aMovedChannel, aInsertChannel.getVirtualIndex() );
+
+      fireChannelMoveEvent( new ChannelMoveEvent( aMovedChannel, oldCG, oldIndex ) );
     }
   }
 
@@ -406,6 +614,8 @@ public final class ChannelGroupManager implements IDataModelChangeListener
     }
 
     aChannelGroup.removeChannel( aChannel );
+
+    fireChannelGroupStructureChangeEvent( getAssignedChannels() );
   }
 
   /**
@@ -416,7 +626,7 @@ public final class ChannelGroupManager implements IDataModelChangeListener
    */
   public void removeChannelChangeListener( final IChannelChangeListener aListener )
   {
-    this.eventListeners.remove( IChannelChangeListener.class, aListener );
+    this.eventBus.unsubscribe( IChannelChangeListener.class, aListener );
   }
 
   /**
@@ -438,20 +648,65 @@ public final class ChannelGroupManager implements IDataModelChangeListener
     ChannelGroup cg = getChannelGroupByName( aName );
     if ( cg != null )
     {
+      // Release all channels of this group so they become available again...
+      for ( Channel channel : cg.getChannels() )
+      {
+        cg.removeChannel( channel );
+      }
       this.channelGroups.remove( cg );
+
+      fireChannelGroupStructureChangeEvent( getAssignedChannels() );
     }
   }
 
+  /**
+   * Called by a channel group when the given channel is assigned to it.
+   * 
+   * @param aChannel
+   *          the channel that is assigned, cannot be <code>null</code>.
+   */
+  final void channelAssigned( final Channel aChannel )
+  {
+    this.assignedChannels.set( aChannel.getIndex() );
+    invalidateChannelSets();
+  }
+
+  /**
+   * Called by a channel group when the given channel is removed from it.
+   * 
+   * @param aChannel
+   *          the channel that is unassigned, cannot be <code>null</code>.
+   */
+  final void channelUnassigned( final Channel aChannel )
+  {
+    this.assignedChannels.clear( aChannel.getIndex() );
+    invalidateChannelSets();
+  }
+
   /**
    * @param aEvent
    */
   final void fireChannelGroupStructureChangeEvent( final Collection<Channel> aEvent )
   {
-    final IChannelChangeListener[] listeners = this.eventListeners.getListeners( IChannelChangeListener.class );
-    for ( IChannelChangeListener listener : listeners )
+    this.eventBus.post( new StructureEvent( aEvent ) );
+  }
+
+  /**
+   * Creates an immutable set of either all assigned or all unassigned channels.
+   * 
+   * @param aAssigned
+   *          <code>true</code> to return all assigned channels,
+   *          <code>false</code> to return all unassigned channels.
+   * @return a sorted set of channels, never <code>null</code>.
+   */
+  private SortedSet<Channel> createChannelSet( final boolean aAssigned )
+  {
+    final SortedSet<Channel> result = new TreeSet<Channel>();
+    for ( int i = nextChannelIndex( 0, aAssigned ); i >= 0; i = nextChannelIndex( i + 1, aAssigned ) )
     {
-      listener.channelGroupStructureChanged( aEvent );
+      result.add( this.channels[i] );
     }
+    return Collections.unmodifiableSortedSet( result );
   }
 
   /**
@@ -461,14 +716,41 @@ public final class ChannelGroupManager implements IDataModelChangeListener
    */
   private Channel getFirstUnassignedChannel()
   {
-    SortedSet<Channel> channels = getUnassignedChannels();
-
-    // Any channels left?
-    if ( ( channels == null ) || channels.isEmpty() )
+    final int idx = nextChannelIndex( 0, false /* aAssigned */);
+    if ( idx < 0 )
     {
       return null;
     }
+    return this.channels[idx];
+  }
 
-    return channels.first();
+  /**
+   * Invalidates the cached sets of (un)assigned channels.
+   */
+  private void invalidateChannelSets()
+  {
+    this.assignedChannelSet = null;
+    this.unassignedChannelSet = null;
+  }
+
+  /**
+   * Returns the index of the next (un)assigned channel.
+   * 
+   * @param aFromIndex
+   *          the channel index to start searching from;
+   * @param aAssigned
+   *          <code>true</code> to search for an assigned channel,
+   *          <code>false</code> to search for an unassigned channel.
+   * @return the index of the next channel, or -1 if no such channel exists.
+   */
+  private int nextChannelIndex( final int aFromIndex, final boolean aAssigned )
+  {
+    final int idx = aAssigned ? this.assignedChannels.nextSetBit( aFromIndex ) : this.assignedChannels
+        .nextClearBit( aFromIndex );
+    if ( ( idx < 0 ) || ( idx >= this.channels.length ) )
+    {
+      return -1;
+    }
+    return idx;
   }
 }
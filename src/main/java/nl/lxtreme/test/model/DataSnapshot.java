@@ -0,0 +1,263 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+import java.util.*;
+
+
+/**
+ * Provides an immutable, versioned snapshot of the sample data shown in a
+ * signal diagram.
+ * <p>
+ * A new snapshot, with a higher version, is published each time the sample
+ * data is replaced. Background tasks should obtain the current snapshot once
+ * and use only that snapshot, so their values, timestamps and sample rate are
+ * always consistent, even when the sample data is replaced while they run.
+ * Whether a result is still current can be checked by comparing its snapshot
+ * with the current one.
+ * </p>
+ * <p>
+ * The arrays returned by a snapshot are shared and should never be modified.
+ * </p>
+ */
+public final class DataSnapshot
+{
+  // CONSTANTS
+
+  /** The snapshot of a diagram without any sample data. */
+  public static final DataSnapshot EMPTY = new DataSnapshot( 0L, new int[0], new long[0], 0, 0 );
+
+  // VARIABLES
+
+  private final long version;
+  private final int[] values;
+  private final long[] timestamps;
+  private final int sampleRate;
+  private final int sampleWidth;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new DataSnapshot instance, taking ownership of the given arrays.
+   * 
+   * @param aVersion
+   *          the version of this snapshot, should be higher than that of any
+   *          earlier snapshot;
+   * @param aValues
+   *          the sample values, cannot be <code>null</code>;
+   * @param aTimestamps
+   *          the sample timestamps, cannot be <code>null</code> and should
+   *          have the same length as the values;
+   * @param aSampleRate
+   *          the sample rate, in Hertz;
+   * @param aSampleWidth
+   *          the sample width, in bits.
+   */
+  public DataSnapshot( final long aVersion, final int[] aValues, final long[] aTimestamps, final int aSampleRate,
+      final int aSampleWidth )
+  {
+    if ( ( aValues == null ) || ( aTimestamps == null ) )
+    {
+      throw new IllegalArgumentException( "Values and timestamps cannot be null!" );
+    }
+    if ( aValues.length != aTimestamps.length )
+    {
+      throw new IllegalArgumentException( "Values and timestamps should be of equal length!" );
+    }
+
+    this.version = aVersion;
+    this.values = aValues;
+    this.timestamps = aTimestamps;
+    this.sampleRate = aSampleRate;
+    this.sampleWidth = aSampleWidth;
+  }
+
+  // METHODS
+
+  /**
+   * Provides a binary search for arrays of long-values.
+   * <p>
+   * This implementation is directly copied from the JDK
+   * {@link Arrays#binarySearch(long[], long)} implementation, slightly modified
+   * to only perform a single comparison-action.
+   * </p>
+   * 
+   * @param aArray
+   *          the array of long values to search in;
+   * @param aFromIndex
+   *          the from index to search from;
+   * @param aToIndex
+   *          the to index to search up and until;
+   * @param aKey
+   *          the value to search for.
+   * @return the index of the given key, which is either the greatest index of
+   *         the value less or equal to the given key.
+   * @see Arrays#binarySearch(long[], long)
+   */
+  static final int binarySearch( final long[] aArray, final int aFromIndex, final int aToIndex, final long aKey )
+  {
+    int mid = -1;
+    int low = aFromIndex;
+    int high = aToIndex - 1;
+
+    while ( low <= high )
+    {
+      mid = ( low + high ) >>> 1;
+      final long midVal = aArray[mid];
+
+      final int c = ( aKey < midVal ? -1 : ( aKey == midVal ? 0 : 1 ) );
+      if ( c > 0 )
+      {
+        low = mid + 1;
+      }
+      else if ( c < 0 )
+      {
+        high = mid - 1;
+      }
+      else
+      {
+        return mid; // key found
+      }
+    }
+
+    if ( mid < 0 )
+    {
+      return low;
+    }
+
+    // Determine the insertion point, avoid crossing the array boundaries...
+    if ( mid < ( aToIndex - 1 ) )
+    {
+      // If the searched value is greater than the value of the found index,
+      // insert it after this value, otherwise before it (= the last return)...
+      if ( aKey > aArray[mid] )
+      {
+        return mid + 1;
+      }
+    }
+
+    return mid;
+  }
+
+  /**
+   * Returns the absolute length of the sample data.
+   * 
+   * @return the length, in timestamp units, or -1 if there is no sample data.
+   */
+  public long getAbsoluteLength()
+  {
+    final int idx = this.timestamps.length - 1;
+
+    long length = -1L;
+    if ( idx > 0 )
+    {
+      length = ( this.timestamps[idx] + 1 ) - this.timestamps[0];
+    }
+    else if ( idx == 0 )
+    {
+      length = this.timestamps[0];
+    }
+
+    return length;
+  }
+
+  /**
+   * Returns the number of samples.
+   * 
+   * @return a sample count, >= 0.
+   */
+  public int getSampleCount()
+  {
+    return this.values.length;
+  }
+
+  /**
+   * Returns the sample rate.
+   * 
+   * @return a sample rate, in Hertz.
+   */
+  public int getSampleRate()
+  {
+    return this.sampleRate;
+  }
+
+  /**
+   * Returns the sample width.
+   * 
+   * @return a sample width, in bits.
+   */
+  public int getSampleWidth()
+  {
+    return this.sampleWidth;
+  }
+
+  /**
+   * Returns the index of the sample with the given timestamp.
+   * 
+   * @param aTimestamp
+   *          the timestamp to search for.
+   * @return the index of the greatest timestamp less or equal to the given
+   *         timestamp.
+   */
+  public int getTimestampIndex( final long aTimestamp )
+  {
+    return binarySearch( this.timestamps, 0, this.timestamps.length, aTimestamp );
+  }
+
+  /**
+   * Returns the sample timestamps, which should not be modified.
+   * 
+   * @return the timestamps, never <code>null</code>.
+   */
+  public long[] getTimestamps()
+  {
+    return this.timestamps;
+  }
+
+  /**
+   * Returns the sample values, which should not be modified.
+   * 
+   * @return the values, never <code>null</code>.
+   */
+  public int[] getValues()
+  {
+    return this.values;
+  }
+
+  /**
+   * Returns the version of this snapshot.
+   * 
+   * @return a version, higher for more recent snapshots.
+   */
+  public long getVersion()
+  {
+    return this.version;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return "DataSnapshot[version=" + this.version + ", samples=" + this.values.length + "]";
+  }
+}
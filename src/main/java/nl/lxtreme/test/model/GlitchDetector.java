@@ -0,0 +1,393 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Detects glitches, that is, pulses shorter than a given width, on one or more
+ * channels.
+ * <p>
+ * All channels are scanned in a single pass over the sample data, which is
+ * split into chunks that are scanned in parallel. Pulses that cross a chunk
+ * boundary are resolved when the chunk results are combined.
+ * </p>
+ * <p>
+ * The last result is retained, so detecting glitches again with a smaller
+ * width or fewer channels only filters the last result, while adding channels
+ * only scans the added channels.
+ * </p>
+ */
+public final class GlitchDetector
+{
+  // INNER TYPES
+
+  /**
+   * Provides the result of scanning a single chunk.
+   */
+  static final class ChunkResult
+  {
+    // VARIABLES
+
+    /** the index of the first edge in the chunk, per channel. */
+    final int[] firstEdges = new int[Channel.MAX_CHANNELS];
+    /** the index of the last edge in the chunk, per channel. */
+    final int[] lastEdges = new int[Channel.MAX_CHANNELS];
+    /** the start and end index of each glitch, per channel. */
+    final int[][] glitches = new int[Channel.MAX_CHANNELS][];
+    final int[] glitchCounts = new int[Channel.MAX_CHANNELS];
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new ChunkResult instance.
+     */
+    ChunkResult()
+    {
+      Arrays.fill( this.firstEdges, -1 );
+      Arrays.fill( this.lastEdges, -1 );
+    }
+
+    // METHODS
+
+    /**
+     * Adds a glitch for the given channel.
+     */
+    void add( final int aChannel, final int aStartIdx, final int aEndIdx )
+    {
+      int[] channelGlitches = this.glitches[aChannel];
+      final int count = this.glitchCounts[aChannel];
+      if ( channelGlitches == null )
+      {
+        channelGlitches = this.glitches[aChannel] = new int[16];
+      }
+      else if ( ( count + 2 ) > channelGlitches.length )
+      {
+        channelGlitches = this.glitches[aChannel] = Arrays.copyOf( channelGlitches, 2 * channelGlitches.length );
+      }
+      channelGlitches[count] = aStartIdx;
+      channelGlitches[count + 1] = aEndIdx;
+      this.glitchCounts[aChannel] = count + 2;
+    }
+  }
+
+  // CONSTANTS
+
+  /** The minimal number of samples to scan in a single chunk. */
+  static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+  // VARIABLES
+
+  private int[] values;
+  private int lastMask;
+  private long lastMaxWidth;
+  private GlitchIndex lastResult;
+
+  // METHODS
+
+  /**
+   * Detects all glitches on the given channels, reusing the last result when
+   * possible.
+   * 
+   * @param aValues
+   *          the sample values to scan;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aMask
+   *          the mask of the channels to scan;
+   * @param aMaxWidth
+   *          the (exclusive) maximum width of a glitch, in timestamp units;
+   * @param aExecutor
+   *          the executor to scan the individual chunks with, cannot be
+   *          <code>null</code>.
+   * @return the index of all glitches, never <code>null</code>.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           chunks to be scanned.
+   */
+  public GlitchIndex detect( final int[] aValues, final long[] aTimestamps, final int aMask, final long aMaxWidth,
+      final ExecutorService aExecutor ) throws InterruptedException
+  {
+    GlitchIndex reusable = null;
+    int scanMask = aMask;
+
+    synchronized ( this )
+    {
+      if ( ( this.values == aValues ) && ( this.lastResult != null ) && ( aMaxWidth <= this.lastMaxWidth ) )
+      {
+        // The glitches of the already scanned channels can be filtered...
+        reusable = this.lastResult.filter( aMask & this.lastMask, aMaxWidth );
+        scanMask = aMask & ~this.lastMask;
+      }
+    }
+
+    if ( scanMask == 0 )
+    {
+      // Do not retain the filtered result; it would only limit reuse...
+      return reusable;
+    }
+
+    final GlitchIndex scanned = scanAll( aValues, aTimestamps, scanMask, aMaxWidth, aExecutor );
+    final GlitchIndex result = ( reusable == null ) ? scanned : GlitchIndex.merge( reusable, scanned );
+
+    synchronized ( this )
+    {
+      this.values = aValues;
+      this.lastMask = aMask;
+      this.lastMaxWidth = aMaxWidth;
+      this.lastResult = result;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the channel mask of the last result.
+   * 
+   * @return a channel mask.
+   * @see #getLastResult(int[])
+   */
+  public synchronized int getLastMask()
+  {
+    return this.lastMask;
+  }
+
+  /**
+   * Returns the maximum glitch width of the last result.
+   * 
+   * @return a width, in timestamp units.
+   * @see #getLastResult(int[])
+   */
+  public synchronized long getLastMaxWidth()
+  {
+    return this.lastMaxWidth;
+  }
+
+  /**
+   * Returns the last (unfiltered) result for the given sample values, for
+   * example, to persist it.
+   * 
+   * @param aValues
+   *          the sample values to return the last result for.
+   * @return the last result, or <code>null</code> if there is no result for
+   *         the given sample values.
+   */
+  public synchronized GlitchIndex getLastResult( final int[] aValues )
+  {
+    return ( this.values == aValues ) ? this.lastResult : null;
+  }
+
+  /**
+   * Restores an earlier result for the given sample values, for example, as
+   * read from a file, so it can be reused by subsequent detections.
+   * 
+   * @param aValues
+   *          the sample values the result belongs to;
+   * @param aMask
+   *          the mask of the channels that were scanned;
+   * @param aMaxWidth
+   *          the (exclusive) maximum width of a glitch, in timestamp units;
+   * @param aResult
+   *          the result to restore, cannot be <code>null</code>.
+   */
+  public synchronized void restore( final int[] aValues, final int aMask, final long aMaxWidth,
+      final GlitchIndex aResult )
+  {
+    if ( aResult == null )
+    {
+      throw new IllegalArgumentException( "Result cannot be null!" );
+    }
+
+    this.values = aValues;
+    this.lastMask = aMask;
+    this.lastMaxWidth = aMaxWidth;
+    this.lastResult = aResult;
+  }
+
+  /**
+   * Scans the given range of sample values for all glitches on the given
+   * channels.
+   * 
+   * @param aValues
+   *          the sample values to scan;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aMask
+   *          the mask of the channels to scan;
+   * @param aMaxWidth
+   *          the (exclusive) maximum width of a glitch, in timestamp units;
+   * @param aStartIdx
+   *          the index of the first sample to scan;
+   * @param aEndIdx
+   *          the index of the last sample to scan (exclusive).
+   * @return the result of the given range, never <code>null</code>.
+   */
+  static ChunkResult scan( final int[] aValues, final long[] aTimestamps, final int aMask, final long aMaxWidth,
+      final int aStartIdx, final int aEndIdx )
+  {
+    final ChunkResult result = new ChunkResult();
+    final int[] firstEdges = result.firstEdges;
+    final int[] lastEdges = result.lastEdges;
+
+    for ( int i = Math.max( 1, aStartIdx ); i < aEndIdx; i++ )
+    {
+      int edges = ( aValues[i - 1] ^ aValues[i] ) & aMask;
+      while ( edges != 0 )
+      {
+        final int bit = Integer.numberOfTrailingZeros( edges );
+        edges &= edges - 1;
+
+        final int lastEdge = lastEdges[bit];
+        if ( lastEdge < 0 )
+        {
+          firstEdges[bit] = i;
+        }
+        else if ( ( aTimestamps[i] - aTimestamps[lastEdge] ) < aMaxWidth )
+        {
+          result.add( bit, lastEdge, i );
+        }
+        lastEdges[bit] = i;
+      }
+
+      if ( ( ( i & 0xFFFF ) == 0 ) && Thread.currentThread().isInterrupted() )
+      {
+        // Detection is cancelled...
+        break;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Adds a glitch to the given per-channel arrays, growing them if needed.
+   */
+  private static void add( final long[][] aStarts, final long[][] aEnds, final int[] aCounts, final int aChannel,
+      final long aStartTimestamp, final long aEndTimestamp )
+  {
+    final int count = aCounts[aChannel];
+    if ( aStarts[aChannel] == null )
+    {
+      aStarts[aChannel] = new long[16];
+      aEnds[aChannel] = new long[16];
+    }
+    else if ( count == aStarts[aChannel].length )
+    {
+      aStarts[aChannel] = Arrays.copyOf( aStarts[aChannel], 2 * count );
+      aEnds[aChannel] = Arrays.copyOf( aEnds[aChannel], 2 * count );
+    }
+    aStarts[aChannel][count] = aStartTimestamp;
+    aEnds[aChannel][count] = aEndTimestamp;
+    aCounts[aChannel] = count + 1;
+  }
+
+  /**
+   * Scans all given channels for glitches, in parallel chunks.
+   */
+  private static GlitchIndex scanAll( final int[] aValues, final long[] aTimestamps, final int aMask,
+      final long aMaxWidth, final ExecutorService aExecutor ) throws InterruptedException
+  {
+    final int length = aValues.length;
+    final int chunkCount = Math.max( 1,
+        Math.min( 4 * Runtime.getRuntime().availableProcessors(), length / MIN_CHUNK_SIZE ) );
+    final int chunkSize = Math.max( 1, ( length + chunkCount - 1 ) / chunkCount );
+
+    final List<Future<ChunkResult>> chunks = new ArrayList<Future<ChunkResult>>( chunkCount );
+    try
+    {
+      for ( int from = 0; from < length; from += chunkSize )
+      {
+        final int chunkStart = from;
+        final int chunkEnd = Math.min( length, from + chunkSize );
+
+        chunks.add( aExecutor.submit( new Callable<ChunkResult>()
+        {
+          @Override
+          public ChunkResult call() throws Exception
+          {
+            return scan( aValues, aTimestamps, aMask, aMaxWidth, chunkStart, chunkEnd );
+          }
+        } ) );
+      }
+
+      final long[][] starts = new long[Channel.MAX_CHANNELS][];
+      final long[][] ends = new long[Channel.MAX_CHANNELS][];
+      final int[] counts = new int[Channel.MAX_CHANNELS];
+      // The last edge seen in any of the preceding chunks, per channel...
+      final int[] lastEdges = new int[Channel.MAX_CHANNELS];
+      Arrays.fill( lastEdges, -1 );
+
+      for ( Future<ChunkResult> chunk : chunks )
+      {
+        final ChunkResult chunkResult = chunk.get();
+
+        for ( int bit = 0; bit < Channel.MAX_CHANNELS; bit++ )
+        {
+          final int firstEdge = chunkResult.firstEdges[bit];
+          if ( firstEdge < 0 )
+          {
+            continue;
+          }
+
+          // The pulse crossing the chunk boundary...
+          final int lastEdge = lastEdges[bit];
+          if ( ( lastEdge >= 0 ) && ( ( aTimestamps[firstEdge] - aTimestamps[lastEdge] ) < aMaxWidth ) )
+          {
+            add( starts, ends, counts, bit, aTimestamps[lastEdge], aTimestamps[firstEdge] );
+          }
+
+          final int[] glitches = chunkResult.glitches[bit];
+          for ( int i = 0; i < chunkResult.glitchCounts[bit]; i += 2 )
+          {
+            add( starts, ends, counts, bit, aTimestamps[glitches[i]], aTimestamps[glitches[i + 1]] );
+          }
+
+          lastEdges[bit] = chunkResult.lastEdges[bit];
+        }
+      }
+
+      for ( int bit = 0; bit < Channel.MAX_CHANNELS; bit++ )
+      {
+        if ( starts[bit] != null )
+        {
+          starts[bit] = Arrays.copyOf( starts[bit], counts[bit] );
+          ends[bit] = Arrays.copyOf( ends[bit], counts[bit] );
+        }
+      }
+
+      return GlitchIndex.create( starts, ends );
+    }
+    catch ( ExecutionException exception )
+    {
+      throw new RuntimeException( "Failed to detect glitches!", exception.getCause() );
+    }
+    finally
+    {
+      // Make sure no chunk keeps being scanned when we're interrupted...
+      for ( Future<ChunkResult> chunk : chunks )
+      {
+        chunk.cancel( true );
+      }
+    }
+  }
+}
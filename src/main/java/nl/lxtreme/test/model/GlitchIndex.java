@@ -0,0 +1,325 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+import java.util.*;
+
+
+/**
+ * Provides a sorted index of glitches, as found by {@link GlitchDetector}.
+ * <p>
+ * Glitches are sorted by their start timestamp, allowing the next or previous
+ * glitch relative to any timestamp to be found using a binary search.
+ * </p>
+ */
+public final class GlitchIndex
+{
+  // VARIABLES
+
+  private final int[] channels;
+  private final long[] startTimestamps;
+  private final long[] endTimestamps;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new GlitchIndex instance.
+   */
+  private GlitchIndex( final int[] aChannels, final long[] aStartTimestamps, final long[] aEndTimestamps )
+  {
+    this.channels = aChannels;
+    this.startTimestamps = aStartTimestamps;
+    this.endTimestamps = aEndTimestamps;
+  }
+
+  // METHODS
+
+  /**
+   * Returns the index of the first glitch that starts after the given
+   * timestamp.
+   * 
+   * @param aTimestamp
+   *          the timestamp to search from.
+   * @return the index of the next glitch, or -1 if there is no next glitch.
+   */
+  public int findNext( final long aTimestamp )
+  {
+    int low = 0;
+    int high = this.startTimestamps.length;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( this.startTimestamps[mid] <= aTimestamp )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return ( low < this.startTimestamps.length ) ? low : -1;
+  }
+
+  /**
+   * Returns the index of the last glitch that starts before the given
+   * timestamp.
+   * 
+   * @param aTimestamp
+   *          the timestamp to search from.
+   * @return the index of the previous glitch, or -1 if there is no previous
+   *         glitch.
+   */
+  public int findPrevious( final long aTimestamp )
+  {
+    int low = 0;
+    int high = this.startTimestamps.length;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( this.startTimestamps[mid] < aTimestamp )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return low - 1;
+  }
+
+  /**
+   * Returns all glitches as annotations.
+   * 
+   * @param aLabel
+   *          the label to use for the annotations, cannot be <code>null</code>.
+   * @return a list of annotations, never <code>null</code>.
+   */
+  public List<Annotation<?>> getAnnotations( final String aLabel )
+  {
+    final List<Annotation<?>> result = new ArrayList<Annotation<?>>( size() );
+    for ( int i = 0; i < size(); i++ )
+    {
+      result.add( new SimpleAnnotation( this.channels[i], aLabel, this.startTimestamps[i], this.endTimestamps[i] ) );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the channel of the glitch with the given index.
+   * 
+   * @param aIndex
+   *          the index of the glitch, >= 0 && < {@link #size()}.
+   * @return a channel index.
+   */
+  public int getChannel( final int aIndex )
+  {
+    return this.channels[aIndex];
+  }
+
+  /**
+   * Returns the end timestamp of the glitch with the given index.
+   * 
+   * @param aIndex
+   *          the index of the glitch, >= 0 && < {@link #size()}.
+   * @return a timestamp.
+   */
+  public long getEndTimestamp( final int aIndex )
+  {
+    return this.endTimestamps[aIndex];
+  }
+
+  /**
+   * Returns the start timestamp of the glitch with the given index.
+   * 
+   * @param aIndex
+   *          the index of the glitch, >= 0 && < {@link #size()}.
+   * @return a timestamp.
+   */
+  public long getStartTimestamp( final int aIndex )
+  {
+    return this.startTimestamps[aIndex];
+  }
+
+  /**
+   * Returns the number of glitches in this index.
+   * 
+   * @return a glitch count, >= 0.
+   */
+  public int size()
+  {
+    return this.startTimestamps.length;
+  }
+
+  /**
+   * Creates a new glitch index from the given glitches, for example, as read
+   * from a file.
+   * 
+   * @param aChannels
+   *          the channel of each glitch, cannot be <code>null</code>;
+   * @param aStartTimestamps
+   *          the start timestamp of each glitch, in ascending order, cannot be
+   *          <code>null</code>;
+   * @param aEndTimestamps
+   *          the end timestamp of each glitch, cannot be <code>null</code>.
+   * @return a new glitch index, never <code>null</code>.
+   */
+  public static GlitchIndex valueOf( final int[] aChannels, final long[] aStartTimestamps,
+      final long[] aEndTimestamps )
+  {
+    if ( ( aChannels == null ) || ( aStartTimestamps == null ) || ( aEndTimestamps == null ) )
+    {
+      throw new IllegalArgumentException( "Glitches cannot be null!" );
+    }
+    if ( ( aChannels.length != aStartTimestamps.length ) || ( aChannels.length != aEndTimestamps.length ) )
+    {
+      throw new IllegalArgumentException( "Glitch arrays should have the same length!" );
+    }
+    return new GlitchIndex( aChannels.clone(), aStartTimestamps.clone(), aEndTimestamps.clone() );
+  }
+
+  /**
+   * Creates a new glitch index from the glitches of the individual channels.
+   * 
+   * @param aStartTimestamps
+   *          the start timestamps of the glitches, indexed by channel, each
+   *          sorted in ascending order. A <code>null</code> value denotes a
+   *          channel without glitches;
+   * @param aEndTimestamps
+   *          the end timestamps of the glitches, indexed by channel.
+   * @return a new glitch index, never <code>null</code>.
+   */
+  static GlitchIndex create( final long[][] aStartTimestamps, final long[][] aEndTimestamps )
+  {
+    int size = 0;
+    for ( long[] starts : aStartTimestamps )
+    {
+      size += ( starts == null ) ? 0 : starts.length;
+    }
+
+    final int[] channels = new int[size];
+    final long[] starts = new long[size];
+    final long[] ends = new long[size];
+
+    // Merge the (sorted) glitches of all channels...
+    final int[] heads = new int[aStartTimestamps.length];
+    for ( int i = 0; i < size; i++ )
+    {
+      int channel = -1;
+      for ( int c = 0; c < aStartTimestamps.length; c++ )
+      {
+        final long[] channelStarts = aStartTimestamps[c];
+        if ( ( channelStarts != null ) && ( heads[c] < channelStarts.length ) )
+        {
+          if ( ( channel < 0 ) || ( channelStarts[heads[c]] < aStartTimestamps[channel][heads[channel]] ) )
+          {
+            channel = c;
+          }
+        }
+      }
+
+      channels[i] = channel;
+      starts[i] = aStartTimestamps[channel][heads[channel]];
+      ends[i] = aEndTimestamps[channel][heads[channel]];
+      heads[channel]++;
+    }
+
+    return new GlitchIndex( channels, starts, ends );
+  }
+
+  /**
+   * Merges two glitch indexes, for example, of different channels.
+   * 
+   * @param aFirst
+   *          the first index to merge, cannot be <code>null</code>;
+   * @param aSecond
+   *          the second index to merge, cannot be <code>null</code>.
+   * @return a new glitch index with the glitches of both indexes, never
+   *         <code>null</code>.
+   */
+  static GlitchIndex merge( final GlitchIndex aFirst, final GlitchIndex aSecond )
+  {
+    final int size = aFirst.size() + aSecond.size();
+
+    final int[] channels = new int[size];
+    final long[] starts = new long[size];
+    final long[] ends = new long[size];
+
+    int i = 0;
+    int j = 0;
+    for ( int k = 0; k < size; k++ )
+    {
+      final GlitchIndex source;
+      final int idx;
+      if ( ( j >= aSecond.size() )
+          || ( ( i < aFirst.size() ) && ( aFirst.startTimestamps[i] <= aSecond.startTimestamps[j] ) ) )
+      {
+        source = aFirst;
+        idx = i++;
+      }
+      else
+      {
+        source = aSecond;
+        idx = j++;
+      }
+
+      channels[k] = source.channels[idx];
+      starts[k] = source.startTimestamps[idx];
+      ends[k] = source.endTimestamps[idx];
+    }
+
+    return new GlitchIndex( channels, starts, ends );
+  }
+
+  /**
+   * Returns a new index with only those glitches on the given channels that
+   * are shorter than the given width.
+   * 
+   * @param aMask
+   *          the mask of the channels to retain;
+   * @param aMaxWidth
+   *          the (exclusive) maximum width of the glitches to retain.
+   * @return a new glitch index, never <code>null</code>.
+   */
+  GlitchIndex filter( final int aMask, final long aMaxWidth )
+  {
+    final int[] channels = new int[size()];
+    final long[] starts = new long[size()];
+    final long[] ends = new long[size()];
+
+    int count = 0;
+    for ( int i = 0; i < size(); i++ )
+    {
+      if ( ( ( aMask & ( 1 << this.channels[i] ) ) != 0 )
+          && ( ( this.endTimestamps[i] - this.startTimestamps[i] ) < aMaxWidth ) )
+      {
+        channels[count] = this.channels[i];
+        starts[count] = this.startTimestamps[i];
+        ends[count] = this.endTimestamps[i];
+        count++;
+      }
+    }
+
+    return new GlitchIndex( Arrays.copyOf( channels, count ), Arrays.copyOf( starts, count ), Arrays.copyOf( ends,
+        count ) );
+  }
+}
@@ -0,0 +1,355 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+import nl.lxtreme.test.*;
+
+
+/**
+ * Provides a histogram of the pulse widths and periods of a single signal.
+ * <p>
+ * The histogram uses logarithmically spaced bins, {@link #BINS_PER_OCTAVE} per
+ * doubling of the width, so both very short glitches and very long pulses can
+ * be told apart without needing millions of bins.
+ * </p>
+ * <p>
+ * Only complete pulses, that is, pulses that start and end with an edge
+ * within the measured range, are counted.
+ * </p>
+ */
+public final class PulseHistogram
+{
+  // CONSTANTS
+
+  /** The number of bins per doubling of the pulse width. */
+  public static final int BINS_PER_OCTAVE = 4;
+  /** The total number of bins, enough for any (positive) width. */
+  public static final int BIN_COUNT = 64 * BINS_PER_OCTAVE;
+
+  /** The number of samples between two progress reports. */
+  private static final int PROGRESS_INTERVAL = 64 * 1024;
+
+  // VARIABLES
+
+  private final long[] highWidths;
+  private final long[] lowWidths;
+  private final long[] periods;
+  private final long minHighWidth;
+  private final long maxHighWidth;
+  private final long minLowWidth;
+  private final long maxLowWidth;
+  private final long minPeriod;
+  private final long maxPeriod;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new PulseHistogram instance.
+   */
+  private PulseHistogram( final long[] aHighWidths, final long[] aLowWidths, final long[] aPeriods,
+      final long[] aMinMax )
+  {
+    this.highWidths = aHighWidths;
+    this.lowWidths = aLowWidths;
+    this.periods = aPeriods;
+    this.minHighWidth = aMinMax[0];
+    this.maxHighWidth = aMinMax[1];
+    this.minLowWidth = aMinMax[2];
+    this.maxLowWidth = aMinMax[3];
+    this.minPeriod = aMinMax[4];
+    this.maxPeriod = aMinMax[5];
+  }
+
+  // METHODS
+
+  /**
+   * Calculates the histogram of the signal denoted by the given mask between
+   * the given sample indexes.
+   * 
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aMask
+   *          the mask of the signal to measure, should contain a single bit;
+   * @param aStartIdx
+   *          the index of the first sample to measure;
+   * @param aEndIdx
+   *          the index of the last sample to measure (inclusive);
+   * @param aListener
+   *          the listener to report the progress to, can be <code>null</code>.
+   * @return the histogram, never <code>null</code>.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted.
+   */
+  public static PulseHistogram compute( final int[] aValues, final long[] aTimestamps, final int aMask,
+      final int aStartIdx, final int aEndIdx, final IProgressListener aListener ) throws InterruptedException
+  {
+    final long[] highWidths = new long[BIN_COUNT];
+    final long[] lowWidths = new long[BIN_COUNT];
+    final long[] periods = new long[BIN_COUNT];
+    final long[] minMax = { Long.MAX_VALUE, 0L, Long.MAX_VALUE, 0L, Long.MAX_VALUE, 0L };
+
+    final int sampleCount = aEndIdx - aStartIdx;
+
+    long lastEdge = -1L;
+    long lastRisingEdge = -1L;
+    int previous = aValues[aStartIdx] & aMask;
+
+    for ( int i = aStartIdx + 1; i <= aEndIdx; i++ )
+    {
+      final int current = aValues[i] & aMask;
+      if ( current != previous )
+      {
+        final long timestamp = aTimestamps[i];
+        final boolean rising = current != 0;
+
+        if ( lastEdge >= 0L )
+        {
+          final long width = timestamp - lastEdge;
+          if ( rising )
+          {
+            add( lowWidths, minMax, 2, width );
+          }
+          else
+          {
+            add( highWidths, minMax, 0, width );
+          }
+        }
+        if ( rising )
+        {
+          if ( lastRisingEdge >= 0L )
+          {
+            add( periods, minMax, 4, timestamp - lastRisingEdge );
+          }
+          lastRisingEdge = timestamp;
+        }
+
+        lastEdge = timestamp;
+        previous = current;
+      }
+
+      if ( ( ( i - aStartIdx ) % PROGRESS_INTERVAL ) == 0 )
+      {
+        if ( Thread.interrupted() )
+        {
+          throw new InterruptedException();
+        }
+        if ( aListener != null )
+        {
+          aListener.progressChanged( ( int )( ( 100L * ( i - aStartIdx ) ) / sampleCount ) );
+        }
+      }
+    }
+
+    if ( aListener != null )
+    {
+      aListener.progressChanged( 100 );
+    }
+
+    return new PulseHistogram( highWidths, lowWidths, periods, minMax );
+  }
+
+  /**
+   * Returns the bin for the given width.
+   * 
+   * @param aWidth
+   *          the width to get the bin for, > 0.
+   * @return a bin index, 0..{@link #BIN_COUNT}.
+   */
+  public static int getBin( final long aWidth )
+  {
+    if ( aWidth <= 0L )
+    {
+      return 0;
+    }
+
+    // Use the bits directly following the most significant bit to select the
+    // bin within an octave...
+    final int octave = 63 - Long.numberOfLeadingZeros( aWidth );
+    final int shift = octave - 2;
+    final long fraction = ( shift >= 0 ) ? ( aWidth >>> shift ) : ( aWidth << -shift );
+    return ( octave * BINS_PER_OCTAVE ) + ( int )( fraction & 3 );
+  }
+
+  /**
+   * Returns the smallest width that is counted in the given bin.
+   * 
+   * @param aBin
+   *          the bin index, 0..{@link #BIN_COUNT}.
+   * @return a width, in timestamp units.
+   */
+  public static long getBinLowerBound( final int aBin )
+  {
+    final int octave = aBin / BINS_PER_OCTAVE;
+    final long mantissa = 4 | ( aBin % BINS_PER_OCTAVE );
+    final int shift = octave - 2;
+    return ( shift >= 0 ) ? ( mantissa << shift ) : ( mantissa >>> -shift );
+  }
+
+  /**
+   * Returns the smallest width that is <em>no longer</em> counted in the given
+   * bin.
+   * 
+   * @param aBin
+   *          the bin index, 0..{@link #BIN_COUNT}.
+   * @return a width, in timestamp units.
+   */
+  public static long getBinUpperBound( final int aBin )
+  {
+    final long lowerBound = getBinLowerBound( aBin );
+    // The bins of the first octaves are (partially) empty, skip those...
+    for ( int bin = aBin + 1; bin < BIN_COUNT; bin++ )
+    {
+      final long result = getBinLowerBound( bin );
+      if ( result > lowerBound )
+      {
+        return result;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns the number of high pulses in the given bin.
+   * 
+   * @param aBin
+   *          the bin index, 0..{@link #BIN_COUNT}.
+   * @return a pulse count, >= 0.
+   */
+  public long getHighWidthCount( final int aBin )
+  {
+    return this.highWidths[aBin];
+  }
+
+  /**
+   * Returns the number of low pulses in the given bin.
+   * 
+   * @param aBin
+   *          the bin index, 0..{@link #BIN_COUNT}.
+   * @return a pulse count, >= 0.
+   */
+  public long getLowWidthCount( final int aBin )
+  {
+    return this.lowWidths[aBin];
+  }
+
+  /**
+   * Returns the width of the longest high pulse.
+   * 
+   * @return a width, in timestamp units, or 0 if there are no high pulses.
+   */
+  public long getMaxHighWidth()
+  {
+    return this.maxHighWidth;
+  }
+
+  /**
+   * Returns the width of the longest low pulse.
+   * 
+   * @return a width, in timestamp units, or 0 if there are no low pulses.
+   */
+  public long getMaxLowWidth()
+  {
+    return this.maxLowWidth;
+  }
+
+  /**
+   * Returns the longest period.
+   * 
+   * @return a period, in timestamp units, or 0 if there are no periods.
+   */
+  public long getMaxPeriod()
+  {
+    return this.maxPeriod;
+  }
+
+  /**
+   * Returns the width of the shortest high pulse.
+   * 
+   * @return a width, in timestamp units, or {@link Long#MAX_VALUE} if there are
+   *         no high pulses.
+   */
+  public long getMinHighWidth()
+  {
+    return this.minHighWidth;
+  }
+
+  /**
+   * Returns the width of the shortest low pulse.
+   * 
+   * @return a width, in timestamp units, or {@link Long#MAX_VALUE} if there are
+   *         no low pulses.
+   */
+  public long getMinLowWidth()
+  {
+    return this.minLowWidth;
+  }
+
+  /**
+   * Returns the shortest period.
+   * 
+   * @return a period, in timestamp units, or {@link Long#MAX_VALUE} if there are
+   *         no periods.
+   */
+  public long getMinPeriod()
+  {
+    return this.minPeriod;
+  }
+
+  /**
+   * Returns the number of periods in the given bin.
+   * 
+   * @param aBin
+   *          the bin index, 0..{@link #BIN_COUNT}.
+   * @return a period count, >= 0.
+   */
+  public long getPeriodCount( final int aBin )
+  {
+    return this.periods[aBin];
+  }
+
+  /**
+   * Returns the total number of complete (high and low) pulses.
+   * 
+   * @return a pulse count, >= 0.
+   */
+  public long getPulseCount()
+  {
+    long result = 0L;
+    for ( int i = 0; i < BIN_COUNT; i++ )
+    {
+      result += this.highWidths[i] + this.lowWidths[i];
+    }
+    return result;
+  }
+
+  /**
+   * Adds the given width to the given bins, and updates its minimum and
+   * maximum.
+   */
+  private static void add( final long[] aBins, final long[] aMinMax, final int aMinMaxIdx, final long aWidth )
+  {
+    aBins[getBin( aWidth )]++;
+    aMinMax[aMinMaxIdx] = Math.min( aMinMax[aMinMaxIdx], aWidth );
+    aMinMax[aMinMaxIdx + 1] = Math.max( aMinMax[aMinMaxIdx + 1], aWidth );
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+import java.util.*;
+
+import nl.lxtreme.test.*;
+import nl.lxtreme.test.util.*;
+
+
+/**
+ * Provides a cache for pulse histograms, so that the histogram of a signal is
+ * only calculated once for the same sample data and range.
+ * <p>
+ * The cache is reset automatically when it is used for different sample data.
+ * Its histograms are accounted for by the default {@link MemoryBudget}, and
+ * evicted when memory is tight.
+ * </p>
+ */
+public final class PulseHistogramCache implements IMemoryConsumer
+{
+  // INNER TYPES
+
+  /**
+   * Provides the key of a cached histogram.
+   */
+  static final class Key
+  {
+    // VARIABLES
+
+    private final int mask;
+    private final int startIdx;
+    private final int endIdx;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new Key instance.
+     */
+    Key( final int aMask, final int aStartIdx, final int aEndIdx )
+    {
+      this.mask = aMask;
+      this.startIdx = aStartIdx;
+      this.endIdx = aEndIdx;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals( final Object aObject )
+    {
+      if ( this == aObject )
+      {
+        return true;
+      }
+      if ( !( aObject instanceof Key ) )
+      {
+        return false;
+      }
+
+      final Key other = ( Key )aObject;
+      return ( this.mask == other.mask ) && ( this.startIdx == other.startIdx ) && ( this.endIdx == other.endIdx );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+      return ( ( ( 31 * this.mask ) + this.startIdx ) * 31 ) + this.endIdx;
+    }
+  }
+
+  // CONSTANTS
+
+  /** The (approximate) size of a single histogram, in bytes. */
+  static final long HISTOGRAM_SIZE = 3L * 8L * PulseHistogram.BIN_COUNT;
+
+  // VARIABLES
+
+  private int[] values;
+  private final Map<Key, PulseHistogram> histograms = new HashMap<Key, PulseHistogram>();
+  private final MemoryBudget.Account account;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new PulseHistogramCache instance.
+   */
+  public PulseHistogramCache()
+  {
+    this.account = MemoryBudget.getDefault().register( "Pulse histograms", 8 /* aWeight */, this );
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void evict( final Object aKey )
+  {
+    synchronized ( this )
+    {
+      this.histograms.remove( aKey );
+    }
+  }
+
+  /**
+   * Returns the histogram of the signal denoted by the given mask between the
+   * given sample indexes, calculating it only if it is not yet cached.
+   * 
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aMask
+   *          the mask of the signal to measure, should contain a single bit;
+   * @param aStartIdx
+   *          the index of the first sample to measure;
+   * @param aEndIdx
+   *          the index of the last sample to measure (inclusive);
+   * @param aListener
+   *          the listener to report the progress to, can be <code>null</code>.
+   * @return the histogram, never <code>null</code>.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted.
+   * @see PulseHistogram#compute(int[], long[], int, int, int, IProgressListener)
+   */
+  public PulseHistogram getHistogram( final int[] aValues, final long[] aTimestamps, final int aMask,
+      final int aStartIdx, final int aEndIdx, final IProgressListener aListener ) throws InterruptedException
+  {
+    final Key key = new Key( aMask, aStartIdx, aEndIdx );
+
+    final PulseHistogram cached;
+    boolean reset = false;
+    synchronized ( this )
+    {
+      if ( this.values != aValues )
+      {
+        this.values = aValues;
+        this.histograms.clear();
+        reset = true;
+      }
+
+      cached = this.histograms.get( key );
+    }
+
+    // Do not hold the lock while using the memory budget...
+    if ( reset )
+    {
+      this.account.releaseAll();
+    }
+    if ( cached != null )
+    {
+      this.account.touch( key );
+      if ( aListener != null )
+      {
+        aListener.progressChanged( 100 );
+      }
+      return cached;
+    }
+
+    // Do not hold the lock while calculating; this can take a while...
+    final PulseHistogram result = PulseHistogram.compute( aValues, aTimestamps, aMask, aStartIdx, aEndIdx,
+        aListener );
+
+    boolean added = false;
+    synchronized ( this )
+    {
+      if ( this.values == aValues )
+      {
+        this.histograms.put( key, result );
+        added = true;
+      }
+    }
+
+    if ( added )
+    {
+      this.account.allocate( key, HISTOGRAM_SIZE );
+    }
+
+    return result;
+  }
+}
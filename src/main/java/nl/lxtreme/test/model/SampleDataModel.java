@@ -51,6 +51,42 @@ public class SampleDataModel
     this.cursors = Cursor.createCursors();
   }
 
+  /**
+   * Creates a new SampleDataModel instance for the given (imported) sample
+   * data, taking ownership of the given arrays.
+   * 
+   * @param aValues
+   *          the sample values, cannot be <code>null</code>;
+   * @param aTimestamps
+   *          the sample timestamps, cannot be <code>null</code> and should
+   *          have the same length as the values;
+   * @param aSampleRate
+   *          the sample rate, in Hertz.
+   * @throws IllegalArgumentException
+   *           in case the given arrays were <code>null</code>, empty or
+   *           differed in length.
+   */
+  public SampleDataModel( final int[] aValues, final long[] aTimestamps, final int aSampleRate )
+  {
+    if ( ( aValues == null ) || ( aTimestamps == null ) )
+    {
+      throw new IllegalArgumentException( "Values and timestamps cannot be null!" );
+    }
+    if ( ( aValues.length == 0 ) || ( aValues.length != aTimestamps.length ) )
+    {
+      throw new IllegalArgumentException( "Values and timestamps should be non-empty and of equal length!" );
+    }
+    this.values = aValues;
+    this.timestamps = aTimestamps;
+    this.sampleRate = aSampleRate;
+
+    this.cursors = new Cursor[Cursor.MAX_CURSORS];
+    for ( int i = 0; i < this.cursors.length; i++ )
+    {
+      this.cursors[i] = new Cursor( i );
+    }
+  }
+
   // METHODS
 
   /**
@@ -0,0 +1,224 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Searches sample data for all samples matching a {@link SearchCondition}.
+ * <p>
+ * The sample data is split into chunks that are searched in parallel. The
+ * results are returned as a {@link SearchResult} directly after the search is
+ * started, and can be consumed page by page while the remaining chunks are
+ * still being searched. Only the number of matches per block of samples is
+ * retained; the matches themselves are resolved on demand by searching the
+ * blocks of the requested page again.
+ * </p>
+ */
+public final class SampleSearcher
+{
+  // CONSTANTS
+
+  /** The number of samples for which the matches are counted. */
+  static final int BLOCK_SIZE = 64 * 1024;
+  /** The minimal number of samples to search in a single chunk. */
+  static final int MIN_CHUNK_SIZE = 4 * BLOCK_SIZE;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SampleSearcher instance, never used.
+   */
+  private SampleSearcher()
+  {
+    // NO-op
+  }
+
+  // METHODS
+
+  /**
+   * Starts searching the given sample data for all samples matching the given
+   * condition.
+   * 
+   * @param aValues
+   *          the sample values to search;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aCondition
+   *          the search condition to match, cannot be <code>null</code>;
+   * @param aExecutor
+   *          the executor to search the individual chunks with, cannot be
+   *          <code>null</code>.
+   * @return the (pending) search result, never <code>null</code>.
+   * @throws IllegalArgumentException
+   *           in case the given condition was <code>null</code>.
+   */
+  public static SearchResult search( final int[] aValues, final long[] aTimestamps, final SearchCondition aCondition,
+      final ExecutorService aExecutor )
+  {
+    if ( aCondition == null )
+    {
+      throw new IllegalArgumentException( "Condition cannot be null!" );
+    }
+
+    final int length = aValues.length;
+    final int chunkCount = Math.max( 1,
+        Math.min( 4 * Runtime.getRuntime().availableProcessors(), length / MIN_CHUNK_SIZE ) );
+    // Chunks always consist of whole blocks...
+    final int samplesPerChunk = ( length + chunkCount - 1 ) / chunkCount;
+    final int blocksPerChunk = Math.max( 1, ( samplesPerChunk + BLOCK_SIZE - 1 ) / BLOCK_SIZE );
+    final int chunkSize = blocksPerChunk * BLOCK_SIZE;
+
+    final List<Future<int[]>> chunks = new ArrayList<Future<int[]>>( chunkCount );
+    for ( int from = 0; from < length; from += chunkSize )
+    {
+      final int chunkStart = from;
+      final int chunkEnd = ( int )Math.min( length, ( long )from + chunkSize );
+
+      chunks.add( aExecutor.submit( new Callable<int[]>()
+      {
+        @Override
+        public int[] call() throws Exception
+        {
+          return countMatches( aValues, aCondition, chunkStart, chunkEnd );
+        }
+      } ) );
+    }
+
+    return new SearchResult( aValues, aTimestamps, aCondition, blocksPerChunk, chunks );
+  }
+
+  /**
+   * Counts the matching samples in each block of the given range of sample
+   * values.
+   * 
+   * @param aValues
+   *          the sample values to search;
+   * @param aCondition
+   *          the search condition to match;
+   * @param aStartIdx
+   *          the index of the first sample to search, should be the start of a
+   *          block;
+   * @param aEndIdx
+   *          the index of the last sample to search (exclusive).
+   * @return the number of matches for each block in the given range, never
+   *         <code>null</code>. In case the search is cancelled, the blocks that
+   *         are not searched are omitted.
+   */
+  static int[] countMatches( final int[] aValues, final SearchCondition aCondition, final int aStartIdx,
+      final int aEndIdx )
+  {
+    final int[] result = new int[( aEndIdx - aStartIdx + BLOCK_SIZE - 1 ) / BLOCK_SIZE];
+
+    int blockIdx = 0;
+    for ( int blockStart = aStartIdx; blockStart < aEndIdx; blockStart += BLOCK_SIZE, blockIdx++ )
+    {
+      if ( Thread.currentThread().isInterrupted() )
+      {
+        // Search is cancelled...
+        return Arrays.copyOf( result, blockIdx );
+      }
+
+      final int blockEnd = Math.min( aEndIdx, blockStart + BLOCK_SIZE );
+
+      int count = 0;
+      for ( int i = nextMatch( aValues, aCondition, blockStart, blockEnd ); i >= 0; i = nextMatch( aValues,
+          aCondition, i + 1, blockEnd ) )
+      {
+        count++;
+      }
+      result[blockIdx] = count;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the index of the first sample in the given range that matches the
+   * given condition.
+   * 
+   * @param aValues
+   *          the sample values to search;
+   * @param aCondition
+   *          the search condition to match;
+   * @param aStartIdx
+   *          the index of the first sample to search;
+   * @param aEndIdx
+   *          the index of the last sample to search (exclusive).
+   * @return the index of the first matching sample, or -1 if no sample
+   *         matches.
+   */
+  static int nextMatch( final int[] aValues, final SearchCondition aCondition, final int aStartIdx, final int aEndIdx )
+  {
+    int i = aStartIdx;
+    // The very first sample has no predecessor, and therefore no edges...
+    if ( ( i == 0 ) && aCondition.isEdgeCondition() )
+    {
+      i++;
+    }
+
+    int previous = aValues[Math.max( 0, i - 1 )];
+    for ( ; i < aEndIdx; i++ )
+    {
+      final int current = aValues[i];
+      if ( aCondition.matches( previous, current ) )
+      {
+        return i;
+      }
+      previous = current;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns the index of the last sample in the given range that matches the
+   * given condition.
+   * 
+   * @param aValues
+   *          the sample values to search;
+   * @param aCondition
+   *          the search condition to match;
+   * @param aStartIdx
+   *          the index of the first sample to search;
+   * @param aEndIdx
+   *          the index of the last sample to search (exclusive).
+   * @return the index of the last matching sample, or -1 if no sample matches.
+   */
+  static int previousMatch( final int[] aValues, final SearchCondition aCondition, final int aStartIdx,
+      final int aEndIdx )
+  {
+    // The very first sample has no predecessor, and therefore no edges...
+    final int startIdx = ( ( aStartIdx == 0 ) && aCondition.isEdgeCondition() ) ? 1 : aStartIdx;
+
+    for ( int i = aEndIdx - 1; i >= startIdx; i-- )
+    {
+      if ( aCondition.matches( aValues[Math.max( 0, i - 1 )], aValues[i] ) )
+      {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+/**
+ * Provides a search condition for sample data, much like the triggers of a
+ * logic analyzer.
+ * <p>
+ * A condition consists of a value/mask pair, which should match the sample
+ * value, and a set of channels that should have a rising or falling edge at
+ * that sample. All channels are tested at once, meaning that testing a sample
+ * takes a constant number of operations regardless of the number of channels.
+ * </p>
+ */
+public final class SearchCondition
+{
+  // VARIABLES
+
+  private final int mask;
+  private final int value;
+  private final int risingEdges;
+  private final int fallingEdges;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SearchCondition instance.
+   * 
+   * @param aMask
+   *          the mask of the channels whose value should match;
+   * @param aValue
+   *          the value the masked channels should have;
+   * @param aRisingEdges
+   *          the mask of the channels that should have a rising edge;
+   * @param aFallingEdges
+   *          the mask of the channels that should have a falling edge.
+   * @throws IllegalArgumentException
+   *           in case a channel should have both a rising and a falling edge.
+   */
+  public SearchCondition( final int aMask, final int aValue, final int aRisingEdges, final int aFallingEdges )
+  {
+    if ( ( aRisingEdges & aFallingEdges ) != 0 )
+    {
+      throw new IllegalArgumentException( "Channel cannot have both a rising and a falling edge!" );
+    }
+
+    this.mask = aMask;
+    this.value = aValue & aMask;
+    this.risingEdges = aRisingEdges;
+    this.fallingEdges = aFallingEdges;
+  }
+
+  // METHODS
+
+  /**
+   * Creates a search condition that matches the given edges.
+   * 
+   * @param aRisingEdges
+   *          the mask of the channels that should have a rising edge;
+   * @param aFallingEdges
+   *          the mask of the channels that should have a falling edge.
+   * @return a new search condition, never <code>null</code>.
+   */
+  public static SearchCondition createEdgeCondition( final int aRisingEdges, final int aFallingEdges )
+  {
+    return new SearchCondition( 0, 0, aRisingEdges, aFallingEdges );
+  }
+
+  /**
+   * Creates a search condition that matches the given value/mask.
+   * 
+   * @param aMask
+   *          the mask of the channels whose value should match;
+   * @param aValue
+   *          the value the masked channels should have.
+   * @return a new search condition, never <code>null</code>.
+   */
+  public static SearchCondition createValueCondition( final int aMask, final int aValue )
+  {
+    return new SearchCondition( aMask, aValue, 0, 0 );
+  }
+
+  /**
+   * Returns the mask of the channels that should have a falling edge.
+   * 
+   * @return a channel mask.
+   */
+  public int getFallingEdges()
+  {
+    return this.fallingEdges;
+  }
+
+  /**
+   * Returns the mask of the channels whose value should match.
+   * 
+   * @return a channel mask.
+   */
+  public int getMask()
+  {
+    return this.mask;
+  }
+
+  /**
+   * Returns the mask of the channels that should have a rising edge.
+   * 
+   * @return a channel mask.
+   */
+  public int getRisingEdges()
+  {
+    return this.risingEdges;
+  }
+
+  /**
+   * Returns the value the masked channels should have.
+   * 
+   * @return a value.
+   */
+  public int getValue()
+  {
+    return this.value;
+  }
+
+  /**
+   * Returns whether or not this condition tests for any edges.
+   * 
+   * @return <code>true</code> if this condition requires edges on one or more
+   *         channels, <code>false</code> otherwise.
+   */
+  public boolean isEdgeCondition()
+  {
+    return ( this.risingEdges | this.fallingEdges ) != 0;
+  }
+
+  /**
+   * Returns whether the given sample, and its preceding sample, match this
+   * condition.
+   * 
+   * @param aPrevious
+   *          the value of the previous sample;
+   * @param aCurrent
+   *          the value of the sample to test.
+   * @return <code>true</code> if the given sample matches this condition,
+   *         <code>false</code> otherwise.
+   */
+  public boolean matches( final int aPrevious, final int aCurrent )
+  {
+    // All channels are tested at once: any bit set denotes a mismatch...
+    final int mismatch = ( ( aCurrent & this.mask ) ^ this.value ) //
+        | ( ( aPrevious | ~aCurrent ) & this.risingEdges ) //
+        | ( ( ~aPrevious | aCurrent ) & this.fallingEdges );
+    return mismatch == 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return String.format( "mask=%08x, value=%08x, rising=%08x, falling=%08x", Integer.valueOf( this.mask ),
+        Integer.valueOf( this.value ), Integer.valueOf( this.risingEdges ), Integer.valueOf( this.fallingEdges ) );
+  }
+}
@@ -0,0 +1,455 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Provides the (lazily paged) result of a search started by
+ * {@link SampleSearcher}.
+ * <p>
+ * The result consists of a number of chunks that are searched in parallel.
+ * Each chunk only yields the number of matches per block of samples, so the
+ * memory used does not depend on the number of matches. Accessing a page of
+ * matches only waits for the chunks that contribute to that page, and
+ * resolves the matches of that page by searching the involved blocks again.
+ * </p>
+ */
+public final class SearchResult
+{
+  // CONSTANTS
+
+  /** The number of matches per page. */
+  public static final int PAGE_SIZE = 1000;
+
+  // VARIABLES
+
+  private final int[] values;
+  private final long[] timestamps;
+  private final SearchCondition condition;
+  private final int blocksPerChunk;
+  private final int blockCount;
+  private final List<Future<int[]>> chunks;
+  /** the match counts of the chunks that are already completed, lazily filled. */
+  private final int[][] completedChunks;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SearchResult instance.
+   * 
+   * @param aValues
+   *          the searched sample values;
+   * @param aTimestamps
+   *          the timestamps of the searched samples;
+   * @param aCondition
+   *          the condition that is searched for;
+   * @param aBlocksPerChunk
+   *          the number of blocks in each chunk;
+   * @param aChunks
+   *          the (pending) match counts per block of all chunks, in order.
+   */
+  SearchResult( final int[] aValues, final long[] aTimestamps, final SearchCondition aCondition,
+      final int aBlocksPerChunk, final List<Future<int[]>> aChunks )
+  {
+    this.values = aValues;
+    this.timestamps = aTimestamps;
+    this.condition = aCondition;
+    this.blocksPerChunk = aBlocksPerChunk;
+    this.blockCount = ( aValues.length + SampleSearcher.BLOCK_SIZE - 1 ) / SampleSearcher.BLOCK_SIZE;
+    this.chunks = aChunks;
+    this.completedChunks = new int[aChunks.size()][];
+  }
+
+  // METHODS
+
+  /**
+   * Cancels this search, if it is still running.
+   */
+  public void cancel()
+  {
+    for ( Future<int[]> chunk : this.chunks )
+    {
+      chunk.cancel( true /* mayInterruptIfRunning */);
+    }
+  }
+
+  /**
+   * Returns the timestamp of the first match after the given timestamp.
+   * <p>
+   * This method only waits for the chunks that are needed to find the next
+   * match.
+   * </p>
+   * 
+   * @param aTimestamp
+   *          the timestamp to search from.
+   * @return the timestamp of the next match, or -1L if there is no next match.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           search to complete.
+   */
+  public long findNext( final long aTimestamp ) throws InterruptedException
+  {
+    // The first sample *after* the given timestamp...
+    final int sampleIdx = upperBound( this.timestamps, aTimestamp );
+
+    for ( int blockIdx = sampleIdx / SampleSearcher.BLOCK_SIZE; blockIdx < this.blockCount; blockIdx++ )
+    {
+      if ( getMatchCount( blockIdx ) == 0 )
+      {
+        continue;
+      }
+
+      final int idx = SampleSearcher.nextMatch( this.values, this.condition,
+          Math.max( sampleIdx, getBlockStart( blockIdx ) ), getBlockEnd( blockIdx ) );
+      if ( idx >= 0 )
+      {
+        return this.timestamps[idx];
+      }
+    }
+
+    return -1L;
+  }
+
+  /**
+   * Returns the timestamp of the last match before the given timestamp.
+   * <p>
+   * This method only waits for the chunks that are needed to find the
+   * previous match.
+   * </p>
+   * 
+   * @param aTimestamp
+   *          the timestamp to search from.
+   * @return the timestamp of the previous match, or -1L if there is no
+   *         previous match.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           search to complete.
+   */
+  public long findPrevious( final long aTimestamp ) throws InterruptedException
+  {
+    // The first sample at or after the given timestamp...
+    final int sampleIdx = lowerBound( this.timestamps, aTimestamp );
+
+    final int firstBlockIdx = Math.min( this.blockCount - 1, sampleIdx / SampleSearcher.BLOCK_SIZE );
+    for ( int blockIdx = firstBlockIdx; blockIdx >= 0; blockIdx-- )
+    {
+      if ( getMatchCount( blockIdx ) == 0 )
+      {
+        continue;
+      }
+
+      final int idx = SampleSearcher.previousMatch( this.values, this.condition, getBlockStart( blockIdx ),
+          Math.min( sampleIdx, getBlockEnd( blockIdx ) ) );
+      if ( idx >= 0 )
+      {
+        return this.timestamps[idx];
+      }
+    }
+
+    return -1L;
+  }
+
+  /**
+   * Returns the matches of a given page as annotations.
+   * 
+   * @param aPageNo
+   *          the number of the page to return, >= 0;
+   * @param aChannel
+   *          the index of the channel to annotate;
+   * @param aLabel
+   *          the label to use for the annotations, cannot be <code>null</code>.
+   * @return a list of annotations, never <code>null</code>.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           search to complete.
+   */
+  public List<Annotation<?>> getAnnotations( final int aPageNo, final int aChannel, final String aLabel )
+      throws InterruptedException
+  {
+    final int[] sampleIndexes = getPageSampleIndexes( aPageNo );
+
+    final List<Annotation<?>> result = new ArrayList<Annotation<?>>( sampleIndexes.length );
+    for ( int sampleIdx : sampleIndexes )
+    {
+      final long startTime = this.timestamps[sampleIdx];
+      final long endTime = ( sampleIdx + 1 ) < this.timestamps.length ? this.timestamps[sampleIdx + 1]
+          : startTime + 1;
+
+      result.add( new SimpleAnnotation( aChannel, aLabel, startTime, endTime ) );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the total number of matches, waiting for the search to complete.
+   * 
+   * @return a match count, >= 0.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           search to complete.
+   */
+  public int getMatchCount() throws InterruptedException
+  {
+    int result = 0;
+    for ( int i = 0; i < this.blockCount; i++ )
+    {
+      result += getMatchCount( i );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the timestamps of all matches on the given page.
+   * 
+   * @param aPageNo
+   *          the number of the page to return, >= 0.
+   * @return the timestamps of the matches on the given page, in ascending
+   *         order. An empty array is returned in case the given page does not
+   *         exist.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           search to complete.
+   */
+  public long[] getPage( final int aPageNo ) throws InterruptedException
+  {
+    final int[] sampleIndexes = getPageSampleIndexes( aPageNo );
+
+    final long[] result = new long[sampleIndexes.length];
+    for ( int i = 0; i < result.length; i++ )
+    {
+      result[i] = this.timestamps[sampleIndexes[i]];
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of pages, waiting for the search to complete.
+   * 
+   * @return a page count, >= 0.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           search to complete.
+   */
+  public int getPageCount() throws InterruptedException
+  {
+    return ( getMatchCount() + PAGE_SIZE - 1 ) / PAGE_SIZE;
+  }
+
+  /**
+   * Returns whether or not this search is completed.
+   * 
+   * @return <code>true</code> if all chunks are searched, <code>false</code>
+   *         otherwise.
+   */
+  public boolean isDone()
+  {
+    for ( Future<int[]> chunk : this.chunks )
+    {
+      if ( !chunk.isDone() )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the first element in the given (sorted) array that is
+   * greater than or equal to the given key.
+   */
+  private static int lowerBound( final int[] aArray, final int aKey )
+  {
+    int low = 0;
+    int high = aArray.length;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( aArray[mid] < aKey )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the index of the first element in the given (sorted) array that is
+   * greater than or equal to the given key.
+   */
+  private static int lowerBound( final long[] aArray, final long aKey )
+  {
+    int low = 0;
+    int high = aArray.length;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( aArray[mid] < aKey )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the index of the first element in the given (sorted) array that is
+   * greater than the given key.
+   */
+  private static int upperBound( final long[] aArray, final long aKey )
+  {
+    int low = 0;
+    int high = aArray.length;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( aArray[mid] <= aKey )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the index of the first sample after the block with the given
+   * index.
+   */
+  private int getBlockEnd( final int aBlockIdx )
+  {
+    return ( int )Math.min( this.values.length, ( aBlockIdx + 1L ) * SampleSearcher.BLOCK_SIZE );
+  }
+
+  /**
+   * Returns the index of the first sample of the block with the given index.
+   */
+  private int getBlockStart( final int aBlockIdx )
+  {
+    return aBlockIdx * SampleSearcher.BLOCK_SIZE;
+  }
+
+  /**
+   * Returns the match counts per block of the chunk with the given index,
+   * waiting for it to complete if necessary.
+   */
+  private int[] getChunk( final int aChunkIdx ) throws InterruptedException
+  {
+    synchronized ( this.completedChunks )
+    {
+      if ( this.completedChunks[aChunkIdx] != null )
+      {
+        return this.completedChunks[aChunkIdx];
+      }
+    }
+
+    int[] result;
+    try
+    {
+      result = this.chunks.get( aChunkIdx ).get();
+    }
+    catch ( CancellationException exception )
+    {
+      // Search is cancelled; this chunk yields no results...
+      result = new int[0];
+    }
+    catch ( ExecutionException exception )
+    {
+      throw new RuntimeException( "Failed to search samples!", exception.getCause() );
+    }
+
+    synchronized ( this.completedChunks )
+    {
+      this.completedChunks[aChunkIdx] = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of matches in the block with the given index, waiting
+   * for its chunk to complete if necessary.
+   */
+  private int getMatchCount( final int aBlockIdx ) throws InterruptedException
+  {
+    final int[] counts = getChunk( aBlockIdx / this.blocksPerChunk );
+
+    final int idx = aBlockIdx % this.blocksPerChunk;
+    // A cancelled chunk does not yield the counts of all its blocks...
+    return ( idx < counts.length ) ? counts[idx] : 0;
+  }
+
+  /**
+   * Returns the sample indexes of all matches on a given page.
+   */
+  private int[] getPageSampleIndexes( final int aPageNo ) throws InterruptedException
+  {
+    if ( aPageNo < 0 )
+    {
+      throw new IllegalArgumentException( "Page number cannot be negative!" );
+    }
+
+    final int[] result = new int[PAGE_SIZE];
+    int count = 0;
+
+    long skip = ( long )aPageNo * PAGE_SIZE;
+    for ( int blockIdx = 0; ( blockIdx < this.blockCount ) && ( count < PAGE_SIZE ); blockIdx++ )
+    {
+      final int matchCount = getMatchCount( blockIdx );
+      if ( skip >= matchCount )
+      {
+        // This block lies completely before the requested page...
+        skip -= matchCount;
+        continue;
+      }
+
+      // Resolve the matches of this block...
+      final int blockEnd = getBlockEnd( blockIdx );
+      int idx = SampleSearcher.nextMatch( this.values, this.condition, getBlockStart( blockIdx ), blockEnd );
+      for ( int i = 0; ( idx >= 0 ) && ( i < matchCount ) && ( count < PAGE_SIZE ); i++ )
+      {
+        if ( skip > 0 )
+        {
+          skip--;
+        }
+        else
+        {
+          result[count++] = idx;
+        }
+        idx = SampleSearcher.nextMatch( this.values, this.condition, idx + 1, blockEnd );
+      }
+    }
+
+    return Arrays.copyOf( result, count );
+  }
+}
@@ -0,0 +1,601 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Provides the high/low period measurement of a single signal for a range of
+ * samples.
+ * <p>
+ * A measurement of a range of samples can be split into several consecutive
+ * sub-ranges, which can be measured independently (and in parallel) and
+ * combined afterwards. To allow this, each measurement keeps track of its
+ * boundary state, that is, the first and last transition it has seen. When
+ * combined, the period between the last transition of the first measurement
+ * and the first transition of the second measurement is accounted for.
+ * </p>
+ */
+public final class SignalMeasurement
+{
+  // CONSTANTS
+
+  /** The minimal number of samples to measure in a single chunk. */
+  static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+  // VARIABLES
+
+  private final long startTimestamp;
+  private final boolean hasTransitions;
+  private final long firstTransition;
+  private final boolean firstTransitionRising;
+  private final long lastTransition;
+  // The periods *between* the first and last transition...
+  private final int highCount;
+  private final long highTime;
+  private final int lowCount;
+  private final long lowTime;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SignalMeasurement instance.
+   */
+  private SignalMeasurement( final long aStartTimestamp, final boolean aHasTransitions, final long aFirstTransition,
+      final boolean aFirstTransitionRising, final long aLastTransition, final int aHighCount, final long aHighTime,
+      final int aLowCount, final long aLowTime )
+  {
+    this.startTimestamp = aStartTimestamp;
+    this.hasTransitions = aHasTransitions;
+    this.firstTransition = aFirstTransition;
+    this.firstTransitionRising = aFirstTransitionRising;
+    this.lastTransition = aLastTransition;
+    this.highCount = aHighCount;
+    this.highTime = aHighTime;
+    this.lowCount = aLowCount;
+    this.lowTime = aLowTime;
+  }
+
+  // METHODS
+
+  /**
+   * Combines two consecutive measurements into a single measurement.
+   * 
+   * @param aFirst
+   *          the first measurement, cannot be <code>null</code>;
+   * @param aSecond
+   *          the second measurement, which should start at the sample the first
+   *          measurement ended with, cannot be <code>null</code>.
+   * @return the combined measurement, never <code>null</code>.
+   */
+  public static SignalMeasurement combine( final SignalMeasurement aFirst, final SignalMeasurement aSecond )
+  {
+    if ( !aSecond.hasTransitions )
+    {
+      // Nothing changed in the second measurement...
+      return aFirst;
+    }
+    if ( !aFirst.hasTransitions )
+    {
+      // The first period of the second measurement starts at our start...
+      return new SignalMeasurement( aFirst.startTimestamp, true, aSecond.firstTransition,
+          aSecond.firstTransitionRising, aSecond.lastTransition, aSecond.highCount, aSecond.highTime,
+          aSecond.lowCount, aSecond.lowTime );
+    }
+
+    int highCount = aFirst.highCount + aSecond.highCount;
+    long highTime = aFirst.highTime + aSecond.highTime;
+    int lowCount = aFirst.lowCount + aSecond.lowCount;
+    long lowTime = aFirst.lowTime + aSecond.lowTime;
+
+    // Account for the period that spans both measurements...
+    final long periodTime = aSecond.firstTransition - aFirst.lastTransition;
+    if ( aSecond.firstTransitionRising )
+    {
+      lowCount++;
+      lowTime += periodTime;
+    }
+    else
+    {
+      highCount++;
+      highTime += periodTime;
+    }
+
+    return new SignalMeasurement( aFirst.startTimestamp, true, aFirst.firstTransition, aFirst.firstTransitionRising,
+        aSecond.lastTransition, highCount, highTime, lowCount, lowTime );
+  }
+
+  /**
+   * Measures the signal denoted by the given mask between the given sample
+   * indexes in the current thread.
+   * 
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aMask
+   *          the mask of the signal to measure;
+   * @param aStartIdx
+   *          the index of the first sample to measure;
+   * @param aEndIdx
+   *          the index of the last sample to measure (inclusive).
+   * @return the measurement, never <code>null</code>.
+   */
+  public static SignalMeasurement measure( final int[] aValues, final long[] aTimestamps, final int aMask,
+      final int aStartIdx, final int aEndIdx )
+  {
+    boolean hasTransitions = false;
+    long firstTransition = -1L;
+    boolean firstTransitionRising = false;
+
+    int highCount = 0;
+    long highTime = 0;
+    int lowCount = 0;
+    long lowTime = 0;
+
+    int i = aStartIdx;
+    long lastTransition = aTimestamps[i];
+    int lastBitValue = aValues[i++] & aMask;
+
+    for ( ; i <= aEndIdx; i++ )
+    {
+      final int bitValue = aValues[i] & aMask;
+
+      if ( lastBitValue != bitValue )
+      {
+        if ( !hasTransitions )
+        {
+          // The period before the first transition is accounted for when
+          // combining measurements...
+          hasTransitions = true;
+          firstTransition = aTimestamps[i];
+          firstTransitionRising = bitValue != 0;
+        }
+        else
+        {
+          final long periodTime = aTimestamps[i] - lastTransition;
+
+          if ( bitValue != 0 )
+          {
+            // Low to high transition: previously seen a low-state...
+            lowCount++;
+            lowTime += periodTime;
+          }
+          else
+          {
+            // High to low transition: previously seen a high-state...
+            highCount++;
+            highTime += periodTime;
+          }
+        }
+
+        lastTransition = aTimestamps[i];
+      }
+
+      lastBitValue = bitValue;
+    }
+
+    return new SignalMeasurement( aTimestamps[aStartIdx], hasTransitions, firstTransition, firstTransitionRising,
+        lastTransition, highCount, highTime, lowCount, lowTime );
+  }
+
+  /**
+   * Measures the signal denoted by the given mask between the given sample
+   * indexes by splitting the range into chunks that are measured in parallel
+   * using the given executor.
+   * 
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aMask
+   *          the mask of the signal to measure;
+   * @param aStartIdx
+   *          the index of the first sample to measure;
+   * @param aEndIdx
+   *          the index of the last sample to measure (inclusive);
+   * @param aExecutor
+   *          the executor to measure the individual chunks with, cannot be
+   *          <code>null</code>.
+   * @return the measurement, never <code>null</code>.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           chunks to be measured.
+   */
+  public static SignalMeasurement measure( final int[] aValues, final long[] aTimestamps, final int aMask,
+      final int aStartIdx, final int aEndIdx, final ExecutorService aExecutor ) throws InterruptedException
+  {
+    final int chunkSize = getChunkSize( aStartIdx, aEndIdx );
+    if ( chunkSize < 0 )
+    {
+      return measure( aValues, aTimestamps, aMask, aStartIdx, aEndIdx );
+    }
+
+    final List<Future<SignalMeasurement>> chunks = new ArrayList<Future<SignalMeasurement>>();
+    try
+    {
+      // Consecutive chunks share their boundary sample, so no transition is
+      // lost between them...
+      for ( int from = aStartIdx; from < aEndIdx; from += chunkSize )
+      {
+        final int chunkStart = from;
+        final int chunkEnd = Math.min( aEndIdx, from + chunkSize );
+
+        chunks.add( aExecutor.submit( new Callable<SignalMeasurement>()
+        {
+          @Override
+          public SignalMeasurement call() throws Exception
+          {
+            return measure( aValues, aTimestamps, aMask, chunkStart, chunkEnd );
+          }
+        } ) );
+      }
+
+      SignalMeasurement result = null;
+      for ( Future<SignalMeasurement> chunk : chunks )
+      {
+        final SignalMeasurement measurement = chunk.get();
+        result = ( result == null ) ? measurement : combine( result, measurement );
+      }
+      return result;
+    }
+    catch ( ExecutionException exception )
+    {
+      throw new RuntimeException( "Failed to measure signal!", exception.getCause() );
+    }
+    finally
+    {
+      // Make sure no chunk keeps running when we're interrupted...
+      for ( Future<SignalMeasurement> chunk : chunks )
+      {
+        chunk.cancel( true );
+      }
+    }
+  }
+
+  /**
+   * Measures all signals denoted by the given mask between the given sample
+   * indexes in a single pass in the current thread.
+   * <p>
+   * Consecutive samples are XOR'd to find the changed bits, and only the
+   * measurements of the changed signals are updated.
+   * </p>
+   * 
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aMask
+   *          the mask of all signals to measure;
+   * @param aStartIdx
+   *          the index of the first sample to measure;
+   * @param aEndIdx
+   *          the index of the last sample to measure (inclusive).
+   * @return an array with the measurement of each signal, indexed by its bit
+   *         position, and <code>null</code> for each signal not in the given
+   *         mask. Never <code>null</code>.
+   */
+  public static SignalMeasurement[] measureAll( final int[] aValues, final long[] aTimestamps, final int aMask,
+      final int aStartIdx, final int aEndIdx )
+  {
+    final long startTimestamp = aTimestamps[aStartIdx];
+
+    final long[] firstTransition = new long[Channel.MAX_CHANNELS];
+    final long[] lastTransition = new long[Channel.MAX_CHANNELS];
+    final int[] highCount = new int[Channel.MAX_CHANNELS];
+    final long[] highTime = new long[Channel.MAX_CHANNELS];
+    final int[] lowCount = new int[Channel.MAX_CHANNELS];
+    final long[] lowTime = new long[Channel.MAX_CHANNELS];
+
+    // Bitmasks for the signals that have seen a transition, and the signals
+    // whose first transition was a rising one...
+    int transitions = 0;
+    int firstRising = 0;
+
+    int lastValue = aValues[aStartIdx];
+
+    for ( int i = aStartIdx + 1; i <= aEndIdx; i++ )
+    {
+      final int value = aValues[i];
+
+      int changed = ( value ^ lastValue ) & aMask;
+      if ( changed != 0 )
+      {
+        final long timestamp = aTimestamps[i];
+
+        while ( changed != 0 )
+        {
+          final int bit = Integer.numberOfTrailingZeros( changed );
+          final int bitMask = 1 << bit;
+          changed &= ~bitMask;
+
+          final boolean rising = ( value & bitMask ) != 0;
+          if ( ( transitions & bitMask ) == 0 )
+          {
+            transitions |= bitMask;
+            firstTransition[bit] = timestamp;
+            if ( rising )
+            {
+              firstRising |= bitMask;
+            }
+          }
+          else if ( rising )
+          {
+            // Low to high transition: previously seen a low-state...
+            lowCount[bit]++;
+            lowTime[bit] += timestamp - lastTransition[bit];
+          }
+          else
+          {
+            // High to low transition: previously seen a high-state...
+            highCount[bit]++;
+            highTime[bit] += timestamp - lastTransition[bit];
+          }
+
+          lastTransition[bit] = timestamp;
+        }
+      }
+
+      lastValue = value;
+    }
+
+    final SignalMeasurement[] result = new SignalMeasurement[Channel.MAX_CHANNELS];
+    for ( int bit = 0; bit < result.length; bit++ )
+    {
+      final int bitMask = 1 << bit;
+      if ( ( aMask & bitMask ) == 0 )
+      {
+        continue;
+      }
+
+      final boolean hasTransitions = ( transitions & bitMask ) != 0;
+      result[bit] = new SignalMeasurement( startTimestamp, hasTransitions, firstTransition[bit],
+          ( firstRising & bitMask ) != 0, hasTransitions ? lastTransition[bit] : startTimestamp, highCount[bit],
+          highTime[bit], lowCount[bit], lowTime[bit] );
+    }
+    return result;
+  }
+
+  /**
+   * Measures all signals denoted by the given mask between the given sample
+   * indexes by splitting the range into chunks that are measured in parallel
+   * using the given executor.
+   * 
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aMask
+   *          the mask of all signals to measure;
+   * @param aStartIdx
+   *          the index of the first sample to measure;
+   * @param aEndIdx
+   *          the index of the last sample to measure (inclusive);
+   * @param aExecutor
+   *          the executor to measure the individual chunks with, cannot be
+   *          <code>null</code>.
+   * @return an array with the measurement of each signal, indexed by its bit
+   *         position, and <code>null</code> for each signal not in the given
+   *         mask. Never <code>null</code>.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           chunks to be measured.
+   * @see #measureAll(int[], long[], int, int, int)
+   */
+  public static SignalMeasurement[] measureAll( final int[] aValues, final long[] aTimestamps, final int aMask,
+      final int aStartIdx, final int aEndIdx, final ExecutorService aExecutor ) throws InterruptedException
+  {
+    final int chunkSize = getChunkSize( aStartIdx, aEndIdx );
+    if ( chunkSize < 0 )
+    {
+      return measureAll( aValues, aTimestamps, aMask, aStartIdx, aEndIdx );
+    }
+
+    final List<Future<SignalMeasurement[]>> chunks = new ArrayList<Future<SignalMeasurement[]>>();
+    try
+    {
+      for ( int from = aStartIdx; from < aEndIdx; from += chunkSize )
+      {
+        final int chunkStart = from;
+        final int chunkEnd = Math.min( aEndIdx, from + chunkSize );
+
+        chunks.add( aExecutor.submit( new Callable<SignalMeasurement[]>()
+        {
+          @Override
+          public SignalMeasurement[] call() throws Exception
+          {
+            return measureAll( aValues, aTimestamps, aMask, chunkStart, chunkEnd );
+          }
+        } ) );
+      }
+
+      SignalMeasurement[] result = null;
+      for ( Future<SignalMeasurement[]> chunk : chunks )
+      {
+        final SignalMeasurement[] measurements = chunk.get();
+        if ( result == null )
+        {
+          result = measurements;
+        }
+        else
+        {
+          for ( int bit = 0; bit < result.length; bit++ )
+          {
+            if ( result[bit] != null )
+            {
+              result[bit] = combine( result[bit], measurements[bit] );
+            }
+          }
+        }
+      }
+      return result;
+    }
+    catch ( ExecutionException exception )
+    {
+      throw new RuntimeException( "Failed to measure signals!", exception.getCause() );
+    }
+    finally
+    {
+      // Make sure no chunk keeps running when we're interrupted...
+      for ( Future<SignalMeasurement[]> chunk : chunks )
+      {
+        chunk.cancel( true );
+      }
+    }
+  }
+
+  /**
+   * Returns the duty cycle of the measured signal.
+   * 
+   * @return a duty cycle, as value between 0.0 and 1.0, or {@link Double#NaN}
+   *         if the signal has no complete high and low periods.
+   */
+  public double getDutyCycle()
+  {
+    final double avgHighTime = getAverageHighTime();
+    final double avgLowTime = getAverageLowTime();
+    return avgHighTime / ( avgHighTime + avgLowTime );
+  }
+
+  /**
+   * Returns the frequency of the measured signal.
+   * 
+   * @param aSampleRate
+   *          the sample rate of the measured data, in Hertz.
+   * @return a frequency, in Hertz, or {@link Double#NaN} if the signal has no
+   *         complete high and low periods.
+   */
+  public double getFrequency( final int aSampleRate )
+  {
+    return aSampleRate / ( getAverageHighTime() + getAverageLowTime() );
+  }
+
+  /**
+   * Returns the number of high periods, or the number of high-to-low
+   * transitions.
+   * 
+   * @return a high period count, >= 0.
+   */
+  public int getHighCount()
+  {
+    if ( this.hasTransitions && !this.firstTransitionRising )
+    {
+      return this.highCount + 1;
+    }
+    return this.highCount;
+  }
+
+  /**
+   * Returns the total time of all high periods.
+   * 
+   * @return a time, in samples, >= 0.
+   */
+  public long getHighTime()
+  {
+    if ( this.hasTransitions && !this.firstTransitionRising )
+    {
+      return this.highTime + ( this.firstTransition - this.startTimestamp );
+    }
+    return this.highTime;
+  }
+
+  /**
+   * Returns the number of low periods, or the number of low-to-high
+   * transitions.
+   * 
+   * @return a low period count, >= 0.
+   */
+  public int getLowCount()
+  {
+    if ( this.hasTransitions && this.firstTransitionRising )
+    {
+      return this.lowCount + 1;
+    }
+    return this.lowCount;
+  }
+
+  /**
+   * Returns the total time of all low periods.
+   * 
+   * @return a time, in samples, >= 0.
+   */
+  public long getLowTime()
+  {
+    if ( this.hasTransitions && this.firstTransitionRising )
+    {
+      return this.lowTime + ( this.firstTransition - this.startTimestamp );
+    }
+    return this.lowTime;
+  }
+
+  /**
+   * Returns the number of complete pulses.
+   * 
+   * @return a pulse count, >= 0.
+   */
+  public int getPulseCount()
+  {
+    return ( getLowCount() + getHighCount() ) / 2;
+  }
+
+  /**
+   * Determines the size of the chunks to measure the given range in parallel.
+   * 
+   * @param aStartIdx
+   *          the index of the first sample to measure;
+   * @param aEndIdx
+   *          the index of the last sample to measure (inclusive).
+   * @return the chunk size, in samples, or -1 if the given range is too small
+   *         to be split into chunks.
+   */
+  private static int getChunkSize( final int aStartIdx, final int aEndIdx )
+  {
+    final int length = aEndIdx - aStartIdx;
+    final int chunkCount = Math.min( 4 * Runtime.getRuntime().availableProcessors(), length / MIN_CHUNK_SIZE );
+    if ( chunkCount <= 1 )
+    {
+      return -1;
+    }
+    return ( length + chunkCount - 1 ) / chunkCount;
+  }
+
+  /**
+   * Returns the average time of a high period.
+   * 
+   * @return an average time, in samples.
+   */
+  private double getAverageHighTime()
+  {
+    return getHighTime() / ( double )getHighCount();
+  }
+
+  /**
+   * Returns the average time of a low period.
+   * 
+   * @return an average time, in samples.
+   */
+  private double getAverageLowTime()
+  {
+    return getLowTime() / ( double )getLowCount();
+  }
+}
@@ -0,0 +1,361 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.model;
+
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import nl.lxtreme.test.util.*;
+
+
+/**
+ * Provides a cache for signal measurements, allowing the measurement of a
+ * range of samples to be updated incrementally when either end of the range
+ * moves.
+ * <p>
+ * The sample data is divided into fixed-size blocks, whose measurements are
+ * calculated once (per channel) and kept. A measurement of an arbitrary range
+ * then only needs to scan the partial blocks at both ends of the range, and
+ * combine these with the cached measurements of all blocks in between. When
+ * a cursor is dragged, only the samples between the cursor and its nearest
+ * block boundary are scanned again.
+ * </p>
+ * <p>
+ * The cache is reset automatically when it is used for different sample data.
+ * Its blocks are accounted for by the default {@link MemoryBudget}, and
+ * evicted when memory is tight.
+ * </p>
+ */
+public final class SignalMeasurementCache implements IMemoryConsumer
+{
+  // CONSTANTS
+
+  /** The number of samples in a single block. */
+  static final int BLOCK_SIZE = SignalMeasurement.MIN_CHUNK_SIZE;
+  /** The (approximate) size of a single measurement, in bytes. */
+  static final long MEASUREMENT_SIZE = 64L;
+
+  // VARIABLES
+
+  private int[] values;
+  /** the cached measurements of all blocks, indexed by block and bit. */
+  private SignalMeasurement[][] blocks;
+  /** for each block, the mask of all bits that have a cached measurement. */
+  private int[] blockMasks;
+
+  private int lastMask;
+  private int lastStartIdx;
+  private int lastEndIdx;
+  private SignalMeasurement[] lastResult;
+
+  private final MemoryBudget.Account account;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SignalMeasurementCache instance.
+   */
+  public SignalMeasurementCache()
+  {
+    this.account = MemoryBudget.getDefault().register( "Signal measurements", 8 /* aWeight */, this );
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void evict( final Object aKey )
+  {
+    final int block = ( ( Integer )aKey ).intValue();
+    synchronized ( this )
+    {
+      if ( ( this.blocks != null ) && ( block < this.blocks.length ) )
+      {
+        this.blocks[block] = new SignalMeasurement[Channel.MAX_CHANNELS];
+        this.blockMasks[block] = 0;
+      }
+    }
+  }
+
+  /**
+   * Measures the signal denoted by the given mask between the given sample
+   * indexes, reusing the cached measurements where possible.
+   * 
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aMask
+   *          the mask of the signal to measure, should contain a single bit;
+   * @param aStartIdx
+   *          the index of the first sample to measure;
+   * @param aEndIdx
+   *          the index of the last sample to measure (inclusive);
+   * @param aExecutor
+   *          the executor to measure uncached blocks with, cannot be
+   *          <code>null</code>.
+   * @return the measurement, never <code>null</code>.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           blocks to be measured.
+   */
+  public SignalMeasurement measure( final int[] aValues, final long[] aTimestamps, final int aMask,
+      final int aStartIdx, final int aEndIdx, final ExecutorService aExecutor ) throws InterruptedException
+  {
+    final SignalMeasurement[] result = measureAll( aValues, aTimestamps, aMask, aStartIdx, aEndIdx, aExecutor );
+    return result[Integer.numberOfTrailingZeros( aMask )];
+  }
+
+  /**
+   * Measures all signals denoted by the given mask between the given sample
+   * indexes, reusing the cached measurements where possible.
+   * 
+   * @param aValues
+   *          the sample values;
+   * @param aTimestamps
+   *          the sample timestamps;
+   * @param aMask
+   *          the mask of all signals to measure;
+   * @param aStartIdx
+   *          the index of the first sample to measure;
+   * @param aEndIdx
+   *          the index of the last sample to measure (inclusive);
+   * @param aExecutor
+   *          the executor to measure uncached blocks with, cannot be
+   *          <code>null</code>.
+   * @return an array with the measurement of each signal, indexed by its bit
+   *         position, and <code>null</code> for each signal not in the given
+   *         mask. Never <code>null</code>.
+   * @throws InterruptedException
+   *           in case the current thread was interrupted while waiting for the
+   *           blocks to be measured.
+   * @see SignalMeasurement#measureAll(int[], long[], int, int, int)
+   */
+  public SignalMeasurement[] measureAll( final int[] aValues, final long[] aTimestamps, final int aMask,
+      final int aStartIdx, final int aEndIdx, final ExecutorService aExecutor ) throws InterruptedException
+  {
+    boolean reset = false;
+    synchronized ( this )
+    {
+      if ( this.values != aValues )
+      {
+        reset( aValues );
+        reset = true;
+      }
+      else if ( ( this.lastResult != null ) && ( this.lastMask == aMask ) && ( this.lastStartIdx == aStartIdx )
+          && ( this.lastEndIdx == aEndIdx ) )
+      {
+        // Nothing changed since our last measurement...
+        return this.lastResult;
+      }
+    }
+
+    // Do not hold the lock while using the memory budget...
+    if ( reset )
+    {
+      this.account.releaseAll();
+    }
+
+    // The first and last block that lie completely within the given range...
+    final int firstBlock = ( aStartIdx + BLOCK_SIZE - 1 ) / BLOCK_SIZE;
+    final int lastBlock = ( aEndIdx / BLOCK_SIZE ) - 1;
+
+    final SignalMeasurement[] result;
+    if ( firstBlock > lastBlock )
+    {
+      // Range is too small to make use of any cached blocks...
+      result = SignalMeasurement.measureAll( aValues, aTimestamps, aMask, aStartIdx, aEndIdx );
+    }
+    else
+    {
+      final int blockStartIdx = firstBlock * BLOCK_SIZE;
+      final int blockEndIdx = ( lastBlock + 1 ) * BLOCK_SIZE;
+
+      final SignalMeasurement[][] cachedBlocks = getBlocks( aValues, aTimestamps, aMask, firstBlock, lastBlock,
+          aExecutor );
+
+      SignalMeasurement[] measurements = null;
+      if ( aStartIdx < blockStartIdx )
+      {
+        measurements = SignalMeasurement.measureAll( aValues, aTimestamps, aMask, aStartIdx, blockStartIdx );
+      }
+      for ( SignalMeasurement[] block : cachedBlocks )
+      {
+        measurements = combine( measurements, block, aMask );
+      }
+      if ( blockEndIdx < aEndIdx )
+      {
+        measurements = combine( measurements,
+            SignalMeasurement.measureAll( aValues, aTimestamps, aMask, blockEndIdx, aEndIdx ), aMask );
+      }
+
+      result = measurements;
+    }
+
+    synchronized ( this )
+    {
+      if ( this.values == aValues )
+      {
+        this.lastMask = aMask;
+        this.lastStartIdx = aStartIdx;
+        this.lastEndIdx = aEndIdx;
+        this.lastResult = result;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Combines the measurements of two consecutive ranges for all signals in the
+   * given mask.
+   */
+  private static SignalMeasurement[] combine( final SignalMeasurement[] aFirst, final SignalMeasurement[] aSecond,
+      final int aMask )
+  {
+    final SignalMeasurement[] result = ( aFirst == null ) ? new SignalMeasurement[aSecond.length] : aFirst;
+    for ( int bit = 0; bit < result.length; bit++ )
+    {
+      if ( ( aMask & ( 1 << bit ) ) != 0 )
+      {
+        result[bit] = ( aFirst == null ) ? aSecond[bit] : SignalMeasurement.combine( aFirst[bit], aSecond[bit] );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the cached measurements for the given blocks, measuring all blocks
+   * that are not yet cached in parallel.
+   * 
+   * @return the measurements of the requested blocks, never <code>null</code>.
+   */
+  private SignalMeasurement[][] getBlocks( final int[] aValues, final long[] aTimestamps, final int aMask,
+      final int aFirstBlock, final int aLastBlock, final ExecutorService aExecutor ) throws InterruptedException
+  {
+    final SignalMeasurement[][] result = new SignalMeasurement[aLastBlock - aFirstBlock + 1][];
+
+    final Map<Integer, Future<SignalMeasurement[]>> missing = new LinkedHashMap<Integer, Future<SignalMeasurement[]>>();
+    final List<Integer> cached = new ArrayList<Integer>();
+    try
+    {
+      synchronized ( this )
+      {
+        for ( int block = aFirstBlock; block <= aLastBlock; block++ )
+        {
+          final int missingMask = aMask & ~this.blockMasks[block];
+          if ( missingMask == 0 )
+          {
+            result[block - aFirstBlock] = this.blocks[block];
+            cached.add( Integer.valueOf( block ) );
+            continue;
+          }
+
+          final int startIdx = block * BLOCK_SIZE;
+          final int endIdx = startIdx + BLOCK_SIZE;
+
+          missing.put( Integer.valueOf( block ), aExecutor.submit( new Callable<SignalMeasurement[]>()
+          {
+            @Override
+            public SignalMeasurement[] call() throws Exception
+            {
+              return SignalMeasurement.measureAll( aValues, aTimestamps, missingMask, startIdx, endIdx );
+            }
+          } ) );
+        }
+      }
+
+      // Do not hold the lock while using the memory budget...
+      for ( Integer block : cached )
+      {
+        this.account.touch( block );
+      }
+
+      for ( Map.Entry<Integer, Future<SignalMeasurement[]>> entry : missing.entrySet() )
+      {
+        final int block = entry.getKey().intValue();
+        final SignalMeasurement[] measurements = entry.getValue().get();
+
+        final int blockMask;
+        synchronized ( this )
+        {
+          if ( this.values != aValues )
+          {
+            // We've been reset in the meantime; do not cache anything...
+            result[block - aFirstBlock] = measurements;
+            continue;
+          }
+
+          // Merge the newly measured signals with the already cached ones...
+          final SignalMeasurement[] merged = this.blocks[block].clone();
+          for ( int bit = 0; bit < merged.length; bit++ )
+          {
+            if ( measurements[bit] != null )
+            {
+              merged[bit] = measurements[bit];
+            }
+          }
+
+          this.blocks[block] = merged;
+          this.blockMasks[block] |= aMask;
+          blockMask = this.blockMasks[block];
+
+          result[block - aFirstBlock] = merged;
+        }
+
+        this.account.allocate( entry.getKey(),
+            ( 4L * Channel.MAX_CHANNELS ) + ( MEASUREMENT_SIZE * Integer.bitCount( blockMask ) ) );
+      }
+
+      return result;
+    }
+    catch ( ExecutionException exception )
+    {
+      throw new RuntimeException( "Failed to measure signals!", exception.getCause() );
+    }
+    finally
+    {
+      // Make sure no block keeps being measured when we're interrupted...
+      for ( Future<SignalMeasurement[]> future : missing.values() )
+      {
+        future.cancel( true );
+      }
+    }
+  }
+
+  /**
+   * Resets this cache for the given sample values.
+   * 
+   * @param aValues
+   *          the new sample values to cache the measurements for.
+   */
+  private void reset( final int[] aValues )
+  {
+    final int blockCount = ( aValues.length / BLOCK_SIZE ) + 1;
+
+    this.values = aValues;
+    this.blocks = new SignalMeasurement[blockCount][Channel.MAX_CHANNELS];
+    this.blockMasks = new int[blockCount];
+    this.lastResult = null;
+  }
+}
@@ -38,7 +38,7 @@ public class SimpleAnnotation implements Annotation<String>
   /**
    * Creates a new SimpleAnnotation instance.
    */
-  public SimpleAnnotation( final int aChannel, final String aAnnotation, final int aStartTime, final int aEndTime )
+  public SimpleAnnotation( final int aChannel, final String aAnnotation, final long aStartTime, final long aEndTime )
   {
     this.channel = aChannel;
     this.annotation = aAnnotation;
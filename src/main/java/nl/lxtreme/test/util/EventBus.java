@@ -0,0 +1,516 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.util;
+
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+
+/**
+ * Delivers typed events to their listeners, batching and coalescing the
+ * events posted within one cycle of the event dispatch thread.
+ * <p>
+ * Events are delivered according to the {@link Delivery} of the subscription:
+ * immediately on the posting thread, batched at the end of the current EDT
+ * cycle, or batched on a background thread. Batched events that share the
+ * same {@link Event#getCoalesceKey() coalesce key} are merged into a single
+ * event, for example, several moves of the same cursor end up as one move.
+ * As all batched events are delivered from within the same EDT event, the
+ * repaints they cause are coalesced by Swing into a single repaint.
+ * </p>
+ * <p>
+ * Subscribers can limit themselves to events of certain properties. Events
+ * without a property name are structural events and are always delivered.
+ * </p>
+ */
+public final class EventBus
+{
+  // INNER TYPES
+
+  /**
+   * Denotes how events are delivered to a subscriber.
+   */
+  public static enum Delivery
+  {
+    /** delivered synchronously on the thread posting the event. */
+    IMMEDIATE,
+    /** delivered on the EDT, at the end of the current EDT cycle. */
+    BATCHED,
+    /** delivered on a background thread, in posting order. */
+    ASYNC;
+  }
+
+  /**
+   * Provides a typed event that knows how to deliver itself to its listeners.
+   * 
+   * @param <L>
+   *          the type of listener this event is delivered to.
+   */
+  public static abstract class Event<L extends EventListener>
+  {
+    // VARIABLES
+
+    private final Class<L> listenerType;
+    private final String propertyName;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new Event instance.
+     * 
+     * @param aListenerType
+     *          the type of listener this event is delivered to, cannot be
+     *          <code>null</code>;
+     * @param aPropertyName
+     *          the name of the changed property, or <code>null</code> for
+     *          structural events.
+     */
+    protected Event( final Class<L> aListenerType, final String aPropertyName )
+    {
+      if ( aListenerType == null )
+      {
+        throw new IllegalArgumentException( "Listener type cannot be null!" );
+      }
+      this.listenerType = aListenerType;
+      this.propertyName = aPropertyName;
+    }
+
+    // METHODS
+
+    /**
+     * Merges this event with an earlier, still pending, event having the same
+     * coalesce key.
+     * <p>
+     * By default, this event replaces the earlier one.
+     * </p>
+     * 
+     * @param aPrevious
+     *          the earlier event, never <code>null</code>.
+     * @return the merged event, never <code>null</code>.
+     */
+    public Event<L> coalesce( final Event<L> aPrevious )
+    {
+      return this;
+    }
+
+    /**
+     * Delivers this event to the given listener.
+     * 
+     * @param aListener
+     *          the listener to deliver this event to, never <code>null</code>.
+     */
+    public abstract void dispatch( L aListener );
+
+    /**
+     * Returns the key of this event used to merge it with other pending
+     * events.
+     * <p>
+     * By default, events are never coalesced.
+     * </p>
+     * 
+     * @return a coalesce key, or <code>null</code> if this event should never
+     *         be merged with other events.
+     */
+    public Object getCoalesceKey()
+    {
+      return null;
+    }
+
+    /**
+     * Returns the type of listener this event is delivered to.
+     * 
+     * @return a listener type, never <code>null</code>.
+     */
+    public final Class<L> getListenerType()
+    {
+      return this.listenerType;
+    }
+
+    /**
+     * Returns the name of the property this event is about.
+     * 
+     * @return a property name, or <code>null</code> for structural events.
+     */
+    public final String getPropertyName()
+    {
+      return this.propertyName;
+    }
+  }
+
+  /**
+   * Provides a single subscription of a listener to the events of a certain
+   * type.
+   */
+  private static final class Subscription
+  {
+    // VARIABLES
+
+    final Class<?> listenerType;
+    final EventListener listener;
+    final Delivery delivery;
+    /** the accepted property names, or <code>null</code> to accept all. */
+    final Set<String> properties;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new Subscription instance.
+     */
+    Subscription( final Class<?> aListenerType, final EventListener aListener, final Delivery aDelivery,
+        final Set<String> aProperties )
+    {
+      this.listenerType = aListenerType;
+      this.listener = aListener;
+      this.delivery = aDelivery;
+      this.properties = aProperties;
+    }
+
+    // METHODS
+
+    /**
+     * Returns whether the given event should be delivered to this
+     * subscription.
+     */
+    boolean accepts( final Event<?> aEvent )
+    {
+      if ( this.listenerType != aEvent.getListenerType() )
+      {
+        return false;
+      }
+      final String propertyName = aEvent.getPropertyName();
+      return ( this.properties == null ) || ( propertyName == null ) || this.properties.contains( propertyName );
+    }
+
+    /**
+     * Delivers the given event to the listener of this subscription.
+     */
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    void deliver( final Event aEvent )
+    {
+      aEvent.dispatch( this.listener );
+    }
+  }
+
+  // VARIABLES
+
+  private final List<Subscription> subscriptions;
+  private final Runnable flushTask;
+  /** the pending events, in posting order, guarded by this bus. */
+  private final List<Event<?>> pending;
+  /** the index of the pending events per coalesce key, guarded by this bus. */
+  private final Map<Object, Integer> pendingKeys;
+
+  private Executor asyncExecutor;
+  /** whether a flush is scheduled on the EDT, guarded by this bus. */
+  private boolean flushScheduled;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new EventBus instance, delivering asynchronous events on its own
+   * background thread.
+   */
+  public EventBus()
+  {
+    this( null );
+  }
+
+  /**
+   * Creates a new EventBus instance.
+   * 
+   * @param aAsyncExecutor
+   *          the executor to deliver asynchronous events on, should execute
+   *          its tasks in submission order, can be <code>null</code> to use a
+   *          background thread of its own.
+   */
+  public EventBus( final Executor aAsyncExecutor )
+  {
+    this.asyncExecutor = aAsyncExecutor;
+
+    this.subscriptions = new CopyOnWriteArrayList<Subscription>();
+    this.pending = new ArrayList<Event<?>>();
+    this.pendingKeys = new HashMap<Object, Integer>();
+
+    this.flushTask = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        flush();
+      }
+    };
+  }
+
+  // METHODS
+
+  /**
+   * Delivers all pending events to their batched and asynchronous
+   * subscribers.
+   * <p>
+   * This method is called automatically at the end of each EDT cycle in which
+   * events are posted, and should be called on the EDT.
+   * </p>
+   */
+  public void flush()
+  {
+    final Event<?>[] events;
+    synchronized ( this )
+    {
+      this.flushScheduled = false;
+      if ( this.pending.isEmpty() )
+      {
+        return;
+      }
+
+      events = this.pending.toArray( new Event<?>[this.pending.size()] );
+      this.pending.clear();
+      this.pendingKeys.clear();
+    }
+
+    final List<Subscription> asyncSubscriptions = new ArrayList<Subscription>();
+    final List<Event<?>> asyncEvents = new ArrayList<Event<?>>();
+
+    for ( Event<?> event : events )
+    {
+      for ( Subscription subscription : this.subscriptions )
+      {
+        if ( ( subscription.delivery == Delivery.IMMEDIATE ) || !subscription.accepts( event ) )
+        {
+          continue;
+        }
+
+        if ( subscription.delivery == Delivery.ASYNC )
+        {
+          asyncSubscriptions.add( subscription );
+          asyncEvents.add( event );
+        }
+        else
+        {
+          deliver( subscription, event );
+        }
+      }
+    }
+
+    if ( !asyncEvents.isEmpty() )
+    {
+      getAsyncExecutor().execute( new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          for ( int i = 0; i < asyncEvents.size(); i++ )
+          {
+            deliver( asyncSubscriptions.get( i ), asyncEvents.get( i ) );
+          }
+        }
+      } );
+    }
+  }
+
+  /**
+   * Posts the given event.
+   * <p>
+   * Immediate subscribers are notified before this method returns, all other
+   * subscribers are notified when the pending events are
+   * {@link #flush() flushed}.
+   * </p>
+   * 
+   * @param aEvent
+   *          the event to post, cannot be <code>null</code>.
+   */
+  @SuppressWarnings( { "unchecked", "rawtypes" } )
+  public void post( final Event<?> aEvent )
+  {
+    if ( aEvent == null )
+    {
+      throw new IllegalArgumentException( "Event cannot be null!" );
+    }
+
+    boolean batched = false;
+    for ( Subscription subscription : this.subscriptions )
+    {
+      if ( subscription.accepts( aEvent ) )
+      {
+        if ( subscription.delivery == Delivery.IMMEDIATE )
+        {
+          subscription.deliver( aEvent );
+        }
+        else
+        {
+          batched = true;
+        }
+      }
+    }
+
+    if ( !batched )
+    {
+      return;
+    }
+
+    synchronized ( this )
+    {
+      final Object key = aEvent.getCoalesceKey();
+      if ( key == null )
+      {
+        // Later events should not be merged with events posted before this
+        // one, as that would change their order with respect to this one...
+        this.pendingKeys.clear();
+        this.pending.add( aEvent );
+      }
+      else
+      {
+        final Integer index = this.pendingKeys.get( key );
+        if ( index != null )
+        {
+          final Event previous = this.pending.get( index.intValue() );
+          this.pending.set( index.intValue(), aEvent.coalesce( previous ) );
+        }
+        else
+        {
+          this.pendingKeys.put( key, Integer.valueOf( this.pending.size() ) );
+          this.pending.add( aEvent );
+        }
+      }
+
+      if ( !this.flushScheduled )
+      {
+        this.flushScheduled = true;
+        EventQueue.invokeLater( this.flushTask );
+      }
+    }
+  }
+
+  /**
+   * Subscribes the given listener to all events of the given type, delivered
+   * in batches on the EDT.
+   * 
+   * @param aListenerType
+   *          the type of listener to subscribe, cannot be <code>null</code>;
+   * @param aListener
+   *          the listener to subscribe, cannot be <code>null</code>.
+   */
+  public <L extends EventListener> void subscribe( final Class<L> aListenerType, final L aListener )
+  {
+    subscribe( aListenerType, aListener, Delivery.BATCHED );
+  }
+
+  /**
+   * Subscribes the given listener to the events of the given type.
+   * 
+   * @param aListenerType
+   *          the type of listener to subscribe, cannot be <code>null</code>;
+   * @param aListener
+   *          the listener to subscribe, cannot be <code>null</code>;
+   * @param aDelivery
+   *          how the events are to be delivered, cannot be <code>null</code>;
+   * @param aProperties
+   *          the names of the properties to deliver the events of, if
+   *          omitted, the events of all properties are delivered.
+   */
+  public <L extends EventListener> void subscribe( final Class<L> aListenerType, final L aListener,
+      final Delivery aDelivery, final String... aProperties )
+  {
+    if ( ( aListenerType == null ) || ( aListener == null ) )
+    {
+      throw new IllegalArgumentException( "Listener type and listener cannot be null!" );
+    }
+    if ( aDelivery == null )
+    {
+      throw new IllegalArgumentException( "Delivery cannot be null!" );
+    }
+
+    Set<String> properties = null;
+    if ( aProperties.length > 0 )
+    {
+      properties = new HashSet<String>( Arrays.asList( aProperties ) );
+    }
+
+    this.subscriptions.add( new Subscription( aListenerType, aListener, aDelivery, properties ) );
+  }
+
+  /**
+   * Unsubscribes the given listener from the events of the given type.
+   * Pending events are no longer delivered to it.
+   * 
+   * @param aListenerType
+   *          the type of listener to unsubscribe, cannot be <code>null</code>;
+   * @param aListener
+   *          the listener to unsubscribe, cannot be <code>null</code>.
+   */
+  public <L extends EventListener> void unsubscribe( final Class<L> aListenerType, final L aListener )
+  {
+    for ( Subscription subscription : this.subscriptions )
+    {
+      if ( ( subscription.listenerType == aListenerType ) && ( subscription.listener == aListener ) )
+      {
+        this.subscriptions.remove( subscription );
+      }
+    }
+  }
+
+  /**
+   * Delivers the given event to the given subscription, unless it was
+   * unsubscribed in the meantime.
+   */
+  private void deliver( final Subscription aSubscription, final Event<?> aEvent )
+  {
+    if ( !this.subscriptions.contains( aSubscription ) )
+    {
+      return;
+    }
+
+    try
+    {
+      aSubscription.deliver( aEvent );
+    }
+    catch ( RuntimeException exception )
+    {
+      // Do not let a single listener break the delivery to the others...
+      exception.printStackTrace();
+    }
+  }
+
+  /**
+   * Returns the executor to deliver asynchronous events on, creating it if
+   * needed.
+   */
+  private synchronized Executor getAsyncExecutor()
+  {
+    Executor result = this.asyncExecutor;
+    if ( result == null )
+    {
+      result = Executors.newSingleThreadExecutor( new ThreadFactory()
+      {
+        @Override
+        public Thread newThread( final Runnable aRunnable )
+        {
+          final Thread thread = new Thread( aRunnable, "EventDelivery" );
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+      this.asyncExecutor = result;
+    }
+    return result;
+  }
+}
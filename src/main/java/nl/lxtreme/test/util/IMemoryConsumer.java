@@ -0,0 +1,46 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.util;
+
+
+/**
+ * Denotes a cache, or any other holder of memory that can be rebuilt, whose
+ * memory use is accounted for by a {@link MemoryBudget}.
+ */
+public interface IMemoryConsumer
+{
+  // METHODS
+
+  /**
+   * Called when the entry with the given key is evicted, and should be
+   * released by this consumer.
+   * <p>
+   * This method can be called from any thread, but never while the memory
+   * budget itself is locked. To avoid deadlocks, consumers should not hold a
+   * lock that this method needs while allocating memory from their
+   * {@link MemoryBudget.Account}.
+   * </p>
+   * 
+   * @param aKey
+   *          the key of the evicted entry, as given when it was allocated.
+   *          The entry need no longer exist.
+   */
+  void evict( Object aKey );
+}
@@ -0,0 +1,208 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.util;
+
+
+import java.util.concurrent.atomic.*;
+
+
+/**
+ * Provides a lock-free histogram of durations, using power-of-two buckets.
+ * <p>
+ * Recording a duration costs a few atomic increments, which makes it suitable
+ * for measuring each event on the EDT. Percentiles are approximated by the
+ * upper bound of the bucket they fall in, and are thus accurate up to a
+ * factor two.
+ * </p>
+ */
+public final class LatencyHistogram
+{
+  // CONSTANTS
+
+  /** the number of buckets; bucket <em>i</em> holds durations &lt; 2<sup>i</sup> us. */
+  public static final int BUCKET_COUNT = 32;
+
+  // VARIABLES
+
+  private final AtomicLongArray buckets;
+  private final AtomicLong count;
+  private final AtomicLong sum;
+  private final AtomicLong max;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new LatencyHistogram instance.
+   */
+  public LatencyHistogram()
+  {
+    this.buckets = new AtomicLongArray( BUCKET_COUNT );
+    this.count = new AtomicLong();
+    this.sum = new AtomicLong();
+    this.max = new AtomicLong();
+  }
+
+  // METHODS
+
+  /**
+   * Returns the index of the bucket for the given duration.
+   * 
+   * @param aMicros
+   *          the duration, in microseconds, >= 0.
+   * @return a bucket index, >= 0 && < {@link #BUCKET_COUNT}.
+   */
+  static int getBucketIndex( final long aMicros )
+  {
+    final int index = 64 - Long.numberOfLeadingZeros( Math.max( 0L, aMicros ) );
+    return Math.min( index, BUCKET_COUNT - 1 );
+  }
+
+  /**
+   * Returns the number of recorded durations per bucket.
+   * 
+   * @return a copy of the buckets, never <code>null</code>.
+   */
+  public long[] getBuckets()
+  {
+    final long[] result = new long[BUCKET_COUNT];
+    for ( int i = 0; i < result.length; i++ )
+    {
+      result[i] = this.buckets.get( i );
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of recorded durations.
+   * 
+   * @return a count, >= 0.
+   */
+  public long getCount()
+  {
+    return this.count.get();
+  }
+
+  /**
+   * Returns the longest recorded duration.
+   * 
+   * @return a duration, in microseconds, >= 0.
+   */
+  public long getMax()
+  {
+    return this.max.get();
+  }
+
+  /**
+   * Returns the mean of all recorded durations.
+   * 
+   * @return a duration, in microseconds, >= 0.
+   */
+  public double getMean()
+  {
+    final long n = this.count.get();
+    return ( n == 0L ) ? 0.0 : ( double )this.sum.get() / n;
+  }
+
+  /**
+   * Returns the (approximate) duration below which the given percentage of
+   * all recorded durations fall.
+   * 
+   * @param aPercentile
+   *          the percentile, 0.0 .. 100.0.
+   * @return a duration, in microseconds, >= 0.
+   */
+  public long getPercentile( final double aPercentile )
+  {
+    final long[] counts = getBuckets();
+
+    long total = 0L;
+    for ( long bucketCount : counts )
+    {
+      total += bucketCount;
+    }
+    if ( total == 0L )
+    {
+      return 0L;
+    }
+
+    final long rank = ( long )Math.ceil( ( Math.max( 0.0, Math.min( 100.0, aPercentile ) ) / 100.0 ) * total );
+
+    long seen = 0L;
+    for ( int i = 0; i < counts.length; i++ )
+    {
+      seen += counts[i];
+      if ( ( seen >= rank ) && ( seen > 0L ) )
+      {
+        final long upperBound = ( i == 0 ) ? 0L : ( 1L << i ) - 1L;
+        return Math.min( upperBound, getMax() );
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * Records the given duration.
+   * 
+   * @param aMicros
+   *          the duration to record, in microseconds.
+   */
+  public void record( final long aMicros )
+  {
+    final long value = Math.max( 0L, aMicros );
+
+    this.buckets.incrementAndGet( getBucketIndex( value ) );
+    this.count.incrementAndGet();
+    this.sum.addAndGet( value );
+
+    long current;
+    while ( value > ( current = this.max.get() ) )
+    {
+      if ( this.max.compareAndSet( current, value ) )
+      {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Clears all recorded durations.
+   */
+  public void reset()
+  {
+    for ( int i = 0; i < BUCKET_COUNT; i++ )
+    {
+      this.buckets.set( i, 0L );
+    }
+    this.count.set( 0L );
+    this.sum.set( 0L );
+    this.max.set( 0L );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return String.format( "n=%d, mean=%.0fus, p50=%dus, p99=%dus, max=%dus", Long.valueOf( getCount() ),
+        Double.valueOf( getMean() ), Long.valueOf( getPercentile( 50.0 ) ), Long.valueOf( getPercentile( 99.0 ) ),
+        Long.valueOf( getMax() ) );
+  }
+}
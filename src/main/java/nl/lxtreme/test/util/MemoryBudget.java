@@ -0,0 +1,617 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.util;
+
+
+import java.lang.management.*;
+import java.lang.ref.*;
+import java.util.*;
+
+import javax.management.*;
+
+
+/**
+ * Coordinates the memory use of the caches, and other derived data that can be
+ * rebuilt, in this JVM by keeping their total size within a configurable
+ * budget.
+ * <p>
+ * Only data that registers with a budget is accounted for. Derived data that is
+ * in use as long as its capture is shown, such as a glitch index, or whose
+ * size does not depend on the number of samples, such as an activity summary,
+ * is not.
+ * </p>
+ * <p>
+ * Each cache registers an {@link Account} with the budget, and allocates its
+ * entries from it, stating their size in bytes. When the total size exceeds
+ * the budget, entries are evicted in weighted least-recently-used order: each
+ * account has a weight denoting how expensive its entries are to rebuild, and
+ * entries with a higher weight survive longer than entries with a lower
+ * weight that were used at the same time (GreedyDual). Entries with the same
+ * weight are evicted in least-recently-used order.
+ * </p>
+ * <p>
+ * The {@link #getDefault() default} budget also reacts to GC pressure: when a
+ * heap memory pool is still above its usage threshold after a collection, the
+ * budget evicts half of its entries.
+ * </p>
+ */
+public final class MemoryBudget
+{
+  // INNER TYPES
+
+  /**
+   * Provides the account of a single memory consumer with a memory budget.
+   */
+  public static final class Account
+  {
+    // VARIABLES
+
+    private final MemoryBudget budget;
+    private final String name;
+    private final int weight;
+    private final WeakReference<IMemoryConsumer> consumer;
+    /** the entries of this account, guarded by the budget. */
+    private final Map<Object, Entry> entries;
+
+    private long usedBytes;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new Account instance.
+     */
+    Account( final MemoryBudget aBudget, final String aName, final int aWeight, final IMemoryConsumer aConsumer )
+    {
+      this.budget = aBudget;
+      this.name = aName;
+      this.weight = aWeight;
+      this.consumer = new WeakReference<IMemoryConsumer>( aConsumer );
+      this.entries = new HashMap<Object, Entry>();
+    }
+
+    // METHODS
+
+    /**
+     * Allocates, or resizes, the entry with the given key, marking it as most
+     * recently used. This can cause other entries to be evicted, but never the
+     * given entry itself.
+     * 
+     * @param aKey
+     *          the key of the entry, cannot be <code>null</code>;
+     * @param aBytes
+     *          the size of the entry, in bytes, >= 0.
+     */
+    public void allocate( final Object aKey, final long aBytes )
+    {
+      this.budget.allocate( this, aKey, aBytes );
+    }
+
+    /**
+     * Releases all entries of this account, and unregisters it from its
+     * budget.
+     */
+    public void close()
+    {
+      this.budget.close( this );
+    }
+
+    /**
+     * Returns the name of this account.
+     * 
+     * @return a name, never <code>null</code>.
+     */
+    public String getName()
+    {
+      return this.name;
+    }
+
+    /**
+     * Returns the total size of all entries of this account.
+     * 
+     * @return a size, in bytes, >= 0.
+     */
+    public long getUsedBytes()
+    {
+      synchronized ( this.budget )
+      {
+        return this.usedBytes;
+      }
+    }
+
+    /**
+     * Returns the weight of the entries of this account.
+     * 
+     * @return a weight, > 0.
+     */
+    public int getWeight()
+    {
+      return this.weight;
+    }
+
+    /**
+     * Releases the entry with the given key, for example, because the consumer
+     * no longer needs it. Releasing an unknown entry does nothing.
+     * 
+     * @param aKey
+     *          the key of the entry to release.
+     */
+    public void release( final Object aKey )
+    {
+      this.budget.release( this, aKey );
+    }
+
+    /**
+     * Releases all entries of this account.
+     */
+    public void releaseAll()
+    {
+      this.budget.releaseAll( this );
+    }
+
+    /**
+     * Marks the entry with the given key as most recently used. Touching an
+     * unknown entry does nothing.
+     * 
+     * @param aKey
+     *          the key of the entry to touch.
+     */
+    public void touch( final Object aKey )
+    {
+      this.budget.touch( this, aKey );
+    }
+  }
+
+  /**
+   * Provides a single allocated entry.
+   */
+  static final class Entry
+  {
+    // VARIABLES
+
+    final Account account;
+    final Object key;
+    long bytes;
+    long priority;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new Entry instance.
+     */
+    Entry( final Account aAccount, final Object aKey )
+    {
+      this.account = aAccount;
+      this.key = aKey;
+    }
+  }
+
+  // CONSTANTS
+
+  /** The system property to configure the default budget with, in bytes. */
+  public static final String BUDGET_PROPERTY = "nl.lxtreme.test.memoryBudget";
+
+  /** The fraction of a heap memory pool above which the GC is under pressure. */
+  static final double GC_PRESSURE_THRESHOLD = 0.8;
+
+  private static volatile MemoryBudget defaultBudget;
+
+  // VARIABLES
+
+  private final List<Account> accounts;
+  /** all entries, from least to most recently used. */
+  private final LinkedHashSet<Entry> entries;
+
+  private long budget;
+  private long usedBytes;
+  /** the priority of the last evicted entry, see GreedyDual. */
+  private long inflation;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new MemoryBudget instance.
+   * 
+   * @param aBudget
+   *          the maximum total size of all entries, in bytes, > 0.
+   * @see #getDefault()
+   */
+  public MemoryBudget( final long aBudget )
+  {
+    if ( aBudget <= 0L )
+    {
+      throw new IllegalArgumentException( "Budget should be positive!" );
+    }
+
+    this.budget = aBudget;
+    this.accounts = new ArrayList<Account>();
+    this.entries = new LinkedHashSet<Entry>();
+  }
+
+  // METHODS
+
+  /**
+   * Returns the memory budget shared by all caches in this JVM.
+   * <p>
+   * Its size is taken from the {@value #BUDGET_PROPERTY} system property, and
+   * defaults to a quarter of the maximum heap size.
+   * </p>
+   * 
+   * @return the default memory budget, never <code>null</code>.
+   */
+  public static MemoryBudget getDefault()
+  {
+    MemoryBudget result = defaultBudget;
+    if ( result == null )
+    {
+      synchronized ( MemoryBudget.class )
+      {
+        result = defaultBudget;
+        if ( result == null )
+        {
+          final Long configured = Long.getLong( BUDGET_PROPERTY );
+          final long size = ( configured != null ) && ( configured.longValue() > 0L ) ? configured.longValue()
+              : Runtime.getRuntime().maxMemory() / 4L;
+
+          result = new MemoryBudget( size );
+          result.installGcPressureListener();
+
+          defaultBudget = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the maximum total size of all entries.
+   * 
+   * @return a size, in bytes, > 0.
+   */
+  public synchronized long getBudget()
+  {
+    return this.budget;
+  }
+
+  /**
+   * Returns the total size of all entries.
+   * 
+   * @return a size, in bytes, >= 0.
+   */
+  public synchronized long getUsedBytes()
+  {
+    return this.usedBytes;
+  }
+
+  /**
+   * Registers a new memory consumer with this budget.
+   * <p>
+   * The consumer is only weakly referenced: once it is garbage collected, its
+   * entries are released automatically.
+   * </p>
+   * 
+   * @param aName
+   *          the name of the consumer, for diagnostic purposes, cannot be
+   *          <code>null</code>;
+   * @param aWeight
+   *          the weight of its entries, denoting how expensive they are to
+   *          rebuild, > 0;
+   * @param aConsumer
+   *          the consumer to register, cannot be <code>null</code>.
+   * @return the account to allocate the entries of the consumer from, never
+   *         <code>null</code>.
+   */
+  public Account register( final String aName, final int aWeight, final IMemoryConsumer aConsumer )
+  {
+    if ( ( aName == null ) || ( aConsumer == null ) )
+    {
+      throw new IllegalArgumentException( "Name and consumer cannot be null!" );
+    }
+    if ( aWeight <= 0 )
+    {
+      throw new IllegalArgumentException( "Weight should be positive!" );
+    }
+
+    final Account result = new Account( this, aName, aWeight, aConsumer );
+    synchronized ( this )
+    {
+      this.accounts.add( result );
+    }
+    return result;
+  }
+
+  /**
+   * Sets the maximum total size of all entries, evicting entries if needed.
+   * 
+   * @param aBudget
+   *          the budget to set, in bytes, > 0.
+   */
+  public void setBudget( final long aBudget )
+  {
+    if ( aBudget <= 0L )
+    {
+      throw new IllegalArgumentException( "Budget should be positive!" );
+    }
+
+    final List<Entry> evicted;
+    synchronized ( this )
+    {
+      this.budget = aBudget;
+      evicted = evict( aBudget, null /* aRetained */);
+    }
+    notifyEvicted( evicted );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized String toString()
+  {
+    final StringBuilder sb = new StringBuilder( "MemoryBudget[" );
+    sb.append( this.usedBytes ).append( "/" ).append( this.budget ).append( " bytes" );
+    for ( Account account : this.accounts )
+    {
+      sb.append( ", " ).append( account.name ).append( "=" ).append( account.usedBytes );
+    }
+    return sb.append( "]" ).toString();
+  }
+
+  /**
+   * Evicts entries until their total size is at most the given size.
+   * 
+   * @param aTargetBytes
+   *          the total size to trim to, in bytes, >= 0.
+   */
+  public void trim( final long aTargetBytes )
+  {
+    final List<Entry> evicted;
+    synchronized ( this )
+    {
+      evicted = evict( aTargetBytes, null /* aRetained */);
+    }
+    notifyEvicted( evicted );
+  }
+
+  /**
+   * Allocates, or resizes, the entry with the given key of the given account.
+   */
+  final void allocate( final Account aAccount, final Object aKey, final long aBytes )
+  {
+    if ( aKey == null )
+    {
+      throw new IllegalArgumentException( "Key cannot be null!" );
+    }
+    if ( aBytes < 0L )
+    {
+      throw new IllegalArgumentException( "Size cannot be negative!" );
+    }
+
+    final List<Entry> evicted;
+    synchronized ( this )
+    {
+      purgeCollectedAccounts();
+
+      Entry entry = aAccount.entries.get( aKey );
+      if ( entry == null )
+      {
+        entry = new Entry( aAccount, aKey );
+        aAccount.entries.put( aKey, entry );
+      }
+      else
+      {
+        this.entries.remove( entry );
+      }
+      this.entries.add( entry );
+
+      final long delta = aBytes - entry.bytes;
+      entry.bytes = aBytes;
+      entry.priority = this.inflation + aAccount.weight;
+      aAccount.usedBytes += delta;
+      this.usedBytes += delta;
+
+      evicted = evict( this.budget, entry );
+    }
+    notifyEvicted( evicted );
+  }
+
+  /**
+   * Releases all entries of the given account, and unregisters it.
+   */
+  final synchronized void close( final Account aAccount )
+  {
+    releaseAll( aAccount );
+    this.accounts.remove( aAccount );
+  }
+
+  /**
+   * Releases the entry with the given key of the given account.
+   */
+  final synchronized void release( final Account aAccount, final Object aKey )
+  {
+    final Entry entry = aAccount.entries.get( aKey );
+    if ( entry != null )
+    {
+      remove( entry );
+    }
+  }
+
+  /**
+   * Releases all entries of the given account.
+   */
+  final synchronized void releaseAll( final Account aAccount )
+  {
+    for ( Entry entry : new ArrayList<Entry>( aAccount.entries.values() ) )
+    {
+      remove( entry );
+    }
+  }
+
+  /**
+   * Marks the entry with the given key of the given account as most recently
+   * used.
+   */
+  final synchronized void touch( final Account aAccount, final Object aKey )
+  {
+    final Entry entry = aAccount.entries.get( aKey );
+    if ( entry != null )
+    {
+      this.entries.remove( entry );
+      this.entries.add( entry );
+      entry.priority = this.inflation + aAccount.weight;
+    }
+  }
+
+  /**
+   * Notifies the consumers of the given evicted entries, should not be called
+   * while this budget is locked.
+   */
+  private static void notifyEvicted( final List<Entry> aEvicted )
+  {
+    for ( Entry entry : aEvicted )
+    {
+      final IMemoryConsumer consumer = entry.account.consumer.get();
+      if ( consumer != null )
+      {
+        consumer.evict( entry.key );
+      }
+    }
+  }
+
+  /**
+   * Removes entries, lowest priority first, until their total size is at most
+   * the given size. Should be called while this budget is locked.
+   * 
+   * @param aTargetBytes
+   *          the total size to evict to;
+   * @param aRetained
+   *          the entry that should not be evicted, can be <code>null</code>.
+   * @return the evicted entries, whose consumers are not yet notified.
+   */
+  private List<Entry> evict( final long aTargetBytes, final Entry aRetained )
+  {
+    if ( this.usedBytes <= aTargetBytes )
+    {
+      return Collections.emptyList();
+    }
+
+    final List<Entry> result = new ArrayList<Entry>();
+    while ( this.usedBytes > aTargetBytes )
+    {
+      // Iterating from least to most recently used makes the oldest entry win
+      // any ties...
+      Entry victim = null;
+      for ( Entry entry : this.entries )
+      {
+        if ( ( entry != aRetained ) && ( ( victim == null ) || ( entry.priority < victim.priority ) ) )
+        {
+          victim = entry;
+        }
+      }
+      if ( victim == null )
+      {
+        // Only the retained entry is left...
+        break;
+      }
+
+      this.inflation = Math.max( this.inflation, victim.priority );
+      remove( victim );
+      result.add( victim );
+    }
+    return result;
+  }
+
+  /**
+   * Installs a listener that trims this budget when a heap memory pool is still
+   * above its usage threshold after a garbage collection.
+   */
+  private void installGcPressureListener()
+  {
+    boolean thresholdSet = false;
+    for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+    {
+      final long max = pool.getUsage().getMax();
+      if ( ( pool.getType() != MemoryType.HEAP ) || ( max <= 0L ) )
+      {
+        continue;
+      }
+
+      final long threshold = ( long )( max * GC_PRESSURE_THRESHOLD );
+      if ( pool.isCollectionUsageThresholdSupported() )
+      {
+        pool.setCollectionUsageThreshold( threshold );
+        thresholdSet = true;
+      }
+      else if ( pool.isUsageThresholdSupported() )
+      {
+        pool.setUsageThreshold( threshold );
+        thresholdSet = true;
+      }
+    }
+
+    if ( !thresholdSet )
+    {
+      return;
+    }
+
+    final NotificationEmitter emitter = ( NotificationEmitter )ManagementFactory.getMemoryMXBean();
+    emitter.addNotificationListener( new NotificationListener()
+    {
+      @Override
+      public void handleNotification( final Notification aNotification, final Object aHandback )
+      {
+        final String type = aNotification.getType();
+        if ( MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals( type )
+            || MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals( type ) )
+        {
+          trim( getUsedBytes() / 2L );
+        }
+      }
+    }, null /* filter */, null /* handback */);
+  }
+
+  /**
+   * Removes the accounts, and entries, of all consumers that are garbage
+   * collected. Should be called while this budget is locked.
+   */
+  private void purgeCollectedAccounts()
+  {
+    final Iterator<Account> iter = this.accounts.iterator();
+    while ( iter.hasNext() )
+    {
+      final Account account = iter.next();
+      if ( account.consumer.get() == null )
+      {
+        releaseAll( account );
+        iter.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes the given entry. Should be called while this budget is locked.
+   */
+  private void remove( final Entry aEntry )
+  {
+    aEntry.account.entries.remove( aEntry.key );
+    aEntry.account.usedBytes -= aEntry.bytes;
+    this.usedBytes -= aEntry.bytes;
+    this.entries.remove( aEntry );
+  }
+}
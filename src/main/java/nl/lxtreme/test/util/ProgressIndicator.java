@@ -0,0 +1,116 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.util;
+
+
+import java.awt.*;
+import java.awt.geom.*;
+
+
+/**
+ * Provides a busy indicator that also shows the progress of the task it
+ * represents as a ring around the rotating bars.
+ */
+public class ProgressIndicator extends BusyIndicator
+{
+  // CONSTANTS
+
+  private static final long serialVersionUID = 1L;
+
+  // VARIABLES
+
+  private volatile int progress;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link ProgressIndicator} instance.
+   */
+  public ProgressIndicator()
+  {
+    super();
+
+    this.progress = -1;
+  }
+
+  // METHODS
+
+  /**
+   * Returns the current progress.
+   * 
+   * @return the progress, 0..100, or -1 if the progress is unknown.
+   */
+  public int getProgress()
+  {
+    return this.progress;
+  }
+
+  /**
+   * Sets the current progress.
+   * 
+   * @param aProgress
+   *          the progress to set, 0..100, or -1 if the progress is unknown, in
+   *          which case only the rotating bars are shown.
+   */
+  public void setProgress( final int aProgress )
+  {
+    final int newProgress = Math.max( -1, Math.min( 100, aProgress ) );
+    if ( newProgress != this.progress )
+    {
+      this.progress = newProgress;
+      repaint();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void paintComponent( final Graphics aGraphics )
+  {
+    super.paintComponent( aGraphics );
+
+    final int currentProgress = this.progress;
+    if ( !isVisible() || ( currentProgress < 0 ) )
+    {
+      return;
+    }
+
+    Graphics2D canvas = ( Graphics2D )aGraphics.create();
+    try
+    {
+      canvas.setRenderingHint( RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON );
+      canvas.setStroke( new BasicStroke( 2.0f ) );
+
+      final Arc2D arc = new Arc2D.Float( 1.0f, 1.0f, getWidth() - 3.0f, getHeight() - 3.0f, 90.0f,
+          ( -360.0f * currentProgress ) / 100.0f, Arc2D.OPEN );
+
+      canvas.setColor( Color.LIGHT_GRAY );
+      canvas.drawOval( 1, 1, getWidth() - 3, getHeight() - 3 );
+      canvas.setColor( Color.BLACK );
+      canvas.draw( arc );
+    }
+    finally
+    {
+      canvas.dispose();
+      canvas = null;
+    }
+  }
+}
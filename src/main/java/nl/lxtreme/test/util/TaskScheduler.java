@@ -0,0 +1,524 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.util;
+
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+/**
+ * Schedules background analysis tasks by priority, and allows them to be
+ * cancelled and superseded.
+ * <p>
+ * Each {@link Priority} has its own lane of threads, so interactive tasks,
+ * such as mouse hovers, are never queued behind visible-range work, which in
+ * turn is never queued behind analyses of the full capture. When available,
+ * and not disabled by the system property {@value #VIRTUAL_THREADS_PROPERTY},
+ * interactive tasks run on virtual threads.
+ * </p>
+ * <p>
+ * Tasks can be submitted with a key: submitting a task with the same key as
+ * a task that is still pending or running cancels the earlier task, as its
+ * result is superseded. Cancellation is cooperative: the task's
+ * {@link CancellationToken} is flagged and its thread is interrupted.
+ * </p>
+ * <p>
+ * Tasks that split their work in parallel should use the
+ * {@link #getComputeExecutor(Priority) compute executor} of their priority for
+ * their subtasks. All compute executors share a single pool of threads, in
+ * which pending subtasks of a higher priority overtake those of a lower one.
+ * </p>
+ */
+public final class TaskScheduler
+{
+  // INNER TYPES
+
+  /**
+   * Provides a cooperative cancellation token for a single task.
+   */
+  public static final class CancellationToken
+  {
+    // VARIABLES
+
+    private volatile boolean cancelled;
+
+    // METHODS
+
+    /**
+     * Cancels the task of this token.
+     */
+    public void cancel()
+    {
+      this.cancelled = true;
+    }
+
+    /**
+     * Throws a {@link CancellationException} if the task of this token is
+     * cancelled, allowing long running tasks to bail out.
+     * 
+     * @throws CancellationException
+     *           in case the task is cancelled.
+     */
+    public void checkCancelled() throws CancellationException
+    {
+      if ( this.cancelled )
+      {
+        throw new CancellationException();
+      }
+    }
+
+    /**
+     * Returns whether the task of this token is cancelled.
+     * 
+     * @return <code>true</code> if cancelled, <code>false</code> otherwise.
+     */
+    public boolean isCancelled()
+    {
+      return this.cancelled;
+    }
+  }
+
+  /**
+   * Provides a task that can be cancelled cooperatively.
+   * 
+   * @param <T>
+   *          the result type of the task.
+   */
+  public static interface ITask<T>
+  {
+    // METHODS
+
+    /**
+     * Executes this task.
+     * 
+     * @param aToken
+     *          the cancellation token of this task, never <code>null</code>.
+     * @return the result of this task, can be <code>null</code>.
+     * @throws Exception
+     *           in case the task failed or was cancelled.
+     */
+    T execute( CancellationToken aToken ) throws Exception;
+  }
+
+  /**
+   * Denotes the priority class of a task.
+   */
+  public static enum Priority
+  {
+    /** tasks the user is directly waiting for, such as mouse hovers. */
+    INTERACTIVE,
+    /** tasks rendering or measuring the visible part of the capture. */
+    VISIBLE,
+    /** tasks analysing the full capture, such as glitch detection. */
+    BACKGROUND;
+  }
+
+  /**
+   * Provides the executor for the subtasks of a single priority, which queues
+   * them in the shared compute pool.
+   */
+  private final class ComputeExecutor extends AbstractExecutorService
+  {
+    // VARIABLES
+
+    private final Priority priority;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new ComputeExecutor instance.
+     */
+    ComputeExecutor( final Priority aPriority )
+    {
+      this.priority = aPriority;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean awaitTermination( final long aTimeout, final TimeUnit aUnit ) throws InterruptedException
+    {
+      return TaskScheduler.this.computePool.awaitTermination( aTimeout, aUnit );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute( final Runnable aCommand )
+    {
+      if ( aCommand == null )
+      {
+        throw new NullPointerException();
+      }
+      TaskScheduler.this.computePool.execute( new PrioritizedTask( this.priority, TaskScheduler.this.computeSequence
+          .getAndIncrement(), aCommand ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isShutdown()
+    {
+      return TaskScheduler.this.computePool.isShutdown();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isTerminated()
+    {
+      return TaskScheduler.this.computePool.isTerminated();
+    }
+
+    /**
+     * Does nothing; the shared compute pool is shut down with its scheduler.
+     */
+    @Override
+    public void shutdown()
+    {
+      // Nop...
+    }
+
+    /**
+     * Does nothing; the shared compute pool is shut down with its scheduler.
+     */
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Provides a subtask in the compute pool, ordered by its priority and, within
+   * a priority, by the order of submission.
+   */
+  private static final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask>
+  {
+    // VARIABLES
+
+    private final Priority priority;
+    private final long sequence;
+    private final Runnable task;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new PrioritizedTask instance.
+     */
+    PrioritizedTask( final Priority aPriority, final long aSequence, final Runnable aTask )
+    {
+      this.priority = aPriority;
+      this.sequence = aSequence;
+      this.task = aTask;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo( final PrioritizedTask aOther )
+    {
+      final int result = this.priority.compareTo( aOther.priority );
+      if ( result != 0 )
+      {
+        return result;
+      }
+      return ( this.sequence < aOther.sequence ) ? -1 : ( ( this.sequence == aOther.sequence ) ? 0 : 1 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run()
+    {
+      this.task.run();
+    }
+  }
+
+  /**
+   * Provides a scheduled task that cancels its token when it is cancelled.
+   */
+  private static final class ScheduledTask<T> extends FutureTask<T>
+  {
+    // VARIABLES
+
+    private final CancellationToken token;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new ScheduledTask instance.
+     */
+    ScheduledTask( final ITask<T> aTask, final CancellationToken aToken )
+    {
+      super( new Callable<T>()
+      {
+        @Override
+        public T call() throws Exception
+        {
+          aToken.checkCancelled();
+          return aTask.execute( aToken );
+        }
+      } );
+      this.token = aToken;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel( final boolean aMayInterruptIfRunning )
+    {
+      this.token.cancel();
+      return super.cancel( aMayInterruptIfRunning );
+    }
+  }
+
+  // CONSTANTS
+
+  /** the system property to disable the use of virtual threads. */
+  public static final String VIRTUAL_THREADS_PROPERTY = "nl.lxtreme.test.virtualThreads";
+
+  // VARIABLES
+
+  private final ExecutorService[] lanes;
+  private final ThreadPoolExecutor computePool;
+  private final AtomicLong computeSequence;
+  private final ExecutorService[] computeExecutors;
+  /** the most recently submitted task per key. */
+  private final ConcurrentMap<Object, Future<?>> keyedTasks;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new TaskScheduler instance.
+   */
+  public TaskScheduler()
+  {
+    final int cpuCount = Runtime.getRuntime().availableProcessors();
+
+    this.lanes = new ExecutorService[Priority.values().length];
+    this.lanes[Priority.INTERACTIVE.ordinal()] = createInteractiveLane();
+    this.lanes[Priority.VISIBLE.ordinal()] = Executors.newFixedThreadPool( Math.max( 2, cpuCount / 2 ),
+        createThreadFactory( "VisibleTask", Thread.NORM_PRIORITY ) );
+    this.lanes[Priority.BACKGROUND.ordinal()] = Executors.newFixedThreadPool( 2,
+        createThreadFactory( "BackgroundTask", Thread.NORM_PRIORITY - 1 ) );
+
+    // Subtasks are queued by priority, so pending visible-range subtasks are
+    // not queued behind those of full-capture analyses...
+    this.computePool = new ThreadPoolExecutor( cpuCount, cpuCount, 0L, TimeUnit.MILLISECONDS,
+        new PriorityBlockingQueue<Runnable>(), createThreadFactory( "SampleWorker", Thread.NORM_PRIORITY ) );
+    this.computeSequence = new AtomicLong();
+    this.computeExecutors = new ExecutorService[Priority.values().length];
+    for ( Priority priority : Priority.values() )
+    {
+      this.computeExecutors[priority.ordinal()] = new ComputeExecutor( priority );
+    }
+
+    this.keyedTasks = new ConcurrentHashMap<Object, Future<?>>();
+  }
+
+  // METHODS
+
+  /**
+   * Cancels the task with the given key, if it is still pending or running.
+   * 
+   * @param aKey
+   *          the key of the task to cancel, cannot be <code>null</code>.
+   */
+  public void cancel( final Object aKey )
+  {
+    final Future<?> task = this.keyedTasks.remove( aKey );
+    if ( task != null )
+    {
+      task.cancel( true /* mayInterruptIfRunning */);
+    }
+  }
+
+  /**
+   * Executes the given runnable future, such as a {@link javax.swing.SwingWorker},
+   * with the given priority.
+   * 
+   * @param aPriority
+   *          the priority of the task, cannot be <code>null</code>;
+   * @param aKey
+   *          the key of the task, if not <code>null</code>, an earlier task
+   *          with the same key is cancelled;
+   * @param aTask
+   *          the task to execute, cannot be <code>null</code>.
+   */
+  public void execute( final Priority aPriority, final Object aKey, final RunnableFuture<?> aTask )
+  {
+    if ( ( aPriority == null ) || ( aTask == null ) )
+    {
+      throw new IllegalArgumentException( "Priority and task cannot be null!" );
+    }
+
+    supersede( aKey, aTask );
+
+    this.lanes[aPriority.ordinal()].execute( new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          aTask.run();
+        }
+        finally
+        {
+          if ( aKey != null )
+          {
+            // Do not keep completed tasks, and their results, around...
+            TaskScheduler.this.keyedTasks.remove( aKey, aTask );
+          }
+        }
+      }
+    } );
+  }
+
+  /**
+   * Returns the executor that tasks of the given priority should use to split
+   * their work in parallel.
+   * 
+   * @param aPriority
+   *          the priority of the task, cannot be <code>null</code>.
+   * @return an executor service, never <code>null</code>.
+   */
+  public ExecutorService getComputeExecutor( final Priority aPriority )
+  {
+    if ( aPriority == null )
+    {
+      throw new IllegalArgumentException( "Priority cannot be null!" );
+    }
+    return this.computeExecutors[aPriority.ordinal()];
+  }
+
+  /**
+   * Shuts down this scheduler, cancelling all running tasks.
+   */
+  public void shutdown()
+  {
+    for ( ExecutorService lane : this.lanes )
+    {
+      lane.shutdownNow();
+    }
+    this.computePool.shutdownNow();
+    this.keyedTasks.clear();
+  }
+
+  /**
+   * Submits the given task with the given priority.
+   * 
+   * @param aPriority
+   *          the priority of the task, cannot be <code>null</code>;
+   * @param aKey
+   *          the key of the task, if not <code>null</code>, an earlier task
+   *          with the same key is cancelled;
+   * @param aTask
+   *          the task to submit, cannot be <code>null</code>.
+   * @return the (pending) result of the task, never <code>null</code>.
+   */
+  public <T> Future<T> submit( final Priority aPriority, final Object aKey, final ITask<T> aTask )
+  {
+    if ( aTask == null )
+    {
+      throw new IllegalArgumentException( "Task cannot be null!" );
+    }
+
+    final ScheduledTask<T> result = new ScheduledTask<T>( aTask, new CancellationToken() );
+    execute( aPriority, aKey, result );
+    return result;
+  }
+
+  /**
+   * Creates the lane for interactive tasks, using virtual threads if possible.
+   */
+  private static ExecutorService createInteractiveLane()
+  {
+    if ( !"false".equals( System.getProperty( VIRTUAL_THREADS_PROPERTY ) ) )
+    {
+      try
+      {
+        // Virtual threads are only available as of Java 21...
+        final Method method = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+        return ( ExecutorService )method.invoke( null );
+      }
+      catch ( Exception exception )
+      {
+        // Not available; fall back to platform threads...
+      }
+    }
+
+    return Executors.newCachedThreadPool( createThreadFactory( "InteractiveTask", Thread.NORM_PRIORITY + 1 ) );
+  }
+
+  /**
+   * Creates a thread factory for daemon threads with the given name and
+   * priority.
+   */
+  private static ThreadFactory createThreadFactory( final String aName, final int aPriority )
+  {
+    return new ThreadFactory()
+    {
+      @Override
+      public Thread newThread( final Runnable aRunnable )
+      {
+        final Thread thread = new Thread( aRunnable, aName );
+        thread.setDaemon( true );
+        thread.setPriority( aPriority );
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * Registers the given task under the given key, cancelling the task it
+   * supersedes.
+   */
+  private void supersede( final Object aKey, final Future<?> aTask )
+  {
+    if ( aKey == null )
+    {
+      return;
+    }
+
+    final Future<?> previous = this.keyedTasks.put( aKey, aTask );
+    if ( ( previous != null ) && ( previous != aTask ) )
+    {
+      previous.cancel( true /* mayInterruptIfRunning */);
+    }
+  }
+}
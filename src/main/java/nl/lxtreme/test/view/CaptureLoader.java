@@ -0,0 +1,269 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view;
+
+
+import java.beans.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.swing.*;
+
+import nl.lxtreme.test.*;
+import nl.lxtreme.test.io.*;
+import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.view.model.*;
+
+
+/**
+ * Loads a capture in the background, and shows it in the signal diagram once
+ * it is loaded.
+ * <p>
+ * While loading, the progress is reflected by the "loadProgress" property of
+ * the {@link SignalDiagramModel}. Partial data that is published while
+ * loading is shown directly, so the first part of a large capture can be
+ * inspected before the capture is completely loaded. The remainder of the
+ * capture only replaces the shown sample data, so any changes made to the
+ * channel groups, cursors and annotations in the meantime are retained.
+ * </p>
+ * <p>
+ * Captures loaded from a file have their derived indexes persisted in an
+ * {@link IndexSidecar} next to that file, which is opened by this loader.
+ * </p>
+ * 
+ * @see SignalDiagramController#loadCapture(CaptureLoader)
+ */
+public abstract class CaptureLoader extends SwingWorker<SampleDataModel, SampleDataModel> implements
+    IProgressListener, IPartialDataListener
+{
+  // VARIABLES
+
+  private final SignalDiagramController controller;
+  private final File captureFile;
+
+  private volatile IndexSidecar indexSidecar;
+  /** whether the capture is shown, only accessed on the EDT. */
+  private boolean showing;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new CaptureLoader instance for a capture that is not loaded from
+   * a file.
+   * 
+   * @param aController
+   *          the controller to show the loaded capture with, cannot be
+   *          <code>null</code>.
+   */
+  protected CaptureLoader( final SignalDiagramController aController )
+  {
+    this( aController, null /* aCaptureFile */);
+  }
+
+  /**
+   * Creates a new CaptureLoader instance.
+   * 
+   * @param aController
+   *          the controller to show the loaded capture with, cannot be
+   *          <code>null</code>;
+   * @param aCaptureFile
+   *          the file the capture is loaded from, used to locate its derived
+   *          indexes, can be <code>null</code>.
+   */
+  protected CaptureLoader( final SignalDiagramController aController, final File aCaptureFile )
+  {
+    if ( aController == null )
+    {
+      throw new IllegalArgumentException( "Controller cannot be null!" );
+    }
+    this.controller = aController;
+    this.captureFile = aCaptureFile;
+
+    addPropertyChangeListener( new PropertyChangeListener()
+    {
+      @Override
+      public void propertyChange( final PropertyChangeEvent aEvent )
+      {
+        if ( "progress".equals( aEvent.getPropertyName() ) && !isDone() )
+        {
+          getSignalDiagramModel().setLoadProgress( ( ( Integer )aEvent.getNewValue() ).intValue() );
+        }
+      }
+    } );
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public final void partialDataAvailable( final SampleDataModel aDataModel )
+  {
+    publish( aDataModel );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public final void progressChanged( final int aPercentage )
+  {
+    setProgress( Math.max( 0, Math.min( 100, aPercentage ) ) );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected final SampleDataModel doInBackground() throws Exception
+  {
+    final SampleDataModel result = load();
+
+    if ( this.captureFile != null )
+    {
+      final long contentHash = IndexSidecar.computeContentHash( result.getValues(), result.getTimestamps(),
+          result.getSampleRate() );
+
+      IndexSidecar sidecar = null;
+      try
+      {
+        sidecar = IndexSidecar.open( IndexSidecar.getFile( this.captureFile ), contentHash );
+      }
+      catch ( IOException exception )
+      {
+        // Not fatal; the derived indexes are simply rebuilt...
+        exception.printStackTrace();
+      }
+
+      // A missing or stale sidecar is replaced by an empty one...
+      this.indexSidecar = ( sidecar == null ) ? new IndexSidecar( contentHash ) : sidecar;
+    }
+
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected final void done()
+  {
+    if ( isCancelled() )
+    {
+      // Superseded by another loader, whose progress is shown now...
+      return;
+    }
+    getSignalDiagramModel().setLoadProgress( -1 );
+
+    try
+    {
+      final SampleDataModel dataModel = get();
+      show( dataModel );
+      if ( this.indexSidecar != null )
+      {
+        this.controller.setIndexSidecar( IndexSidecar.getFile( this.captureFile ), this.indexSidecar );
+      }
+    }
+    catch ( InterruptedException exception )
+    {
+      Thread.currentThread().interrupt();
+    }
+    catch ( ExecutionException exception )
+    {
+      final Throwable cause = exception.getCause();
+      JOptionPane.showMessageDialog( this.controller.getSignalDiagram(), "Failed to load capture: "
+          + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE );
+    }
+  }
+
+  /**
+   * Loads the capture, called from a background thread.
+   * <p>
+   * Implementations can report their progress through
+   * {@link #progressChanged(int)}, and the partially loaded sample data
+   * through {@link #partialDataAvailable(SampleDataModel)}.
+   * </p>
+   * 
+   * @return the loaded data model, never <code>null</code>.
+   * @throws Exception
+   *           in case loading failed.
+   */
+  protected abstract SampleDataModel load() throws Exception;
+
+  /**
+   * Called once on the EDT after the capture is first shown, for example, to
+   * restore the channel groups of the loaded capture.
+   * <p>
+   * The capture is first shown with its partial data, if any is published,
+   * hence its metadata should be available by then. By default, this method
+   * does nothing.
+   * </p>
+   * 
+   * @param aDataModel
+   *          the shown data model, never <code>null</code>.
+   */
+  protected void shown( final SampleDataModel aDataModel )
+  {
+    // NO-op
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected final void process( final List<SampleDataModel> aChunks )
+  {
+    if ( isDone() || aChunks.isEmpty() )
+    {
+      // The complete data model will be set shortly...
+      return;
+    }
+
+    show( aChunks.get( aChunks.size() - 1 ) );
+  }
+
+  /**
+   * Shows the given (partial) data model, only setting it as a new data model
+   * the first time.
+   */
+  private void show( final SampleDataModel aDataModel )
+  {
+    if ( this.showing )
+    {
+      this.controller.updateDataModel( aDataModel );
+      return;
+    }
+
+    this.showing = true;
+    this.controller.setDataModel( aDataModel );
+
+    shown( aDataModel );
+  }
+
+  /**
+   * Returns the signal diagram model.
+   */
+  final SignalDiagramModel getSignalDiagramModel()
+  {
+    return this.controller.getSignalDiagramModel();
+  }
+}
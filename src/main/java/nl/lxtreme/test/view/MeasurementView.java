@@ -25,13 +25,18 @@ import static nl.lxtreme.test.Utils.*;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.beans.*;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
 import javax.swing.*;
 
 import nl.lxtreme.test.*;
 import nl.lxtreme.test.model.*;
 import nl.lxtreme.test.model.Cursor;
 import nl.lxtreme.test.util.*;
+import nl.lxtreme.test.util.TaskScheduler.Priority;
 import nl.lxtreme.test.view.model.*;
 
 
@@ -43,6 +48,89 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
 {
   // INNER TYPES
 
+  /**
+   * Provides a {@link SwingWorker} to measure the frequency, dutycycle and such
+   * of all enabled channels in a single pass.
+   */
+  final class BulkSignalMeasurer extends SwingWorker<String, Boolean>
+  {
+    // VARIABLES
+
+    private final Channel[] channels;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new BulkSignalMeasurer instance.
+     * 
+     * @param aChannels
+     *          the channels to measure, cannot be <code>null</code>.
+     */
+    public BulkSignalMeasurer( final Channel[] aChannels )
+    {
+      this.channels = aChannels;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String doInBackground() throws Exception
+    {
+      int mask = 0;
+      for ( Channel channel : this.channels )
+      {
+        mask |= channel.getMask();
+      }
+
+      final long startTimestamp = ( ( Cursor )MeasurementView.this.cursorA.getSelectedItem() ).getTimestamp();
+      final long endTimestamp = ( ( Cursor )MeasurementView.this.cursorB.getSelectedItem() ).getTimestamp();
+
+      // The sample data can be replaced while measuring...
+      final DataSnapshot snapshot = getSignalDiagramModel().getSnapshot();
+
+      final int startIdx = snapshot.getTimestampIndex( startTimestamp );
+      final int endIdx = snapshot.getTimestampIndex( endTimestamp );
+
+      final SignalMeasurement[] measurements = MeasurementView.this.measurementCache.measureAll(
+          snapshot.getValues(), snapshot.getTimestamps(), mask, startIdx, endIdx, getExecutor( Priority.VISIBLE ) );
+
+      final double measureTime = ( double )Math.abs( endTimestamp - startTimestamp ) / snapshot.getSampleRate();
+
+      final StringBuilder sb = new StringBuilder( "<html><table>" );
+      sb.append( "<tr><th align='right'>Time:</th><td colspan='3'>" ).append( displayTime( measureTime ) )
+          .append( "</td>" );
+      sb.append( "<tr><th align='left'>Channel</th><th>Frequency</th><th>Duty cycle</th><th># of pulses</th>" );
+      for ( Channel channel : this.channels )
+      {
+        final SignalMeasurement measurement = measurements[channel.getIndex()];
+
+        final double frequency = measurement.getFrequency( snapshot.getSampleRate() );
+        final double dutyCycle = measurement.getDutyCycle();
+
+        sb.append( "<tr><td>" ).append( channel.getLabel() ).append( "</td>" );
+        sb.append( "<td align='right'>" ).append( displayFrequency( frequency ) ).append( "</td>" );
+        sb.append( "<td align='right'>" ).append( String.format( "%.3f%%", Double.valueOf( 100.0 * dutyCycle ) ) )
+            .append( "</td>" );
+        sb.append( "<td align='right'>" ).append( measurement.getPulseCount() ).append( "</td>" );
+      }
+      sb.append( "</table></html>" );
+
+      return sb.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void done()
+    {
+      showMeasurementInfo( this );
+    }
+  }
+
   /**
    * {@link ActionListener} implementation for the channel comboboxes.
    */
@@ -75,79 +163,151 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
   }
 
   /**
-   * Provides a {@link SwingWorker} to measure the frequency, dutycycle and such
-   * asynchronously from the UI.
+   * Provides a {@link SwingWorker} to calculate the pulse-width histogram of a
+   * single channel in the background, reporting its progress.
    */
-  final class SignalMeasurer extends SwingWorker<String, Boolean>
+  final class PulseHistogramCalculator extends SwingWorker<String, Integer> implements IProgressListener
   {
+    // VARIABLES
+
+    private final Channel channel;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new PulseHistogramCalculator instance.
+     * 
+     * @param aChannel
+     *          the channel to calculate the histogram for, cannot be
+     *          <code>null</code>.
+     */
+    public PulseHistogramCalculator( final Channel aChannel )
+    {
+      this.channel = aChannel;
+    }
+
     // METHODS
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void progressChanged( final int aPercentage )
+    {
+      setProgress( Math.max( 0, Math.min( 100, aPercentage ) ) );
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected String doInBackground() throws Exception
     {
-      MeasurementView.this.indicator.setVisible( true );
+      // The sample data can be replaced while calculating...
+      final DataSnapshot snapshot = getSignalDiagramModel().getSnapshot();
 
-      final int mask = ( ( Channel )MeasurementView.this.channel.getSelectedItem() ).getMask();
-      final long startTimestamp = ( ( Cursor )MeasurementView.this.cursorA.getSelectedItem() ).getTimestamp();
-      final long endTimestamp = ( ( Cursor )MeasurementView.this.cursorB.getSelectedItem() ).getTimestamp();
+      final int[] values = snapshot.getValues();
+      final long[] timestamps = snapshot.getTimestamps();
 
-      final SignalDiagramModel model = getSignalDiagramModel();
+      // Use the cursor range if possible, otherwise the whole capture...
+      int startIdx = 0;
+      int endIdx = values.length - 1;
 
-      final int startIdx = model.getTimestampIndex( startTimestamp );
-      final int endIdx = model.getTimestampIndex( endTimestamp );
+      final Cursor selectedCursorA = ( Cursor )MeasurementView.this.cursorA.getSelectedItem();
+      final Cursor selectedCursorB = ( Cursor )MeasurementView.this.cursorB.getSelectedItem();
+      if ( ( selectedCursorA != null ) && selectedCursorA.isDefined() && ( selectedCursorB != null )
+          && selectedCursorB.isDefined() && ( selectedCursorA != selectedCursorB ) )
+      {
+        final int idxA = snapshot.getTimestampIndex( selectedCursorA.getTimestamp() );
+        final int idxB = snapshot.getTimestampIndex( selectedCursorB.getTimestamp() );
 
-      final int[] values = model.getValues();
-      final long[] timestamps = model.getTimestamps();
+        startIdx = Math.min( idxA, idxB );
+        endIdx = Math.max( idxA, idxB );
+      }
 
-      final double measureTime = ( double )Math.abs( endTimestamp - startTimestamp ) / model.getSampleRate();
+      if ( endIdx <= startIdx )
+      {
+        return "";
+      }
 
-      int highCount = 0;
-      long highTime = 0;
-      int lowCount = 0;
-      long lowTime = 0;
+      final PulseHistogram histogram = MeasurementView.this.histogramCache.getHistogram( values, timestamps,
+          this.channel.getMask(), startIdx, endIdx, this );
 
-      int i = startIdx;
-      long lastTransition = timestamps[i];
-      int lastBitValue = values[i++] & mask;
+      final double sampleRate = snapshot.getSampleRate();
 
-      for ( ; !isCancelled() && ( i <= endIdx ); i++ )
+      final StringBuilder sb = new StringBuilder( "<html><table>" );
+      sb.append( "<tr><th colspan='4' align='left'>" ).append( this.channel.getLabel() ).append( "</th></tr>" );
+      sb.append( "<tr><th align='right'>Width</th><th>High</th><th>Low</th><th>Period</th></tr>" );
+      for ( int bin = 0; bin < PulseHistogram.BIN_COUNT; bin++ )
       {
-        final int bitValue = values[i] & mask;
-
-        if ( lastBitValue != bitValue )
+        final long highCount = histogram.getHighWidthCount( bin );
+        final long lowCount = histogram.getLowWidthCount( bin );
+        final long periodCount = histogram.getPeriodCount( bin );
+        if ( ( highCount | lowCount | periodCount ) == 0L )
         {
-          final long periodTime = timestamps[i] - lastTransition;
-
-          if ( lastBitValue < bitValue )
-          {
-            // Low to high transition: previously seen a low-state...
-            lowCount++;
-            lowTime += periodTime;
-          }
-          else if ( lastBitValue > bitValue )
-          {
-            // High to low transition: previously seen a high-state...
-            highCount++;
-            highTime += periodTime;
-          }
-
-          lastTransition = timestamps[i];
+          continue;
         }
 
-        lastBitValue = bitValue;
+        final String widthText = displayTime( PulseHistogram.getBinLowerBound( bin ) / sampleRate );
+
+        sb.append( "<tr><td align='right'>\u2265" ).append( widthText ).append( "</td>" );
+        sb.append( "<td align='right'>" ).append( highCount ).append( "</td>" );
+        sb.append( "<td align='right'>" ).append( lowCount ).append( "</td>" );
+        sb.append( "<td align='right'>" ).append( periodCount ).append( "</td></tr>" );
       }
+      sb.append( "</table></html>" );
 
-      int pulseCount = ( lowCount + highCount ) / 2;
+      return sb.toString();
+    }
 
-      // Take the average high & low time per pulse...
-      double avgHighTime = ( highTime / ( double )highCount );
-      double avgLowTime = ( lowTime / ( double )lowCount );
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void done()
+    {
+      showHistogramInfo( this );
+    }
+  }
+
+  /**
+   * Provides a {@link SwingWorker} to measure the frequency, dutycycle and such
+   * asynchronously from the UI.
+   */
+  final class SignalMeasurer extends SwingWorker<String, Boolean>
+  {
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String doInBackground() throws Exception
+    {
+      final int mask = ( ( Channel )MeasurementView.this.channel.getSelectedItem() ).getMask();
+      final long startTimestamp = ( ( Cursor )MeasurementView.this.cursorA.getSelectedItem() ).getTimestamp();
+      final long endTimestamp = ( ( Cursor )MeasurementView.this.cursorB.getSelectedItem() ).getTimestamp();
+
+      // The sample data can be replaced while measuring...
+      final DataSnapshot snapshot = getSignalDiagramModel().getSnapshot();
 
-      double frequency = model.getSampleRate() / ( avgHighTime + avgLowTime );
-      double dutyCycle = avgHighTime / ( avgHighTime + avgLowTime );
+      final int startIdx = snapshot.getTimestampIndex( startTimestamp );
+      final int endIdx = snapshot.getTimestampIndex( endTimestamp );
+
+      final int[] values = snapshot.getValues();
+      final long[] timestamps = snapshot.getTimestamps();
+
+      final double measureTime = ( double )Math.abs( endTimestamp - startTimestamp ) / snapshot.getSampleRate();
+
+      final SignalMeasurement measurement = MeasurementView.this.measurementCache.measure( values, timestamps, mask,
+          startIdx, endIdx, getExecutor( Priority.BACKGROUND ) );
+
+      final int highCount = measurement.getHighCount();
+      final int lowCount = measurement.getLowCount();
+      final int pulseCount = measurement.getPulseCount();
+
+      final double frequency = measurement.getFrequency( snapshot.getSampleRate() );
+      final double dutyCycle = measurement.getDutyCycle();
 
       String timeText = displayTime( measureTime );
       String frequencyText = displayFrequency( frequency );
@@ -171,15 +331,7 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
     @Override
     protected void done()
     {
-      try
-      {
-        MeasurementView.this.indicator.setVisible( false );
-        MeasurementView.this.measurementInfo.setText( get() );
-      }
-      catch ( Exception exception )
-      {
-        exception.printStackTrace();
-      }
+      showMeasurementInfo( this );
     }
   }
 
@@ -187,17 +339,32 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
 
   private static final long serialVersionUID = 1L;
 
+  /** the keys of the background tasks, only one of each runs at any time. */
+  private static final String MEASUREMENT_TASK = "measurement";
+  private static final String HISTOGRAM_TASK = "histogram";
+
   // VARIABLES
 
   private JComboBox channel;
   private JComboBox cursorA;
   private JComboBox cursorB;
+  private JCheckBox allChannels;
+  private JButton histogramButton;
   private BusyIndicator indicator;
+  private JProgressBar histogramProgress;
 
   private JLabel measurementInfo;
+  private JLabel histogramInfo;
 
   private volatile boolean listening;
 
+  private final SignalMeasurementCache measurementCache;
+  private final PulseHistogramCache histogramCache;
+  /** the currently running measurement, if any. */
+  private SwingWorker<String, Boolean> measurer;
+  /** the currently running histogram calculation, if any. */
+  private PulseHistogramCalculator histogramCalculator;
+
   // CONSTRUCTORS
 
   /**
@@ -209,6 +376,9 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
   {
     super( aController );
 
+    this.measurementCache = new SignalMeasurementCache();
+    this.histogramCache = new PulseHistogramCache();
+
     initComponent();
 
     this.listening = true;
@@ -318,6 +488,8 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
     this.channel.setEnabled( false );
     this.cursorA.setEnabled( false );
     this.cursorB.setEnabled( false );
+    this.allChannels.setEnabled( false );
+    this.histogramButton.setEnabled( false );
     this.measurementInfo.setText( "" );
   }
 
@@ -332,9 +504,11 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
       updateCursorModels();
     }
 
-    this.channel.setEnabled( true );
+    this.channel.setEnabled( !this.allChannels.isSelected() );
     this.cursorA.setEnabled( true );
     this.cursorB.setEnabled( true );
+    this.allChannels.setEnabled( true );
+    this.histogramButton.setEnabled( true );
     this.measurementInfo.setText( "" );
   }
 
@@ -373,10 +547,20 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
   {
     final SignalDiagramModel model = getSignalDiagramModel();
 
-    Channel channel = ( Channel )this.channel.getSelectedItem();
-    if ( ( channel == null ) || !channel.isEnabled() || !channel.isAssigned() )
+    if ( this.allChannels.isSelected() )
     {
-      return false;
+      if ( getEnabledChannels().length == 0 )
+      {
+        return false;
+      }
+    }
+    else
+    {
+      Channel channel = ( Channel )this.channel.getSelectedItem();
+      if ( ( channel == null ) || !channel.isEnabled() || !channel.isAssigned() )
+      {
+        return false;
+      }
     }
 
     if ( !model.isCursorMode() )
@@ -399,6 +583,36 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
     return selectedCursorA != selectedCursorB;
   }
 
+  /**
+   * Returns all assigned channels that are enabled.
+   * 
+   * @return an array of enabled channels, never <code>null</code>.
+   */
+  private Channel[] getEnabledChannels()
+  {
+    final List<Channel> result = new ArrayList<Channel>();
+    for ( Channel channel : getChannelGroupManager().getAssignedChannels() )
+    {
+      if ( channel.isEnabled() )
+      {
+        result.add( channel );
+      }
+    }
+    return result.toArray( new Channel[result.size()] );
+  }
+
+  /**
+   * Returns the executor used to measure signals in parallel.
+   * 
+   * @param aPriority
+   *          the priority of the measuring task.
+   * @return an executor service, never <code>null</code>.
+   */
+  private ExecutorService getExecutor( final Priority aPriority )
+  {
+    return getTaskScheduler().getComputeExecutor( aPriority );
+  }
+
   /**
    * Returns the channel group manager.
    * 
@@ -417,6 +631,16 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
     return getController().getSignalDiagramModel();
   }
 
+  /**
+   * Returns the scheduler to run the measurements on.
+   * 
+   * @return a task scheduler, never <code>null</code>.
+   */
+  private TaskScheduler getTaskScheduler()
+  {
+    return getController().getTaskScheduler();
+  }
+
   /**
    * Initializes this component.
    */
@@ -443,10 +667,43 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
     this.cursorB.putClientProperty( "JComboBox.isPopDown", Boolean.TRUE );
     this.cursorB.setEnabled( false );
 
+    this.allChannels = new JCheckBox( "All channels" );
+    this.allChannels.addActionListener( new ActionListener()
+    {
+      @Override
+      public void actionPerformed( final ActionEvent aEvent )
+      {
+        MeasurementView.this.channel.setEnabled( !MeasurementView.this.allChannels.isSelected() );
+        updateMeasurementInfo();
+      }
+    } );
+    // Make the component a bit smaller...
+    this.allChannels.putClientProperty( "JComponent.sizeVariant", "small" );
+    this.allChannels.setOpaque( false );
+    this.allChannels.setEnabled( false );
+
+    this.histogramButton = new JButton( "Histogram" );
+    this.histogramButton.addActionListener( new ActionListener()
+    {
+      @Override
+      public void actionPerformed( final ActionEvent aEvent )
+      {
+        updateHistogramInfo();
+      }
+    } );
+    // Make the component a bit smaller...
+    this.histogramButton.putClientProperty( "JComponent.sizeVariant", "small" );
+    this.histogramButton.setEnabled( false );
+
     this.indicator = new BusyIndicator();
     this.indicator.setVisible( false );
 
+    this.histogramProgress = new JProgressBar( 0, 100 );
+    this.histogramProgress.putClientProperty( "JComponent.sizeVariant", "small" );
+    this.histogramProgress.setVisible( false );
+
     this.measurementInfo = new JLabel();
+    this.histogramInfo = new JLabel();
 
     setOpaque( false );
     setLayout( new BorderLayout() );
@@ -490,15 +747,106 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
 
     cursorPanel.add( this.cursorB, gbc );
 
-    gbc.gridx = 0;
+    gbc.gridx = 1;
     gbc.gridy = 3;
+    gbc.anchor = GridBagConstraints.BASELINE_LEADING;
+
+    cursorPanel.add( this.allChannels, gbc );
+
+    gbc.gridx = 1;
+    gbc.gridy = 4;
+    gbc.anchor = GridBagConstraints.BASELINE_LEADING;
+
+    cursorPanel.add( this.histogramButton, gbc );
+
+    gbc.gridx = 0;
+    gbc.gridy = 5;
     gbc.gridwidth = 3;
     gbc.anchor = GridBagConstraints.CENTER;
 
     cursorPanel.add( this.indicator, gbc );
 
+    JPanel histogramPanel = new JPanel( new BorderLayout() );
+    histogramPanel.setOpaque( false );
+    histogramPanel.add( this.histogramProgress, BorderLayout.NORTH );
+    histogramPanel.add( this.histogramInfo, BorderLayout.CENTER );
+
     add( cursorPanel, BorderLayout.NORTH );
     add( this.measurementInfo, BorderLayout.CENTER );
+    add( histogramPanel, BorderLayout.SOUTH );
+  }
+
+  /**
+   * Shows the result of a given histogram calculation, and hides the progress
+   * bar.
+   * 
+   * @param aCalculator
+   *          the calculator that completed, cannot be <code>null</code>.
+   */
+  private void showHistogramInfo( final PulseHistogramCalculator aCalculator )
+  {
+    if ( aCalculator.isCancelled() )
+    {
+      if ( this.histogramCalculator == null )
+      {
+        // Cancelled without being superseded by another calculation...
+        this.histogramProgress.setVisible( false );
+      }
+      return;
+    }
+
+    if ( this.histogramCalculator != aCalculator )
+    {
+      // Superseded by another calculation, whose result is shown instead...
+      return;
+    }
+    this.histogramCalculator = null;
+
+    try
+    {
+      this.histogramProgress.setVisible( false );
+      this.histogramInfo.setText( aCalculator.get() );
+    }
+    catch ( Exception exception )
+    {
+      exception.printStackTrace();
+    }
+  }
+
+  /**
+   * Shows the result of a given measurement, and hides the busy indicator.
+   * 
+   * @param aMeasurer
+   *          the measurer that completed, cannot be <code>null</code>.
+   */
+  private void showMeasurementInfo( final SwingWorker<String, Boolean> aMeasurer )
+  {
+    if ( aMeasurer.isCancelled() )
+    {
+      if ( this.measurer == null )
+      {
+        // Cancelled without being superseded by another measurement...
+        this.indicator.setVisible( false );
+      }
+      return;
+    }
+
+    if ( this.measurer != aMeasurer )
+    {
+      // Superseded by another measurement, whose result is shown instead...
+      return;
+    }
+    this.measurer = null;
+
+    try
+    {
+      this.indicator.setVisible( false );
+      this.measurementInfo.setText( aMeasurer.get() );
+    }
+    catch ( Exception exception )
+    {
+      exception.printStackTrace();
+    }
   }
 
   /**
@@ -536,6 +884,43 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
     return aComboBox;
   }
 
+  /**
+   * Starts calculating the pulse-width histogram of the selected channel.
+   */
+  private void updateHistogramInfo()
+  {
+    // Make sure at most one calculation is running at any time...
+    getTaskScheduler().cancel( HISTOGRAM_TASK );
+    this.histogramCalculator = null;
+
+    final Channel selectedChannel = ( Channel )this.channel.getSelectedItem();
+    if ( ( selectedChannel == null ) || !selectedChannel.isAssigned() )
+    {
+      this.histogramProgress.setVisible( false );
+      this.histogramInfo.setText( "" );
+      return;
+    }
+
+    final PulseHistogramCalculator calculator = new PulseHistogramCalculator( selectedChannel );
+    calculator.addPropertyChangeListener( new PropertyChangeListener()
+    {
+      @Override
+      public void propertyChange( final PropertyChangeEvent aEvent )
+      {
+        if ( "progress".equals( aEvent.getPropertyName() ) )
+        {
+          MeasurementView.this.histogramProgress.setValue( ( ( Integer )aEvent.getNewValue() ).intValue() );
+        }
+      }
+    } );
+
+    this.histogramProgress.setValue( 0 );
+    this.histogramProgress.setVisible( true );
+
+    this.histogramCalculator = calculator;
+    getTaskScheduler().execute( Priority.BACKGROUND, HISTOGRAM_TASK, calculator );
+  }
+
   /**
    * Updates the actual measurement information.
    */
@@ -545,9 +930,27 @@ public class MeasurementView extends AbstractViewLayer implements IChannelChange
 
     try
     {
+      // Make sure at most one measurement is running at any time...
+      getTaskScheduler().cancel( MEASUREMENT_TASK );
+      this.measurer = null;
+
       if ( canPerformMeasurement() )
       {
-        ( new SignalMeasurer() ).execute();
+        if ( this.allChannels.isSelected() )
+        {
+          this.measurer = new BulkSignalMeasurer( getEnabledChannels() );
+        }
+        else
+        {
+          this.measurer = new SignalMeasurer();
+        }
+        this.indicator.setVisible( true );
+        getTaskScheduler().execute( Priority.VISIBLE, MEASUREMENT_TASK, this.measurer );
+      }
+      else
+      {
+        // Nothing to measure; don't leave the indicator spinning...
+        this.indicator.setVisible( false );
       }
     }
     finally
@@ -0,0 +1,401 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view;
+
+
+import java.awt.event.*;
+import java.beans.*;
+import java.util.*;
+
+import javax.swing.*;
+
+import nl.lxtreme.test.*;
+import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.model.Cursor;
+import nl.lxtreme.test.util.TaskScheduler.Priority;
+import nl.lxtreme.test.view.laf.*;
+import nl.lxtreme.test.view.model.*;
+
+
+/**
+ * Provides an overview of the entire capture, showing the activity of each
+ * channel group, along with the visible part of the signals and the cursors.
+ * <p>
+ * The activity is rendered from an {@link ActivitySummary} that is computed
+ * once in the background for each capture, so painting this view takes the
+ * same time for any capture length. Clicking or dragging on this view scrolls
+ * the signals to the corresponding position.
+ * </p>
+ */
+public class OverviewView extends AbstractViewLayer implements IChannelChangeListener, ICursorChangeListener,
+    IDataModelChangeListener, PropertyChangeListener
+{
+  // INNER TYPES
+
+  /**
+   * Scrolls the signals when clicking or dragging on the overview.
+   */
+  final class NavigationListener extends MouseAdapter
+  {
+    // VARIABLES
+
+    /** the distance between the mouse and the left side of the viewport. */
+    private double grabOffset;
+    private boolean dragging;
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void mouseDragged( final MouseEvent aEvent )
+    {
+      if ( this.dragging )
+      {
+        scrollTo( aEvent.getX() - this.grabOffset );
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void mousePressed( final MouseEvent aEvent )
+    {
+      if ( !SwingUtilities.isLeftMouseButton( aEvent ) )
+      {
+        return;
+      }
+
+      final SignalDiagramComponent signalDiagram = getController().getSignalDiagram();
+      if ( signalDiagram == null )
+      {
+        return;
+      }
+      // Scrolling while zooming would move the zoom anchor...
+      signalDiagram.getZoomAnimator().cancel();
+
+      final OverviewViewModel model = getModel();
+      final int width = getWidth();
+      final double viewOffset = model.getViewOffset();
+      final double start = model.viewOffsetToOverview( viewOffset, width );
+      final double end = model.viewOffsetToOverview( viewOffset + model.getViewportWidth(), width );
+
+      final int x = aEvent.getX();
+      if ( ( x >= start ) && ( x <= end ) )
+      {
+        // Drag the viewport from where it is grabbed...
+        this.grabOffset = x - start;
+      }
+      else
+      {
+        // Center the viewport around the mouse...
+        this.grabOffset = ( end - start ) / 2.0;
+      }
+      this.dragging = true;
+
+      scrollTo( x - this.grabOffset );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void mouseReleased( final MouseEvent aEvent )
+    {
+      this.dragging = false;
+    }
+
+    /**
+     * Scrolls the signals such that the left side of the viewport is at the
+     * given X-position of the overview.
+     */
+    private void scrollTo( final double aXpos )
+    {
+      final SignalDiagramComponent signalDiagram = getController().getSignalDiagram();
+      signalDiagram.setViewOffset( getModel().overviewToViewOffset( aXpos, getWidth() ) );
+    }
+  }
+
+  // CONSTANTS
+
+  private static final long serialVersionUID = 1L;
+
+  /** The key of the background task computing the activity summary. */
+  private static final String SUMMARY_TASK = "activitySummary";
+
+  // VARIABLES
+
+  private final OverviewViewModel model;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new {@link OverviewView} instance.
+   * 
+   * @param aController
+   *          the controller to use, cannot be <code>null</code>.
+   */
+  private OverviewView( final SignalDiagramController aController )
+  {
+    super( aController );
+
+    this.model = new OverviewViewModel( aController );
+
+    final NavigationListener listener = new NavigationListener();
+    addMouseListener( listener );
+    addMouseMotionListener( listener );
+
+    updateUI();
+  }
+
+  // METHODS
+
+  /**
+   * Factory method for creating new {@link OverviewView} instances.
+   * 
+   * @param aController
+   *          the controller to use, cannot be <code>null</code>.
+   * @return a {@link OverviewView} instance, never <code>null</code>.
+   */
+  public static OverviewView create( final SignalDiagramController aController )
+  {
+    OverviewView result = new OverviewView( aController );
+    aController.addChannelChangeListener( result );
+    aController.addCursorChangeListener( result );
+    aController.addDataModelChangeListener( result );
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void addNotify()
+  {
+    try
+    {
+      getController().getSignalDiagramModel().addPropertyChangeListener( this );
+      summarize();
+    }
+    finally
+    {
+      super.addNotify();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void channelChanged( final ChannelChangeEvent aEvent )
+  {
+    // Channel properties do not influence the activity of their groups...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void channelGroupStructureChanged( final Collection<Channel> aChannelList )
+  {
+    summarize();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void channelMoved( final ChannelMoveEvent aEvent )
+  {
+    // A channel can be moved to another group...
+    summarize();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void cursorAdded( final Cursor aCursor )
+  {
+    repaint( 50L );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void cursorChanged( final String aPropertyName, final Cursor aOldCursor, final Cursor aNewCursor )
+  {
+    repaint( 50L );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void cursorRemoved( final Cursor aOldCursor )
+  {
+    repaint( 50L );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void cursorsInvisible()
+  {
+    repaint( 50L );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void cursorsVisible()
+  {
+    repaint( 50L );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void dataModelChanged( final SampleDataModel aDataModel )
+  {
+    summarize();
+  }
+
+  /**
+   * @return
+   */
+  public OverviewViewModel getModel()
+  {
+    return this.model;
+  }
+
+  /**
+   * Returns the height of this overview.
+   * 
+   * @return a height, in pixels.
+   */
+  public int getOverviewHeight()
+  {
+    return getModel().getOverviewHeight();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void propertyChange( final PropertyChangeEvent aEvent )
+  {
+    final String name = aEvent.getPropertyName();
+    if ( "viewOffset".equals( name ) || "zoomFactor".equals( name ) )
+    {
+      repaint();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void removeNotify()
+  {
+    try
+    {
+      getController().getTaskScheduler().cancel( SUMMARY_TASK );
+      getController().getSignalDiagramModel().removePropertyChangeListener( this );
+    }
+    finally
+    {
+      super.removeNotify();
+    }
+  }
+
+  /**
+   * Overridden in order to set a custom UI, which not only paints this diagram,
+   * but also can be used to manage the various settings, such as colors,
+   * height, and so on.
+   * 
+   * @see javax.swing.JComponent#updateUI()
+   */
+  @Override
+  public final void updateUI()
+  {
+    setUI( new OverviewUI() );
+  }
+
+  /**
+   * Computes the activity summary of the current capture in the background,
+   * and shows it once it is computed.
+   */
+  private void summarize()
+  {
+    final SignalDiagramModel diagramModel = getController().getSignalDiagramModel();
+    final DataSnapshot snapshot = diagramModel.getSnapshot();
+
+    final List<ChannelGroup> groups = new ArrayList<ChannelGroup>();
+    for ( ChannelGroup group : diagramModel.getChannelGroupManager().getChannelGroups() )
+    {
+      if ( group.isVisible() && group.hasChannels() )
+      {
+        groups.add( group );
+      }
+    }
+
+    final int[] masks = new int[groups.size()];
+    for ( int i = 0; i < masks.length; i++ )
+    {
+      masks[i] = groups.get( i ).getMask();
+    }
+
+    final SwingWorker<ActivitySummary, Void> worker = new SwingWorker<ActivitySummary, Void>()
+    {
+      @Override
+      protected ActivitySummary doInBackground() throws Exception
+      {
+        return ActivitySummary.compute( snapshot.getValues(), snapshot.getTimestamps(), masks,
+            ActivitySummary.DEFAULT_RESOLUTION );
+      }
+
+      @Override
+      protected void done()
+      {
+        // Ignore the summaries of old data...
+        if ( !isCancelled() && ( diagramModel.getSnapshot() == snapshot ) )
+        {
+          try
+          {
+            getModel().setActivitySummary( get(), groups.toArray( new ChannelGroup[groups.size()] ) );
+            repaint();
+          }
+          catch ( Exception exception )
+          {
+            exception.printStackTrace();
+          }
+        }
+      }
+    };
+    getController().getTaskScheduler().execute( Priority.BACKGROUND, SUMMARY_TASK, worker );
+  }
+}
@@ -22,13 +22,18 @@ package nl.lxtreme.test.view;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.logging.*;
 
 import javax.swing.*;
 
 import nl.lxtreme.test.*;
+import nl.lxtreme.test.util.*;
+import nl.lxtreme.test.util.TaskScheduler.Priority;
 import nl.lxtreme.test.view.action.*;
 import nl.lxtreme.test.view.model.*;
+import nl.lxtreme.test.view.model.SignalDiagramModel.HoverContext;
 import static nl.lxtreme.test.SwingUtils.*;
 
 
@@ -40,6 +45,292 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
 {
   // INNER TYPES
 
+  /**
+   * Coalesces the mouse movements made in measurement mode into at most one
+   * signal hover calculation per frame. The calculation itself is done as an
+   * interactive task of the controller's task scheduler, one calculation at a
+   * time, and only the latest mouse position is taken into account (older
+   * positions are simply dropped). Measurement listeners are only notified
+   * when the hovered pulse actually changes.
+   */
+  static final class MeasurementHoverDispatcher implements Runnable, IMeasurementListener
+  {
+    // INNER TYPES
+
+    /**
+     * Small DTO for keeping a pending hover request together.
+     */
+    static final class HoverRequest
+    {
+      final JComponent view;
+      final HoverContext context;
+
+      /**
+       * Creates a new HoverRequest instance.
+       */
+      HoverRequest( final JComponent aView, final HoverContext aContext )
+      {
+        this.view = aView;
+        this.context = aContext;
+      }
+    }
+
+    // CONSTANTS
+
+    /** The minimal time (in milliseconds) between two hover calculations. */
+    private static final long FRAME_INTERVAL = 16L;
+    /** The key of the hover calculation task. */
+    private static final String HOVER_TASK = "hover";
+
+    // VARIABLES
+
+    private final SignalDiagramComponent signalDiagram;
+    private final AtomicReference<HoverRequest> pendingRequest;
+    private final AtomicBoolean scheduled;
+
+    private volatile TaskScheduler scheduler;
+    private volatile SignalHoverInfo lastHover;
+    private volatile long lastRun;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new MeasurementHoverDispatcher instance.
+     * 
+     * @param aSignalDiagram
+     *          the signal diagram component to use.
+     */
+    public MeasurementHoverDispatcher( final SignalDiagramComponent aSignalDiagram )
+    {
+      this.signalDiagram = aSignalDiagram;
+      this.pendingRequest = new AtomicReference<HoverRequest>();
+      this.scheduled = new AtomicBoolean( false );
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void disableMeasurementMode()
+    {
+      this.pendingRequest.set( null );
+      this.lastHover = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void enableMeasurementMode()
+    {
+      this.lastHover = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleMeasureEvent( final SignalHoverInfo aEvent )
+    {
+      // NO-op; we're the one firing these events...
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isListening()
+    {
+      return false;
+    }
+
+    /**
+     * Requests the signal hover for the given point to be calculated. If a
+     * previous request is still pending, it will be replaced by this one.
+     * Should be called on the EDT, as the view state of the request is
+     * captured here.
+     * 
+     * @param aView
+     *          the view the mouse is hovering over, cannot be <code>null</code>;
+     * @param aPoint
+     *          the mouse position, relative to the given view, cannot be
+     *          <code>null</code>.
+     */
+    public void requestHover( final JComponent aView, final Point aPoint )
+    {
+      final TaskScheduler taskScheduler = this.scheduler;
+      if ( taskScheduler == null )
+      {
+        return;
+      }
+
+      final HoverContext context = this.signalDiagram.getModel().createHoverContext( aPoint );
+      this.pendingRequest.set( new HoverRequest( aView, context ) );
+
+      if ( this.scheduled.compareAndSet( false, true ) )
+      {
+        taskScheduler.execute( Priority.INTERACTIVE, HOVER_TASK, new FutureTask<Void>( this, null ) );
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run()
+    {
+      // Only a single run is scheduled at any time, so hovers are calculated
+      // and delivered one at a time, in order...
+      do
+      {
+        try
+        {
+          // Make sure we do not calculate more than once per frame...
+          final long delay = FRAME_INTERVAL - ( System.currentTimeMillis() - this.lastRun );
+          if ( delay > 0L )
+          {
+            Thread.sleep( delay );
+          }
+
+          dispatchPendingRequest();
+        }
+        catch ( InterruptedException exception )
+        {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        finally
+        {
+          this.lastRun = System.currentTimeMillis();
+          // Allow new requests to be scheduled only *after* we're done...
+          this.scheduled.set( false );
+        }
+      }
+      while ( claimPendingRequest() );
+    }
+
+    /**
+     * Starts this dispatcher.
+     */
+    public void start()
+    {
+      this.scheduler = this.signalDiagram.controller.getTaskScheduler();
+    }
+
+    /**
+     * Stops this dispatcher, dropping all pending requests.
+     */
+    public void stop()
+    {
+      final TaskScheduler taskScheduler = this.scheduler;
+      this.scheduler = null;
+
+      if ( taskScheduler != null )
+      {
+        taskScheduler.cancel( HOVER_TASK );
+      }
+
+      this.pendingRequest.set( null );
+      this.scheduled.set( false );
+      this.lastHover = null;
+    }
+
+    /**
+     * Claims the pending request, if any, for the current run. A request that
+     * came in while the current run was busy did not schedule a run itself.
+     * 
+     * @return <code>true</code> if the current run should handle the pending
+     *         request, <code>false</code> if there is no pending request or
+     *         another run is scheduled for it.
+     */
+    private boolean claimPendingRequest()
+    {
+      return ( this.pendingRequest.get() != null ) && ( this.scheduler != null )
+          && this.scheduled.compareAndSet( false, true );
+    }
+
+    /**
+     * Calculates the signal hover of the pending request, if any, and notifies
+     * the measurement listeners on the EDT when the hovered pulse changed.
+     */
+    private void dispatchPendingRequest()
+    {
+      final HoverRequest request = this.pendingRequest.getAndSet( null );
+      final SignalDiagramModel model = this.signalDiagram.getModel();
+      if ( ( request == null ) || !model.isMeasurementMode() )
+      {
+        return;
+      }
+
+      final SignalHoverInfo signalHover = model.getSignalHover( request.context );
+      if ( SignalHoverInfo.isSamePulse( this.lastHover, signalHover ) )
+      {
+        // Nothing changed; no need to bother the listeners...
+        return;
+      }
+      this.lastHover = signalHover;
+
+      SwingUtilities.invokeLater( new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          if ( !model.isMeasurementMode() )
+          {
+            return;
+          }
+
+          model.fireMeasurementEvent( signalHover );
+
+          if ( !model.isCursorMode() )
+          {
+            request.view.setCursor( signalHover != null ? CURSOR_HOVER : null );
+          }
+        }
+      } );
+    }
+  }
+
+  /**
+   * Zooms in or out with the mouse wheel while the control (or meta) key is
+   * held down, keeping the time stamp under the mouse at its position. All
+   * other mouse wheel events are forwarded to the enclosing scroll pane, as
+   * this listener would otherwise prevent it from scrolling.
+   */
+  final class MouseWheelZoomListener implements MouseWheelListener
+  {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void mouseWheelMoved( final MouseWheelEvent aEvent )
+    {
+      if ( aEvent.isControlDown() || aEvent.isMetaDown() )
+      {
+        final int rotation = aEvent.getWheelRotation();
+        if ( rotation != 0 )
+        {
+          final Point point = SwingUtilities.convertPoint( aEvent.getComponent(), aEvent.getPoint(), getSignalView() );
+          final double factor = Math.pow( WHEEL_ZOOM_FACTOR, -rotation );
+
+          SignalDiagramComponent.this.zoomHelper.zoomRelative( factor, point.x );
+        }
+
+        aEvent.consume();
+      }
+      else
+      {
+        final JScrollPane scrollPane = SwingUtils.getAncestorOfClass( JScrollPane.class, SignalDiagramComponent.this );
+        if ( scrollPane != null )
+        {
+          scrollPane.dispatchEvent( SwingUtilities.convertMouseEvent( aEvent.getComponent(), aEvent, scrollPane ) );
+        }
+      }
+    }
+  }
+
   /**
    * Provides a transparent event listener to allow some of the functionality
    * (such as DnD and cursor dragging) of this component to be controlled with
@@ -280,6 +571,11 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
     protected void mouseMoved( final MouseEvent aEvent )
     {
       final JComponent view = getDeepestComponentAt( aEvent );
+      if ( view instanceof OverviewView )
+      {
+        // The overview handles its own mouse events...
+        return;
+      }
 
       final SignalDiagramModel model = getModel();
       if ( model.isCursorMode() || model.isMeasurementMode() )
@@ -288,11 +584,9 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
 
         if ( model.isMeasurementMode() )
         {
-          SignalHoverInfo signalHover = model.getSignalHover( point );
-
-          model.fireMeasurementEvent( signalHover );
-
-          view.setCursor( signalHover != null ? CURSOR_HOVER : null );
+          // The actual hover calculation is coalesced and done in the
+          // background; the cursor is updated once the hover is known...
+          SignalDiagramComponent.this.hoverDispatcher.requestHover( view, point );
         }
 
         if ( model.isCursorMode() )
@@ -308,7 +602,8 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
     protected void mousePressed( final MouseEvent aEvent )
     {
       final JComponent view = getDeepestComponentAt( aEvent );
-      if ( ( view == null ) || !SwingUtilities.isDescendingFrom( view, getComponentRoot() ) )
+      if ( ( view == null ) || !SwingUtilities.isDescendingFrom( view, getComponentRoot() )
+          || ( view instanceof OverviewView ) )
       {
         return;
       }
@@ -647,6 +942,9 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
 
     private static final Logger LOG = Logger.getLogger( ZoomHelper.class.getName() );
 
+    /** The minimal number of time stamps that remain visible when zooming in. */
+    private static final int MIN_VISIBLE_TIMESTAMPS = 10;
+
     // VARIABLES
 
     private boolean zoomAll;
@@ -693,22 +991,24 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
      */
     public void zoomAll()
     {
+      this.signalDiagram.getZoomAnimator().cancel();
+
       setFactor( getMinZoomLevel() );
       this.zoomAll = true;
 
+      this.signalDiagram.setViewOffset( 0.0 );
+
       LOG.log( Level.INFO, "Zoom factor set to " + getFactor() );
 
       this.signalDiagram.recalculateDimensions();
     }
 
     /**
-     * Zooms in with a factor 1.5
+     * Zooms in with a factor 2.0, keeping the center of the view in place.
      */
     public void zoomIn()
     {
-      zoomRelative( 2.0 );
-
-      this.signalDiagram.recalculateDimensions();
+      zoomRelative( 2.0, getCenterXpos() );
     }
 
     /**
@@ -716,36 +1016,76 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
      */
     public void zoomOriginal()
     {
+      this.signalDiagram.getZoomAnimator().cancel();
+
       zoomAbsolute( 1.0 );
 
       this.signalDiagram.recalculateDimensions();
     }
 
     /**
-     * Zooms out with a factor 1.5
+     * Zooms out with a factor 2.0, keeping the center of the view in place.
      */
     public void zoomOut()
     {
-      zoomRelative( 0.5 );
+      zoomRelative( 0.5, getCenterXpos() );
+    }
 
-      this.signalDiagram.recalculateDimensions();
+    /**
+     * Zooms with an animation relative to the zoom factor that is currently
+     * zoomed to.
+     * 
+     * @param aFactor
+     *          the relative zoom factor, > 1.0 to zoom in, < 1.0 to zoom out;
+     * @param aAnchorXpos
+     *          the X-position in the signal view that should stay at the same
+     *          time stamp while zooming.
+     */
+    public void zoomRelative( final double aFactor, final int aAnchorXpos )
+    {
+      final ZoomAnimator animator = this.signalDiagram.getZoomAnimator();
+
+      final double current = animator.getTargetFactor();
+      if ( current <= 0.0 )
+      {
+        // Nothing shown yet...
+        return;
+      }
+
+      final double factor = Math.max( getMinZoomLevel(), Math.min( getMaxZoomLevel(), aFactor * current ) );
+      if ( factor != current )
+      {
+        this.zoomAll = false;
+
+        animator.animateTo( factor, aAnchorXpos );
+      }
+    }
+
+    /**
+     * Returns the X-position of the center of the signal view.
+     * 
+     * @return a X-position, >= 0.
+     */
+    private int getCenterXpos()
+    {
+      final Rectangle visibleRect = this.signalDiagram.getSignalView().getVisibleRect();
+      return ( int )visibleRect.getCenterX();
     }
 
     /**
-     * Determines the maximum zoom level that we can handle without causing
-     * display problems.
+     * Determines the maximum zoom level, at which still a couple of time stamps
+     * are visible.
      * <p>
-     * It appears that the maximum width of a component can be
-     * {@link Short#MAX_VALUE} pixels wide.
+     * As the signal diagram only is as wide as its viewport, the zoom level is
+     * not limited by the maximum width of a component.
      * </p>
      * 
      * @return a maximum zoom level.
      */
     private double getMaxZoomLevel()
     {
-      final SignalDiagramModel model = this.signalDiagram.getModel();
-      final double length = model.getAbsoluteLength();
-      return Math.floor( Integer.MAX_VALUE / length );
+      final Rectangle viewSize = this.signalDiagram.getVisibleViewSize();
+      return Math.max( getMinZoomLevel(), viewSize.getWidth() / MIN_VISIBLE_TIMESTAMPS );
     }
 
     /**
@@ -776,22 +1116,26 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
     }
 
     /**
+     * Zooms to the given factor, while keeping the time stamp in the center of
+     * the view at the same position.
+     * 
      * @param aFactor
      */
     private void zoomAbsolute( final double aFactor )
     {
+      final double oldFactor = getFactor();
+      final double center = this.signalDiagram.getVisibleViewSize().getWidth() / 2.0;
+      final double viewOffset = this.signalDiagram.getModel().getViewOffset();
+
       setFactor( aFactor );
       this.zoomAll = false;
 
-      LOG.log( Level.INFO, "Zoom factor set to " + getFactor() );
-    }
+      if ( oldFactor > 0.0 )
+      {
+        this.signalDiagram.setViewOffset( ( ( ( viewOffset + center ) / oldFactor ) * aFactor ) - center );
+      }
 
-    /**
-     * @param aFactor
-     */
-    private void zoomRelative( final double aFactor )
-    {
-      zoomAbsolute( Math.max( getMinZoomLevel(), Math.min( getMaxZoomLevel(), aFactor * getFactor() ) ) );
+      LOG.log( Level.INFO, "Zoom factor set to " + getFactor() );
     }
   }
 
@@ -844,6 +1188,9 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
   static final Cursor CURSOR_MOVE_CURSOR = Cursor.getPredefinedCursor( Cursor.MOVE_CURSOR );
   static final Cursor CURSOR_MOVE_TIMESTAMP = Cursor.getPredefinedCursor( Cursor.E_RESIZE_CURSOR );
 
+  /** The zoom factor of a single mouse wheel notch. */
+  static final double WHEEL_ZOOM_FACTOR = Math.sqrt( 2.0 );
+
   private static final boolean DEBUG = true;
 
   private static final long serialVersionUID = 1L;
@@ -853,8 +1200,15 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
   private final SignalDiagramController controller;
   private final SignalView signalView;
   private final TransparentAWTListener awtListener;
+  private final MeasurementHoverDispatcher hoverDispatcher;
   private final SignalDiagramModel model;
   private final ZoomHelper zoomHelper;
+  private final VirtualScrollBar horizontalScrollBar;
+  private final ZoomAnimator zoomAnimator;
+
+  /** the views in the column header of the enclosing scroll pane, if any. */
+  private TimeLineView timelineView;
+  private OverviewView overviewView;
 
   // CONSTRUCTORS
 
@@ -873,8 +1227,13 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
     this.zoomHelper = new ZoomHelper( this );
 
     this.awtListener = new TransparentAWTListener( this.controller );
+    this.hoverDispatcher = new MeasurementHoverDispatcher( this );
     this.model = new SignalDiagramModel( this.controller );
     this.signalView = new SignalView( this.controller );
+    this.horizontalScrollBar = new VirtualScrollBar( this );
+    this.zoomAnimator = new ZoomAnimator( this, this.controller );
+
+    addMouseWheelListener( new MouseWheelZoomListener() );
 
     add( this.signalView, BorderLayout.CENTER );
   }
@@ -898,6 +1257,7 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
 
     aController.addCursorChangeListener( result.getSignalView() );
     aController.addMeasurementListener( result.getSignalView() );
+    aController.addMeasurementListener( result.hoverDispatcher );
 
     return result;
   }
@@ -916,6 +1276,8 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
           | AWTEvent.KEY_EVENT_MASK | AWTEvent.COMPONENT_EVENT_MASK;
       Toolkit.getDefaultToolkit().addAWTEventListener( this.awtListener, eventMask );
 
+      this.hoverDispatcher.start();
+
       final GhostGlassPane glassPane = new GhostGlassPane( this.controller );
       final JRootPane rootPane = SwingUtilities.getRootPane( this );
       rootPane.setGlassPane( glassPane );
@@ -992,7 +1354,8 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
   @Override
   public boolean getScrollableTracksViewportWidth()
   {
-    return false;
+    // The horizontal position is determined by the view offset of the model...
+    return true;
   }
 
   /**
@@ -1076,6 +1439,8 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
       unconfigureEnclosingScrollPane();
 
       Toolkit.getDefaultToolkit().removeAWTEventListener( this.awtListener );
+
+      this.hoverDispatcher.stop();
     }
     finally
     {
@@ -1094,16 +1459,34 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
    */
   public void scrollToTimestamp( final int aChannel, final long aTimestamp )
   {
-    final SignalView signalView = getSignalView();
-    final Rectangle visibleRect = signalView.getVisibleRect();
+    final Rectangle visibleRect = getVisibleViewSize();
 
-    Rectangle rect = new Rectangle();
-    rect.width = visibleRect.width;
-    rect.height = visibleRect.height;
-    rect.x = ( int )( ( getModel().getZoomFactor() * aTimestamp ) - rect.getCenterX() );
-    rect.y = visibleRect.y;
+    setViewOffset( ( getModel().getZoomFactor() * aTimestamp ) - ( visibleRect.width / 2.0 ) );
+  }
 
-    signalView.scrollRectToVisible( rect );
+  /**
+   * Scrolls the signal diagram horizontally to the given view offset.
+   * 
+   * @param aViewOffset
+   *          the virtual X-position of the left side of the view, in pixels;
+   *          will be clamped to the virtual screen width.
+   * @see SignalDiagramModel#getViewOffset()
+   */
+  public void setViewOffset( final double aViewOffset )
+  {
+    final double maxOffset = this.model.getVirtualScreenWidth() - getVisibleViewSize().width;
+    final double viewOffset = Math.max( 0.0, Math.min( maxOffset, aViewOffset ) );
+
+    if ( viewOffset != this.model.getViewOffset() )
+    {
+      this.model.setViewOffset( viewOffset );
+
+      final JScrollPane scrollPane = SwingUtils.getAncestorOfClass( JScrollPane.class, this );
+      if ( scrollPane != null )
+      {
+        scrollPane.repaint();
+      }
+    }
   }
 
   /**
@@ -1138,6 +1521,16 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
     this.zoomHelper.zoomOut();
   }
 
+  /**
+   * Returns the animator that is used for zooming.
+   * 
+   * @return the zoom animator, never <code>null</code>.
+   */
+  final ZoomAnimator getZoomAnimator()
+  {
+    return this.zoomAnimator;
+  }
+
   /**
    * @return
    */
@@ -1159,11 +1552,9 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
 
     final Rectangle viewPortSize = scrollPane.getViewport().getVisibleRect();
 
-    int width = this.model.getAbsoluteScreenWidth();
-    if ( width < viewPortSize.width )
-    {
-      width = viewPortSize.width;
-    }
+    // The signal view always is as wide as the viewport; the part of the
+    // virtual screen it shows is determined by the view offset...
+    final int width = viewPortSize.width;
 
     int height = this.model.getAbsoluteScreenHeight();
     if ( height < viewPortSize.height )
@@ -1175,13 +1566,19 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
     signalView.setPreferredSize( new Dimension( width, height ) );
     signalView.revalidate();
 
-    TimeLineView timeline = ( TimeLineView )scrollPane.getColumnHeader().getView();
+    TimeLineView timeline = this.timelineView;
     // the timeline component always follows the width of the signal view, but
     // with a fixed height...
     timeline.setPreferredSize( new Dimension( width, timeline.getTimeLineHeight() ) );
     timeline.setMinimumSize( signalView.getPreferredSize() );
     timeline.revalidate();
 
+    OverviewView overview = this.overviewView;
+    // the overview always shows the entire capture in the width of the signal
+    // view...
+    overview.setPreferredSize( new Dimension( width, overview.getOverviewHeight() ) );
+    overview.revalidate();
+
     ChannelLabelsView channelLabels = ( ChannelLabelsView )scrollPane.getRowHeader().getView();
     // the channel label component calculates its own 'optimal' width, but
     // doesn't know squat about the correct height...
@@ -1189,6 +1586,10 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
     channelLabels.setPreferredSize( new Dimension( minimumSize.width, height ) );
     channelLabels.revalidate();
 
+    // Keep the view offset within the (possibly changed) virtual screen...
+    setViewOffset( this.model.getViewOffset() );
+    this.horizontalScrollBar.updateRange();
+
     scrollPane.repaint();
   }
 
@@ -1215,13 +1616,21 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
         return;
       }
 
-      final TimeLineView timelineView = TimeLineView.create( this.controller );
-      scrollPane.setColumnHeaderView( timelineView );
+      this.timelineView = TimeLineView.create( this.controller );
+      this.overviewView = OverviewView.create( this.controller );
+
+      // Show the overview of the entire capture above the timeline...
+      final JPanel columnHeader = new JPanel( new BorderLayout() );
+      columnHeader.add( this.overviewView, BorderLayout.NORTH );
+      columnHeader.add( this.timelineView, BorderLayout.CENTER );
+      scrollPane.setColumnHeaderView( columnHeader );
 
       final ChannelLabelsView channelLabelsView = ChannelLabelsView.create( this.controller );
       scrollPane.setRowHeaderView( channelLabelsView );
 
       scrollPane.setCorner( ScrollPaneConstants.UPPER_LEADING_CORNER, new CornerView( this.controller ) );
+
+      scrollPane.setHorizontalScrollBar( this.horizontalScrollBar );
     }
   }
 
@@ -1241,6 +1650,8 @@ public class SignalDiagramComponent extends JPanel implements Scrollable
       scrollPane.setColumnHeaderView( null );
       scrollPane.setRowHeaderView( null );
       scrollPane.setCorner( ScrollPaneConstants.UPPER_LEADING_CORNER, null );
+
+      scrollPane.setHorizontalScrollBar( scrollPane.createHorizontalScrollBar() );
     }
   }
 }
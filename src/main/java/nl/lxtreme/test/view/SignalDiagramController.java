@@ -22,9 +22,20 @@ package nl.lxtreme.test.view;
 
 import java.awt.*;
 import java.beans.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.List;
+
+import javax.swing.*;
 
 import nl.lxtreme.test.*;
+import nl.lxtreme.test.decoder.*;
+import nl.lxtreme.test.io.*;
 import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.model.Cursor;
+import nl.lxtreme.test.util.*;
+import nl.lxtreme.test.util.TaskScheduler.Priority;
 import nl.lxtreme.test.view.dnd.*;
 import nl.lxtreme.test.view.model.*;
 
@@ -34,12 +45,35 @@ import nl.lxtreme.test.view.model.*;
  */
 public final class SignalDiagramController
 {
+  // CONSTANTS
+
+  /** the keys of the background tasks, only one of each runs at any time. */
+  private static final String COMPARE_TASK = "compare";
+  private static final String DECODE_TASK = "decode";
+  private static final String GLITCH_TASK = "glitches";
+  private static final String LOAD_TASK = "load";
+
   // VARIABLES
 
   private final DragAndDropTargetController dndTargetController;
+  private final TaskScheduler taskScheduler;
+
+  private final GlitchDetector glitchDetector;
 
   private SignalDiagramComponent signalDiagram;
 
+  /** the current glitch index and its annotations, only accessed from the EDT. */
+  private GlitchIndex glitchIndex;
+  private List<Annotation<?>> glitchAnnotations;
+  private long glitchTimestamp;
+
+  /** the annotations of the current decoding, only accessed from the EDT. */
+  private List<Annotation<?>> decoderAnnotations;
+
+  /** the derived indexes of the current capture, only accessed from the EDT. */
+  private IndexSidecar indexSidecar;
+  private File indexSidecarFile;
+
   // CONSTRUCTORS
 
   /**
@@ -48,10 +82,26 @@ public final class SignalDiagramController
   public SignalDiagramController()
   {
     this.dndTargetController = new DragAndDropTargetController( this );
+    this.taskScheduler = new TaskScheduler();
+    this.glitchDetector = new GlitchDetector();
+    this.glitchTimestamp = -1L;
   }
 
   // METHODS
 
+  /**
+   * Adds the given annotations to the signal diagram, for example, the
+   * annotations of a search result.
+   * 
+   * @param aAnnotations
+   *          the annotations to add, cannot be <code>null</code>.
+   */
+  public void addAnnotations( final Collection<? extends Annotation<?>> aAnnotations )
+  {
+    getSignalDiagramModel().addAnnotations( aAnnotations );
+    this.signalDiagram.repaint( 25L );
+  }
+
   /**
    * Adds a channel change listener.
    * 
@@ -107,6 +157,293 @@ public final class SignalDiagramController
     getSignalDiagramModel().addPropertyChangeListener( aListener );
   }
 
+  /**
+   * Removes the differences with a reference capture from the signal diagram.
+   */
+  public void clearCaptureDiff()
+  {
+    getSignalDiagramModel().setCaptureDiff( null );
+    this.signalDiagram.repaint( 25L );
+  }
+
+  /**
+   * Starts comparing the current sample data with the given reference capture
+   * in the background.
+   * <p>
+   * When completed, all differences are shown as an overlay on the signals.
+   * </p>
+   * 
+   * @param aReference
+   *          the reference capture to compare with, cannot be
+   *          <code>null</code>.
+   * @return the (pending) differences, never <code>null</code>.
+   */
+  public SwingWorker<CaptureDiff, Void> compareWith( final SampleDataModel aReference )
+  {
+    final SignalDiagramModel model = getSignalDiagramModel();
+    final DataSnapshot snapshot = model.getSnapshot();
+
+    final SwingWorker<CaptureDiff, Void> worker = new SwingWorker<CaptureDiff, Void>()
+    {
+      @Override
+      protected CaptureDiff doInBackground() throws Exception
+      {
+        return CaptureDiff.compare( snapshot.getValues(), snapshot.getTimestamps(), aReference.getValues(),
+            aReference.getTimestamps(), 0xFFFFFFFF, getExecutor() );
+      }
+
+      @Override
+      protected void done()
+      {
+        // Ignore the results of comparisons with old data...
+        if ( !isCancelled() && ( model.getSnapshot() == snapshot ) )
+        {
+          try
+          {
+            model.setCaptureDiff( get() );
+            getSignalDiagram().repaint( 25L );
+          }
+          catch ( Exception exception )
+          {
+            exception.printStackTrace();
+          }
+        }
+      }
+    };
+    this.taskScheduler.execute( Priority.BACKGROUND, COMPARE_TASK, worker );
+
+    return worker;
+  }
+
+  /**
+   * Starts decoding the current sample data with the given protocol decoders.
+   * <p>
+   * All decoders run in parallel in the background. Their annotations are
+   * added to the signal diagram while decoding, so partial results are shown
+   * before decoding is completed. Decoding again, or changing the sample data,
+   * cancels the current decoding and removes its annotations.
+   * </p>
+   * 
+   * @param aDecoders
+   *          the decoders to run, cannot be <code>null</code>.
+   * @return the (pending) decoding, never <code>null</code>. Cancelling it
+   *         stops all decoders.
+   */
+  public SwingWorker<Void, Void> decode( final AbstractProtocolDecoder... aDecoders )
+  {
+    if ( aDecoders == null )
+    {
+      throw new IllegalArgumentException( "Decoders cannot be null!" );
+    }
+
+    final SignalDiagramModel model = getSignalDiagramModel();
+    final DataSnapshot snapshot = model.getSnapshot();
+
+    if ( this.decoderAnnotations != null )
+    {
+      model.removeAnnotations( this.decoderAnnotations );
+      this.signalDiagram.repaint( 25L );
+    }
+    final List<Annotation<?>> annotations = new ArrayList<Annotation<?>>();
+    this.decoderAnnotations = annotations;
+
+    final IAnnotationPublisher publisher = new IAnnotationPublisher()
+    {
+      @Override
+      public void publish( final AbstractProtocolDecoder aDecoder, final List<Annotation<?>> aAnnotations )
+      {
+        SwingUtilities.invokeLater( new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            // Ignore the results of superseded decodings...
+            if ( SignalDiagramController.this.decoderAnnotations == annotations )
+            {
+              annotations.addAll( aAnnotations );
+              addAnnotations( aAnnotations );
+            }
+          }
+        } );
+      }
+    };
+
+    final SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>()
+    {
+      @Override
+      protected Void doInBackground() throws Exception
+      {
+        final List<Future<?>> results = DecoderPipeline.decode( snapshot.getValues(), snapshot.getTimestamps(),
+            snapshot.getSampleRate(), Arrays.asList( aDecoders ), publisher, getExecutor() );
+        try
+        {
+          for ( Future<?> result : results )
+          {
+            result.get();
+          }
+        }
+        catch ( ExecutionException exception )
+        {
+          // Report the failure of the decoder itself...
+          final Throwable cause = exception.getCause();
+          throw ( cause instanceof Exception ) ? ( Exception )cause : exception;
+        }
+        finally
+        {
+          // Stop all decoders when cancelled, or when one of them failed...
+          for ( Future<?> result : results )
+          {
+            result.cancel( true /* mayInterruptIfRunning */);
+          }
+        }
+        return null;
+      }
+    };
+    this.taskScheduler.execute( Priority.BACKGROUND, DECODE_TASK, worker );
+
+    return worker;
+  }
+
+  /**
+   * Starts detecting all glitches on the given channels in the background.
+   * <p>
+   * When completed, all glitches are shown as annotations, replacing those of
+   * an earlier detection, and can be navigated using {@link #gotoNextGlitch()}
+   * and {@link #gotoPreviousGlitch()}. Detecting glitches again with a smaller
+   * width reuses the earlier result.
+   * </p>
+   * 
+   * @param aMask
+   *          the mask of the channels to detect glitches on;
+   * @param aMaxWidth
+   *          the (exclusive) maximum width of a glitch, in samples.
+   * @return the (pending) glitch index, never <code>null</code>.
+   */
+  public SwingWorker<GlitchIndex, Void> detectGlitches( final int aMask, final long aMaxWidth )
+  {
+    final SignalDiagramModel model = getSignalDiagramModel();
+    final DataSnapshot snapshot = model.getSnapshot();
+    final IndexSidecar sidecar = this.indexSidecar;
+    final File sidecarFile = this.indexSidecarFile;
+
+    final SwingWorker<GlitchIndex, Void> worker = new SwingWorker<GlitchIndex, Void>()
+    {
+      @Override
+      protected GlitchIndex doInBackground() throws Exception
+      {
+        final GlitchIndex result = SignalDiagramController.this.glitchDetector.detect( snapshot.getValues(),
+            snapshot.getTimestamps(), aMask, aMaxWidth, getExecutor() );
+
+        if ( sidecar != null )
+        {
+          persistGlitchIndex( snapshot.getValues(), sidecar, sidecarFile );
+        }
+
+        return result;
+      }
+
+      @Override
+      protected void done()
+      {
+        // Ignore the results of detections on old data...
+        if ( !isCancelled() && ( model.getSnapshot() == snapshot ) )
+        {
+          try
+          {
+            setGlitchIndex( get() );
+          }
+          catch ( Exception exception )
+          {
+            exception.printStackTrace();
+          }
+        }
+      }
+    };
+    this.taskScheduler.execute( Priority.BACKGROUND, GLITCH_TASK, worker );
+
+    return worker;
+  }
+
+  /**
+   * Starts exporting the given time range and channels of the current sample
+   * data as text in the background.
+   * 
+   * @param aFile
+   *          the file to write, cannot be <code>null</code>;
+   * @param aFormat
+   *          the export format, cannot be <code>null</code>;
+   * @param aMask
+   *          the mask of the channels to export;
+   * @param aStartTime
+   *          the timestamp to start the export at;
+   * @param aEndTime
+   *          the timestamp to end the export at (inclusive).
+   * @return the (pending) number of exported samples, never <code>null</code>.
+   */
+  public SwingWorker<Integer, Void> exportSamples( final File aFile, final SampleExporter.Format aFormat,
+      final int aMask, final long aStartTime, final long aEndTime )
+  {
+    final DataSnapshot snapshot = getSignalDiagramModel().getSnapshot();
+
+    final SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>()
+    {
+      @Override
+      protected Integer doInBackground() throws Exception
+      {
+        return Integer.valueOf( SampleExporter.export( aFile, snapshot.getValues(), snapshot.getTimestamps(),
+            snapshot.getSampleRate(), aMask, aStartTime, aEndTime, aFormat, getExecutor(), null /* aListener */) );
+      }
+    };
+    this.taskScheduler.execute( Priority.BACKGROUND, null /* aKey */, worker );
+
+    return worker;
+  }
+
+  /**
+   * Starts exporting the given time range and channels of the current sample
+   * data as Value Change Dump file in the background.
+   * 
+   * @param aFile
+   *          the file to write, cannot be <code>null</code>;
+   * @param aMask
+   *          the mask of the channels to export;
+   * @param aStartTime
+   *          the timestamp to start the export at;
+   * @param aEndTime
+   *          the timestamp to end the export at (inclusive).
+   * @return the (pending) export, never <code>null</code>. Its progress
+   *         property reflects the progress of the export.
+   */
+  public SwingWorker<Void, Void> exportVcd( final File aFile, final int aMask, final long aStartTime,
+      final long aEndTime )
+  {
+    final SignalDiagramModel model = getSignalDiagramModel();
+    final DataSnapshot snapshot = model.getSnapshot();
+    // The channel groups can be edited while exporting...
+    final ChannelLayout channelLayout = ChannelLayout.valueOf( model.getChannelGroupManager() );
+
+    final SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>()
+    {
+      @Override
+      protected Void doInBackground() throws Exception
+      {
+        VcdExporter.write( aFile, snapshot.getValues(), snapshot.getTimestamps(), snapshot.getSampleRate(),
+            channelLayout, aMask, aStartTime, aEndTime, new IProgressListener()
+            {
+              @Override
+              public void progressChanged( final int aPercentage )
+              {
+                setProgress( Math.max( 0, Math.min( 100, aPercentage ) ) );
+              }
+            } );
+        return null;
+      }
+    };
+    this.taskScheduler.execute( Priority.BACKGROUND, null /* aKey */, worker );
+
+    return worker;
+  }
+
   /**
    * @return the dndTargetController
    */
@@ -135,6 +472,48 @@ public final class SignalDiagramController
     return this.signalDiagram.getModel();
   }
 
+  /**
+   * Returns the scheduler to run background analyses on.
+   * 
+   * @return the task scheduler, never <code>null</code>.
+   */
+  public TaskScheduler getTaskScheduler()
+  {
+    return this.taskScheduler;
+  }
+
+  /**
+   * Scrolls to the first glitch after the last visited glitch.
+   * 
+   * @return <code>true</code> if there was a next glitch, <code>false</code>
+   *         otherwise.
+   * @see #detectGlitches(int, long)
+   */
+  public boolean gotoNextGlitch()
+  {
+    if ( this.glitchIndex == null )
+    {
+      return false;
+    }
+    return gotoGlitch( this.glitchIndex.findNext( this.glitchTimestamp ) );
+  }
+
+  /**
+   * Scrolls to the last glitch before the last visited glitch.
+   * 
+   * @return <code>true</code> if there was a previous glitch,
+   *         <code>false</code> otherwise.
+   * @see #detectGlitches(int, long)
+   */
+  public boolean gotoPreviousGlitch()
+  {
+    if ( this.glitchIndex == null )
+    {
+      return false;
+    }
+    return gotoGlitch( this.glitchIndex.findPrevious( this.glitchTimestamp ) );
+  }
+
   /**
    * Returns whether the cursor denoted by the given index is defined.
    * 
@@ -165,6 +544,156 @@ public final class SignalDiagramController
     getSignalDiagramModel().setCursor( aCursorIdx, newCursorTimestamp );
   }
 
+  /**
+   * Imports the given OpenBench LogicSniffer (*.ols) file in the background and
+   * shows its sample data and cursors.
+   * 
+   * @param aFile
+   *          the OLS file to import, cannot be <code>null</code>.
+   * @return the (already started) loader, never <code>null</code>.
+   */
+  public CaptureLoader importOls( final File aFile )
+  {
+    final OlsImporter importer = new OlsImporter();
+
+    return loadCapture( new CaptureLoader( this, aFile )
+    {
+      @Override
+      protected SampleDataModel load() throws Exception
+      {
+        importer.setPartialDataListener( this );
+        return importer.read( aFile, this );
+      }
+
+      @Override
+      protected void shown( final SampleDataModel aDataModel )
+      {
+        final int enabledChannelMask = importer.getEnabledChannelMask();
+        for ( Channel channel : getSignalDiagramModel().getChannelGroupManager().getAllChannels() )
+        {
+          channel.setEnabled( ( enabledChannelMask & channel.getMask() ) != 0 );
+        }
+      }
+    } );
+  }
+
+  /**
+   * Imports the given Value Change Dump (*.vcd) file in the background and
+   * shows its sample data and signals.
+   * 
+   * @param aFile
+   *          the VCD file to import, cannot be <code>null</code>.
+   * @return the (already started) loader, never <code>null</code>.
+   */
+  public CaptureLoader importVcd( final File aFile )
+  {
+    final VcdImporter importer = new VcdImporter();
+
+    return loadCapture( new CaptureLoader( this, aFile )
+    {
+      @Override
+      protected SampleDataModel load() throws Exception
+      {
+        importer.setPartialDataListener( this );
+        return importer.read( aFile, this );
+      }
+
+      @Override
+      protected void shown( final SampleDataModel aDataModel )
+      {
+        importer.applyChannelMetadata( getSignalDiagramModel().getChannelGroupManager() );
+      }
+    } );
+  }
+
+  /**
+   * Starts the given capture loader, which shows its loaded capture once it
+   * is done.
+   * 
+   * @param aLoader
+   *          the loader to start, cannot be <code>null</code>.
+   * @return the given loader, never <code>null</code>.
+   */
+  public CaptureLoader loadCapture( final CaptureLoader aLoader )
+  {
+    if ( aLoader == null )
+    {
+      throw new IllegalArgumentException( "Loader cannot be null!" );
+    }
+
+    getSignalDiagramModel().setLoadProgress( 0 );
+    // A newly loaded capture supersedes the one still being loaded...
+    this.taskScheduler.execute( Priority.BACKGROUND, LOAD_TASK, aLoader );
+
+    return aLoader;
+  }
+
+  /**
+   * Opens the given capture file in the background and shows its sample data,
+   * channel groups and cursors.
+   * <p>
+   * The first block of the capture file is shown directly, while the remainder
+   * of the capture file is being read.
+   * </p>
+   * 
+   * @param aFile
+   *          the capture file to open, cannot be <code>null</code>.
+   * @return the (already started) loader, never <code>null</code>.
+   */
+  public CaptureLoader openCapture( final File aFile )
+  {
+    return loadCapture( new CaptureLoader( this, aFile )
+    {
+      private volatile CaptureFile captureFile;
+
+      @Override
+      protected SampleDataModel load() throws Exception
+      {
+        final CaptureFile file = CaptureFile.open( aFile );
+        try
+        {
+          final int size = file.getSize();
+          if ( size <= 0 )
+          {
+            throw new IOException( "Capture file contains no samples!" );
+          }
+
+          // The metadata is applied once the capture is first shown...
+          this.captureFile = file;
+
+          final int previewSize = Math.min( size, file.getBlockSize() );
+          if ( previewSize < size )
+          {
+            final int[] values = new int[previewSize];
+            final long[] timestamps = new long[previewSize];
+            file.readSamples( 0, previewSize, values, timestamps );
+
+            final SampleDataModel preview = new SampleDataModel( values, timestamps, file.getSampleRate() );
+            file.applyCursors( preview );
+
+            partialDataAvailable( preview );
+          }
+
+          final SampleDataModel dataModel = new SampleDataModel( size, file.asSampleDataProvider( this ) );
+          file.applyCursors( dataModel );
+
+          return dataModel;
+        }
+        finally
+        {
+          file.close();
+        }
+      }
+
+      @Override
+      protected void shown( final SampleDataModel aDataModel )
+      {
+        // Channel metadata is kept in memory, even after closing the file...
+        this.captureFile.applyChannelMetadata( getSignalDiagramModel().getChannelGroupManager() );
+      }
+    } );
+  }
+
   /**
    * Recalculates the dimensions of the various components and repaints the
    * entire component.
@@ -246,6 +775,44 @@ public final class SignalDiagramController
     getSignalDiagramModel().removePropertyChangeListener( aListener );
   }
 
+  /**
+   * Starts saving the current sample data, channel groups and cursors to the
+   * given capture file in the background.
+   * 
+   * @param aFile
+   *          the capture file to write, cannot be <code>null</code>.
+   * @return the (pending) save, never <code>null</code>.
+   */
+  public SwingWorker<Void, Void> saveCapture( final File aFile )
+  {
+    final SignalDiagramModel model = getSignalDiagramModel();
+
+    // Cursors can be moved while saving...
+    final Cursor[] cursors = new Cursor[Cursor.MAX_CURSORS];
+    for ( int i = 0; i < cursors.length; i++ )
+    {
+      cursors[i] = model.getCursor( i ).clone();
+    }
+    // ...as can channels and channel groups be edited...
+    final ChannelLayout channelLayout = ChannelLayout.valueOf( model.getChannelGroupManager() );
+
+    final DataSnapshot snapshot = model.getSnapshot();
+
+    final SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>()
+    {
+      @Override
+      protected Void doInBackground() throws Exception
+      {
+        CaptureFileWriter.write( aFile, snapshot.getValues(), snapshot.getTimestamps(), snapshot.getSampleRate(),
+            cursors, channelLayout );
+        return null;
+      }
+    };
+    this.taskScheduler.execute( Priority.BACKGROUND, null /* aKey */, worker );
+
+    return worker;
+  }
+
   /**
    * Turns the visibility of all cursors either on or off.
    * <p>
@@ -262,6 +829,26 @@ public final class SignalDiagramController
     getSignalDiagramModel().setCursorMode( aVisible );
   }
 
+  /**
+   * Starts searching the current sample data for all samples matching the given
+   * condition.
+   * <p>
+   * The search itself is performed in the background; the returned result can
+   * be used to page through the matches, to create annotations for them, or to
+   * scroll to them using
+   * {@link SignalDiagramComponent#scrollToTimestamp(int, long)}.
+   * </p>
+   * 
+   * @param aCondition
+   *          the search condition, cannot be <code>null</code>.
+   * @return the (pending) search result, never <code>null</code>.
+   */
+  public SearchResult search( final SearchCondition aCondition )
+  {
+    final DataSnapshot snapshot = getSignalDiagramModel().getSnapshot();
+    return SampleSearcher.search( snapshot.getValues(), snapshot.getTimestamps(), aCondition, getExecutor() );
+  }
+
   /**
    * Sets the data model for this controller.
    * 
@@ -270,9 +857,40 @@ public final class SignalDiagramController
    */
   public void setDataModel( final SampleDataModel aDataModel )
   {
+    resetDerivedData();
+
     getSignalDiagramModel().setDataModel( aDataModel );
   }
 
+  /**
+   * Sets the derived indexes of the current capture, restoring the indexes it
+   * contains, and persisting any indexes that are built later on.
+   * 
+   * @param aFile
+   *          the sidecar file to persist the indexes to, cannot be
+   *          <code>null</code>;
+   * @param aSidecar
+   *          the derived indexes of the current capture, cannot be
+   *          <code>null</code>.
+   */
+  public void setIndexSidecar( final File aFile, final IndexSidecar aSidecar )
+  {
+    if ( ( aFile == null ) || ( aSidecar == null ) )
+    {
+      throw new IllegalArgumentException( "File and sidecar cannot be null!" );
+    }
+
+    this.indexSidecar = aSidecar;
+    this.indexSidecarFile = aFile;
+
+    final GlitchIndex persistedGlitches = aSidecar.getGlitchIndex();
+    if ( persistedGlitches != null )
+    {
+      this.glitchDetector.restore( getSignalDiagramModel().getValues(), aSidecar.getGlitchMask(),
+          aSidecar.getGlitchMaxWidth(), persistedGlitches );
+    }
+  }
+
   /**
    * Enables or disables the measurement mode.
    * 
@@ -297,6 +915,33 @@ public final class SignalDiagramController
     getSignalDiagramModel().setSnapCursor( aSnapMode );
   }
 
+  /**
+   * Replaces the sample data of the current data model, retaining the
+   * channels, channel groups, cursors and annotations.
+   * 
+   * @param aDataModel
+   *          the dataModel with the new sample data, cannot be
+   *          <code>null</code>.
+   * @see SignalDiagramModel#updateDataModel(SampleDataModel)
+   */
+  public void updateDataModel( final SampleDataModel aDataModel )
+  {
+    final SignalDiagramModel model = getSignalDiagramModel();
+    // Only the annotations derived from the old data are removed...
+    if ( this.glitchAnnotations != null )
+    {
+      model.removeAnnotations( this.glitchAnnotations );
+    }
+    if ( this.decoderAnnotations != null )
+    {
+      model.removeAnnotations( this.decoderAnnotations );
+    }
+
+    resetDerivedData();
+
+    model.updateDataModel( aDataModel );
+  }
+
   /**
    * @param aComponent
    */
@@ -305,6 +950,32 @@ public final class SignalDiagramController
     this.signalDiagram = aComponent;
   }
 
+  /**
+   * Returns the executor used to search and decode the sample data in
+   * parallel.
+   * 
+   * @return an executor service, never <code>null</code>.
+   */
+  private ExecutorService getExecutor()
+  {
+    return this.taskScheduler.getComputeExecutor( Priority.BACKGROUND );
+  }
+
+  /**
+   * Scrolls to the glitch with the given index.
+   */
+  private boolean gotoGlitch( final int aIndex )
+  {
+    if ( aIndex < 0 )
+    {
+      return false;
+    }
+
+    this.glitchTimestamp = this.glitchIndex.getStartTimestamp( aIndex );
+    this.signalDiagram.scrollToTimestamp( this.glitchIndex.getChannel( aIndex ), this.glitchTimestamp );
+    return true;
+  }
+
   /**
    * @param aPoint
    * @return
@@ -313,4 +984,68 @@ public final class SignalDiagramController
   {
     return this.signalDiagram.getModel().locationToTimestamp( aPoint );
   }
+
+  /**
+   * Persists the last result of the glitch detector in the given sidecar, if
+   * it is not yet persisted. Called from a background thread.
+   */
+  private void persistGlitchIndex( final int[] aValues, final IndexSidecar aSidecar, final File aFile )
+  {
+    final GlitchDetector detector = this.glitchDetector;
+    synchronized ( detector )
+    {
+      final GlitchIndex lastResult = detector.getLastResult( aValues );
+      if ( ( lastResult == null ) || ( lastResult == aSidecar.getGlitchIndex() ) )
+      {
+        // Nothing new to persist...
+        return;
+      }
+      aSidecar.setGlitchIndex( detector.getLastMask(), detector.getLastMaxWidth(), lastResult );
+    }
+
+    try
+    {
+      aSidecar.write( aFile );
+    }
+    catch ( IOException exception )
+    {
+      // Not fatal; the glitch index is simply rebuilt next time...
+      exception.printStackTrace();
+    }
+  }
+
+  /**
+   * Forgets all data derived from the current sample data.
+   */
+  private void resetDerivedData()
+  {
+    // Glitches of the old data are no longer valid...
+    this.glitchIndex = null;
+    this.glitchAnnotations = null;
+    this.glitchTimestamp = -1L;
+    // Decoders still running on the old data are of no use anymore...
+    this.taskScheduler.cancel( DECODE_TASK );
+    this.decoderAnnotations = null;
+    // Derived indexes are set by the capture loader, if any...
+    this.indexSidecar = null;
+    this.indexSidecarFile = null;
+  }
+
+  /**
+   * Replaces the current glitch index, and its annotations, with the given
+   * index.
+   */
+  private void setGlitchIndex( final GlitchIndex aIndex )
+  {
+    final SignalDiagramModel model = getSignalDiagramModel();
+    if ( this.glitchAnnotations != null )
+    {
+      model.removeAnnotations( this.glitchAnnotations );
+    }
+
+    this.glitchIndex = aIndex;
+    this.glitchAnnotations = aIndex.getAnnotations( "Glitch" );
+
+    addAnnotations( this.glitchAnnotations );
+  }
 }
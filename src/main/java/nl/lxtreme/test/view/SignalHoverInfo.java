@@ -126,6 +126,47 @@ public class SignalHoverInfo
     return ( aHoverInfo != null ) && !aHoverInfo.isEmpty();
   }
 
+  /**
+   * Returns whether or not the two given {@link SignalHoverInfo}s denote the
+   * same pulse on the same channel, regardless of the exact mouse position
+   * within that pulse.
+   * 
+   * @param aHoverInfo1
+   *          the first signal hover info to compare, may be <code>null</code>;
+   * @param aHoverInfo2
+   *          the second signal hover info to compare, may be <code>null</code>.
+   * @return <code>true</code> if both hover informations denote the same pulse
+   *         (or are both <code>null</code>), <code>false</code> otherwise.
+   */
+  public static boolean isSamePulse( final SignalHoverInfo aHoverInfo1, final SignalHoverInfo aHoverInfo2 )
+  {
+    if ( aHoverInfo1 == aHoverInfo2 )
+    {
+      return true;
+    }
+    if ( ( aHoverInfo1 == null ) || ( aHoverInfo2 == null ) )
+    {
+      return false;
+    }
+    if ( aHoverInfo1.channelIdx != aHoverInfo2.channelIdx )
+    {
+      return false;
+    }
+    if ( ( aHoverInfo1.startTimestamp == null ) ? ( aHoverInfo2.startTimestamp != null )
+        : !aHoverInfo1.startTimestamp.equals( aHoverInfo2.startTimestamp ) )
+    {
+      return false;
+    }
+    if ( ( aHoverInfo1.endTimestamp == null ) ? ( aHoverInfo2.endTimestamp != null )
+        : !aHoverInfo1.endTimestamp.equals( aHoverInfo2.endTimestamp ) )
+    {
+      return false;
+    }
+    // The rectangle changes when zooming or scrolling, even for the same
+    // pulse...
+    return aHoverInfo1.rectangle.equals( aHoverInfo2.rectangle );
+  }
+
   /**
    * {@inheritDoc}
    */
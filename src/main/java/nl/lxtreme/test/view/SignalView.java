@@ -222,4 +222,32 @@ public class SignalView extends AbstractViewLayer implements IMeasurementListene
   {
     setUI( new SignalUI() );
   }
+
+  /**
+   * Returns the UI that paints this view.
+   * 
+   * @return the signal UI, never <code>null</code>.
+   */
+  final SignalUI getSignalUI()
+  {
+    return ( SignalUI )this.ui;
+  }
+
+  /**
+   * Paints a preview of the signals while zooming, or the signals themselves
+   * otherwise.
+   * 
+   * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
+   */
+  @Override
+  protected void paintComponent( final Graphics aGraphics )
+  {
+    final SignalDiagramComponent signalDiagram = getController().getSignalDiagram();
+    if ( ( signalDiagram != null ) && signalDiagram.getZoomAnimator().paintPreview( aGraphics, this ) )
+    {
+      return;
+    }
+
+    super.paintComponent( aGraphics );
+  }
 }
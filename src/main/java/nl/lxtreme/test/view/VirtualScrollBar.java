@@ -0,0 +1,235 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view;
+
+
+import java.beans.*;
+
+import javax.swing.*;
+import javax.swing.event.*;
+
+import nl.lxtreme.test.view.model.*;
+
+
+/**
+ * Provides a horizontal scroll bar for the virtual screen of the signal
+ * diagram.
+ * <p>
+ * The signal diagram is always as wide as its viewport, and scrolling
+ * horizontally only changes the view offset of the model. As the virtual
+ * screen can be wider than {@value Integer#MAX_VALUE} pixels, this scroll bar
+ * uses a scaled range; for very wide screens each unit of this scroll bar
+ * therefore represents more than one pixel.
+ * </p>
+ * <p>
+ * This scroll bar can be installed as horizontal scroll bar of a
+ * {@link JScrollPane}: the scroll pane will not be able to synchronize its
+ * viewport with this scroll bar, nor this scroll bar with its viewport.
+ * </p>
+ */
+final class VirtualScrollBar extends JScrollBar implements PropertyChangeListener
+{
+  // INNER TYPES
+
+  /**
+   * Provides a range model that does not identify itself as source of its
+   * change events, which prevents the enclosing scroll pane from moving its
+   * viewport when this range changes.
+   */
+  final class VirtualRangeModel extends DefaultBoundedRangeModel
+  {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fireStateChanged()
+    {
+      final ChangeEvent event = new ChangeEvent( VirtualScrollBar.this );
+
+      final Object[] listeners = this.listenerList.getListenerList();
+      for ( int i = listeners.length - 2; i >= 0; i -= 2 )
+      {
+        if ( listeners[i] == ChangeListener.class )
+        {
+          ( ( ChangeListener )listeners[i + 1] ).stateChanged( event );
+        }
+      }
+    }
+  }
+
+  // CONSTANTS
+
+  private static final long serialVersionUID = 1L;
+
+  /** The maximum (integer) range this scroll bar uses. */
+  static final int MAX_RANGE = ( 1 << 30 );
+
+  /** The number of pixels scrolled by the scroll bar's arrows. */
+  private static final int UNIT_INCREMENT = 50;
+
+  // VARIABLES
+
+  private final SignalDiagramComponent signalDiagram;
+
+  /** the number of pixels represented by a single unit of this scroll bar. */
+  private double scale;
+  private boolean updating;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new VirtualScrollBar instance.
+   * 
+   * @param aSignalDiagram
+   *          the signal diagram to scroll, cannot be <code>null</code>.
+   */
+  public VirtualScrollBar( final SignalDiagramComponent aSignalDiagram )
+  {
+    super( HORIZONTAL );
+
+    if ( aSignalDiagram == null )
+    {
+      throw new IllegalArgumentException( "Signal diagram cannot be null!" );
+    }
+
+    this.signalDiagram = aSignalDiagram;
+    this.scale = 1.0;
+
+    setModel( new VirtualRangeModel() );
+
+    getModel().addChangeListener( new ChangeListener()
+    {
+      @Override
+      public void stateChanged( final ChangeEvent aEvent )
+      {
+        if ( !VirtualScrollBar.this.updating )
+        {
+          VirtualScrollBar.this.signalDiagram.setViewOffset( getValue() * VirtualScrollBar.this.scale );
+        }
+      }
+    } );
+  }
+
+  // METHODS
+
+  /**
+   * Determines the scale for a virtual screen of the given width, that is, the
+   * number of pixels that are represented by a single unit of this scroll
+   * bar.
+   * 
+   * @param aVirtualWidth
+   *          the virtual screen width, in pixels, >= 0.0.
+   * @return a scale, >= 1.0.
+   */
+  static double getScale( final double aVirtualWidth )
+  {
+    return Math.max( 1.0, aVirtualWidth / MAX_RANGE );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void addNotify()
+  {
+    try
+    {
+      this.signalDiagram.getModel().addPropertyChangeListener( this );
+    }
+    finally
+    {
+      super.addNotify();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void propertyChange( final PropertyChangeEvent aEvent )
+  {
+    final String name = aEvent.getPropertyName();
+    if ( "viewOffset".equals( name ) || "zoomFactor".equals( name ) )
+    {
+      updateRange();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void removeNotify()
+  {
+    try
+    {
+      this.signalDiagram.getModel().removePropertyChangeListener( this );
+    }
+    finally
+    {
+      super.removeNotify();
+    }
+  }
+
+  /**
+   * Ignores all values set by the enclosing scroll pane, as those are based on
+   * the (viewport-sized) signal diagram; use {@link #updateRange()} instead.
+   * 
+   * @see javax.swing.JScrollBar#setValues(int, int, int, int)
+   */
+  @Override
+  public void setValues( final int aNewValue, final int aNewExtent, final int aNewMin, final int aNewMax )
+  {
+    // Nothing...
+  }
+
+  /**
+   * Updates the range of this scroll bar to the current view offset, virtual
+   * screen width and visible view width.
+   */
+  public void updateRange()
+  {
+    final SignalDiagramModel model = this.signalDiagram.getModel();
+
+    final double virtualWidth = model.getVirtualScreenWidth();
+    final int viewWidth = this.signalDiagram.getVisibleViewSize().width;
+
+    this.scale = getScale( Math.max( virtualWidth, viewWidth ) );
+
+    final int max = ( int )Math.ceil( Math.max( virtualWidth, viewWidth ) / this.scale );
+    final int extent = Math.max( 1, ( int )( viewWidth / this.scale ) );
+    final int value = ( int )Math.round( model.getViewOffset() / this.scale );
+
+    this.updating = true;
+    try
+    {
+      getModel().setRangeProperties( Math.min( value, max - extent ), extent, 0, max, getValueIsAdjusting() );
+
+      setUnitIncrement( Math.max( 1, ( int )( UNIT_INCREMENT / this.scale ) ) );
+      setBlockIncrement( Math.max( 1, extent - getUnitIncrement() ) );
+    }
+    finally
+    {
+      this.updating = false;
+    }
+  }
+}
@@ -0,0 +1,419 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view;
+
+
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.geom.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+import javax.swing.Timer;
+
+import nl.lxtreme.test.util.TaskScheduler.CancellationToken;
+import nl.lxtreme.test.util.TaskScheduler.ITask;
+import nl.lxtreme.test.util.TaskScheduler.Priority;
+import nl.lxtreme.test.view.laf.SignalUI.SignalLayer;
+import nl.lxtreme.test.view.model.*;
+
+
+/**
+ * Animates zooming of the signal diagram.
+ * <p>
+ * While zooming, the signal view shows a scaled version of the signals as
+ * they were last rendered, keeping the time stamp under the zoom anchor at
+ * the same position. Meanwhile, the signals at the new zoom factor are
+ * rendered in the background; once the animation is finished and this frame
+ * is available, the new zoom factor is applied and the frame is swapped in.
+ * </p>
+ * <p>
+ * Zooming again while animating continues from the currently shown zoom
+ * factor, allowing continuous zooming with the mouse wheel.
+ * </p>
+ */
+final class ZoomAnimator implements ActionListener
+{
+  // INNER TYPES
+
+  /**
+   * Renders the signals at the target zoom factor in the background.
+   */
+  final class FrameRenderer implements ITask<Void>
+  {
+    // VARIABLES
+
+    private final int generation;
+    private final SignalElements signalElements;
+    private final Rectangle bounds;
+    private final double zoomFactor;
+    private final double viewOffset;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new FrameRenderer instance.
+     */
+    FrameRenderer( final int aGeneration, final SignalElements aSignalElements, final Rectangle aBounds,
+        final double aZoomFactor, final double aViewOffset )
+    {
+      this.generation = aGeneration;
+      this.signalElements = aSignalElements;
+      this.bounds = aBounds;
+      this.zoomFactor = aZoomFactor;
+      this.viewOffset = aViewOffset;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Void execute( final CancellationToken aToken )
+    {
+      final SignalView view = ZoomAnimator.this.signalDiagram.getSignalView();
+
+      SignalLayer layer = null;
+      try
+      {
+        layer = view.getSignalUI().renderSignalLayer( view.getModel(), this.signalElements, this.bounds,
+            this.zoomFactor, this.viewOffset, aToken );
+      }
+      catch ( CancellationException exception )
+      {
+        // Superseded by another zoom; nothing to swap in...
+        return null;
+      }
+      catch ( RuntimeException exception )
+      {
+        // Let the view render the frame itself...
+        LOG.log( Level.WARNING, "Failed to render zoomed frame!", exception );
+      }
+
+      final SignalLayer result = layer;
+      EventQueue.invokeLater( new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          frameRendered( FrameRenderer.this.generation, result );
+        }
+      } );
+
+      return null;
+    }
+  }
+
+  // CONSTANTS
+
+  /** The task key of the background rendering. */
+  static final String RENDER_TASK = "zoomRender";
+
+  private static final Logger LOG = Logger.getLogger( ZoomAnimator.class.getName() );
+
+  /** The duration of a zoom animation, in milliseconds. */
+  private static final long DURATION = 150L;
+  /** The delay between two animation frames, in milliseconds. */
+  private static final int FRAME_DELAY = 15;
+
+  // VARIABLES
+
+  private final SignalDiagramComponent signalDiagram;
+  private final SignalDiagramController controller;
+  private final Timer timer;
+
+  private boolean active;
+  /** the layer that is scaled while animating, can be null. */
+  private SignalLayer base;
+  /** the zoom factor and view offset that are currently shown. */
+  private double zoomFactor;
+  private double viewOffset;
+
+  private double startFactor;
+  private long startTime;
+  private double targetFactor;
+  private double targetOffset;
+  /** the time stamp that stays at the same X-position while zooming. */
+  private double anchorTimestamp;
+  private int anchorXpos;
+
+  /** identifies the current target, to ignore frames of older targets. */
+  private int generation;
+  private boolean rendered;
+  private SignalLayer frame;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new ZoomAnimator instance.
+   * 
+   * @param aSignalDiagram
+   *          the signal diagram to zoom, cannot be <code>null</code>;
+   * @param aController
+   *          the controller to use, cannot be <code>null</code>.
+   */
+  public ZoomAnimator( final SignalDiagramComponent aSignalDiagram, final SignalDiagramController aController )
+  {
+    this.signalDiagram = aSignalDiagram;
+    this.controller = aController;
+
+    this.timer = new Timer( FRAME_DELAY, this );
+    this.timer.setCoalesce( true );
+  }
+
+  // METHODS
+
+  /**
+   * Advances the animation by one frame.
+   * 
+   * @see java.awt.event.ActionListener#actionPerformed(java.awt.event.ActionEvent)
+   */
+  @Override
+  public void actionPerformed( final ActionEvent aEvent )
+  {
+    final double t = Math.min( 1.0, ( System.currentTimeMillis() - this.startTime ) / ( double )DURATION );
+    // Ease out, so the zoom responds immediately and settles smoothly...
+    final double progress = 1.0 - ( ( 1.0 - t ) * ( 1.0 - t ) );
+
+    this.zoomFactor = this.startFactor * Math.pow( this.targetFactor / this.startFactor, progress );
+    this.viewOffset = getAnchoredViewOffset( this.zoomFactor );
+
+    if ( this.base != null )
+    {
+      this.signalDiagram.getSignalView().repaint();
+    }
+
+    if ( t >= 1.0 )
+    {
+      this.timer.stop();
+
+      if ( this.rendered )
+      {
+        commit();
+      }
+    }
+  }
+
+  /**
+   * Starts, or retargets, a zoom animation to the given zoom factor.
+   * 
+   * @param aZoomFactor
+   *          the zoom factor to zoom to, > 0.0;
+   * @param aAnchorXpos
+   *          the X-position in the signal view that should stay at the same
+   *          time stamp while zooming, such as the mouse position.
+   */
+  public void animateTo( final double aZoomFactor, final int aAnchorXpos )
+  {
+    final SignalDiagramModel model = this.signalDiagram.getModel();
+    final SignalView view = this.signalDiagram.getSignalView();
+    final Rectangle visibleRect = view.getVisibleRect();
+
+    if ( !this.active )
+    {
+      this.zoomFactor = model.getZoomFactor();
+      this.viewOffset = model.getViewOffset();
+
+      // Only scale what is currently shown...
+      final SignalLayer layer = view.getSignalUI().getSignalLayer();
+      if ( ( layer != null )
+          && layer.isRenderedWith( model.getSnapshot().getVersion(), visibleRect, this.zoomFactor, this.viewOffset ) )
+      {
+        this.base = layer;
+      }
+
+      this.active = true;
+    }
+
+    this.startFactor = this.zoomFactor;
+    this.startTime = System.currentTimeMillis();
+    this.targetFactor = aZoomFactor;
+    this.anchorXpos = aAnchorXpos;
+    this.anchorTimestamp = ( aAnchorXpos + this.viewOffset ) / this.zoomFactor;
+    this.targetOffset = getAnchoredViewOffset( aZoomFactor );
+
+    this.generation++;
+    this.rendered = false;
+    this.frame = null;
+
+    // The signal elements do not depend on the zoom factor, and should be
+    // obtained on the EDT...
+    final SignalElements signalElements = view.getModel().getSignalElements( visibleRect.y, visibleRect.height );
+
+    this.controller.getTaskScheduler().submit( Priority.INTERACTIVE, RENDER_TASK,
+        new FrameRenderer( this.generation, signalElements, visibleRect, this.targetFactor, this.targetOffset ) );
+
+    this.timer.restart();
+  }
+
+  /**
+   * Stops the current animation, if any, without applying its zoom factor.
+   */
+  public void cancel()
+  {
+    if ( !this.active )
+    {
+      return;
+    }
+
+    this.controller.getTaskScheduler().cancel( RENDER_TASK );
+    this.timer.stop();
+
+    this.active = false;
+    this.base = null;
+    this.frame = null;
+    this.generation++;
+
+    this.signalDiagram.getSignalView().repaint();
+  }
+
+  /**
+   * Returns the zoom factor that is zoomed to.
+   * 
+   * @return the target zoom factor when animating, or the current zoom factor
+   *         otherwise.
+   */
+  public double getTargetFactor()
+  {
+    return this.active ? this.targetFactor : this.signalDiagram.getModel().getZoomFactor();
+  }
+
+  /**
+   * Returns whether or not a zoom animation is in progress.
+   * 
+   * @return <code>true</code> if animating, <code>false</code> otherwise.
+   */
+  public boolean isActive()
+  {
+    return this.active;
+  }
+
+  /**
+   * Paints the preview of the current animation frame.
+   * 
+   * @param aGraphics
+   *          the graphics to paint on, cannot be <code>null</code>;
+   * @param aView
+   *          the signal view to paint the preview for, cannot be
+   *          <code>null</code>.
+   * @return <code>true</code> if a preview is painted, <code>false</code> if
+   *         there is nothing to preview and the view should paint itself.
+   */
+  public boolean paintPreview( final Graphics aGraphics, final SignalView aView )
+  {
+    final SignalLayer layer = this.base;
+    if ( !this.active || ( layer == null ) )
+    {
+      return false;
+    }
+
+    final Graphics2D canvas = ( Graphics2D )aGraphics.create();
+    try
+    {
+      final Rectangle clip = canvas.getClipBounds();
+      canvas.setColor( aView.getModel().getBackgroundColor() );
+      canvas.fillRect( clip.x, clip.y, clip.width, clip.height );
+
+      // A pixel of the layer shows the time stamp at its (virtual) X-position,
+      // divided by the zoom factor of the layer...
+      final Rectangle bounds = layer.getBounds();
+      final double scale = this.zoomFactor / layer.getZoomFactor();
+      final double dx = ( ( bounds.x + layer.getViewOffset() ) * scale ) - this.viewOffset;
+
+      canvas.setRenderingHint( RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR );
+      canvas.drawImage( layer.getImage(), new AffineTransform( scale, 0.0, 0.0, 1.0, dx, bounds.y ), null );
+    }
+    finally
+    {
+      canvas.dispose();
+    }
+
+    return true;
+  }
+
+  /**
+   * Ends the animation by applying the target zoom factor and view offset,
+   * and swapping in the frame rendered for it.
+   */
+  private void commit()
+  {
+    final SignalView view = this.signalDiagram.getSignalView();
+    if ( this.frame != null )
+    {
+      view.getSignalUI().setPendingSignalLayer( this.frame );
+    }
+
+    this.active = false;
+    this.base = null;
+    this.frame = null;
+
+    this.signalDiagram.getModel().setZoomFactor( this.targetFactor );
+    this.signalDiagram.setViewOffset( this.targetOffset );
+    this.signalDiagram.recalculateDimensions();
+
+    LOG.log( Level.FINE, "Zoom factor set to " + this.targetFactor );
+  }
+
+  /**
+   * Called on the EDT when the frame for a target is rendered.
+   * 
+   * @param aGeneration
+   *          the generation of the target the frame is rendered for;
+   * @param aFrame
+   *          the rendered frame, or <code>null</code> if rendering failed.
+   */
+  private void frameRendered( final int aGeneration, final SignalLayer aFrame )
+  {
+    if ( !this.active || ( aGeneration != this.generation ) )
+    {
+      // Stale frame; ignore it...
+      return;
+    }
+
+    this.rendered = true;
+    this.frame = aFrame;
+
+    if ( !this.timer.isRunning() )
+    {
+      commit();
+    }
+  }
+
+  /**
+   * Returns the view offset that keeps the anchor time stamp at the anchor
+   * position for the given zoom factor.
+   * 
+   * @param aZoomFactor
+   *          the zoom factor to determine the view offset for.
+   * @return a view offset, clamped to the virtual screen width at the given
+   *         zoom factor.
+   */
+  private double getAnchoredViewOffset( final double aZoomFactor )
+  {
+    final SignalDiagramModel model = this.signalDiagram.getModel();
+
+    final double maxOffset = ( model.getAbsoluteLength() * aZoomFactor )
+        - this.signalDiagram.getVisibleViewSize().width;
+    final double offset = ( this.anchorTimestamp * aZoomFactor ) - this.anchorXpos;
+
+    return Math.max( 0.0, Math.min( maxOffset, offset ) );
+  }
+}
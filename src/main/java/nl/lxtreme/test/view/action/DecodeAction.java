@@ -0,0 +1,237 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view.action;
+
+
+import java.awt.event.*;
+import java.beans.*;
+import java.util.concurrent.*;
+
+import javax.swing.*;
+
+import nl.lxtreme.test.decoder.*;
+import nl.lxtreme.test.view.*;
+
+
+/**
+ * Provides an action to decode the current sample data with a UART, SPI or
+ * I2C decoder, showing the decoded data as annotations.
+ */
+public class DecodeAction extends AbstractAction
+{
+  // CONSTANTS
+
+  private static final long serialVersionUID = 1L;
+
+  private static final String UART = "UART";
+  private static final String SPI = "SPI";
+  private static final String I2C = "I2C";
+
+  private static final String[] PROTOCOLS = { UART, SPI, I2C };
+
+  // VARIABLES
+
+  private final SignalDiagramController controller;
+
+  private String protocol;
+  private String uartSettings;
+  private String spiSettings;
+  private String i2cSettings;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new DecodeAction instance.
+   */
+  public DecodeAction( final SignalDiagramController aController )
+  {
+    super( "Decode..." );
+
+    this.controller = aController;
+
+    this.protocol = UART;
+    this.uartSettings = "0, 9600";
+    this.spiSettings = "0, 1, 2, 3, 0";
+    this.i2cSettings = "0, 1";
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void actionPerformed( final ActionEvent aEvent )
+  {
+    final SignalDiagramComponent signalDiagram = this.controller.getSignalDiagram();
+
+    final Object selected = JOptionPane.showInputDialog( signalDiagram, "Protocol:", "Decode",
+        JOptionPane.QUESTION_MESSAGE, null /* icon */, PROTOCOLS, this.protocol );
+    if ( selected == null )
+    {
+      // Cancelled...
+      return;
+    }
+    this.protocol = ( String )selected;
+
+    final String prompt;
+    final String settings;
+    if ( UART.equals( this.protocol ) )
+    {
+      prompt = "Channel, baud rate:";
+      settings = this.uartSettings;
+    }
+    else if ( SPI.equals( this.protocol ) )
+    {
+      prompt = "CLK, CS, MOSI and MISO channel (" + SpiDecoder.NO_CHANNEL + " if not used), mode:";
+      settings = this.spiSettings;
+    }
+    else
+    {
+      prompt = "SCL, SDA channel:";
+      settings = this.i2cSettings;
+    }
+
+    final String input = JOptionPane.showInputDialog( signalDiagram, prompt, settings );
+    if ( input == null )
+    {
+      // Cancelled...
+      return;
+    }
+
+    final AbstractProtocolDecoder decoder;
+    try
+    {
+      decoder = createDecoder( input );
+    }
+    catch ( IllegalArgumentException exception )
+    {
+      JOptionPane.showMessageDialog( signalDiagram, "Invalid settings: " + input, "Error",
+          JOptionPane.ERROR_MESSAGE );
+      return;
+    }
+
+    final SwingWorker<Void, Void> worker = this.controller.decode( decoder );
+    worker.addPropertyChangeListener( new PropertyChangeListener()
+    {
+      @Override
+      public void propertyChange( final PropertyChangeEvent aEvent )
+      {
+        if ( "state".equals( aEvent.getPropertyName() ) && ( SwingWorker.StateValue.DONE == aEvent.getNewValue() )
+            && !worker.isCancelled() )
+        {
+          try
+          {
+            worker.get();
+          }
+          catch ( InterruptedException exception )
+          {
+            Thread.currentThread().interrupt();
+          }
+          catch ( ExecutionException exception )
+          {
+            JOptionPane.showMessageDialog( signalDiagram, "Failed to decode " + decoder.getName() + ": "
+                + exception.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE );
+          }
+        }
+      }
+    } );
+  }
+
+  /**
+   * Creates a decoder for the current protocol with the given settings, and
+   * remembers these settings for the next time.
+   * 
+   * @throws IllegalArgumentException
+   *           in case the given settings are invalid.
+   */
+  private AbstractProtocolDecoder createDecoder( final String aSettings )
+  {
+    final int sampleWidth = this.controller.getSignalDiagramModel().getSampleWidth();
+
+    final String[] parts = aSettings.split( "," );
+    final int[] values = new int[parts.length];
+    for ( int i = 0; i < parts.length; i++ )
+    {
+      // NumberFormatException is an IllegalArgumentException...
+      values[i] = Integer.parseInt( parts[i].trim() );
+    }
+
+    final AbstractProtocolDecoder result;
+    if ( UART.equals( this.protocol ) )
+    {
+      checkCount( values, 2 );
+      checkChannel( values[0], false /* aOptional */, sampleWidth );
+      result = new UartDecoder( values[0], values[1] );
+      this.uartSettings = aSettings;
+    }
+    else if ( SPI.equals( this.protocol ) )
+    {
+      checkCount( values, 5 );
+      checkChannel( values[0], false /* aOptional */, sampleWidth );
+      checkChannel( values[1], false /* aOptional */, sampleWidth );
+      checkChannel( values[2], true /* aOptional */, sampleWidth );
+      checkChannel( values[3], true /* aOptional */, sampleWidth );
+      result = new SpiDecoder( values[0], values[1], values[2], values[3], values[4] );
+      this.spiSettings = aSettings;
+    }
+    else
+    {
+      checkCount( values, 2 );
+      checkChannel( values[0], false /* aOptional */, sampleWidth );
+      checkChannel( values[1], false /* aOptional */, sampleWidth );
+      result = new I2CDecoder( values[0], values[1] );
+      this.i2cSettings = aSettings;
+    }
+    return result;
+  }
+
+  /**
+   * Checks whether the given channel index is valid.
+   * 
+   * @throws IllegalArgumentException
+   *           in case the given channel index is invalid.
+   */
+  private static void checkChannel( final int aChannel, final boolean aOptional, final int aSampleWidth )
+  {
+    if ( aOptional && ( aChannel == SpiDecoder.NO_CHANNEL ) )
+    {
+      return;
+    }
+    if ( ( aChannel < 0 ) || ( aChannel >= aSampleWidth ) )
+    {
+      throw new IllegalArgumentException( "Invalid channel: " + aChannel );
+    }
+  }
+
+  /**
+   * Checks whether the given number of settings are given.
+   * 
+   * @throws IllegalArgumentException
+   *           in case a different number of settings is given.
+   */
+  private static void checkCount( final int[] aValues, final int aCount )
+  {
+    if ( aValues.length != aCount )
+    {
+      throw new IllegalArgumentException( "Expected " + aCount + " values!" );
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view.action;
+
+
+import java.awt.event.*;
+
+import javax.swing.*;
+
+import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.view.*;
+
+
+/**
+ * Provides an action to detect all glitches on the enabled channels.
+ */
+public class DetectGlitchesAction extends AbstractAction
+{
+  // CONSTANTS
+
+  private static final long serialVersionUID = 1L;
+
+  // VARIABLES
+
+  private final SignalDiagramController controller;
+
+  private long maxWidth;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new DetectGlitchesAction instance.
+   */
+  public DetectGlitchesAction( final SignalDiagramController aController )
+  {
+    super( "Detect glitches..." );
+
+    this.controller = aController;
+    this.maxWidth = 2L;
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void actionPerformed( final ActionEvent aEvent )
+  {
+    final String input = JOptionPane.showInputDialog( this.controller.getSignalDiagram(),
+        "Detect pulses shorter than (samples):", Long.valueOf( this.maxWidth ) );
+    if ( input == null )
+    {
+      // Cancelled...
+      return;
+    }
+
+    try
+    {
+      final long width = Long.parseLong( input.trim() );
+      if ( width <= 0L )
+      {
+        throw new NumberFormatException();
+      }
+      this.maxWidth = width;
+    }
+    catch ( NumberFormatException exception )
+    {
+      JOptionPane.showMessageDialog( this.controller.getSignalDiagram(), "Invalid width: " + input, "Error",
+          JOptionPane.ERROR_MESSAGE );
+      return;
+    }
+
+    int mask = 0;
+    for ( Channel channel : this.controller.getSignalDiagramModel().getChannelGroupManager().getAssignedChannels() )
+    {
+      if ( channel.isEnabled() )
+      {
+        mask |= channel.getMask();
+      }
+    }
+
+    this.controller.detectGlitches( mask, this.maxWidth );
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view.action;
+
+
+import java.awt.event.*;
+import java.beans.*;
+import java.io.*;
+import java.util.concurrent.*;
+
+import javax.swing.*;
+import javax.swing.filechooser.*;
+
+import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.view.*;
+import nl.lxtreme.test.view.model.*;
+
+
+/**
+ * Provides an action to export the enabled channels as Value Change Dump file.
+ * When the first two cursors are defined, only the range between them is
+ * exported.
+ */
+public class ExportVcdAction extends AbstractAction
+{
+  // CONSTANTS
+
+  private static final long serialVersionUID = 1L;
+
+  // VARIABLES
+
+  private final SignalDiagramController controller;
+  private final JFileChooser fileChooser;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new ExportVcdAction instance.
+   */
+  public ExportVcdAction( final SignalDiagramController aController )
+  {
+    super( "Export VCD..." );
+
+    this.controller = aController;
+
+    this.fileChooser = new JFileChooser();
+    this.fileChooser.setFileFilter( new FileNameExtensionFilter( "Value Change Dump files",
+        OpenCaptureAction.VCD_EXTENSION ) );
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void actionPerformed( final ActionEvent aEvent )
+  {
+    final SignalDiagramComponent signalDiagram = this.controller.getSignalDiagram();
+    if ( this.fileChooser.showSaveDialog( signalDiagram ) != JFileChooser.APPROVE_OPTION )
+    {
+      // Cancelled...
+      return;
+    }
+
+    File file = this.fileChooser.getSelectedFile();
+    if ( !file.getName().contains( "." ) )
+    {
+      file = new File( file.getParentFile(), file.getName() + "." + OpenCaptureAction.VCD_EXTENSION );
+    }
+
+    final SignalDiagramModel model = this.controller.getSignalDiagramModel();
+
+    int mask = 0;
+    for ( Channel channel : model.getChannelGroupManager().getAssignedChannels() )
+    {
+      if ( channel.isEnabled() )
+      {
+        mask |= channel.getMask();
+      }
+    }
+
+    long startTime = 0L;
+    long endTime = Long.MAX_VALUE;
+    if ( model.isCursorDefined( 0 ) && model.isCursorDefined( 1 ) )
+    {
+      final long cursorA = model.getCursor( 0 ).getTimestamp();
+      final long cursorB = model.getCursor( 1 ).getTimestamp();
+      startTime = Math.min( cursorA, cursorB );
+      endTime = Math.max( cursorA, cursorB );
+    }
+
+    final String name = file.getName();
+    final SwingWorker<Void, Void> worker = this.controller.exportVcd( file, mask, startTime, endTime );
+    worker.addPropertyChangeListener( new PropertyChangeListener()
+    {
+      @Override
+      public void propertyChange( final PropertyChangeEvent aEvent )
+      {
+        if ( "state".equals( aEvent.getPropertyName() ) && ( SwingWorker.StateValue.DONE == aEvent.getNewValue() ) )
+        {
+          try
+          {
+            worker.get();
+          }
+          catch ( InterruptedException exception )
+          {
+            Thread.currentThread().interrupt();
+          }
+          catch ( ExecutionException exception )
+          {
+            JOptionPane.showMessageDialog( signalDiagram, "Failed to export " + name + ": "
+                + exception.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE );
+          }
+        }
+      }
+    } );
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view.action;
+
+
+import java.awt.*;
+import java.awt.event.*;
+
+import javax.swing.*;
+
+import nl.lxtreme.test.view.*;
+
+
+/**
+ * Provides an action to scroll to the next or previous detected glitch.
+ */
+public class GotoGlitchAction extends AbstractAction
+{
+  // CONSTANTS
+
+  private static final long serialVersionUID = 1L;
+
+  // VARIABLES
+
+  private final SignalDiagramController controller;
+  private final boolean forward;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new GotoGlitchAction instance.
+   * 
+   * @param aController
+   *          the controller to use, cannot be <code>null</code>;
+   * @param aForward
+   *          <code>true</code> to go to the next glitch, <code>false</code> to
+   *          go to the previous glitch.
+   */
+  public GotoGlitchAction( final SignalDiagramController aController, final boolean aForward )
+  {
+    super( aForward ? "Next glitch" : "Previous glitch" );
+
+    putValue( ACCELERATOR_KEY, KeyStroke.getKeyStroke( KeyEvent.VK_F3, aForward ? 0 : InputEvent.SHIFT_DOWN_MASK ) );
+
+    this.controller = aController;
+    this.forward = aForward;
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void actionPerformed( final ActionEvent aEvent )
+  {
+    final boolean found = this.forward ? this.controller.gotoNextGlitch() : this.controller.gotoPreviousGlitch();
+    if ( !found )
+    {
+      Toolkit.getDefaultToolkit().beep();
+    }
+  }
+}
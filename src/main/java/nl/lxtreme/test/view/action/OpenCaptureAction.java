@@ -0,0 +1,103 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view.action;
+
+
+import java.awt.event.*;
+import java.io.*;
+
+import javax.swing.*;
+import javax.swing.filechooser.*;
+
+import nl.lxtreme.test.view.*;
+
+
+/**
+ * Provides an action to open a capture file, replacing the current sample data.
+ */
+public class OpenCaptureAction extends AbstractAction
+{
+  // CONSTANTS
+
+  private static final long serialVersionUID = 1L;
+
+  /** The file extension of capture files. */
+  static final String EXTENSION = "olsc";
+  /** The file extension of OpenBench LogicSniffer files. */
+  static final String OLS_EXTENSION = "ols";
+  /** The file extension of Value Change Dump files. */
+  static final String VCD_EXTENSION = "vcd";
+
+  // VARIABLES
+
+  private final SignalDiagramController controller;
+  private final JFileChooser fileChooser;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new OpenCaptureAction instance.
+   */
+  public OpenCaptureAction( final SignalDiagramController aController )
+  {
+    super( "Open capture..." );
+
+    this.controller = aController;
+
+    this.fileChooser = new JFileChooser();
+    this.fileChooser.addChoosableFileFilter( new FileNameExtensionFilter( "OpenBench LogicSniffer files",
+        OLS_EXTENSION ) );
+    this.fileChooser.addChoosableFileFilter( new FileNameExtensionFilter( "Value Change Dump files", VCD_EXTENSION ) );
+    this.fileChooser.setFileFilter( new FileNameExtensionFilter( "Capture files", EXTENSION, OLS_EXTENSION,
+        VCD_EXTENSION ) );
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void actionPerformed( final ActionEvent aEvent )
+  {
+    final SignalDiagramComponent signalDiagram = this.controller.getSignalDiagram();
+    if ( this.fileChooser.showOpenDialog( signalDiagram ) != JFileChooser.APPROVE_OPTION )
+    {
+      // Cancelled...
+      return;
+    }
+
+    // Errors are reported by the loader itself...
+    final File file = this.fileChooser.getSelectedFile();
+    final String name = file.getName().toLowerCase();
+    if ( name.endsWith( "." + OLS_EXTENSION ) )
+    {
+      this.controller.importOls( file );
+    }
+    else if ( name.endsWith( "." + VCD_EXTENSION ) )
+    {
+      this.controller.importVcd( file );
+    }
+    else
+    {
+      this.controller.openCapture( file );
+    }
+  }
+}
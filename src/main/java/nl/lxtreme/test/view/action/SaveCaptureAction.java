@@ -0,0 +1,110 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view.action;
+
+
+import java.awt.event.*;
+import java.beans.*;
+import java.io.*;
+import java.util.concurrent.*;
+
+import javax.swing.*;
+import javax.swing.filechooser.*;
+
+import nl.lxtreme.test.view.*;
+
+
+/**
+ * Provides an action to save the current sample data to a capture file.
+ */
+public class SaveCaptureAction extends AbstractAction
+{
+  // CONSTANTS
+
+  private static final long serialVersionUID = 1L;
+
+  // VARIABLES
+
+  private final SignalDiagramController controller;
+  private final JFileChooser fileChooser;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SaveCaptureAction instance.
+   */
+  public SaveCaptureAction( final SignalDiagramController aController )
+  {
+    super( "Save capture..." );
+
+    this.controller = aController;
+
+    this.fileChooser = new JFileChooser();
+    this.fileChooser.setFileFilter( new FileNameExtensionFilter( "Capture files", OpenCaptureAction.EXTENSION ) );
+  }
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void actionPerformed( final ActionEvent aEvent )
+  {
+    final SignalDiagramComponent signalDiagram = this.controller.getSignalDiagram();
+    if ( this.fileChooser.showSaveDialog( signalDiagram ) != JFileChooser.APPROVE_OPTION )
+    {
+      // Cancelled...
+      return;
+    }
+
+    File file = this.fileChooser.getSelectedFile();
+    if ( !file.getName().contains( "." ) )
+    {
+      file = new File( file.getParentFile(), file.getName() + "." + OpenCaptureAction.EXTENSION );
+    }
+
+    final String name = file.getName();
+    final SwingWorker<Void, Void> worker = this.controller.saveCapture( file );
+    worker.addPropertyChangeListener( new PropertyChangeListener()
+    {
+      @Override
+      public void propertyChange( final PropertyChangeEvent aEvent )
+      {
+        if ( "state".equals( aEvent.getPropertyName() ) && ( SwingWorker.StateValue.DONE == aEvent.getNewValue() ) )
+        {
+          try
+          {
+            worker.get();
+          }
+          catch ( InterruptedException exception )
+          {
+            Thread.currentThread().interrupt();
+          }
+          catch ( ExecutionException exception )
+          {
+            JOptionPane.showMessageDialog( signalDiagram, "Failed to save " + name + ": "
+                + exception.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE );
+          }
+        }
+      }
+    } );
+  }
+}
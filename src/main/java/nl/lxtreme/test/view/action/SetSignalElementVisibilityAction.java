@@ -24,6 +24,7 @@ import java.awt.event.*;
 
 import javax.swing.*;
 
+import nl.lxtreme.test.IChannelChangeListener.*;
 import nl.lxtreme.test.model.*;
 import nl.lxtreme.test.view.*;
 import nl.lxtreme.test.view.model.*;
@@ -116,7 +117,22 @@ public class SetSignalElementVisibilityAction extends AbstractAction
   {
     final JCheckBoxMenuItem menuitem = ( JCheckBoxMenuItem )aEvent.getSource();
 
-    this.signalElement.setEnabled( menuitem.getState() );
+    final boolean oldState = this.signalElement.isEnabled();
+    final boolean newState = menuitem.getState();
+
+    this.signalElement.setEnabled( newState );
+
+    final ChannelGroupManager channelGroupManager = this.controller.getSignalDiagramModel().getChannelGroupManager();
+    if ( this.signalElement.isDigitalSignal() )
+    {
+      channelGroupManager.fireChannelChangeEvent( new ChannelChangeEvent( this.signalElement.getChannel(),
+          ChannelChangeEvent.PROPERTY_ENABLED, Boolean.valueOf( oldState ), Boolean.valueOf( newState ) ) );
+    }
+    else
+    {
+      // Showing or hiding parts of a channel group changes its layout...
+      channelGroupManager.fireChannelGroupStructureChangeEvent();
+    }
 
     // TODO: this can be made smarter...
     this.controller.getSignalDiagram().repaint( 25L );
@@ -104,8 +104,8 @@ public class ChannelLabelsUI extends ComponentUI
     {
       final Rectangle clip = canvas.getClipBounds();
 
-      final SignalElement[] signalElements = model.getSignalElements( clip.y, clip.height );
-      if ( signalElements.length == 0 )
+      final SignalElements signalElements = model.getSignalElements( clip.y, clip.height );
+      if ( signalElements.isEmpty() )
       {
         return;
       }
@@ -119,10 +119,12 @@ public class ChannelLabelsUI extends ComponentUI
       final int compWidth = view.getWidth() - GUTTER_X;
 
       // Start drawing at the correct position in the clipped region...
-      canvas.translate( 0, signalElements[0].getYposition() );
+      canvas.translate( 0, signalElements.get( 0 ).getYposition() );
 
-      for ( SignalElement signalElement : signalElements )
+      for ( int elementIdx = 0; elementIdx < signalElements.size(); elementIdx++ )
       {
+        final SignalElement signalElement = signalElements.get( elementIdx );
+
         if ( signalElement.isSignalGroup() )
         {
           paintSignalGroup( canvas, model, signalElement, compWidth );
@@ -38,6 +38,8 @@ public final class LafDefaults
 
   /** Measurement arrow color. */
   public static final Color DEFAULT_ARROW_COLOR = Color.WHITE;
+  /** Color of the differences with a reference capture. */
+  public static final Color DEFAULT_DIFFERENCE_COLOR = Color.RED;
 
   // GLASS PANE
 
@@ -69,6 +71,15 @@ public final class LafDefaults
   /** The height (in px) of the minor timeline ticks. */
   public static final int DEFAULT_MINOR_TICK_HEIGHT = 2 * DEFAULT_TICK_HEIGHT;
 
+  // OVERVIEW
+
+  /** Overview height. */
+  public static final int DEFAULT_OVERVIEW_HEIGHT = 24;
+  /** Background color for the overview. */
+  public static final Color DEFAULT_OVERVIEW_BACKGROUND_COLOR = DEFAULT_CHANNEL_BACKGROUND_COLOR;
+  /** The color in which the visible part of the signals is marked. */
+  public static final Color DEFAULT_VIEWPORT_COLOR = Color.WHITE;
+
   // CURSORS
 
   /** The font of the cursor flags. */
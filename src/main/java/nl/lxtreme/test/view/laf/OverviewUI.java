@@ -0,0 +1,220 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view.laf;
+
+
+import java.awt.*;
+import java.awt.image.*;
+
+import javax.swing.*;
+import javax.swing.plaf.*;
+
+import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.model.Cursor;
+import nl.lxtreme.test.view.*;
+import nl.lxtreme.test.view.model.*;
+
+
+/**
+ * Represents the UI-implementation of the overview.
+ * <p>
+ * The activity of the channel groups is rendered once into an image, which is
+ * reused until the activity summary or the size of the overview changes. The
+ * viewport and cursors are painted on top of this image.
+ * </p>
+ */
+public class OverviewUI extends ComponentUI
+{
+  // CONSTANTS
+
+  /** The alpha value of the area marking the visible part of the signals. */
+  private static final int VIEWPORT_ALPHA = 48;
+  /** The minimal width (in px) of the viewport marker. */
+  private static final int MINIMAL_VIEWPORT_WIDTH = 3;
+
+  // VARIABLES
+
+  private BufferedImage activityImage;
+  private ActivitySummary renderedSummary;
+
+  // METHODS
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void paint( final Graphics aGraphics, final JComponent aComponent )
+  {
+    final OverviewView view = ( OverviewView )aComponent;
+    final OverviewViewModel model = view.getModel();
+
+    final int width = view.getWidth();
+    final int height = view.getHeight();
+
+    Graphics2D canvas = ( Graphics2D )aGraphics.create();
+
+    try
+    {
+      final Rectangle clip = canvas.getClipBounds();
+
+      canvas.setBackground( model.getBackgroundColor() );
+      canvas.clearRect( clip.x, clip.y, clip.width, clip.height );
+
+      final ActivitySummary summary = model.getActivitySummary();
+      if ( ( summary == null ) || ( width <= 0 ) || ( height <= 0 ) || ( model.getAbsoluteLength() <= 0L ) )
+      {
+        // Nothing to show (yet)...
+        return;
+      }
+
+      canvas.drawImage( getActivityImage( model, summary, width, height ), 0, 0, null );
+
+      // Mark the visible part of the signals...
+      final double viewOffset = model.getViewOffset();
+      int startXpos = ( int )Math.floor( model.viewOffsetToOverview( viewOffset, width ) );
+      int endXpos = ( int )Math.ceil( model.viewOffsetToOverview( viewOffset + model.getViewportWidth(), width ) );
+      if ( ( endXpos - startXpos ) < MINIMAL_VIEWPORT_WIDTH )
+      {
+        startXpos -= ( MINIMAL_VIEWPORT_WIDTH - ( endXpos - startXpos ) ) / 2;
+        endXpos = startXpos + MINIMAL_VIEWPORT_WIDTH;
+      }
+
+      final Color viewportColor = model.getViewportColor();
+      canvas.setColor( new Color( viewportColor.getRed(), viewportColor.getGreen(), viewportColor.getBlue(),
+          VIEWPORT_ALPHA ) );
+      canvas.fillRect( startXpos, 0, endXpos - startXpos, height );
+      canvas.setColor( viewportColor );
+      canvas.drawRect( startXpos, 0, endXpos - startXpos - 1, height - 1 );
+
+      // Mark the cursors...
+      if ( model.isCursorMode() )
+      {
+        for ( int i = 0; i < Cursor.MAX_CURSORS; i++ )
+        {
+          final long timestamp = model.getCursorTimestamp( i );
+          if ( timestamp < 0L )
+          {
+            continue;
+          }
+
+          final int xPos = ( int )model.timestampToOverview( timestamp, width );
+
+          canvas.setColor( model.getCursorColor( i ) );
+          canvas.drawLine( xPos, 0, xPos, height - 1 );
+        }
+      }
+    }
+    finally
+    {
+      canvas.dispose();
+      canvas = null;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void uninstallUI( final JComponent aComponent )
+  {
+    this.activityImage = null;
+    this.renderedSummary = null;
+
+    super.uninstallUI( aComponent );
+  }
+
+  /**
+   * Returns the image with the activity of the given summary, rendering it if
+   * needed.
+   */
+  private BufferedImage getActivityImage( final OverviewViewModel aModel, final ActivitySummary aSummary,
+      final int aWidth, final int aHeight )
+  {
+    BufferedImage image = this.activityImage;
+    if ( ( image == null ) || ( this.renderedSummary != aSummary ) || ( image.getWidth() != aWidth )
+        || ( image.getHeight() != aHeight ) )
+    {
+      image = renderActivity( aModel, aSummary, aWidth, aHeight );
+
+      this.activityImage = image;
+      this.renderedSummary = aSummary;
+    }
+    return image;
+  }
+
+  /**
+   * Renders the activity of all groups of the given summary, each group in its
+   * own row, as bars that are logarithmically scaled to the busiest pixel of
+   * the group.
+   */
+  private BufferedImage renderActivity( final OverviewViewModel aModel, final ActivitySummary aSummary,
+      final int aWidth, final int aHeight )
+  {
+    final BufferedImage image = new BufferedImage( aWidth, aHeight, BufferedImage.TYPE_INT_RGB );
+
+    final Graphics2D canvas = image.createGraphics();
+    try
+    {
+      canvas.setBackground( aModel.getBackgroundColor() );
+      canvas.clearRect( 0, 0, aWidth, aHeight );
+
+      final int groupCount = aSummary.getGroupCount();
+      for ( int g = 0; g < groupCount; g++ )
+      {
+        final int rowTop = ( g * aHeight ) / groupCount;
+        final int rowHeight = ( ( ( g + 1 ) * aHeight ) / groupCount ) - rowTop;
+        if ( rowHeight <= 0 )
+        {
+          continue;
+        }
+
+        final int[] activity = aSummary.getActivity( g, aWidth );
+
+        int max = 0;
+        for ( int count : activity )
+        {
+          max = Math.max( max, count );
+        }
+        if ( max == 0 )
+        {
+          continue;
+        }
+
+        final double scale = rowHeight / Math.log1p( max );
+
+        canvas.setColor( aModel.getGroupColor( g ) );
+        for ( int x = 0; x < aWidth; x++ )
+        {
+          if ( activity[x] > 0 )
+          {
+            final int barHeight = Math.max( 1, ( int )Math.round( Math.log1p( activity[x] ) * scale ) );
+            canvas.drawLine( x, ( rowTop + rowHeight ) - barHeight, x, ( rowTop + rowHeight ) - 1 );
+          }
+        }
+      }
+    }
+    finally
+    {
+      canvas.dispose();
+    }
+
+    return image;
+  }
+}
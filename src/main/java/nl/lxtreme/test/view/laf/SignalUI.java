@@ -20,13 +20,18 @@
 package nl.lxtreme.test.view.laf;
 
 
+import static nl.lxtreme.test.view.model.SignalDiagramModel.toScreenCoordinate;
+
 import java.awt.*;
+import java.awt.image.*;
 
 import javax.swing.*;
 import javax.swing.plaf.*;
 
 import nl.lxtreme.test.model.*;
 import nl.lxtreme.test.model.Cursor;
+import nl.lxtreme.test.util.*;
+import nl.lxtreme.test.util.TaskScheduler.CancellationToken;
 import nl.lxtreme.test.view.*;
 import nl.lxtreme.test.view.model.*;
 import nl.lxtreme.test.view.renderer.*;
@@ -36,16 +41,117 @@ import nl.lxtreme.test.view.renderer.Renderer;
 /**
  * 
  */
-public class SignalUI extends ComponentUI
+public class SignalUI extends ComponentUI implements IMemoryConsumer
 {
-  // CONSTANTS
+  // INNER TYPES
+
+  /**
+   * Provides a rendered image of the signals, without cursors, annotations
+   * and such, of a part of the view at a given zoom factor and view offset.
+   */
+  public static final class SignalLayer
+  {
+    // VARIABLES
+
+    private final BufferedImage image;
+    private final Rectangle bounds;
+    private final long version;
+    private final double zoomFactor;
+    private final double viewOffset;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new SignalLayer instance.
+     */
+    SignalLayer( final BufferedImage aImage, final Rectangle aBounds, final long aVersion, final double aZoomFactor,
+        final double aViewOffset )
+    {
+      this.image = aImage;
+      this.bounds = new Rectangle( aBounds );
+      this.version = aVersion;
+      this.zoomFactor = aZoomFactor;
+      this.viewOffset = aViewOffset;
+    }
+
+    // METHODS
+
+    /**
+     * Returns the part of the view this layer is rendered for.
+     * 
+     * @return the bounds, in view coordinates, never <code>null</code>.
+     */
+    public Rectangle getBounds()
+    {
+      return new Rectangle( this.bounds );
+    }
 
-  /** XXX The threshold when we're going to draw a bit more sloppy... */
-  private static final int SLOPPY_THRESHOLD = 1000000;
+    /**
+     * Returns the rendered image, which should not be modified.
+     * 
+     * @return the image, never <code>null</code>.
+     */
+    public BufferedImage getImage()
+    {
+      return this.image;
+    }
+
+    /**
+     * Returns the view offset this layer is rendered with.
+     * 
+     * @return a view offset, in pixels, >= 0.0.
+     */
+    public double getViewOffset()
+    {
+      return this.viewOffset;
+    }
+
+    /**
+     * Returns the zoom factor this layer is rendered with.
+     * 
+     * @return a zoom factor, > 0.0.
+     */
+    public double getZoomFactor()
+    {
+      return this.zoomFactor;
+    }
+
+    /**
+     * Returns whether this layer is rendered with the given parameters.
+     * 
+     * @param aVersion
+     *          the version of the sample data snapshot;
+     * @param aBounds
+     *          the part of the view;
+     * @param aZoomFactor
+     *          the zoom factor;
+     * @param aViewOffset
+     *          the view offset.
+     * @return <code>true</code> if this layer shows exactly the requested
+     *         signals, <code>false</code> otherwise.
+     */
+    public boolean isRenderedWith( final long aVersion, final Rectangle aBounds, final double aZoomFactor,
+        final double aViewOffset )
+    {
+      return ( this.version == aVersion ) && this.bounds.equals( aBounds ) && ( this.zoomFactor == aZoomFactor )
+          && ( this.viewOffset == aViewOffset );
+    }
+  }
+
+  // CONSTANTS
 
   private static final int PADDING_X = 2;
   private static final int PADDING_Y = 2;
 
+  /** The minimal number of points the point buffers can hold. */
+  private static final int MIN_POINT_CAPACITY = 4096;
+  /** The memory budget key of the point buffers. */
+  private static final String POINTS_KEY = "points";
+  /** The memory budget key of the point buffers for background rendering. */
+  private static final String RENDER_POINTS_KEY = "renderPoints";
+  /** The memory budget key of the signal layer. */
+  private static final String LAYER_KEY = "layer";
+
   // VARIABLES
 
   private final Renderer arrowRenderer = new ArrowRenderer();
@@ -54,11 +160,81 @@ public class SignalUI extends ComponentUI
   private volatile SignalHoverInfo signalHoverInfo;
   private volatile Rectangle measurementRect;
 
-  private static final int[] x = new int[2 * SLOPPY_THRESHOLD];
-  private static final int[] y = new int[2 * SLOPPY_THRESHOLD];
+  /** the x- and y-coordinates of the polylines, released when memory is tight. */
+  private int[][] points;
+  /** the same as points, but for rendering in the background. */
+  private int[][] renderPoints;
+  private final MemoryBudget.Account pointsAccount;
+  /** serializes all background rendering, which share the render points. */
+  private final Object renderLock = new Object();
+
+  /** the signal layer of the last full repaint. */
+  private volatile SignalLayer signalLayer;
+  /** the signal layer rendered in advance, used by the next full repaint. */
+  private volatile SignalLayer pendingLayer;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SignalUI instance.
+   */
+  public SignalUI()
+  {
+    this.pointsAccount = MemoryBudget.getDefault().register( "Signal rendering buffers", 1 /* aWeight */, this );
+  }
 
   // METHODS
 
+  /**
+   * Adds the points of a single pixel column of a digital signal to the given
+   * polyline.
+   * 
+   * @param aX
+   *          the x-coordinates of the polyline;
+   * @param aY
+   *          the y-coordinates of the polyline;
+   * @param aCount
+   *          the current number of points of the polyline;
+   * @param aColumnX
+   *          the x-coordinate of the pixel column;
+   * @param aEntry
+   *          the level at which the signal enters the pixel column;
+   * @param aExit
+   *          the level at which the signal leaves the pixel column;
+   * @param aToggles
+   *          whether the signal has another level than its entry level in the
+   *          pixel column;
+   * @param aSignalHeight
+   *          the height of the signal.
+   * @return the new number of points of the polyline.
+   */
+  private static int addColumnPoints( final int[] aX, final int[] aY, final int aCount, final int aColumnX,
+      final int aEntry, final int aExit, final boolean aToggles, final int aSignalHeight )
+  {
+    int p = aCount;
+
+    aX[p] = aColumnX;
+    aY[p] = aEntry;
+    p++;
+
+    if ( aToggles && ( aExit == aEntry ) )
+    {
+      // The signal pulses within this column; show it as a vertical line...
+      aX[p] = aColumnX;
+      aY[p] = aSignalHeight - aEntry;
+      p++;
+    }
+
+    if ( aToggles )
+    {
+      aX[p] = aColumnX;
+      aY[p] = aExit;
+      p++;
+    }
+
+    return p;
+  }
+
   /**
    * Creates the rendering hints for this the drawing of arrows.
    */
@@ -104,6 +280,30 @@ public class SignalUI extends ComponentUI
     return hints;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void evict( final Object aKey )
+  {
+    synchronized ( this )
+    {
+      if ( POINTS_KEY.equals( aKey ) )
+      {
+        this.points = null;
+      }
+      else if ( RENDER_POINTS_KEY.equals( aKey ) )
+      {
+        this.renderPoints = null;
+      }
+    }
+
+    if ( LAYER_KEY.equals( aKey ) )
+    {
+      this.signalLayer = null;
+    }
+  }
+
   /**
    * Returns the current value of measurementRect.
    * 
@@ -114,6 +314,21 @@ public class SignalUI extends ComponentUI
     return this.measurementRect;
   }
 
+  /**
+   * Returns the signal layer rendered by the last full repaint, which can be
+   * used as a preview while the view is changed.
+   * <p>
+   * The image of the returned layer is reused by the next full repaint.
+   * </p>
+   * 
+   * @return a signal layer, can be <code>null</code> if there was no full
+   *         repaint yet, or if it was evicted.
+   */
+  public SignalLayer getSignalLayer()
+  {
+    return this.signalLayer;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -154,22 +369,29 @@ public class SignalUI extends ComponentUI
     try
     {
       final Rectangle clip = aGraphics.getClipBounds();
-      final SignalElement[] signalElements = model.getSignalElements( clip.y, clip.height );
-
-      Graphics2D canvas = ( Graphics2D )aGraphics.create();
+      final SignalElements signalElements = model.getSignalElements( clip.y, clip.height );
+      final Rectangle visibleRect = view.getVisibleRect();
 
-      try
+      Graphics2D canvas;
+      if ( clip.contains( visibleRect ) && !visibleRect.isEmpty() )
+      {
+        // Full repaint; keep the rendered signals for later use...
+        final SignalLayer layer = updateSignalLayer( model, visibleRect );
+        aGraphics.drawImage( layer.getImage(), visibleRect.x, visibleRect.y, null );
+      }
+      else if ( !signalElements.isEmpty() )
       {
+        canvas = ( Graphics2D )aGraphics.create();
 
-        if ( signalElements.length > 0 )
+        try
         {
-          paintSignals( canvas, model, signalElements );
+          paintSignals( canvas, model, model.getSnapshot(), signalElements, model.getZoomFactor(),
+              model.getViewOffset(), null /* aToken */);
+        }
+        finally
+        {
+          canvas.dispose();
         }
-      }
-      finally
-      {
-        canvas.dispose();
-        canvas = null;
       }
 
       // Use the *original* graphics object, as the one defined above is
@@ -188,6 +410,13 @@ public class SignalUI extends ComponentUI
         paintMeasurementArrow( canvas, model, this.signalHoverInfo );
       }
 
+      // Draw the differences with a reference capture...
+      final CaptureDiff captureDiff = model.getCaptureDiff();
+      if ( ( captureDiff != null ) && ( !signalElements.isEmpty() ) )
+      {
+        paintDifferences( canvas, model, captureDiff, signalElements );
+      }
+
       // Draw the annotations...
       paintAnnotations( canvas, model, signalElements );
     }
@@ -197,13 +426,153 @@ public class SignalUI extends ComponentUI
     }
   }
 
+  /**
+   * Renders the signals of the given part of the view at the given zoom factor
+   * and view offset, without changing the model. Can be called from any
+   * thread.
+   * 
+   * @param aModel
+   *          the model to render the signals of, cannot be <code>null</code>;
+   * @param aSignalElements
+   *          the signal elements in the given part of the view, as obtained on
+   *          the EDT, cannot be <code>null</code>;
+   * @param aBounds
+   *          the part of the view to render, cannot be <code>null</code>;
+   * @param aZoomFactor
+   *          the zoom factor to render with, > 0.0;
+   * @param aViewOffset
+   *          the view offset to render with, >= 0.0;
+   * @param aToken
+   *          the token to stop rendering with, cannot be <code>null</code>.
+   * @return the rendered signal layer, never <code>null</code>.
+   * @throws java.util.concurrent.CancellationException
+   *           in case rendering was cancelled.
+   * @see #setPendingSignalLayer(SignalLayer)
+   */
+  public SignalLayer renderSignalLayer( final SignalViewModel aModel, final SignalElements aSignalElements,
+      final Rectangle aBounds, final double aZoomFactor, final double aViewOffset, final CancellationToken aToken )
+  {
+    if ( ( aSignalElements == null ) || ( aToken == null ) )
+    {
+      throw new IllegalArgumentException( "Signal elements and token cannot be null!" );
+    }
+
+    synchronized ( this.renderLock )
+    {
+      aToken.checkCancelled();
+
+      return renderSignalLayer( aModel, aModel.getSnapshot(), aSignalElements, null /* aImage */, aBounds,
+          aZoomFactor, aViewOffset, aToken );
+    }
+  }
+
+  /**
+   * Offers a signal layer rendered in advance, which is used instead of
+   * rendering the signals by the next full repaint, if that repaint is for
+   * the same view, sample data, zoom factor and view offset.
+   * 
+   * @param aLayer
+   *          the signal layer to use, can be <code>null</code>.
+   * @see #renderSignalLayer(SignalViewModel, SignalElements, Rectangle, double,
+   *      double, CancellationToken)
+   */
+  public void setPendingSignalLayer( final SignalLayer aLayer )
+  {
+    this.pendingLayer = aLayer;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void uninstallUI( final JComponent aComponent )
+  {
+    synchronized ( this )
+    {
+      this.points = null;
+      this.renderPoints = null;
+    }
+    this.signalLayer = null;
+    this.pendingLayer = null;
+    this.pointsAccount.releaseAll();
+
+    super.uninstallUI( aComponent );
+  }
+
+  /**
+   * Returns the index of the sample at the given X-position.
+   * 
+   * @param aSnapshot
+   *          the sample data;
+   * @param aXpos
+   *          the X-position, in view coordinates;
+   * @param aZoomFactor
+   *          the zoom factor;
+   * @param aViewOffset
+   *          the view offset.
+   * @return a sample index, or -1 if the X-position is before the first
+   *         sample.
+   * @see SignalDiagramModel#locationToSampleIndex(Point)
+   */
+  private static int getSampleIndex( final DataSnapshot aSnapshot, final int aXpos, final double aZoomFactor,
+      final double aViewOffset )
+  {
+    final long timestamp = ( long )Math.ceil( ( aXpos + aViewOffset ) / aZoomFactor );
+    final int idx = ( timestamp < 0 ) ? -1 : aSnapshot.getTimestampIndex( timestamp );
+    return Math.max( -1, Math.min( idx, aSnapshot.getSampleCount() - 1 ) );
+  }
+
+  /**
+   * Returns the buffers for the x- and y-coordinates of the polylines,
+   * (re)allocating them if they are released or too small.
+   * 
+   * @param aKey
+   *          the key of the buffers, either {@link #POINTS_KEY} for painting
+   *          on the EDT, or {@link #RENDER_POINTS_KEY} for rendering in the
+   *          background;
+   * @param aCapacity
+   *          the minimal number of points the buffers should hold.
+   * @return the x- and y-coordinate buffers, never <code>null</code>.
+   */
+  private int[][] getPoints( final String aKey, final int aCapacity )
+  {
+    final boolean background = RENDER_POINTS_KEY.equals( aKey );
+
+    int[][] result;
+    synchronized ( this )
+    {
+      result = background ? this.renderPoints : this.points;
+      if ( ( result == null ) || ( result[0].length < aCapacity ) )
+      {
+        // Grow in larger steps to avoid reallocating while scrolling...
+        final int current = ( result == null ) ? 0 : result[0].length;
+        final int capacity = Math.max( MIN_POINT_CAPACITY, Math.max( aCapacity, current + ( current >> 1 ) ) );
+
+        result = new int[][] { new int[capacity], new int[capacity] };
+        if ( background )
+        {
+          this.renderPoints = result;
+        }
+        else
+        {
+          this.points = result;
+        }
+      }
+    }
+
+    // Do not hold our lock while allocating, as that can evict others...
+    this.pointsAccount.allocate( aKey, 8L * result[0].length );
+
+    return result;
+  }
+
   /**
    * @param aCanvas
    * @param aModel
    * @param aSignalElements
    */
   private void paintAnnotations( final Graphics2D aCanvas, final SignalViewModel aModel,
-      final SignalElement[] aSignalElements )
+      final SignalElements aSignalElements )
   {
     final Rectangle clip = aCanvas.getClipBounds();
 
@@ -218,9 +587,10 @@ public class SignalUI extends ComponentUI
     final int signalHeight = aModel.getSignalHeight();
     final int signalOffset = aModel.getSignalOffset();
     final double zoomFactor = aModel.getZoomFactor();
+    final double viewOffset = aModel.getViewOffset();
 
     // Start drawing at the correct position in the clipped region...
-    aCanvas.translate( 0, aSignalElements[0].getYposition() + signalOffset );
+    aCanvas.translate( 0, aSignalElements.get( 0 ).getYposition() + signalOffset );
 
     // Some drawing primitives we're going to re-use over and over...
     final float strokeWidth = ( float )( 3.0f / Math.max( 1.0f, ( 1.0f / zoomFactor ) ) );
@@ -236,8 +606,10 @@ public class SignalUI extends ComponentUI
 
     final AlphaComposite alphaComposite = AlphaComposite.SrcOver.derive( 0.875f );
 
-    for ( SignalElement signalElement : aSignalElements )
+    for ( int elementIdx = 0; elementIdx < aSignalElements.size(); elementIdx++ )
     {
+      final SignalElement signalElement = aSignalElements.get( elementIdx );
+
       aCanvas.setColor( signalElement.getColor() );
 
       if ( signalElement.isSignalGroup() )
@@ -275,8 +647,8 @@ public class SignalUI extends ComponentUI
                 continue;
               }
 
-              int x1 = ( int )( annStartTime * zoomFactor );
-              int x2 = ( int )( annEndTime * zoomFactor );
+              int x1 = toScreenCoordinate( ( annStartTime * zoomFactor ) - viewOffset );
+              int x2 = toScreenCoordinate( ( annEndTime * zoomFactor ) - viewOffset );
               int y1 = 0;
               int y2 = signalHeight;
               int midY = signalHeight / 2;
@@ -352,6 +724,81 @@ public class SignalUI extends ComponentUI
     }
   }
 
+  /**
+   * Paints the differences with a reference capture as a translucent overlay
+   * over the digital signals.
+   * 
+   * @param aCanvas
+   *          the canvas to paint on;
+   * @param aModel
+   *          the model to use;
+   * @param aCaptureDiff
+   *          the differences to paint;
+   * @param aSignalElements
+   *          the signal elements to paint the differences for.
+   */
+  private void paintDifferences( final Graphics2D aCanvas, final SignalViewModel aModel,
+      final CaptureDiff aCaptureDiff, final SignalElements aSignalElements )
+  {
+    final Rectangle clip = aCanvas.getClipBounds();
+    final double zoomFactor = aModel.getZoomFactor();
+    final double viewOffset = aModel.getViewOffset();
+
+    final long startTimestamp = ( long )Math.floor( ( clip.x + viewOffset ) / zoomFactor );
+    final long endTimestamp = ( long )Math.ceil( ( clip.x + clip.width + viewOffset ) / zoomFactor );
+
+    final int signalHeight = aModel.getSignalHeight();
+    final int signalOffset = aModel.getSignalOffset();
+
+    final Composite oldComposite = aCanvas.getComposite();
+    aCanvas.setComposite( AlphaComposite.SrcOver.derive( 0.4f ) );
+    aCanvas.setColor( aModel.getDifferenceColor() );
+
+    try
+    {
+      for ( int elementIdx = 0; elementIdx < aSignalElements.size(); elementIdx++ )
+      {
+        final SignalElement signalElement = aSignalElements.get( elementIdx );
+
+        if ( !signalElement.isDigitalSignal() || !signalElement.isEnabled() )
+        {
+          continue;
+        }
+
+        final int channel = signalElement.getChannel().getIndex();
+        final int y = signalElement.getYposition() + signalOffset;
+        final int count = aCaptureDiff.getDifferenceCount( channel );
+
+        // Only visit the visible differences, and at most one per pixel...
+        int lastX2 = Integer.MIN_VALUE;
+        for ( int i = aCaptureDiff.findFirstDifference( channel, startTimestamp ); i < count; i++ )
+        {
+          final long diffStart = aCaptureDiff.getStartTimestamp( channel, i );
+          if ( diffStart > endTimestamp )
+          {
+            break;
+          }
+
+          final int x1 = Math.max( lastX2, toScreenCoordinate( ( diffStart * zoomFactor ) - viewOffset ) );
+          final int x2 = Math.max( x1 + 1,
+              toScreenCoordinate( ( aCaptureDiff.getEndTimestamp( channel, i ) * zoomFactor ) - viewOffset ) );
+          if ( x2 > lastX2 )
+          {
+            aCanvas.fillRect( x1, y, x2 - x1, signalHeight );
+            lastX2 = x2;
+
+            // Skip all differences that fall within the painted pixels...
+            i = Math.max( i, aCaptureDiff.findFirstDifference( channel, ( long )( ( x2 + viewOffset ) / zoomFactor ) ) - 1 );
+          }
+        }
+      }
+    }
+    finally
+    {
+      aCanvas.setComposite( oldComposite );
+    }
+  }
+
   /**
    * Paints the cursors over the signals.
    * 
@@ -422,35 +869,60 @@ public class SignalUI extends ComponentUI
    *          the canvas to paint on, cannot be <code>null</code>;
    * @param aModel
    *          the model to use, cannot be <code>null</code>;
+   * @param aSnapshot
+   *          the sample data to draw, cannot be <code>null</code>;
    * @param aSignalElements
    *          the signal elements to draw, cannot be <code>null</code> or empty!
+   * @param aZoomFactor
+   *          the zoom factor to draw with;
+   * @param aViewOffset
+   *          the view offset to draw with;
+   * @param aToken
+   *          the token to stop rendering in the background with, or
+   *          <code>null</code> when painting on the EDT.
    */
-  private void paintSignals( final Graphics2D aCanvas, final SignalViewModel aModel,
-      final SignalElement[] aSignalElements )
+  private void paintSignals( final Graphics2D aCanvas, final SignalViewModel aModel, final DataSnapshot aSnapshot,
+      final SignalElements aSignalElements, final double aZoomFactor, final double aViewOffset,
+      final CancellationToken aToken )
   {
     final Rectangle clip = aCanvas.getClipBounds();
 
     aCanvas.setBackground( aModel.getBackgroundColor() );
     aCanvas.clearRect( clip.x, clip.y, clip.width, clip.height );
 
-    final int[] values = aModel.getDataValues();
-    final long[] timestamps = aModel.getTimestamps();
+    final int[] values = aSnapshot.getValues();
+    final long[] timestamps = aSnapshot.getTimestamps();
 
-    final int startIdx = aModel.getStartIndex( clip );
-    final int endIdx = aModel.getEndIndex( clip, values.length );
+    final int startIdx = Math.max( getSampleIndex( aSnapshot, clip.x, aZoomFactor, aViewOffset ) - 1, 0 );
+    final int endIdx = Math.min( getSampleIndex( aSnapshot, clip.x + clip.width, aZoomFactor, aViewOffset ) + 1,
+        values.length - 1 );
 
     final int signalHeight = aModel.getSignalHeight();
     // Where is the signal to be drawn?
     final int signalOffset = aModel.getSignalOffset();
-    final double zoomFactor = aModel.getZoomFactor();
+    final double zoomFactor = aZoomFactor;
+    final double viewOffset = aViewOffset;
 
     // Start drawing at the correct position in the clipped region...
-    aCanvas.translate( 0, aSignalElements[0].getYposition() + signalOffset );
+    aCanvas.translate( 0, aSignalElements.get( 0 ).getYposition() + signalOffset );
 
     final int sampleIncr = ( int )Math.max( 1.0, ( 1.0 / zoomFactor ) );
 
-    for ( SignalElement signalElement : aSignalElements )
+    // Signals are decimated to at most three points per pixel column, so the
+    // number of points does not depend on the number of samples...
+    final int[][] points = getPoints( ( aToken == null ) ? POINTS_KEY : RENDER_POINTS_KEY, 3 * ( clip.width + 4 ) );
+    final int[] x = points[0];
+    final int[] y = points[1];
+
+    for ( int elementIdx = 0; elementIdx < aSignalElements.size(); elementIdx++ )
     {
+      final SignalElement signalElement = aSignalElements.get( elementIdx );
+
+      if ( aToken != null )
+      {
+        aToken.checkCancelled();
+      }
+
       aCanvas.setColor( signalElement.getColor() );
 
       if ( signalElement.isSignalGroup() )
@@ -475,36 +947,33 @@ public class SignalUI extends ComponentUI
           final int mask = signalElement.getMask();
 
           // Make sure we always start with time 0...
-          long timestamp = timestamps[startIdx];
-          int prevSampleValue = ( values[startIdx] & mask );
-
-          int xValue = ( int )( zoomFactor * timestamp );
-          int yValue = ( prevSampleValue == 0 ? signalHeight : 0 );
-
-          x[0] = xValue;
-          y[0] = yValue;
-          int p = 1;
+          int columnX = toScreenCoordinate( ( zoomFactor * timestamps[startIdx] ) - viewOffset );
+          // The level at which the signal enters and leaves the current column...
+          int columnEntry = ( ( values[startIdx] & mask ) == 0 ) ? signalHeight : 0;
+          int columnExit = columnEntry;
+          // Whether the signal has another level than its entry level in the
+          // current column...
+          boolean columnToggles = false;
+          int p = 0;
 
           for ( int sampleIdx = startIdx + 1; sampleIdx < endIdx; sampleIdx++ )
           {
-            timestamp = timestamps[sampleIdx];
-            int sampleValue = ( values[sampleIdx] & mask );
+            final int xValue = toScreenCoordinate( ( zoomFactor * timestamps[sampleIdx] ) - viewOffset );
+            final int yValue = ( ( values[sampleIdx] & mask ) == 0 ) ? signalHeight : 0;
 
-            xValue = ( int )( zoomFactor * timestamp );
-
-            if ( prevSampleValue != sampleValue )
+            if ( xValue != columnX )
             {
-              x[p] = xValue;
-              y[p] = ( prevSampleValue == 0 ? signalHeight : 0 );
-              p++;
-            }
+              p = addColumnPoints( x, y, p, columnX, columnEntry, columnExit, columnToggles, signalHeight );
 
-            x[p] = xValue;
-            y[p] = ( sampleValue == 0 ? signalHeight : 0 );
-            p++;
+              columnX = xValue;
+              columnEntry = columnExit;
+              columnToggles = false;
+            }
 
-            prevSampleValue = sampleValue;
+            columnToggles |= ( yValue != columnEntry );
+            columnExit = yValue;
           }
+          p = addColumnPoints( x, y, p, columnX, columnEntry, columnExit, columnToggles, signalHeight );
 
           aCanvas.drawPolyline( x, y, p );
         }
@@ -524,7 +993,7 @@ public class SignalUI extends ComponentUI
         int mask = signalElement.getMask();
 
         int prevSampleValue = values[startIdx] & mask;
-        int prevX = ( int )( zoomFactor * timestamps[startIdx] );
+        int prevX = toScreenCoordinate( ( zoomFactor * timestamps[startIdx] ) - viewOffset );
 
         FontMetrics fm = aCanvas.getFontMetrics();
         int textYpos = ( int )( ( signalElement.getHeight() + fm.getLeading() + fm.getMaxAscent() ) / 2.0 ) - 2;
@@ -535,12 +1004,12 @@ public class SignalUI extends ComponentUI
 
           if ( sampleValue != prevSampleValue )
           {
-            int x = ( int )( zoomFactor * timestamps[sampleIdx] );
+            int xPos = toScreenCoordinate( ( zoomFactor * timestamps[sampleIdx] ) - viewOffset );
 
             String text = String.format( "%02x", Integer.valueOf( prevSampleValue ) );
 
             int textWidth = fm.stringWidth( text ) + ( 2 * PADDING_X );
-            int cellWidth = x - prevX;
+            int cellWidth = xPos - prevX;
             if ( textWidth < cellWidth )
             {
               int textXpos = prevX + ( int )( ( cellWidth - textWidth ) / 2.0 ) + PADDING_X;
@@ -549,9 +1018,9 @@ public class SignalUI extends ComponentUI
             }
 
             // draw a small line...
-            aCanvas.drawLine( x, PADDING_Y, x, signalElement.getHeight() - ( 2 * PADDING_Y ) );
+            aCanvas.drawLine( xPos, PADDING_Y, xPos, signalElement.getHeight() - ( 2 * PADDING_Y ) );
 
-            prevX = x;
+            prevX = xPos;
           }
 
           prevSampleValue = sampleValue;
@@ -583,9 +1052,14 @@ public class SignalUI extends ComponentUI
           }
           sampleValue = maxValue - ( sampleValue / sampleIncr );
 
-          x[p] = ( int )( zoomFactor * timestamp );
-          y[p] = PADDING_Y + ( int )( scaleFactor * sampleValue );
-          p++;
+          final int xValue = toScreenCoordinate( ( zoomFactor * timestamp ) - viewOffset );
+          if ( ( p == 0 ) || ( x[p - 1] != xValue ) )
+          {
+            // At most one point per pixel column...
+            x[p] = xValue;
+            y[p] = PADDING_Y + ( int )( scaleFactor * sampleValue );
+            p++;
+          }
         }
 
         aCanvas.drawPolyline( x, y, p );
@@ -597,4 +1071,99 @@ public class SignalUI extends ComponentUI
       aCanvas.translate( 0, signalOffset );
     }
   }
+
+  /**
+   * Renders the signals of the given part of the view into an image.
+   * 
+   * @param aModel
+   *          the model to use;
+   * @param aSnapshot
+   *          the sample data to render;
+   * @param aSignalElements
+   *          the signal elements in the part of the view to render;
+   * @param aImage
+   *          the image to render into, or <code>null</code> to create a new
+   *          image;
+   * @param aBounds
+   *          the part of the view to render;
+   * @param aZoomFactor
+   *          the zoom factor to render with;
+   * @param aViewOffset
+   *          the view offset to render with;
+   * @param aToken
+   *          the token to stop rendering in the background with, or
+   *          <code>null</code> when rendering on the EDT.
+   * @return the rendered signal layer, never <code>null</code>.
+   */
+  private SignalLayer renderSignalLayer( final SignalViewModel aModel, final DataSnapshot aSnapshot,
+      final SignalElements aSignalElements, final BufferedImage aImage, final Rectangle aBounds,
+      final double aZoomFactor, final double aViewOffset, final CancellationToken aToken )
+  {
+    final BufferedImage image = ( aImage != null ) ? aImage : new BufferedImage( aBounds.width, aBounds.height,
+        BufferedImage.TYPE_INT_RGB );
+
+    final Graphics2D canvas = image.createGraphics();
+    try
+    {
+      canvas.translate( -aBounds.x, -aBounds.y );
+      canvas.setClip( aBounds );
+
+      if ( !aSignalElements.isEmpty() )
+      {
+        paintSignals( canvas, aModel, aSnapshot, aSignalElements, aZoomFactor, aViewOffset, aToken );
+      }
+      else
+      {
+        canvas.setBackground( aModel.getBackgroundColor() );
+        canvas.clearRect( aBounds.x, aBounds.y, aBounds.width, aBounds.height );
+      }
+    }
+    finally
+    {
+      canvas.dispose();
+    }
+
+    return new SignalLayer( image, aBounds, aSnapshot.getVersion(), aZoomFactor, aViewOffset );
+  }
+
+  /**
+   * Returns the signal layer for the given part of the view, using the pending
+   * signal layer if it matches, or rendering a new one otherwise.
+   * 
+   * @param aModel
+   *          the model to use;
+   * @param aBounds
+   *          the part of the view to render.
+   * @return the signal layer, never <code>null</code>.
+   */
+  private SignalLayer updateSignalLayer( final SignalViewModel aModel, final Rectangle aBounds )
+  {
+    final DataSnapshot snapshot = aModel.getSnapshot();
+    final double zoomFactor = aModel.getZoomFactor();
+    final double viewOffset = aModel.getViewOffset();
+
+    SignalLayer result = this.pendingLayer;
+    this.pendingLayer = null;
+
+    if ( ( result == null ) || !result.isRenderedWith( snapshot.getVersion(), aBounds, zoomFactor, viewOffset ) )
+    {
+      // Reuse the image of the previous layer, if it has the right size...
+      final SignalLayer previous = this.signalLayer;
+      BufferedImage image = null;
+      if ( ( previous != null ) && ( previous.image.getWidth() == aBounds.width )
+          && ( previous.image.getHeight() == aBounds.height ) )
+      {
+        image = previous.image;
+      }
+
+      final SignalElements signalElements = aModel.getSignalElements( aBounds.y, aBounds.height );
+      result = renderSignalLayer( aModel, snapshot, signalElements, image, aBounds, zoomFactor, viewOffset,
+          null /* aToken */);
+    }
+
+    this.signalLayer = result;
+    this.pointsAccount.allocate( LAYER_KEY, 4L * aBounds.width * aBounds.height );
+
+    return result;
+  }
 }
@@ -22,6 +22,7 @@ package nl.lxtreme.test.view.laf;
 
 import static java.awt.RenderingHints.*;
 import static nl.lxtreme.test.Utils.*;
+import static nl.lxtreme.test.view.model.SignalDiagramModel.toScreenCoordinate;
 
 import java.awt.*;
 import java.util.*;
@@ -258,6 +259,7 @@ public class TimeLineUI extends ComponentUI
       final Rectangle visibleRect = view.getVisibleRect();
 
       final double zoomFactor = model.getZoomFactor();
+      final double viewOffset = model.getViewOffset();
       final double sampleRate = model.getSampleRate();
       final double timebase = model.getTimebase();
       final double tickIncr = model.getTickIncrement();
@@ -275,7 +277,7 @@ public class TimeLineUI extends ComponentUI
 
       while ( timestamp <= endTimeStamp )
       {
-        int relXpos = ( int )( zoomFactor * timestamp );
+        int relXpos = toScreenCoordinate( ( zoomFactor * timestamp ) - viewOffset );
 
         if ( ( timestamp % tickIncr ) != 0 )
         {
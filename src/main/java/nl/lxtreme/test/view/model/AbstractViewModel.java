@@ -173,9 +173,9 @@ public abstract class AbstractViewModel
    *          the screen Y-coordinate;
    * @param aHeight
    *          the screen height.
-   * @return an array of channels, never <code>null</code>.
+   * @return a view on the signal elements, never <code>null</code>.
    */
-  public SignalElement[] getSignalElements( final int aY, final int aHeight )
+  public SignalElements getSignalElements( final int aY, final int aHeight )
   {
     // Return all channel elements within the given boundaries, even if they do
     // not completely fit...
@@ -210,6 +210,16 @@ public abstract class AbstractViewModel
     return getSignalDiagramModel().getSignalOffset();
   }
 
+  /**
+   * Returns the virtual X-position of the left side of the visible view.
+   * 
+   * @return a view offset, in pixels, >= 0.0.
+   */
+  public double getViewOffset()
+  {
+    return getSignalDiagramModel().getViewOffset();
+  }
+
   /**
    * Returns the current zoom factor that is used to display the signals with.
    * 
@@ -241,16 +251,11 @@ public abstract class AbstractViewModel
    * 
    * @param aTimestamp
    *          the time stamp to convert, >= 0.
-   * @return a screen coordinate, >= 0.
+   * @return a screen coordinate, relative to the visible view.
    */
   public int timestampToCoordinate( final long aTimestamp )
   {
-    double result = getSignalDiagramModel().getZoomFactor() * aTimestamp;
-    if ( result > Integer.MAX_VALUE )
-    {
-      return Integer.MAX_VALUE;
-    }
-    return ( int )result;
+    return getSignalDiagramModel().timestampToCoordinate( aTimestamp );
   }
 
   /**
@@ -0,0 +1,253 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view.model;
+
+
+import java.awt.*;
+
+import javax.swing.*;
+
+import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.model.Cursor;
+import nl.lxtreme.test.view.*;
+import nl.lxtreme.test.view.laf.*;
+
+
+/**
+ * Provides a custom model specific for the {@link OverviewView} component.
+ */
+public class OverviewViewModel extends AbstractViewModel
+{
+  // CONSTANTS
+
+  public static final String COMPONENT_BACKGROUND_COLOR = "overview.color.background";
+  public static final String COMPONENT_HEIGHT = "overview.height";
+  public static final String VIEWPORT_COLOR = "overview.viewport.color";
+
+  // VARIABLES
+
+  /** the summary of the current capture, and the groups it summarizes. */
+  private volatile ActivitySummary activitySummary;
+  private volatile ChannelGroup[] channelGroups;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new OverviewViewModel instance.
+   * 
+   * @param aController
+   *          the diagram controller to use, cannot be <code>null</code>.
+   */
+  public OverviewViewModel( final SignalDiagramController aController )
+  {
+    super( aController );
+
+    this.channelGroups = new ChannelGroup[0];
+  }
+
+  // METHODS
+
+  /**
+   * Returns the absolute length of the sample data.
+   * 
+   * @return the length, in timestamp units, or -1 if there is no sample data.
+   */
+  public long getAbsoluteLength()
+  {
+    return getSignalDiagramModel().getAbsoluteLength();
+  }
+
+  /**
+   * Returns the activity summary of the current capture.
+   * 
+   * @return the activity summary, can be <code>null</code> if it is not (yet)
+   *         computed.
+   */
+  public ActivitySummary getActivitySummary()
+  {
+    return this.activitySummary;
+  }
+
+  /**
+   * Returns the background color for the overview.
+   * 
+   * @return a color, never <code>null</code>.
+   */
+  public Color getBackgroundColor()
+  {
+    Color color = UIManager.getColor( COMPONENT_BACKGROUND_COLOR );
+    if ( color == null )
+    {
+      color = LafDefaults.DEFAULT_OVERVIEW_BACKGROUND_COLOR;
+    }
+    return color;
+  }
+
+  /**
+   * Returns the time stamp of the cursor with the given index.
+   * 
+   * @param aCursorIndex
+   *          the index of the cursor, >= 0 && < {@link Cursor#MAX_CURSORS}.
+   * @return the cursor time stamp, or -1 if the cursor is not defined.
+   */
+  public long getCursorTimestamp( final int aCursorIndex )
+  {
+    final Cursor cursor = getSignalDiagramModel().getCursor( aCursorIndex );
+    return cursor.isDefined() ? cursor.getTimestamp() : -1L;
+  }
+
+  /**
+   * Returns the color in which the activity of the given group is shown.
+   * 
+   * @param aGroup
+   *          the index of the group in the activity summary.
+   * @return a color, never <code>null</code>.
+   */
+  public Color getGroupColor( final int aGroup )
+  {
+    final ChannelGroup[] groups = this.channelGroups;
+    if ( ( aGroup < 0 ) || ( aGroup >= groups.length ) )
+    {
+      return LafDefaults.DEFAULT_TEXT_COLOR;
+    }
+    return groups[aGroup].getColor();
+  }
+
+  /**
+   * Returns the height of the overview.
+   * 
+   * @return a height, in pixels.
+   */
+  public int getOverviewHeight()
+  {
+    int value = UIManager.getInt( COMPONENT_HEIGHT );
+    if ( value <= 0 )
+    {
+      return LafDefaults.DEFAULT_OVERVIEW_HEIGHT;
+    }
+    return value;
+  }
+
+  /**
+   * Returns the color in which the visible part of the signals is marked.
+   * 
+   * @return a color, never <code>null</code>.
+   */
+  public Color getViewportColor()
+  {
+    Color color = UIManager.getColor( VIEWPORT_COLOR );
+    if ( color == null )
+    {
+      color = LafDefaults.DEFAULT_VIEWPORT_COLOR;
+    }
+    return color;
+  }
+
+  /**
+   * Returns the width of the visible part of the signals.
+   * 
+   * @return a width, in pixels, >= 0.
+   */
+  public int getViewportWidth()
+  {
+    final SignalDiagramComponent signalDiagram = this.controller.getSignalDiagram();
+    if ( signalDiagram == null )
+    {
+      return 0;
+    }
+    return signalDiagram.getSignalView().getVisibleRect().width;
+  }
+
+  /**
+   * Converts a X-position on the overview to a view offset of the signals.
+   * 
+   * @param aXpos
+   *          the X-position on the overview;
+   * @param aWidth
+   *          the width of the overview, > 0.
+   * @return a view offset, in pixels, not clamped.
+   */
+  public double overviewToViewOffset( final double aXpos, final int aWidth )
+  {
+    final long length = getAbsoluteLength();
+    if ( ( length <= 0L ) || ( aWidth <= 0 ) )
+    {
+      return 0.0;
+    }
+    return ( ( aXpos * length ) / aWidth ) * getZoomFactor();
+  }
+
+  /**
+   * Sets the activity summary of the current capture.
+   * 
+   * @param aSummary
+   *          the activity summary, can be <code>null</code>;
+   * @param aGroups
+   *          the channel groups that are summarized, in the same order as the
+   *          summary, cannot be <code>null</code>.
+   */
+  public void setActivitySummary( final ActivitySummary aSummary, final ChannelGroup[] aGroups )
+  {
+    if ( aGroups == null )
+    {
+      throw new IllegalArgumentException( "Groups cannot be null!" );
+    }
+    this.channelGroups = aGroups;
+    this.activitySummary = aSummary;
+  }
+
+  /**
+   * Converts a time stamp to a X-position on the overview.
+   * 
+   * @param aTimestamp
+   *          the time stamp to convert;
+   * @param aWidth
+   *          the width of the overview, > 0.
+   * @return a X-position on the overview.
+   */
+  public double timestampToOverview( final double aTimestamp, final int aWidth )
+  {
+    final long length = getAbsoluteLength();
+    if ( length <= 0L )
+    {
+      return 0.0;
+    }
+    return ( aTimestamp * aWidth ) / length;
+  }
+
+  /**
+   * Converts a view offset of the signals to a X-position on the overview.
+   * 
+   * @param aViewOffset
+   *          the view offset, in pixels;
+   * @param aWidth
+   *          the width of the overview, > 0.
+   * @return a X-position on the overview.
+   */
+  public double viewOffsetToOverview( final double aViewOffset, final int aWidth )
+  {
+    final double zoomFactor = getZoomFactor();
+    if ( zoomFactor <= 0.0 )
+    {
+      return 0.0;
+    }
+    return timestampToOverview( aViewOffset / zoomFactor, aWidth );
+  }
+}
@@ -26,11 +26,11 @@ import java.beans.*;
 import java.util.*;
 import java.util.List;
 
-import javax.swing.event.*;
-
 import nl.lxtreme.test.*;
 import nl.lxtreme.test.model.*;
 import nl.lxtreme.test.model.Cursor;
+import nl.lxtreme.test.util.*;
+import nl.lxtreme.test.util.EventBus.Delivery;
 import nl.lxtreme.test.view.*;
 
 
@@ -41,6 +41,273 @@ public class SignalDiagramModel
 {
   // INNER TYPES
 
+  /**
+   * Delivers a cursor event; multiple changes of the same property of a cursor
+   * are merged, as are multiple changes of the cursor visibility.
+   */
+  private static final class CursorEvent extends EventBus.Event<ICursorChangeListener>
+  {
+    // CONSTANTS
+
+    static final int ADDED = 0;
+    static final int CHANGED = 1;
+    static final int REMOVED = 2;
+    static final int VISIBLE = 3;
+    static final int INVISIBLE = 4;
+
+    // VARIABLES
+
+    private final int kind;
+    private final Cursor oldCursor;
+    private final Cursor newCursor;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new CursorEvent instance.
+     */
+    CursorEvent( final int aKind, final String aPropertyName, final Cursor aOldCursor, final Cursor aNewCursor )
+    {
+      super( ICursorChangeListener.class, aPropertyName );
+      this.kind = aKind;
+      this.oldCursor = aOldCursor;
+      this.newCursor = aNewCursor;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EventBus.Event<ICursorChangeListener> coalesce( final EventBus.Event<ICursorChangeListener> aPrevious )
+    {
+      if ( this.kind == CHANGED )
+      {
+        // Keep the cursor as it was before the first change...
+        return new CursorEvent( CHANGED, getPropertyName(), ( ( CursorEvent )aPrevious ).oldCursor, this.newCursor );
+      }
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dispatch( final ICursorChangeListener aListener )
+    {
+      switch ( this.kind )
+      {
+        case ADDED:
+          aListener.cursorAdded( this.newCursor );
+          break;
+        case CHANGED:
+          aListener.cursorChanged( getPropertyName(), this.oldCursor, this.newCursor );
+          break;
+        case REMOVED:
+          aListener.cursorRemoved( this.oldCursor );
+          break;
+        case VISIBLE:
+          aListener.cursorsVisible();
+          break;
+        default:
+          aListener.cursorsInvisible();
+          break;
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getCoalesceKey()
+    {
+      if ( this.kind == CHANGED )
+      {
+        return Arrays.asList( "cursor", Integer.valueOf( this.newCursor.getIndex() ), getPropertyName() );
+      }
+      else if ( ( this.kind == VISIBLE ) || ( this.kind == INVISIBLE ) )
+      {
+        return "cursorsVisible";
+      }
+      // Cursors being added or removed are never merged...
+      return null;
+    }
+  }
+
+  /**
+   * Delivers a change of the data model; multiple changes are merged into the
+   * last one.
+   */
+  private static final class DataModelEvent extends EventBus.Event<IDataModelChangeListener>
+  {
+    // VARIABLES
+
+    private final SampleDataModel dataModel;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new DataModelEvent instance.
+     */
+    DataModelEvent( final SampleDataModel aDataModel )
+    {
+      super( IDataModelChangeListener.class, null );
+      this.dataModel = aDataModel;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dispatch( final IDataModelChangeListener aListener )
+    {
+      aListener.dataModelChanged( this.dataModel );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getCoalesceKey()
+    {
+      return DataModelEvent.class;
+    }
+  }
+
+  /**
+   * Provides the view state needed to determine a signal hover. It is captured
+   * on the EDT, so the hover itself can be determined on a background thread
+   * while the view changes.
+   */
+  public static final class HoverContext
+  {
+    // VARIABLES
+
+    final Point point;
+    final SignalElement signalElement;
+    final double zoomFactor;
+    final double viewOffset;
+    final int signalOffset;
+    final int signalHeight;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new HoverContext instance.
+     */
+    HoverContext( final Point aPoint, final SignalElement aSignalElement, final double aZoomFactor,
+        final double aViewOffset, final int aSignalOffset, final int aSignalHeight )
+    {
+      this.point = new Point( aPoint );
+      this.signalElement = aSignalElement;
+      this.zoomFactor = aZoomFactor;
+      this.viewOffset = aViewOffset;
+      this.signalOffset = aSignalOffset;
+      this.signalHeight = aSignalHeight;
+    }
+  }
+
+  /**
+   * Invalidates the signal element layout whenever the channel group structure
+   * changes.
+   */
+  private final class LayoutInvalidator implements IChannelChangeListener
+  {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void channelChanged( final ChannelChangeEvent aEvent )
+    {
+      // Channel properties do not influence the layout...
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void channelGroupStructureChanged( final Collection<Channel> aChannelList )
+    {
+      invalidateLayout();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void channelMoved( final ChannelMoveEvent aEvent )
+    {
+      invalidateLayout();
+    }
+  }
+
+  /**
+   * Delivers a measurement event; multiple hovers are merged into the last one,
+   * as are multiple changes of the measurement mode.
+   */
+  private static final class MeasurementEvent extends EventBus.Event<IMeasurementListener>
+  {
+    // CONSTANTS
+
+    static final int HOVER = 0;
+    static final int ENABLED = 1;
+    static final int DISABLED = 2;
+
+    // VARIABLES
+
+    private final int kind;
+    private final SignalHoverInfo hoverInfo;
+
+    // CONSTRUCTORS
+
+    /**
+     * Creates a new MeasurementEvent instance.
+     */
+    MeasurementEvent( final int aKind, final SignalHoverInfo aHoverInfo )
+    {
+      super( IMeasurementListener.class, null );
+      this.kind = aKind;
+      this.hoverInfo = aHoverInfo;
+    }
+
+    // METHODS
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dispatch( final IMeasurementListener aListener )
+    {
+      if ( this.kind == HOVER )
+      {
+        if ( aListener.isListening() )
+        {
+          aListener.handleMeasureEvent( this.hoverInfo );
+        }
+      }
+      else if ( this.kind == ENABLED )
+      {
+        aListener.enableMeasurementMode();
+      }
+      else
+      {
+        aListener.disableMeasurementMode();
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getCoalesceKey()
+    {
+      return ( this.kind == HOVER ) ? "hover" : "measurementMode";
+    }
+  }
+
   /**
    * Denotes where to draw the signal, at the top, center or bottom of the
    * channel.
@@ -114,6 +381,12 @@ public class SignalDiagramModel
   /** The tick increment (in pixels). */
   private static final int TIMELINE_INCREMENT = 5;
 
+  /**
+   * The largest (absolute) screen coordinate that is handed to the painting
+   * code; coordinates far outside the visible view are clamped to this value.
+   */
+  private static final int MAX_SCREEN_COORDINATE = ( 1 << 20 );
+
   private static final int CURSORS_VISIBLE = ( 1 << 0 );
   private static final int SNAP_CURSOR_MODE = ( 1 << 1 );
   private static final int MEASUREMENT_MODE = ( 1 << 2 );
@@ -128,22 +401,27 @@ public class SignalDiagramModel
   private int mode;
   private SignalAlignment signalAlignment;
 
-  private int[] values;
-  private long[] timestamps;
+  /** the current sample data, replaced as a whole when the data changes. */
+  private volatile DataSnapshot snapshot;
   private Cursor[] cursors;
-  private Annotation<?>[] annotations;
-  private int sampleRate;
-  private int sampleWidth;
+  private volatile Annotation<?>[] annotations;
+  private volatile CaptureDiff captureDiff;
 
-  private double zoomFactor;
+  private volatile double zoomFactor;
+  /** the virtual X-position of the left side of the view, in pixels. */
+  private volatile double viewOffset;
+  /** the progress of the capture being loaded, or -1 if nothing is loaded. */
+  private int loadProgress;
 
   private final ChannelGroupManager channelGroupManager;
   private final SignalDiagramController controller;
-  private final EventListenerList eventListeners;
+  private final EventBus eventBus;
   private final PropertyChangeSupport propertyChangeSupport;
 
   private boolean alternativeAnnotationRendering;
 
+  private volatile SignalElementLayout layout;
+
   // CONSTRUCTORS
 
   /**
@@ -156,9 +434,9 @@ public class SignalDiagramModel
   {
     this.controller = aController;
 
-    this.channelGroupManager = new ChannelGroupManager();
+    this.eventBus = new EventBus();
+    this.channelGroupManager = new ChannelGroupManager( this.eventBus );
 
-    this.eventListeners = new EventListenerList();
     this.propertyChangeSupport = new PropertyChangeSupport( this );
 
     this.signalHeight = 20;
@@ -171,77 +449,30 @@ public class SignalDiagramModel
 
     this.zoomFactor = 0.0;
     this.mode = 0;
+    this.loadProgress = -1;
 
+    this.snapshot = DataSnapshot.EMPTY;
     this.cursors = new Cursor[0];
 
-    addDataModelChangeListener( this.channelGroupManager );
+    // The layout should be up-to-date before anyone else is notified, hence it
+    // is invalidated immediately; the channels are reset by setDataModel...
+    this.channelGroupManager.addChannelChangeListener( new LayoutInvalidator(), Delivery.IMMEDIATE );
   }
 
   // METHODS
 
   /**
-   * Provides a binary search for arrays of long-values.
-   * <p>
-   * This implementation is directly copied from the JDK
-   * {@link Arrays#binarySearch(long[], long)} implementation, slightly modified
-   * to only perform a single comparison-action.
-   * </p>
+   * Converts a virtual screen coordinate, relative to the view offset, to a
+   * coordinate that can safely be used for painting.
    * 
-   * @param aArray
-   *          the array of long values to search in;
-   * @param aFromIndex
-   *          the from index to search from;
-   * @param aToIndex
-   *          the to index to search up and until;
-   * @param aKey
-   *          the value to search for.
-   * @return the index of the given key, which is either the greatest index of
-   *         the value less or equal to the given key.
-   * @see Arrays#binarySearch(long[], long)
-   */
-  static final int binarySearch( final long[] aArray, final int aFromIndex, final int aToIndex, final long aKey )
-  {
-    int mid = -1;
-    int low = aFromIndex;
-    int high = aToIndex - 1;
-
-    while ( low <= high )
-    {
-      mid = ( low + high ) >>> 1;
-      final long midVal = aArray[mid];
-
-      final int c = ( aKey < midVal ? -1 : ( aKey == midVal ? 0 : 1 ) );
-      if ( c > 0 )
-      {
-        low = mid + 1;
-      }
-      else if ( c < 0 )
-      {
-        high = mid - 1;
-      }
-      else
-      {
-        return mid; // key found
-      }
-    }
-
-    if ( mid < 0 )
-    {
-      return low;
-    }
-
-    // Determine the insertion point, avoid crossing the array boundaries...
-    if ( mid < ( aToIndex - 1 ) )
-    {
-      // If the searched value is greater than the value of the found index,
-      // insert it after this value, otherwise before it (= the last return)...
-      if ( aKey > aArray[mid] )
-      {
-        return mid + 1;
-      }
-    }
-
-    return mid;
+   * @param aCoordinate
+   *          the coordinate to convert.
+   * @return the given coordinate, clamped to the range that Java2D can paint
+   *         without overflowing.
+   */
+  public static int toScreenCoordinate( final double aCoordinate )
+  {
+    return ( int )Math.max( -MAX_SCREEN_COORDINATE, Math.min( MAX_SCREEN_COORDINATE, aCoordinate ) );
   }
 
   /**
@@ -273,36 +504,56 @@ public class SignalDiagramModel
   }
 
   /**
-   * Adds a cursor change listener.
+   * Adds the given annotations to the current set of annotations.
+   * 
+   * @param aAnnotations
+   *          the annotations to add, cannot be <code>null</code>.
+   */
+  public void addAnnotations( final Collection<? extends Annotation<?>> aAnnotations )
+  {
+    final Annotation<?>[] current = ( this.annotations == null ) ? new Annotation<?>[0] : this.annotations;
+
+    final Annotation<?>[] result = Arrays.copyOf( current, current.length + aAnnotations.size() );
+    int i = current.length;
+    for ( Annotation<?> annotation : aAnnotations )
+    {
+      result[i++] = annotation;
+    }
+
+    this.annotations = result;
+  }
+
+  /**
+   * Adds a cursor change listener, which is notified in batches on the EDT.
    * 
    * @param aListener
    *          the listener to add, cannot be <code>null</code>.
    */
   public void addCursorChangeListener( final ICursorChangeListener aListener )
   {
-    this.eventListeners.add( ICursorChangeListener.class, aListener );
+    this.eventBus.subscribe( ICursorChangeListener.class, aListener );
   }
 
   /**
-   * Adds a data model change listener.
+   * Adds a data model change listener, which is notified in batches on the EDT.
    * 
    * @param aListener
    *          the listener to add, cannot be <code>null</code>.
    */
   public void addDataModelChangeListener( final IDataModelChangeListener aListener )
   {
-    this.eventListeners.add( IDataModelChangeListener.class, aListener );
+    this.eventBus.subscribe( IDataModelChangeListener.class, aListener );
   }
 
   /**
-   * Adds a measurement listener.
+   * Adds a measurement listener, which is notified in batches on the EDT.
    * 
    * @param aListener
    *          the listener to add, cannot be <code>null</code>.
    */
   public void addMeasurementListener( final IMeasurementListener aListener )
   {
-    this.eventListeners.add( IMeasurementListener.class, aListener );
+    this.eventBus.subscribe( IMeasurementListener.class, aListener );
   }
 
   /**
@@ -341,6 +592,22 @@ public class SignalDiagramModel
     return null;
   }
 
+  /**
+   * Captures the view state needed to determine the signal hover at the given
+   * coordinate. Should be called on the EDT.
+   * 
+   * @param aPoint
+   *          the mouse coordinate to determine the signal hover for, cannot be
+   *          <code>null</code>.
+   * @return a new hover context, never <code>null</code>.
+   * @see #getSignalHover(HoverContext)
+   */
+  public HoverContext createHoverContext( final Point aPoint )
+  {
+    return new HoverContext( aPoint, findSignalElement( aPoint ), this.zoomFactor, this.viewOffset,
+        getSignalOffset(), this.signalHeight );
+  }
+
   /**
    * Finds a channel based on a given screen coordinate.
    * 
@@ -351,13 +618,7 @@ public class SignalDiagramModel
    */
   public SignalElement findSignalElement( final Point aPoint )
   {
-    final SignalElement[] channelElements = getSignalElements( aPoint.y, aPoint.y + 1,
-        SignalElementMeasurer.LOOSE_MEASURER );
-    if ( channelElements.length == 0 )
-    {
-      return null;
-    }
-    return channelElements[0];
+    return getLayout().findFirst( aPoint.y, aPoint.y + 1 );
   }
 
   /**
@@ -365,14 +626,7 @@ public class SignalDiagramModel
    */
   public void fireMeasurementEvent( final SignalHoverInfo aSignalHoverInfo )
   {
-    final IMeasurementListener[] listeners = this.eventListeners.getListeners( IMeasurementListener.class );
-    for ( IMeasurementListener listener : listeners )
-    {
-      if ( listener.isListening() )
-      {
-        listener.handleMeasureEvent( aSignalHoverInfo );
-      }
-    }
+    this.eventBus.post( new MeasurementEvent( MeasurementEvent.HOVER, aSignalHoverInfo ) );
   }
 
   /**
@@ -380,19 +634,7 @@ public class SignalDiagramModel
    */
   public long getAbsoluteLength()
   {
-    int idx = this.timestamps.length - 1;
-
-    long length = -1L;
-    if ( idx > 0 )
-    {
-      length = ( this.timestamps[idx] + 1 ) - this.timestamps[0];
-    }
-    else if ( idx == 0 )
-    {
-      length = this.timestamps[0];
-    }
-
-    return length;
+    return this.snapshot.getAbsoluteLength();
   }
 
   /**
@@ -402,55 +644,25 @@ public class SignalDiagramModel
    */
   public int getAbsoluteScreenHeight()
   {
-    int height = 0;
-    for ( ChannelGroup cg : getChannelGroupManager().getChannelGroups() )
-    {
-      if ( !cg.isVisible() )
-      {
-        continue;
-      }
-
-      height += getSignalGroupHeight();
-
-      if ( cg.isShowDigitalSignals() )
-      {
-        height += getChannelHeight() * cg.getChannelCount();
-      }
-      // Always keep these heights into account...
-      if ( cg.isShowGroupSummary() )
-      {
-        height += getGroupSummaryHeight();
-      }
-      if ( cg.isShowAnalogSignal() )
-      {
-        height += getScopeHeight();
-      }
-    }
-
-    return height;
+    return getLayout().getHeight();
   }
 
   /**
-   * Returns the absolute width of the screen.
-   * 
-   * @return a screen width, in pixels, >= 0 && < {@value Integer#MAX_VALUE}.
+   * @return
    */
-  public int getAbsoluteScreenWidth()
+  public Annotation<?>[] getAnnotations()
   {
-    final double result = getAbsoluteLength() * getZoomFactor();
-    if ( result > Integer.MAX_VALUE )
-    {
-      return Integer.MAX_VALUE;
-    }
-    return ( int )result;
+    return this.annotations;
   }
 
   /**
-   * @return
+   * Returns the differences with a reference capture, if any.
+   * 
+   * @return the capture differences, can be <code>null</code>.
    */
-  public Annotation<?>[] getAnnotations()
+  public CaptureDiff getCaptureDiff()
   {
-    return this.annotations;
+    return this.captureDiff;
   }
 
   /**
@@ -526,6 +738,17 @@ public class SignalDiagramModel
     return ( end - start ) / getSampleRate();
   }
 
+  /**
+   * Returns the event bus on which all model events are posted, which allows
+   * listeners to choose how, and for which properties, they are notified.
+   * 
+   * @return the event bus, never <code>null</code>.
+   */
+  public EventBus getEventBus()
+  {
+    return this.eventBus;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -582,12 +805,22 @@ public class SignalDiagramModel
     return inc;
   }
 
+  /**
+   * Returns the progress of the capture that is being loaded.
+   * 
+   * @return the load progress, 0..100, or -1 if no capture is being loaded.
+   */
+  public int getLoadProgress()
+  {
+    return this.loadProgress;
+  }
+
   /**
    * {@inheritDoc}
    */
   public int getSampleCount()
   {
-    return this.values.length;
+    return this.snapshot.getSampleCount();
   }
 
   /**
@@ -595,7 +828,7 @@ public class SignalDiagramModel
    */
   public int getSampleRate()
   {
-    return this.sampleRate;
+    return this.snapshot.getSampleRate();
   }
 
   /**
@@ -603,7 +836,7 @@ public class SignalDiagramModel
    */
   public int getSampleWidth()
   {
-    return this.sampleWidth;
+    return this.snapshot.getSampleWidth();
   }
 
   /**
@@ -632,71 +865,11 @@ public class SignalDiagramModel
    * @param aMeasurer
    *          the measurer to use to determine whether or not a signal element
    *          fits in the given dimensions.
-   * @return an array of channels, never <code>null</code>.
+   * @return a view on the signal elements, never <code>null</code>.
    */
-  public SignalElement[] getSignalElements( final int aY, final int aHeight, final SignalElementMeasurer aMeasurer )
+  public SignalElements getSignalElements( final int aY, final int aHeight, final SignalElementMeasurer aMeasurer )
   {
-    final List<SignalElement> elements = new ArrayList<SignalElement>();
-
-    final int channelHeight = getChannelHeight();
-    final int groupSummaryHeight = getGroupSummaryHeight();
-    final int scopeHeight = getScopeHeight();
-    final int signalGroupHeight = getSignalGroupHeight();
-
-    final int yMin = aY;
-    final int yMax = aHeight + aY;
-
-    int yPos = 0;
-    for ( ChannelGroup cg : getChannelGroupManager().getChannelGroups() )
-    {
-      if ( !cg.isVisible() )
-      {
-        continue;
-      }
-      if ( yPos > yMax )
-      {
-        // Optimization: no need to continue after the requested end position...
-        break;
-      }
-
-      if ( aMeasurer.signalElementFits( yPos, signalGroupHeight, yMin, yMax ) )
-      {
-        elements.add( SignalElement.createSignalGroupElement( cg, yPos, signalGroupHeight ) );
-      }
-      yPos += signalGroupHeight;
-
-      if ( cg.isShowDigitalSignals() )
-      {
-        for ( Channel channel : cg.getChannels() )
-        {
-          // Does this individual channel fit?
-          if ( aMeasurer.signalElementFits( yPos, channelHeight, yMin, yMax ) )
-          {
-            elements.add( SignalElement.createDigitalSignalElement( channel, yPos, channelHeight ) );
-          }
-          yPos += channelHeight;
-        }
-      }
-      // Always keep these heights into account...
-      if ( cg.isShowGroupSummary() )
-      {
-        if ( aMeasurer.signalElementFits( yPos, groupSummaryHeight, yMin, yMax ) )
-        {
-          elements.add( SignalElement.createGroupSummaryElement( cg, yPos, groupSummaryHeight ) );
-        }
-        yPos += groupSummaryHeight;
-      }
-      if ( cg.isShowAnalogSignal() )
-      {
-        if ( aMeasurer.signalElementFits( yPos, scopeHeight, yMin, yMax ) )
-        {
-          elements.add( SignalElement.createAnalogScopeElement( cg, yPos, scopeHeight ) );
-        }
-        yPos += scopeHeight;
-      }
-    }
-
-    return elements.toArray( new SignalElement[elements.size()] );
+    return getLayout().getSignalElements( aY, aHeight, aMeasurer );
   }
 
   /**
@@ -719,23 +892,48 @@ public class SignalDiagramModel
 
   /**
    * Returns the hover area of the signal under the given coordinate (= mouse
-   * position).
+   * position). Should be called on the EDT.
    * 
    * @param aPoint
    *          the mouse coordinate to determine the signal rectangle for, cannot
    *          be <code>null</code>.
    * @return the rectangle of the signal the given coordinate contains,
    *         <code>null</code> if not found.
+   * @see #getSignalHover(HoverContext)
    */
   public final SignalHoverInfo getSignalHover( final Point aPoint )
   {
+    return getSignalHover( createHoverContext( aPoint ) );
+  }
+
+  /**
+   * Returns the hover area of the signal under the coordinate of the given
+   * hover context. Can be called from any thread.
+   * 
+   * @param aContext
+   *          the hover context, as captured on the EDT, cannot be
+   *          <code>null</code>.
+   * @return the rectangle of the signal the given coordinate contains,
+   *         <code>null</code> if not found.
+   * @see #createHoverContext(Point)
+   */
+  public final SignalHoverInfo getSignalHover( final HoverContext aContext )
+  {
+    // Use a single snapshot, as the sample data can be replaced meanwhile...
+    final DataSnapshot data = this.snapshot;
+    final int sampleRate = data.getSampleRate();
+
+    final Point point = aContext.point;
+    final double zoomFactor = aContext.zoomFactor;
+    final double viewOffset = aContext.viewOffset;
+
     // Calculate the "absolute" time based on the mouse position, use a
     // "over sampling" factor to allow intermediary (between two time stamps)
     // time value to be shown...
-    final double refTime = ( ( SignalHoverInfo.TIMESTAMP_FACTOR * aPoint.x ) / this.zoomFactor )
-        / ( SignalHoverInfo.TIMESTAMP_FACTOR * this.sampleRate );
+    final double refTime = ( ( SignalHoverInfo.TIMESTAMP_FACTOR * ( point.x + viewOffset ) ) / zoomFactor )
+        / ( SignalHoverInfo.TIMESTAMP_FACTOR * sampleRate );
 
-    final SignalElement signalElement = findSignalElement( aPoint );
+    final SignalElement signalElement = aContext.signalElement;
     if ( ( signalElement == null ) || !signalElement.isDigitalSignal() )
     {
       // Trivial reject: no digital signal, or not above any channel...
@@ -752,7 +950,7 @@ public class SignalDiagramModel
       return new SignalHoverInfo( realChannelIdx, channelLabel, refTime );
     }
 
-    final long[] timestamps = getTimestamps();
+    final long[] timestamps = data.getTimestamps();
 
     long ts = -1L;
     long tm = -1L;
@@ -762,8 +960,8 @@ public class SignalDiagramModel
 
     // find the reference time value; which is the "timestamp" under the
     // cursor...
-    final int refIdx = locationToSampleIndex( aPoint );
-    final int[] values = getValues();
+    final int refIdx = locationToSampleIndex( data, point, zoomFactor, viewOffset );
+    final int[] values = data.getValues();
     if ( ( refIdx >= 0 ) && ( refIdx < values.length ) )
     {
       final int mask = ( 1 << realChannelIdx );
@@ -814,16 +1012,16 @@ public class SignalDiagramModel
     }
 
     final Rectangle rect = new Rectangle();
-    rect.x = ( int )( getZoomFactor() * ts );
-    rect.width = ( int )( getZoomFactor() * ( te - ts ) );
-    rect.y = signalElement.getYposition() + getSignalOffset();
-    rect.height = this.signalHeight;
+    rect.x = toScreenCoordinate( ( zoomFactor * ts ) - viewOffset );
+    rect.width = toScreenCoordinate( ( zoomFactor * te ) - viewOffset ) - rect.x;
+    rect.y = signalElement.getYposition() + aContext.signalOffset;
+    rect.height = aContext.signalHeight;
 
     // The position where the "other" signal transition should be...
-    middleXpos = ( int )( getZoomFactor() * tm );
+    middleXpos = toScreenCoordinate( ( zoomFactor * tm ) - viewOffset );
 
-    final double timeHigh = th / ( double )this.sampleRate;
-    final double timeTotal = ( te - ts ) / ( double )this.sampleRate;
+    final double timeHigh = th / ( double )sampleRate;
+    final double timeTotal = ( te - ts ) / ( double )sampleRate;
 
     return new SignalHoverInfo( realChannelIdx, channelLabel, rect, ts, te, refTime, timeHigh, timeTotal, middleXpos );
   }
@@ -852,6 +1050,21 @@ public class SignalDiagramModel
     return signalOffset;
   }
 
+  /**
+   * Returns the current snapshot of the sample data.
+   * <p>
+   * Background tasks should use a single snapshot for their entire run,
+   * instead of calling {@link #getValues()} and {@link #getTimestamps()}
+   * separately, as the sample data can be replaced at any time.
+   * </p>
+   * 
+   * @return a data snapshot, never <code>null</code>.
+   */
+  public DataSnapshot getSnapshot()
+  {
+    return this.snapshot;
+  }
+
   /**
    * Returns the increment of pixels per timeline tick.
    * 
@@ -902,8 +1115,7 @@ public class SignalDiagramModel
    */
   public int getTimestampIndex( final long aValue )
   {
-    final int length = this.timestamps.length;
-    return binarySearch( this.timestamps, 0, length, aValue );
+    return this.snapshot.getTimestampIndex( aValue );
   }
 
   /**
@@ -911,7 +1123,7 @@ public class SignalDiagramModel
    */
   public long[] getTimestamps()
   {
-    return this.timestamps;
+    return this.snapshot.getTimestamps();
   }
 
   /**
@@ -919,7 +1131,7 @@ public class SignalDiagramModel
    */
   public int[] getValues()
   {
-    return this.values;
+    return this.snapshot.getValues();
   }
 
   /**
@@ -947,17 +1159,17 @@ public class SignalDiagramModel
       final int aDirection )
   {
     final SignalElementMeasurer strictMeasurer = SignalElementMeasurer.STRICT_MEASURER;
-    SignalElement[] signalElements = getSignalElements( aVisibleRect.y, aVisibleRect.height, strictMeasurer );
+    SignalElements signalElements = getSignalElements( aVisibleRect.y, aVisibleRect.height, strictMeasurer );
 
     int inc = 0;
-    if ( signalElements.length > 0 )
+    if ( !signalElements.isEmpty() )
     {
-      int yPos = signalElements[0].getYposition();
+      int yPos = signalElements.get( 0 ).getYposition();
 
       if ( aDirection > 0 )
       {
         // Scroll down...
-        int height = signalElements[0].getHeight();
+        int height = signalElements.get( 0 ).getHeight();
         inc = ( height - ( aVisibleRect.y - yPos ) );
         if ( inc <= 0 )
         {
@@ -979,19 +1191,19 @@ public class SignalDiagramModel
             // Row > 0, and completely visible; take the full height of the
             // row prior to the top row...
             signalElements = getSignalElements( 0, aVisibleRect.y - 1, strictMeasurer );
-            if ( signalElements.length > 0 )
+            if ( !signalElements.isEmpty() )
             {
-              inc = signalElements[signalElements.length - 1].getHeight();
+              inc = signalElements.get( signalElements.size() - 1 ).getHeight();
             }
           }
         }
         else
         {
           signalElements = getSignalElements( 0, aVisibleRect.y - 1, strictMeasurer );
-          if ( signalElements.length > 0 )
+          if ( !signalElements.isEmpty() )
           {
             // Make sure the first element is completely shown...
-            inc = aVisibleRect.y - signalElements[signalElements.length - 1].getYposition();
+            inc = aVisibleRect.y - signalElements.get( signalElements.size() - 1 ).getYposition();
           }
         }
       }
@@ -999,6 +1211,36 @@ public class SignalDiagramModel
     return inc;
   }
 
+  /**
+   * Returns the virtual X-position of the left side of the visible view.
+   * <p>
+   * All time stamps are mapped onto a virtual screen that is
+   * {@link #getVirtualScreenWidth()} pixels wide; the visible view shows the
+   * part of this virtual screen that starts at this offset.
+   * </p>
+   * 
+   * @return a view offset, in pixels, >= 0.0.
+   */
+  public double getViewOffset()
+  {
+    return this.viewOffset;
+  }
+
+  /**
+   * Returns the width of the virtual screen, that is, the width all samples
+   * would need at the current zoom factor.
+   * <p>
+   * Unlike component sizes, this width is not limited to
+   * {@value Integer#MAX_VALUE} pixels.
+   * </p>
+   * 
+   * @return a virtual screen width, in pixels, >= 0.0.
+   */
+  public double getVirtualScreenWidth()
+  {
+    return Math.max( 0.0, getAbsoluteLength() * getZoomFactor() );
+  }
+
   /**
    * Returns the current zoom factor.
    * 
@@ -1066,19 +1308,7 @@ public class SignalDiagramModel
    */
   public int locationToSampleIndex( final Point aCoordinate )
   {
-    final long timestamp = locationToTimestamp( aCoordinate );
-    final int idx = getTimestampIndex( timestamp );
-    if ( idx < 0 )
-    {
-      return -1;
-    }
-    final int sampleCount = getSampleCount() - 1;
-    if ( idx > sampleCount )
-    {
-      return sampleCount;
-    }
-
-    return idx;
+    return locationToSampleIndex( this.snapshot, aCoordinate, this.zoomFactor, this.viewOffset );
   }
 
   /**
@@ -1092,12 +1322,39 @@ public class SignalDiagramModel
    */
   public long locationToTimestamp( final Point aCoordinate )
   {
-    final long timestamp = ( long )Math.ceil( aCoordinate.x / getZoomFactor() );
-    if ( timestamp < 0 )
+    return locationToTimestamp( aCoordinate, this.zoomFactor, this.viewOffset );
+  }
+
+  /**
+   * Removes the given annotations from the current set of annotations.
+   * 
+   * @param aAnnotations
+   *          the annotations to remove, cannot be <code>null</code>.
+   */
+  public void removeAnnotations( final Collection<? extends Annotation<?>> aAnnotations )
+  {
+    final Annotation<?>[] current = this.annotations;
+    if ( ( current == null ) || aAnnotations.isEmpty() )
     {
-      return -1;
+      return;
     }
-    return timestamp;
+
+    // Annotations are compared by identity, equal annotations can be added by
+    // different sources...
+    final Set<Annotation<?>> removed = Collections.newSetFromMap( new IdentityHashMap<Annotation<?>, Boolean>() );
+    removed.addAll( aAnnotations );
+
+    final Annotation<?>[] result = new Annotation<?>[current.length];
+    int count = 0;
+    for ( Annotation<?> annotation : current )
+    {
+      if ( !removed.contains( annotation ) )
+      {
+        result[count++] = annotation;
+      }
+    }
+
+    this.annotations = Arrays.copyOf( result, count );
   }
 
   /**
@@ -1121,11 +1378,7 @@ public class SignalDiagramModel
 
     cursor.clear();
 
-    ICursorChangeListener[] listeners = this.eventListeners.getListeners( ICursorChangeListener.class );
-    for ( ICursorChangeListener listener : listeners )
-    {
-      listener.cursorRemoved( oldCursor );
-    }
+    this.eventBus.post( new CursorEvent( CursorEvent.REMOVED, null, oldCursor, null ) );
   }
 
   /**
@@ -1136,7 +1389,7 @@ public class SignalDiagramModel
    */
   public void removeCursorChangeListener( final ICursorChangeListener aListener )
   {
-    this.eventListeners.remove( ICursorChangeListener.class, aListener );
+    this.eventBus.unsubscribe( ICursorChangeListener.class, aListener );
   }
 
   /**
@@ -1147,7 +1400,7 @@ public class SignalDiagramModel
    */
   public void removeDataModelChangeListener( final IDataModelChangeListener aListener )
   {
-    this.eventListeners.remove( IDataModelChangeListener.class, aListener );
+    this.eventBus.unsubscribe( IDataModelChangeListener.class, aListener );
   }
 
   /**
@@ -1158,7 +1411,7 @@ public class SignalDiagramModel
    */
   public void removeMeasurementListener( final IMeasurementListener aListener )
   {
-    this.eventListeners.remove( IMeasurementListener.class, aListener );
+    this.eventBus.unsubscribe( IMeasurementListener.class, aListener );
   }
 
   /**
@@ -1172,12 +1425,26 @@ public class SignalDiagramModel
     this.propertyChangeSupport.removePropertyChangeListener( aListener );
   }
 
+  /**
+   * Sets the differences with a reference capture, which are shown as an
+   * overlay on the signals.
+   * 
+   * @param aCaptureDiff
+   *          the capture differences to show, can be <code>null</code> to
+   *          remove the overlay.
+   */
+  public void setCaptureDiff( final CaptureDiff aCaptureDiff )
+  {
+    this.captureDiff = aCaptureDiff;
+  }
+
   /**
    * @param aChannelHeight
    */
   public void setChannelHeight( final int aChannelHeight )
   {
     this.channelHeight = aChannelHeight;
+    invalidateLayout();
   }
 
   /**
@@ -1267,18 +1534,8 @@ public class SignalDiagramModel
       this.mode &= ~CURSORS_VISIBLE;
     }
 
-    ICursorChangeListener[] listeners = this.eventListeners.getListeners( ICursorChangeListener.class );
-    for ( ICursorChangeListener listener : listeners )
-    {
-      if ( aCursorMode )
-      {
-        listener.cursorsVisible();
-      }
-      else
-      {
-        listener.cursorsInvisible();
-      }
-    }
+    this.eventBus.post( new CursorEvent( aCursorMode ? CursorEvent.VISIBLE : CursorEvent.INVISIBLE, null, null,
+        null ) );
   }
 
   /**
@@ -1294,57 +1551,19 @@ public class SignalDiagramModel
       throw new IllegalArgumentException( "Parameter DataModel cannot be null!" );
     }
 
-    final int[] dmValues = aDataModel.getValues();
-    final long[] dmTimestamps = aDataModel.getTimestamps();
-
-    // Correct the timestamps so they always start at zero...
-    if ( ( dmTimestamps.length > 0 ) && ( dmTimestamps[0] != 0L ) )
-    {
-      final int newSize = dmTimestamps.length + 1;
-
-      this.values = new int[newSize];
-      this.timestamps = new long[newSize];
-
-      // Initial point...
-      this.values[0] = dmValues[0];
-      this.timestamps[0] = 0L;
-
-      // All other points...
-      System.arraycopy( dmValues, 0, this.values, 1, dmValues.length );
-      System.arraycopy( dmTimestamps, 0, this.timestamps, 1, dmTimestamps.length );
-    }
-    else
-    {
-      this.values = Arrays.copyOf( dmValues, dmValues.length );
-      this.timestamps = Arrays.copyOf( dmTimestamps, dmTimestamps.length );
-    }
-
     final Cursor[] dmCursors = aDataModel.getCursors();
     this.cursors = Arrays.copyOf( dmCursors, dmCursors.length );
 
-    this.sampleRate = aDataModel.getSampleRate();
-    this.sampleWidth = aDataModel.getWidth();
+    this.snapshot = createSnapshot( aDataModel );
 
-    // XXX test
-    this.annotations = new Annotation<?>[20];
-    int channel = 0;
-    int timestamp = 10;
-    for ( int i = 0; i < this.annotations.length; i++ )
-    {
-      if ( ( i != 0 ) && ( ( i % 4 ) == 0 ) )
-      {
-        channel++;
-        timestamp = 10 + ( channel * 5 );
-      }
-      this.annotations[i] = new SimpleAnnotation( channel, "Annotation " + i, timestamp, timestamp + 10 );
-      timestamp += 20;
-    }
+    // Annotations belong to the old data; decoders will add new ones...
+    this.annotations = new Annotation<?>[0];
+    this.captureDiff = null;
 
-    final IDataModelChangeListener[] listeners = this.eventListeners.getListeners( IDataModelChangeListener.class );
-    for ( IDataModelChangeListener listener : listeners )
-    {
-      listener.dataModelChanged( aDataModel );
-    }
+    // The channels should be up-to-date before anyone else is notified...
+    this.channelGroupManager.dataModelChanged( aDataModel );
+
+    this.eventBus.post( new DataModelEvent( aDataModel ) );
   }
 
   /**
@@ -1356,6 +1575,21 @@ public class SignalDiagramModel
   public void setDataValueRowHeight( final int aHeight )
   {
     this.groupSummaryHeight = aHeight;
+    invalidateLayout();
+  }
+
+  /**
+   * Sets the progress of the capture that is being loaded.
+   * 
+   * @param aLoadProgress
+   *          the load progress, 0..100, or -1 if loading is finished.
+   */
+  public void setLoadProgress( final int aLoadProgress )
+  {
+    final int oldProgress = this.loadProgress;
+    this.loadProgress = aLoadProgress;
+
+    this.propertyChangeSupport.firePropertyChange( "loadProgress", oldProgress, aLoadProgress );
   }
 
   /**
@@ -1372,18 +1606,8 @@ public class SignalDiagramModel
       this.mode &= ~MEASUREMENT_MODE;
     }
 
-    IMeasurementListener[] listeners = this.eventListeners.getListeners( IMeasurementListener.class );
-    for ( IMeasurementListener listener : listeners )
-    {
-      if ( aEnabled )
-      {
-        listener.enableMeasurementMode();
-      }
-      else
-      {
-        listener.disableMeasurementMode();
-      }
-    }
+    this.eventBus.post( new MeasurementEvent( aEnabled ? MeasurementEvent.ENABLED : MeasurementEvent.DISABLED,
+        null ) );
   }
 
   /**
@@ -1406,6 +1630,7 @@ public class SignalDiagramModel
   public void setScopeHeight( final int aScopeHeight )
   {
     this.scopeHeight = aScopeHeight;
+    invalidateLayout();
   }
 
   /**
@@ -1425,6 +1650,7 @@ public class SignalDiagramModel
   public void setSignalGroupHeight( final int aSignalGroupHeight )
   {
     this.signalGroupHeight = aSignalGroupHeight;
+    invalidateLayout();
   }
 
   /**
@@ -1451,6 +1677,22 @@ public class SignalDiagramModel
     }
   }
 
+  /**
+   * Sets the virtual X-position of the left side of the visible view.
+   * 
+   * @param aViewOffset
+   *          the view offset to set, in pixels, >= 0.0.
+   * @see #getViewOffset()
+   */
+  public void setViewOffset( final double aViewOffset )
+  {
+    double oldOffset = this.viewOffset;
+    this.viewOffset = Math.max( 0.0, aViewOffset );
+
+    this.propertyChangeSupport.firePropertyChange( "viewOffset", Double.valueOf( oldOffset ),
+        Double.valueOf( this.viewOffset ) );
+  }
+
   /**
    * Sets the zoom factor.
    * 
@@ -1466,23 +1708,173 @@ public class SignalDiagramModel
         Double.valueOf( aZoomFactor ) );
   }
 
+  /**
+   * Converts a given time stamp to a coordinate in the visible view.
+   * 
+   * @param aTimestamp
+   *          the time stamp to convert, >= 0.
+   * @return a screen coordinate, can be negative for time stamps left of the
+   *         visible view.
+   */
+  public int timestampToCoordinate( final long aTimestamp )
+  {
+    return toScreenCoordinate( ( this.zoomFactor * aTimestamp ) - this.viewOffset );
+  }
+
+  /**
+   * Replaces the sample data of the current data model, for example, once the
+   * remainder of a partially loaded capture is available.
+   * <p>
+   * Unlike {@link #setDataModel(SampleDataModel)}, the channels, channel
+   * groups, cursors and annotations are retained, so any changes made to them
+   * in the meantime are kept. Only if the sample width differs, the data model
+   * is set as a new one.
+   * </p>
+   * 
+   * @param aDataModel
+   *          the dataModel with the new sample data, cannot be
+   *          <code>null</code>.
+   */
+  public void updateDataModel( final SampleDataModel aDataModel )
+  {
+    if ( aDataModel == null )
+    {
+      throw new IllegalArgumentException( "Parameter DataModel cannot be null!" );
+    }
+    if ( aDataModel.getWidth() != this.snapshot.getSampleWidth() )
+    {
+      // The current channels do not align with the new data...
+      setDataModel( aDataModel );
+      return;
+    }
+
+    this.snapshot = createSnapshot( aDataModel );
+
+    // The difference is taken from the old data...
+    this.captureDiff = null;
+
+    this.eventBus.post( new DataModelEvent( aDataModel ) );
+  }
+
+  /**
+   * Creates a new snapshot of the sample data of the given data model.
+   */
+  private DataSnapshot createSnapshot( final SampleDataModel aDataModel )
+  {
+    final int[] dmValues = aDataModel.getValues();
+    final long[] dmTimestamps = aDataModel.getTimestamps();
+
+    final int[] values;
+    final long[] timestamps;
+
+    // Correct the timestamps so they always start at zero...
+    if ( ( dmTimestamps.length > 0 ) && ( dmTimestamps[0] != 0L ) )
+    {
+      final int newSize = dmTimestamps.length + 1;
+
+      values = new int[newSize];
+      timestamps = new long[newSize];
+
+      // Initial point...
+      values[0] = dmValues[0];
+      timestamps[0] = 0L;
+
+      // All other points...
+      System.arraycopy( dmValues, 0, values, 1, dmValues.length );
+      System.arraycopy( dmTimestamps, 0, timestamps, 1, dmTimestamps.length );
+    }
+    else
+    {
+      values = Arrays.copyOf( dmValues, dmValues.length );
+      timestamps = Arrays.copyOf( dmTimestamps, dmTimestamps.length );
+    }
+
+    // Publish all sample data at once, so concurrent readers never see a mix
+    // of old and new data...
+    return new DataSnapshot( this.snapshot.getVersion() + 1L, values, timestamps, aDataModel.getSampleRate(),
+        aDataModel.getWidth() );
+  }
+
   /**
    * @param aOldCursor
    * @param aCursor
    */
   private void fireCursorChangeEvent( final String aPropertyName, final Cursor aOldCursor, final Cursor aCursor )
   {
-    ICursorChangeListener[] listeners = this.eventListeners.getListeners( ICursorChangeListener.class );
-    for ( ICursorChangeListener listener : listeners )
+    if ( !aOldCursor.isDefined() )
     {
-      if ( !aOldCursor.isDefined() )
-      {
-        listener.cursorAdded( aCursor );
-      }
-      else
+      this.eventBus.post( new CursorEvent( CursorEvent.ADDED, null, aOldCursor, aCursor ) );
+    }
+    else
+    {
+      this.eventBus.post( new CursorEvent( CursorEvent.CHANGED, aPropertyName, aOldCursor, aCursor ) );
+    }
+  }
+
+  /**
+   * Returns the current signal element layout, creating it if needed.
+   * 
+   * @return the signal element layout, never <code>null</code>.
+   */
+  private SignalElementLayout getLayout()
+  {
+    SignalElementLayout result = this.layout;
+    if ( result == null )
+    {
+      result = SignalElementLayout.create( this );
+      // Only the EDT changes the channel groups and invalidates the layout, so
+      // a layout created elsewhere could be stale before it is stored...
+      if ( EventQueue.isDispatchThread() )
       {
-        listener.cursorChanged( aPropertyName, aOldCursor, aCursor );
+        this.layout = result;
       }
     }
+    return result;
+  }
+
+  /**
+   * Invalidates the current signal element layout, causing it to be recreated
+   * upon its next use.
+   */
+  private void invalidateLayout()
+  {
+    this.layout = null;
+  }
+
+  /**
+   * Converts the given coordinate to the corresponding sample index of the
+   * given snapshot, using the given zoom factor and view offset.
+   */
+  private static int locationToSampleIndex( final DataSnapshot aSnapshot, final Point aCoordinate,
+      final double aZoomFactor, final double aViewOffset )
+  {
+    final long timestamp = locationToTimestamp( aCoordinate, aZoomFactor, aViewOffset );
+    final int idx = aSnapshot.getTimestampIndex( timestamp );
+    if ( idx < 0 )
+    {
+      return -1;
+    }
+    final int sampleCount = aSnapshot.getSampleCount() - 1;
+    if ( idx > sampleCount )
+    {
+      return sampleCount;
+    }
+
+    return idx;
+  }
+
+  /**
+   * Converts the given coordinate to the corresponding time stamp, using the
+   * given zoom factor and view offset.
+   */
+  private static long locationToTimestamp( final Point aCoordinate, final double aZoomFactor,
+      final double aViewOffset )
+  {
+    final long timestamp = ( long )Math.ceil( ( aCoordinate.x + aViewOffset ) / aZoomFactor );
+    if ( timestamp < 0 )
+    {
+      return -1;
+    }
+    return timestamp;
   }
 }
@@ -0,0 +1,276 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view.model;
+
+
+import java.util.*;
+
+import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.view.model.SignalDiagramModel.SignalElementMeasurer;
+
+
+/**
+ * Provides an immutable, flattened layout of all visible signal elements.
+ * <p>
+ * The Y-positions of the signal elements are kept as prefix sums, allowing
+ * signal elements to be looked up by their screen position using a binary
+ * search. Instances of this class are created once for a given channel group
+ * structure, and are to be recreated when this structure (or the height of any
+ * of the signal elements) changes.
+ * </p>
+ */
+final class SignalElementLayout
+{
+  // VARIABLES
+
+  private final SignalElement[] elements;
+  /** the Y-position of each element; the last entry denotes the total height. */
+  private final int[] yOffsets;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SignalElementLayout instance.
+   */
+  private SignalElementLayout( final SignalElement[] aElements, final int[] aYoffsets )
+  {
+    this.elements = aElements;
+    this.yOffsets = aYoffsets;
+  }
+
+  // METHODS
+
+  /**
+   * Factory method to create a new {@link SignalElementLayout} for all visible
+   * channel groups of the given signal diagram model.
+   * 
+   * @param aModel
+   *          the signal diagram model to create the layout for, cannot be
+   *          <code>null</code>.
+   * @return a new layout, never <code>null</code>.
+   */
+  static SignalElementLayout create( final SignalDiagramModel aModel )
+  {
+    final List<SignalElement> elements = new ArrayList<SignalElement>();
+
+    final int channelHeight = aModel.getChannelHeight();
+    final int groupSummaryHeight = aModel.getGroupSummaryHeight();
+    final int scopeHeight = aModel.getScopeHeight();
+    final int signalGroupHeight = aModel.getSignalGroupHeight();
+
+    int yPos = 0;
+    for ( ChannelGroup cg : aModel.getChannelGroupManager().getChannelGroups() )
+    {
+      if ( !cg.isVisible() )
+      {
+        continue;
+      }
+
+      elements.add( SignalElement.createSignalGroupElement( cg, yPos, signalGroupHeight ) );
+      yPos += signalGroupHeight;
+
+      if ( cg.isShowDigitalSignals() )
+      {
+        for ( Channel channel : cg.getChannels() )
+        {
+          elements.add( SignalElement.createDigitalSignalElement( channel, yPos, channelHeight ) );
+          yPos += channelHeight;
+        }
+      }
+      // Always keep these heights into account...
+      if ( cg.isShowGroupSummary() )
+      {
+        elements.add( SignalElement.createGroupSummaryElement( cg, yPos, groupSummaryHeight ) );
+        yPos += groupSummaryHeight;
+      }
+      if ( cg.isShowAnalogSignal() )
+      {
+        elements.add( SignalElement.createAnalogScopeElement( cg, yPos, scopeHeight ) );
+        yPos += scopeHeight;
+      }
+    }
+
+    final int size = elements.size();
+
+    final int[] yOffsets = new int[size + 1];
+    for ( int i = 0; i < size; i++ )
+    {
+      yOffsets[i] = elements.get( i ).getYposition();
+    }
+    yOffsets[size] = yPos;
+
+    return new SignalElementLayout( elements.toArray( new SignalElement[size] ), yOffsets );
+  }
+
+  /**
+   * Returns the first signal element that (partly) lies in the given range.
+   * 
+   * @param aY
+   *          the screen Y-coordinate;
+   * @param aHeight
+   *          the screen height.
+   * @return the first signal element in the given range, or <code>null</code>
+   *         if no such element exists.
+   */
+  public SignalElement findFirst( final int aY, final int aHeight )
+  {
+    final int startIdx = getStartIndex( aY, SignalElementMeasurer.LOOSE_MEASURER );
+    final int endIdx = getEndIndex( aY + aHeight );
+    if ( startIdx >= endIdx )
+    {
+      return null;
+    }
+    return this.elements[startIdx];
+  }
+
+  /**
+   * Returns the total height of all signal elements.
+   * 
+   * @return a height, in pixels, >= 0.
+   */
+  public int getHeight()
+  {
+    return this.yOffsets[this.elements.length];
+  }
+
+  /**
+   * Returns all signal elements that fit in the given range.
+   * 
+   * @param aY
+   *          the screen Y-coordinate;
+   * @param aHeight
+   *          the screen height;
+   * @param aMeasurer
+   *          the measurer to use to determine whether or not a signal element
+   *          fits in the given dimensions.
+   * @return a view on the signal elements, never <code>null</code>.
+   */
+  public SignalElements getSignalElements( final int aY, final int aHeight, final SignalElementMeasurer aMeasurer )
+  {
+    final int yMin = aY;
+    final int yMax = aHeight + aY;
+
+    if ( ( aMeasurer != SignalElementMeasurer.LOOSE_MEASURER )
+        && ( aMeasurer != SignalElementMeasurer.STRICT_MEASURER ) )
+    {
+      // Unknown measurer; we cannot make any assumptions on how it measures...
+      final List<SignalElement> result = new ArrayList<SignalElement>();
+      for ( SignalElement element : this.elements )
+      {
+        if ( aMeasurer.signalElementFits( element.getYposition(), element.getHeight(), yMin, yMax ) )
+        {
+          result.add( element );
+        }
+      }
+      return new SignalElements( result.toArray( new SignalElement[result.size()] ), 0, result.size() );
+    }
+
+    final int startIdx = getStartIndex( yMin, aMeasurer );
+    final int endIdx = getEndIndex( yMax );
+    if ( startIdx >= endIdx )
+    {
+      return SignalElements.EMPTY;
+    }
+
+    // Share our elements, as this method is called for each paint...
+    return new SignalElements( this.elements, startIdx, endIdx );
+  }
+
+  /**
+   * Returns the (exclusive) index of the last signal element that starts at or
+   * before the given Y-position.
+   * 
+   * @param aYmax
+   *          the maximum Y-position.
+   * @return an element index, >= 0 && <= element count.
+   */
+  private int getEndIndex( final int aYmax )
+  {
+    // Find the first element starting *after* the given maximum...
+    return upperBound( this.yOffsets, 0, this.elements.length, aYmax );
+  }
+
+  /**
+   * Returns the index of the first signal element that fits the given minimum
+   * Y-position, for either the loose or the strict measurer.
+   * 
+   * @param aYmin
+   *          the minimum Y-position;
+   * @param aMeasurer
+   *          the measurer to use.
+   * @return an element index, >= 0 && <= element count.
+   */
+  private int getStartIndex( final int aYmin, final SignalElementMeasurer aMeasurer )
+  {
+    if ( aMeasurer == SignalElementMeasurer.STRICT_MEASURER )
+    {
+      // The element should start at or after the given minimum...
+      return lowerBound( this.yOffsets, 0, this.elements.length, aYmin );
+    }
+    // The element should end at or after the given minimum...
+    return Math.max( 0, lowerBound( this.yOffsets, 1, this.elements.length + 1, aYmin ) - 1 );
+  }
+
+  /**
+   * Returns the first index in the given (sorted) array whose value is greater
+   * than or equal to the given key.
+   */
+  private static int lowerBound( final int[] aArray, final int aFromIndex, final int aToIndex, final int aKey )
+  {
+    int low = aFromIndex;
+    int high = aToIndex;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( aArray[mid] < aKey )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the first index in the given (sorted) array whose value is greater
+   * than the given key.
+   */
+  private static int upperBound( final int[] aArray, final int aFromIndex, final int aToIndex, final int aKey )
+  {
+    int low = aFromIndex;
+    int high = aToIndex;
+    while ( low < high )
+    {
+      final int mid = ( low + high ) >>> 1;
+      if ( aArray[mid] <= aKey )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
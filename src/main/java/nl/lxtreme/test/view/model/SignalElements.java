@@ -0,0 +1,104 @@
+/*
+ * OpenBench LogicSniffer / SUMP project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110, USA
+ *
+ * Copyright (C) 2010-2011 - J.W. Janssen, <http://www.lxtreme.nl>
+ */
+package nl.lxtreme.test.view.model;
+
+
+/**
+ * Provides a read-only view on a consecutive range of signal elements.
+ * <p>
+ * This view shares the array of its layout, so obtaining the signal elements
+ * for a part of the screen does not need to copy them.
+ * </p>
+ */
+public final class SignalElements
+{
+  // CONSTANTS
+
+  /** The view without any signal elements. */
+  public static final SignalElements EMPTY = new SignalElements( new SignalElement[0], 0, 0 );
+
+  // VARIABLES
+
+  private final SignalElement[] elements;
+  private final int fromIndex;
+  private final int toIndex;
+
+  // CONSTRUCTORS
+
+  /**
+   * Creates a new SignalElements instance.
+   * 
+   * @param aElements
+   *          the array to view, cannot be <code>null</code>;
+   * @param aFromIndex
+   *          the index of the first signal element to view (inclusive);
+   * @param aToIndex
+   *          the index of the last signal element to view (exclusive).
+   */
+  SignalElements( final SignalElement[] aElements, final int aFromIndex, final int aToIndex )
+  {
+    if ( ( aFromIndex < 0 ) || ( aFromIndex > aToIndex ) || ( aToIndex > aElements.length ) )
+    {
+      throw new IllegalArgumentException( "Invalid range!" );
+    }
+    this.elements = aElements;
+    this.fromIndex = aFromIndex;
+    this.toIndex = aToIndex;
+  }
+
+  // METHODS
+
+  /**
+   * Returns the signal element at the given index.
+   * 
+   * @param aIndex
+   *          the index of the signal element, >= 0 && < {@link #size()}.
+   * @return a signal element, never <code>null</code>.
+   */
+  public SignalElement get( final int aIndex )
+  {
+    if ( ( aIndex < 0 ) || ( aIndex >= size() ) )
+    {
+      throw new IndexOutOfBoundsException( "Invalid index: " + aIndex );
+    }
+    return this.elements[this.fromIndex + aIndex];
+  }
+
+  /**
+   * Returns whether or not this view contains any signal elements.
+   * 
+   * @return <code>true</code> if there are no signal elements,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isEmpty()
+  {
+    return this.fromIndex == this.toIndex;
+  }
+
+  /**
+   * Returns the number of signal elements in this view.
+   * 
+   * @return a count, >= 0.
+   */
+  public int size()
+  {
+    return this.toIndex - this.fromIndex;
+  }
+}
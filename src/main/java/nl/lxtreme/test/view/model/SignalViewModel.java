@@ -39,6 +39,7 @@ public class SignalViewModel extends AbstractViewModel
 
   public static final String COMPONENT_BACKGROUND_COLOR = "signal.color.background";
   public static final String MEASUREMENT_ARROW_COLOR = "signal.color.arrow";
+  public static final String DIFFERENCE_COLOR = "signal.color.difference";
   public static final String CURSOR_FLAG_FONT = TimeLineViewModel.CURSOR_FLAG_FONT;
 
   // CONSTRUCTORS
@@ -103,6 +104,16 @@ public class SignalViewModel extends AbstractViewModel
     return font;
   }
 
+  /**
+   * Returns the differences with a reference capture, if any.
+   * 
+   * @return the capture differences, can be <code>null</code>.
+   */
+  public CaptureDiff getCaptureDiff()
+  {
+    return this.controller.getSignalDiagramModel().getCaptureDiff();
+  }
+
   /**
    * @return
    */
@@ -111,6 +122,21 @@ public class SignalViewModel extends AbstractViewModel
     return this.controller.getSignalDiagramModel().getValues();
   }
 
+  /**
+   * Returns the color for the differences with a reference capture.
+   * 
+   * @return a color, never <code>null</code>.
+   */
+  public Color getDifferenceColor()
+  {
+    Color color = UIManager.getColor( DIFFERENCE_COLOR );
+    if ( color == null )
+    {
+      color = LafDefaults.DEFAULT_DIFFERENCE_COLOR;
+    }
+    return color;
+  }
+
   /**
    * @param aClip
    * @return
@@ -137,6 +163,17 @@ public class SignalViewModel extends AbstractViewModel
     return color;
   }
 
+  /**
+   * Returns the current sample data snapshot, so values and timestamps can be
+   * read consistently.
+   * 
+   * @return a snapshot, never <code>null</code>.
+   */
+  public DataSnapshot getSnapshot()
+  {
+    return this.controller.getSignalDiagramModel().getSnapshot();
+  }
+
   /**
    * @param aClip
    * @return
@@ -0,0 +1,72 @@
+package nl.lxtreme.test;
+
+
+import static org.junit.Assert.*;
+
+import java.awt.*;
+
+import org.junit.*;
+
+
+public class EdtMonitorTest
+{
+  // METHODS
+
+  /**
+   * 
+   */
+  @Test
+  public void testStallIsReported() throws Exception
+  {
+    final EdtMonitor monitor = new EdtMonitor( 50L );
+    monitor.start();
+    try
+    {
+      EventQueue.invokeAndWait( new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          freeze();
+        }
+      } );
+      // Make sure the dispatch of the previous event is completely recorded...
+      EventQueue.invokeAndWait( new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          // Nothing...
+        }
+      } );
+
+      assertTrue( monitor.getDispatchCount() > 0L );
+      assertTrue( monitor.getDispatchDurationMax() >= 250.0 );
+      assertEquals( 1L, monitor.getStallCount() );
+      assertTrue( monitor.getStallReports()[0].contains( "EdtMonitorTest.freeze" ) );
+
+      monitor.reset();
+      assertEquals( 0L, monitor.getStallCount() );
+      assertEquals( 0, monitor.getStallReports().length );
+    }
+    finally
+    {
+      monitor.stop();
+    }
+  }
+
+  /**
+   * Keeps the EDT busy for a while.
+   */
+  static void freeze()
+  {
+    try
+    {
+      Thread.sleep( 300L );
+    }
+    catch ( InterruptedException exception )
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package nl.lxtreme.test.decoder;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import nl.lxtreme.test.model.*;
+
+import org.junit.*;
+
+
+public class DecoderPipelineTest
+{
+  // VARIABLES
+
+  private ExecutorService executor;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp()
+  {
+    this.executor = Executors.newFixedThreadPool( 2 );
+  }
+
+  /**
+   * 
+   */
+  @After
+  public void tearDown()
+  {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testDecodeI2CAndUartInParallel() throws Exception
+  {
+    // Channel 0 = UART (1 bit = 10 samples); channel 1 = SCL, channel 2 = SDA
+    final List<Integer> uart = new ArrayList<Integer>();
+    uart.add( Integer.valueOf( 1 ) );
+    appendUartByte( uart, 0x41, 10 );
+    appendUartByte( uart, 0x7E, 10 );
+
+    final List<Integer> i2c = new ArrayList<Integer>();
+    i2c.add( Integer.valueOf( 0x06 ) );
+    i2c.add( Integer.valueOf( 0x02 ) ); // START
+    appendI2CByte( i2c, 0xA0, true );
+    appendI2CByte( i2c, 0x12, false );
+    i2c.add( Integer.valueOf( 0x00 ) );
+    i2c.add( Integer.valueOf( 0x02 ) );
+    i2c.add( Integer.valueOf( 0x06 ) ); // STOP
+
+    final int size = Math.max( uart.size(), i2c.size() );
+    final int[] values = new int[size];
+    final long[] timestamps = new long[size];
+    for ( int i = 0; i < size; i++ )
+    {
+      final int u = ( i < uart.size() ) ? uart.get( i ).intValue() : 1;
+      final int c = ( i < i2c.size() ) ? i2c.get( i ).intValue() : 0x06;
+      values[i] = u | c;
+      timestamps[i] = i;
+    }
+
+    final Map<String, List<String>> annotations = new HashMap<String, List<String>>();
+    final IAnnotationPublisher publisher = new IAnnotationPublisher()
+    {
+      @Override
+      public void publish( final AbstractProtocolDecoder aDecoder, final List<Annotation<?>> aAnnotations )
+      {
+        synchronized ( annotations )
+        {
+          List<String> texts = annotations.get( aDecoder.getName() );
+          if ( texts == null )
+          {
+            texts = new ArrayList<String>();
+            annotations.put( aDecoder.getName(), texts );
+          }
+          for ( Annotation<?> annotation : aAnnotations )
+          {
+            texts.add( String.valueOf( annotation.getAnnotation() ) );
+          }
+        }
+      }
+    };
+
+    final List<Future<?>> futures = DecoderPipeline.decode( values, timestamps, 100,
+        Arrays.asList( new UartDecoder( 0, 10 ), new I2CDecoder( 1, 2 ) ), publisher, this.executor );
+    for ( Future<?> future : futures )
+    {
+      future.get();
+    }
+
+    assertEquals( Arrays.asList( "0x41 'A'", "0x7E '~'" ), annotations.get( "UART" ) );
+    assertEquals( Arrays.asList( "START", "Address 0x50 W ACK", "0x12 NACK", "STOP" ), annotations.get( "I2C" ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testDecodeSpiMode0()
+  {
+    // Channel 0 = CLK, channel 1 = CS, channel 2 = MOSI, channel 3 = MISO
+    final List<Integer> samples = new ArrayList<Integer>();
+    samples.add( Integer.valueOf( 0x02 ) );
+    for ( int bit = 7; bit >= 0; bit-- )
+    {
+      final int mosi = ( ( 0xA5 >> bit ) & 1 ) << 2;
+      final int miso = ( ( 0x3C >> bit ) & 1 ) << 3;
+      samples.add( Integer.valueOf( mosi | miso ) );
+      samples.add( Integer.valueOf( mosi | miso | 0x01 ) );
+    }
+    samples.add( Integer.valueOf( 0x00 ) );
+    samples.add( Integer.valueOf( 0x02 ) );
+
+    final int[] values = new int[samples.size()];
+    final long[] timestamps = new long[samples.size()];
+    for ( int i = 0; i < values.length; i++ )
+    {
+      values[i] = samples.get( i ).intValue();
+      timestamps[i] = i;
+    }
+
+    final List<Annotation<?>> annotations = new ArrayList<Annotation<?>>();
+    final IAnnotationPublisher publisher = new IAnnotationPublisher()
+    {
+      @Override
+      public void publish( final AbstractProtocolDecoder aDecoder, final List<Annotation<?>> aAnnotations )
+      {
+        annotations.addAll( aAnnotations );
+      }
+    };
+
+    try
+    {
+      new SpiDecoder( 0, 1, 2, 3, 0 ).decode( values, timestamps, 100, publisher );
+    }
+    catch ( InterruptedException exception )
+    {
+      fail( "Unexpected interrupt!" );
+    }
+
+    assertEquals( 2, annotations.size() );
+    assertEquals( "0xA5", annotations.get( 0 ).getAnnotation() );
+    assertEquals( 2, annotations.get( 0 ).getChannel() );
+    assertEquals( "0x3C", annotations.get( 1 ).getAnnotation() );
+    assertEquals( 3, annotations.get( 1 ).getChannel() );
+  }
+
+  /**
+   * Appends the samples of a single I2C byte (and its ACK bit) to the given
+   * list, with SCL on bit 1 and SDA on bit 2.
+   */
+  private void appendI2CByte( final List<Integer> aSamples, final int aByte, final boolean aAck )
+  {
+    for ( int bit = 8; bit >= 0; bit-- )
+    {
+      final int sda;
+      if ( bit == 0 )
+      {
+        sda = aAck ? 0 : 0x04;
+      }
+      else
+      {
+        sda = ( ( aByte >> ( bit - 1 ) ) & 1 ) << 2;
+      }
+      aSamples.add( Integer.valueOf( sda ) );
+      aSamples.add( Integer.valueOf( sda | 0x02 ) );
+      aSamples.add( Integer.valueOf( sda ) );
+    }
+  }
+
+  /**
+   * Appends the samples of a single UART frame (8N1) to the given list.
+   */
+  private void appendUartByte( final List<Integer> aSamples, final int aByte, final int aSamplesPerBit )
+  {
+    final int[] bits = new int[10];
+    bits[0] = 0;
+    for ( int i = 0; i < 8; i++ )
+    {
+      bits[i + 1] = ( aByte >> i ) & 1;
+    }
+    bits[9] = 1;
+
+    for ( int bit : bits )
+    {
+      for ( int i = 0; i < aSamplesPerBit; i++ )
+      {
+        aSamples.add( Integer.valueOf( bit ) );
+      }
+    }
+    // Some idle time...
+    for ( int i = 0; i < aSamplesPerBit; i++ )
+    {
+      aSamples.add( Integer.valueOf( 1 ) );
+    }
+  }
+}
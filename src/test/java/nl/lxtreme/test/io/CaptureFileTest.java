@@ -0,0 +1,233 @@
+package nl.lxtreme.test.io;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import nl.lxtreme.test.model.*;
+
+import org.junit.*;
+
+
+public class CaptureFileTest
+{
+  // VARIABLES
+
+  private File file;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp() throws IOException
+  {
+    this.file = File.createTempFile( "capture", ".olsc" );
+  }
+
+  /**
+   * 
+   */
+  @After
+  public void tearDown()
+  {
+    this.file.delete();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testFindBlockUsesIndexOnly() throws IOException
+  {
+    final int size = ( 3 * CaptureFileWriter.BLOCK_SIZE ) + 10;
+    final SampleDataModel dataModel = createDataModel( size );
+
+    CaptureFileWriter.write( this.file, dataModel, createChannelLayout( dataModel ) );
+
+    final CaptureFile captureFile = CaptureFile.open( this.file );
+    try
+    {
+      assertEquals( 4, captureFile.getBlockCount() );
+      assertEquals( 0, captureFile.findBlock( -1L ) );
+      assertEquals( 0, captureFile.findBlock( 0L ) );
+      final long secondBlockTimestamp = dataModel.getTimestamps()[CaptureFileWriter.BLOCK_SIZE];
+      assertEquals( 0, captureFile.findBlock( secondBlockTimestamp - 1L ) );
+      assertEquals( 1, captureFile.findBlock( secondBlockTimestamp ) );
+      assertEquals( 3, captureFile.findBlock( Long.MAX_VALUE ) );
+
+      final CaptureFile.Block block = captureFile.readBlock( 3 );
+      assertEquals( 10, block.getSampleCount() );
+      assertEquals( dataModel.getTimestamps()[size - 1], block.getTimestamp( 9 ) );
+      assertEquals( dataModel.getValues()[size - 1], block.getValue( 9 ) );
+    }
+    finally
+    {
+      captureFile.close();
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testMetadataRoundTrip() throws IOException
+  {
+    final SampleDataModel dataModel = createDataModel( 100 );
+    dataModel.setCursor( 2, 42L );
+    dataModel.getCursor( 2 ).setLabel( "trigger" );
+    dataModel.getCursor( 1 ).clear();
+
+    final ChannelGroupManager cgm = createChannelGroupManager( dataModel );
+    cgm.getAllChannels()[3].setLabel( "CLK" );
+    cgm.getAllChannels()[5].setEnabled( false );
+
+    final ChannelGroup group = cgm.getChannelGroups()[1];
+    cgm.addChannel( group, cgm.getAllChannels()[0] );
+
+    CaptureFileWriter.write( this.file, dataModel, ChannelLayout.valueOf( cgm ) );
+
+    final CaptureFile captureFile = CaptureFile.open( this.file );
+    try
+    {
+      assertEquals( "CLK", captureFile.getChannelLabel( 3 ) );
+      assertNull( captureFile.getChannelLabel( 4 ) );
+
+      final SampleDataModel copy = new SampleDataModel( captureFile.getSize(), captureFile.asSampleDataProvider() );
+      captureFile.applyCursors( copy );
+
+      assertTrue( copy.getCursor( 2 ).isDefined() );
+      assertEquals( 42L, copy.getCursor( 2 ).getTimestamp() );
+      assertEquals( "trigger", copy.getCursor( 2 ).getLabel() );
+      assertFalse( copy.getCursor( 1 ).isDefined() );
+
+      final ChannelGroupManager copyCgm = createChannelGroupManager( copy );
+      captureFile.applyChannelMetadata( copyCgm );
+
+      assertEquals( cgm.getChannelGroups().length, copyCgm.getChannelGroups().length );
+      for ( int i = 0; i < cgm.getChannelGroups().length; i++ )
+      {
+        final ChannelGroup expected = cgm.getChannelGroups()[i];
+        final ChannelGroup actual = copyCgm.getChannelGroups()[i];
+        assertEquals( expected.getName(), actual.getName() );
+        assertEquals( expected.getChannelCount(), actual.getChannelCount() );
+        for ( int j = 0; j < expected.getChannelCount(); j++ )
+        {
+          assertEquals( expected.getChannels()[j].getIndex(), actual.getChannels()[j].getIndex() );
+        }
+      }
+
+      assertEquals( "CLK", copyCgm.getAllChannels()[3].getLabel() );
+      assertFalse( copyCgm.getAllChannels()[5].isEnabled() );
+      assertTrue( copyCgm.getAllChannels()[6].isEnabled() );
+    }
+    finally
+    {
+      captureFile.close();
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testOverwriteReplacesExistingFile() throws IOException
+  {
+    final SampleDataModel dataModel = createDataModel( 1000 );
+    CaptureFileWriter.write( this.file, dataModel, createChannelLayout( dataModel ) );
+
+    final SampleDataModel smallerModel = createDataModel( 10 );
+    CaptureFileWriter.write( this.file, smallerModel, createChannelLayout( smallerModel ) );
+
+    assertFalse( new File( this.file.getPath() + ".tmp" ).exists() );
+
+    final CaptureFile captureFile = CaptureFile.open( this.file );
+    try
+    {
+      assertEquals( 10, captureFile.getSize() );
+    }
+    finally
+    {
+      captureFile.close();
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testSampleRoundTrip() throws IOException
+  {
+    final int size = ( 2 * CaptureFileWriter.BLOCK_SIZE ) + 1234;
+    final SampleDataModel dataModel = createDataModel( size );
+
+    CaptureFileWriter.write( this.file, dataModel, createChannelLayout( dataModel ) );
+
+    final CaptureFile captureFile = CaptureFile.open( this.file );
+    try
+    {
+      assertEquals( size, captureFile.getSize() );
+      assertEquals( dataModel.getSampleRate(), captureFile.getSampleRate() );
+
+      final SampleDataModel copy = new SampleDataModel( size, captureFile.asSampleDataProvider() );
+      assertArrayEquals( dataModel.getValues(), copy.getValues() );
+      assertArrayEquals( dataModel.getTimestamps(), copy.getTimestamps() );
+
+      // Range spanning a block boundary...
+      final int[] values = new int[100];
+      final long[] timestamps = new long[100];
+      captureFile.readSamples( CaptureFileWriter.BLOCK_SIZE - 50, 100, values, timestamps );
+      for ( int i = 0; i < 100; i++ )
+      {
+        assertEquals( dataModel.getValues()[CaptureFileWriter.BLOCK_SIZE - 50 + i], values[i] );
+        assertEquals( dataModel.getTimestamps()[CaptureFileWriter.BLOCK_SIZE - 50 + i], timestamps[i] );
+      }
+    }
+    finally
+    {
+      captureFile.close();
+    }
+  }
+
+  /**
+   * Creates a channel group manager with the default channel groups.
+   */
+  private ChannelGroupManager createChannelGroupManager( final SampleDataModel aDataModel )
+  {
+    final ChannelGroupManager result = new ChannelGroupManager();
+    result.dataModelChanged( aDataModel );
+    return result;
+  }
+
+  /**
+   * Creates a channel layout with the default channel groups.
+   */
+  private ChannelLayout createChannelLayout( final SampleDataModel aDataModel )
+  {
+    return ChannelLayout.valueOf( createChannelGroupManager( aDataModel ) );
+  }
+
+  /**
+   * Creates a data model with pseudo-random values and irregular timestamps.
+   */
+  private SampleDataModel createDataModel( final int aSize )
+  {
+    return new SampleDataModel( aSize, new SampleDataProvider()
+    {
+      @Override
+      public int getSampleData( final int[] aValues, final long[] aTimestamps, final int aSize2 )
+      {
+        long timestamp = 1L;
+        for ( int i = 0; i < aSize2; i++ )
+        {
+          aValues[i] = ( i * 0x9E3779B9 ) ^ ( i >>> 3 );
+          aTimestamps[i] = timestamp;
+          timestamp += 1 + ( i % 7 ) + ( ( i % 1000 ) == 0 ? 100000L : 0L );
+        }
+        return 100000000;
+      }
+    } );
+  }
+}
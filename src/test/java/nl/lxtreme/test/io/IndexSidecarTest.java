@@ -0,0 +1,139 @@
+package nl.lxtreme.test.io;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import nl.lxtreme.test.model.*;
+
+import org.junit.*;
+
+
+public class IndexSidecarTest
+{
+  // VARIABLES
+
+  private File file;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp() throws IOException
+  {
+    this.file = File.createTempFile( "capture", ".olsc.idx" );
+  }
+
+  /**
+   * 
+   */
+  @After
+  public void tearDown()
+  {
+    this.file.delete();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testContentHashDependsOnSampleData()
+  {
+    final int[] values = { 0, 1, 0, 1 };
+    final long[] timestamps = { 0L, 1L, 2L, 3L };
+
+    final long hash = IndexSidecar.computeContentHash( values, timestamps, 100 );
+    assertEquals( hash, IndexSidecar.computeContentHash( values.clone(), timestamps.clone(), 100 ) );
+    assertFalse( hash == IndexSidecar.computeContentHash( values, timestamps, 200 ) );
+
+    values[2] = 1;
+    assertFalse( hash == IndexSidecar.computeContentHash( values, timestamps, 100 ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testWriteAndOpenGlitchIndex() throws IOException
+  {
+    final GlitchIndex glitchIndex = GlitchIndex.valueOf( new int[] { 3, 0, 3 }, new long[] { 10L, 20L, 30L },
+        new long[] { 11L, 22L, 31L } );
+
+    final IndexSidecar sidecar = new IndexSidecar( 42L );
+    assertNull( sidecar.getGlitchIndex() );
+
+    sidecar.setGlitchIndex( 0x09, 5L, glitchIndex );
+    sidecar.write( this.file );
+
+    final IndexSidecar opened = IndexSidecar.open( this.file, 42L );
+    assertNotNull( opened );
+    assertEquals( 42L, opened.getContentHash() );
+    assertEquals( 0x09, opened.getGlitchMask() );
+    assertEquals( 5L, opened.getGlitchMaxWidth() );
+
+    final GlitchIndex openedIndex = opened.getGlitchIndex();
+    assertEquals( 3, openedIndex.size() );
+    for ( int i = 0; i < 3; i++ )
+    {
+      assertEquals( glitchIndex.getChannel( i ), openedIndex.getChannel( i ) );
+      assertEquals( glitchIndex.getStartTimestamp( i ), openedIndex.getStartTimestamp( i ) );
+      assertEquals( glitchIndex.getEndTimestamp( i ), openedIndex.getEndTimestamp( i ) );
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testStaleOrCorruptSidecarIsIgnored() throws IOException
+  {
+    final IndexSidecar sidecar = new IndexSidecar( 42L );
+    sidecar.setGlitchIndex( 0x01, 5L, GlitchIndex.valueOf( new int[] { 0 }, new long[] { 1L }, new long[] { 2L } ) );
+    sidecar.write( this.file );
+
+    assertNotNull( IndexSidecar.open( this.file, 42L ) );
+    // Different capture content...
+    assertNull( IndexSidecar.open( this.file, 43L ) );
+    // Missing file...
+    assertNull( IndexSidecar.open( new File( this.file.getPath() + ".missing" ), 42L ) );
+
+    final RandomAccessFile raf = new RandomAccessFile( this.file, "rw" );
+    try
+    {
+      raf.seek( raf.length() - 1L );
+      final int lastByte = raf.read();
+      raf.seek( raf.length() - 1L );
+      raf.write( lastByte ^ 0xFF );
+    }
+    finally
+    {
+      raf.close();
+    }
+
+    // Checksum mismatch...
+    assertNull( IndexSidecar.open( this.file, 42L ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testOpenedSidecarCanBeRewritten() throws IOException
+  {
+    final IndexSidecar sidecar = new IndexSidecar( 42L );
+    sidecar.setGlitchIndex( 0x01, 5L, GlitchIndex.valueOf( new int[] { 0 }, new long[] { 1L }, new long[] { 2L } ) );
+    sidecar.write( this.file );
+
+    // Rewrite the file it was mapped from, without decoding its sections...
+    final IndexSidecar opened = IndexSidecar.open( this.file, 42L );
+    opened.write( this.file );
+
+    final IndexSidecar reopened = IndexSidecar.open( this.file, 42L );
+    assertNotNull( reopened );
+    assertEquals( 1, reopened.getGlitchIndex().size() );
+    assertEquals( 2L, reopened.getGlitchIndex().getEndTimestamp( 0 ) );
+  }
+}
@@ -0,0 +1,174 @@
+package nl.lxtreme.test.io;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import nl.lxtreme.test.*;
+import nl.lxtreme.test.model.*;
+
+import org.junit.*;
+
+
+public class OlsImporterTest
+{
+  // METHODS
+
+  /**
+   * 
+   */
+  @Test
+  public void testReadHeadersAndSamples() throws IOException
+  {
+    final String data = ";Size: 3\r\n;Rate: 100000000\r\n;Channels: 32\r\n;EnabledChannels: 255\r\n"
+        + ";CursorEnabled: true\r\n;Cursor0: 1\r\n;Cursor3: 2\r\n;Cursor4: -1\r\n" //
+        + "000000ff@0\r\nDEADbeef@1\r\n0@12345678901";
+
+    final OlsImporter importer = new OlsImporter();
+    final SampleDataModel dataModel = read( importer, data, null );
+
+    assertEquals( 100000000, dataModel.getSampleRate() );
+    assertEquals( 255, importer.getEnabledChannelMask() );
+    assertArrayEquals( new int[] { 0xFF, 0xDEADBEEF, 0 }, dataModel.getValues() );
+    assertArrayEquals( new long[] { 0L, 1L, 12345678901L }, dataModel.getTimestamps() );
+
+    assertEquals( 1L, dataModel.getCursor( 0 ).getTimestamp() );
+    assertFalse( dataModel.getCursor( 1 ).isDefined() );
+    assertEquals( 2L, dataModel.getCursor( 3 ).getTimestamp() );
+    assertFalse( dataModel.getCursor( 4 ).isDefined() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testReadLargeFileWithoutSizeHeader() throws IOException
+  {
+    final int size = 3 * OlsImporter.INITIAL_CAPACITY + 17;
+
+    final StringBuilder sb = new StringBuilder( ";Rate: 1000\n" );
+    for ( int i = 0; i < size; i++ )
+    {
+      sb.append( Integer.toHexString( i * 31 ) ).append( '@' ).append( 2L * i ).append( '\n' );
+    }
+
+    final List<Integer> progress = new ArrayList<Integer>();
+    final SampleDataModel dataModel = read( new OlsImporter(), sb.toString(), new IProgressListener()
+    {
+      @Override
+      public void progressChanged( final int aPercentage )
+      {
+        progress.add( Integer.valueOf( aPercentage ) );
+      }
+    } );
+
+    assertEquals( size, dataModel.getSize() );
+    for ( int i = 0; i < size; i++ )
+    {
+      assertEquals( i * 31, dataModel.getValues()[i] );
+      assertEquals( 2L * i, dataModel.getTimestamps()[i] );
+    }
+
+    assertFalse( progress.isEmpty() );
+    assertEquals( Integer.valueOf( 100 ), progress.get( progress.size() - 1 ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testPartialDataIsPublished() throws IOException
+  {
+    final int size = OlsImporter.PREVIEW_SIZE + 10;
+
+    final StringBuilder sb = new StringBuilder( ";Rate: 1000\n" );
+    for ( int i = 0; i < size; i++ )
+    {
+      sb.append( Integer.toHexString( i ) ).append( '@' ).append( i ).append( '\n' );
+    }
+
+    final List<SampleDataModel> previews = new ArrayList<SampleDataModel>();
+
+    final OlsImporter importer = new OlsImporter();
+    importer.setPartialDataListener( new IPartialDataListener()
+    {
+      @Override
+      public void partialDataAvailable( final SampleDataModel aDataModel )
+      {
+        previews.add( aDataModel );
+      }
+    } );
+
+    final SampleDataModel dataModel = read( importer, sb.toString(), null );
+
+    assertEquals( size, dataModel.getSize() );
+    assertEquals( 1, previews.size() );
+
+    final SampleDataModel preview = previews.get( 0 );
+    assertEquals( OlsImporter.PREVIEW_SIZE, preview.getSize() );
+    assertEquals( 1000, preview.getSampleRate() );
+    assertEquals( OlsImporter.PREVIEW_SIZE - 1, preview.getValues()[OlsImporter.PREVIEW_SIZE - 1] );
+    assertNotSame( dataModel.getValues(), preview.getValues() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testReadStateCapture() throws IOException
+  {
+    final String data = ";Size: 2\n;Rate: -1\n;Channels: 32\n01@0\n02@1\n";
+    final SampleDataModel dataModel = read( new OlsImporter(), data, null );
+
+    // State captures have no sample rate...
+    assertEquals( 1, dataModel.getSampleRate() );
+    assertArrayEquals( new int[] { 0x01, 0x02 }, dataModel.getValues() );
+    assertArrayEquals( new long[] { 0L, 1L }, dataModel.getTimestamps() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testRejectInvalidSample()
+  {
+    try
+    {
+      read( new OlsImporter(), ";Rate: 1\n00@0\n0x1@1\n", null );
+      fail( "Expected IOException!" );
+    }
+    catch ( IOException exception )
+    {
+      assertTrue( exception.getMessage().contains( "line 3" ) );
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testRejectMissingSampleRate()
+  {
+    try
+    {
+      read( new OlsImporter(), "00@0\n", null );
+      fail( "Expected IOException!" );
+    }
+    catch ( IOException exception )
+    {
+      // Ok; expected...
+    }
+  }
+
+  /**
+   * Imports the given OLS data.
+   */
+  private SampleDataModel read( final OlsImporter aImporter, final String aData, final IProgressListener aListener )
+      throws IOException
+  {
+    final byte[] bytes = aData.getBytes( "US-ASCII" );
+    return aImporter.read( new ByteArrayInputStream( bytes ), bytes.length, aListener );
+  }
+}
@@ -0,0 +1,114 @@
+package nl.lxtreme.test.io;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import nl.lxtreme.test.model.*;
+
+import org.junit.*;
+
+
+public class SampleExporterTest
+{
+  // VARIABLES
+
+  private ExecutorService executor;
+  private File file;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp() throws IOException
+  {
+    this.executor = Executors.newFixedThreadPool( 4 );
+    this.file = File.createTempFile( "samples", ".csv" );
+  }
+
+  /**
+   * 
+   */
+  @After
+  public void tearDown()
+  {
+    this.executor.shutdownNow();
+    this.file.delete();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testExportCsvRangeInOrder() throws IOException
+  {
+    final int size = ( 5 * SampleExporter.CHUNK_SIZE ) + 123;
+    final int[] values = new int[size];
+    final long[] timestamps = new long[size];
+    for ( int i = 0; i < size; i++ )
+    {
+      values[i] = i * 0x01010101;
+      timestamps[i] = 3L * i;
+    }
+
+    // Range boundaries between samples...
+    final int count = SampleExporter.export( this.file, values, timestamps, 1000, 0xFFFF0000, 4L,
+        3L * ( size - 2 ) + 1, SampleExporter.Format.CSV, this.executor, null );
+    assertEquals( size - 3, count );
+
+    final BufferedReader reader = new BufferedReader( new FileReader( this.file ) );
+    try
+    {
+      assertEquals( "timestamp,value", reader.readLine() );
+      for ( int i = 2; i < ( size - 1 ); i++ )
+      {
+        assertEquals( String.format( "%d,%08x", Long.valueOf( timestamps[i] ),
+            Integer.valueOf( values[i] & 0xFFFF0000 ) ), reader.readLine() );
+      }
+      assertNull( reader.readLine() );
+    }
+    finally
+    {
+      reader.close();
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testExportHexIsImportable() throws IOException
+  {
+    final int[] values = { 0x0, 0xDEADBEEF, 0x7FFFFFFF, 0x80000000 };
+    final long[] timestamps = { 0L, 1L, 1234567890123L, Long.MAX_VALUE };
+
+    SampleExporter.export( this.file, values, timestamps, 200000000, 0xFFFFFFFF, 0L, Long.MAX_VALUE,
+        SampleExporter.Format.HEX, this.executor, null );
+
+    final OlsImporter importer = new OlsImporter();
+    final SampleDataModel dataModel = importer.read( this.file, null );
+
+    assertEquals( 200000000, dataModel.getSampleRate() );
+    assertArrayEquals( values, dataModel.getValues() );
+    assertArrayEquals( timestamps, dataModel.getTimestamps() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testPutDecimal()
+  {
+    final long[] numbers = { 0L, 7L, 10L, 999L, -42L, Long.MAX_VALUE, Long.MIN_VALUE };
+    for ( long number : numbers )
+    {
+      final byte[] buffer = new byte[SampleExporter.MAX_LINE_LENGTH];
+      final int length = SampleExporter.putDecimal( buffer, 0, number );
+      assertEquals( Long.toString( number ), new String( buffer, 0, length ) );
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package nl.lxtreme.test.io;
+
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import nl.lxtreme.test.model.*;
+
+import org.junit.*;
+
+
+public class VcdImporterTest
+{
+  // CONSTANTS
+
+  private static final String VCD = "$date today $end\n" //
+      + "$version simulator $end\n" //
+      + "$timescale 10ns $end\n" //
+      + "$scope module top $end\n" //
+      + "$var wire 1 ! clk $end\n" //
+      + "$var wire 1 \" rst $end\n" //
+      + "$var wire 4 # data [3:0] $end\n" //
+      + "$var real 64 $ level $end\n" //
+      + "$scope module sub $end\n" //
+      + "$var wire 1 ! clk_alias $end\n" //
+      + "$var wire 1 %a cs $end\n" //
+      + "$upscope $end\n" //
+      + "$upscope $end\n" //
+      + "$enddefinitions $end\n" //
+      + "$comment initial values $end\n" //
+      + "#0\n$dumpvars\n0!\n1\"\nbx #\nr0.5 $\nz%a\n$end\n" //
+      + "#5\n1!\n0\"\nb1010 #\n" //
+      + "#7\nr1.5 $\n" // no change of any mapped channel...
+      + "#10\n0!\nb11 #\n1%a\n" //
+      + "#20\n";
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Test
+  public void testExportImportRoundTrip() throws IOException
+  {
+    final int[] values = { 0x0, 0x1, 0x3, 0x2, 0x6, 0x6, 0x4 };
+    final long[] timestamps = { 0L, 10L, 20L, 30L, 40L, 50L, 60L };
+    final SampleDataModel dataModel = new SampleDataModel( values, timestamps, 100000000 );
+
+    final ChannelGroupManager cgm = new ChannelGroupManager();
+    cgm.dataModelChanged( dataModel );
+    cgm.getAllChannels()[0].setLabel( "clock" );
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    // Only channels 0 and 1, from 15 until 45...
+    VcdExporter.write( output, values, timestamps, 100000000, ChannelLayout.valueOf( cgm ), 0x3, 15L, 45L,
+        null /* aListener */);
+
+    final String vcd = output.toString( "US-ASCII" );
+    assertTrue( vcd.contains( "$timescale 10 ns $end" ) );
+    assertTrue( vcd.contains( "$var wire 1 ! clock $end" ) );
+    assertTrue( vcd.contains( "$var wire 1 \" channel1 $end" ) );
+    assertFalse( vcd.contains( "channel2" ) );
+
+    final VcdImporter importer = new VcdImporter();
+    final SampleDataModel copy = read( importer, vcd );
+
+    assertEquals( 100000000, copy.getSampleRate() );
+    assertEquals( "clock", importer.getChannelLabel( 0 ) );
+    // Sample 40 does not change channels 0 and 1 (only channel 2)...
+    assertArrayEquals( new long[] { 15L, 20L, 30L, 45L }, copy.getTimestamps() );
+    assertArrayEquals( new int[] { 0x1, 0x3, 0x2, 0x2 }, copy.getValues() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testExportUsesChannelLayoutTakenBefore() throws IOException
+  {
+    final int[] values = { 0x0, 0x1 };
+    final long[] timestamps = { 0L, 10L };
+    final SampleDataModel dataModel = new SampleDataModel( values, timestamps, 100000000 );
+
+    final ChannelGroupManager cgm = new ChannelGroupManager();
+    cgm.dataModelChanged( dataModel );
+    cgm.getAllChannels()[0].setLabel( "clock" );
+
+    final ChannelLayout channelLayout = ChannelLayout.valueOf( cgm );
+    // Edited while exporting...
+    cgm.getAllChannels()[0].setLabel( "data" );
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    VcdExporter.write( output, values, timestamps, 100000000, channelLayout, 0x1, 0L, 10L, null /* aListener */);
+
+    assertTrue( output.toString( "US-ASCII" ).contains( "$var wire 1 ! clock $end" ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testReadValueChanges() throws IOException
+  {
+    final VcdImporter importer = new VcdImporter();
+    final SampleDataModel dataModel = read( importer, VCD );
+
+    // 10ns timescale...
+    assertEquals( 100000000, dataModel.getSampleRate() );
+
+    // clk = ch0, rst = ch1, data = ch2..5, cs = ch6; aliases are ignored...
+    assertEquals( 7, importer.getChannelCount() );
+    assertEquals( "clk", importer.getChannelLabel( 0 ) );
+    assertEquals( "data[3]", importer.getChannelLabel( 5 ) );
+    assertEquals( "cs", importer.getChannelLabel( 6 ) );
+
+    assertArrayEquals( new long[] { 0L, 5L, 10L, 20L }, dataModel.getTimestamps() );
+    assertArrayEquals( new int[] { 0x02, 0x29, 0x4C, 0x4C }, dataModel.getValues() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testChannelGroups() throws IOException
+  {
+    final VcdImporter importer = new VcdImporter();
+    final SampleDataModel dataModel = read( importer, VCD );
+
+    final ChannelGroupManager cgm = new ChannelGroupManager();
+    cgm.dataModelChanged( dataModel );
+    importer.applyChannelMetadata( cgm );
+
+    final ChannelGroup[] groups = cgm.getChannelGroups();
+    assertEquals( 3, groups.length );
+    assertEquals( "top", groups[0].getName() );
+    assertEquals( 2, groups[0].getChannelCount() );
+    assertEquals( "data", groups[1].getName() );
+    assertEquals( 4, groups[1].getChannelCount() );
+    assertEquals( "top.sub", groups[2].getName() );
+    assertEquals( 6, groups[2].getChannels()[0].getIndex() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testScaleSubNanosecondTimescale() throws IOException
+  {
+    final String vcd = "$timescale 100ps $end\n$var wire 1 ! a $end\n$enddefinitions $end\n" //
+        + "#0\n0!\n#25\n1!\n#26\n0!\n#30\n1!\n";
+    final SampleDataModel dataModel = read( new VcdImporter(), vcd );
+
+    assertEquals( 1000000000, dataModel.getSampleRate() );
+    // #25 and #26 both map onto 2ns; the last value wins...
+    assertArrayEquals( new long[] { 0L, 2L, 3L }, dataModel.getTimestamps() );
+    assertArrayEquals( new int[] { 0, 0, 1 }, dataModel.getValues() );
+  }
+
+  /**
+   * Imports the given VCD data.
+   */
+  private SampleDataModel read( final VcdImporter aImporter, final String aData ) throws IOException
+  {
+    final byte[] bytes = aData.getBytes( "US-ASCII" );
+    return aImporter.read( new ByteArrayInputStream( bytes ), bytes.length, null );
+  }
+}
@@ -0,0 +1,126 @@
+package nl.lxtreme.test.model;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+
+public class ActivitySummaryTest
+{
+  // CONSTANTS
+
+  private static final int[] MASKS = { 0x0F, 0xF0, 0x01 };
+
+  // VARIABLES
+
+  private int[] values;
+  private long[] timestamps;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp()
+  {
+    final Random random = new Random( 42L );
+
+    final int size = 50000;
+    this.values = new int[size];
+    this.timestamps = new long[size];
+
+    long timestamp = 0L;
+    for ( int i = 0; i < size; i++ )
+    {
+      // Mostly quiet, with some bursts of activity...
+      this.values[i] = ( ( i / 1000 ) % 3 == 0 ) ? random.nextInt( 256 ) : ( i % 7 );
+      this.timestamps[i] = timestamp;
+      timestamp += 1 + random.nextInt( 100 );
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testActivityEqualsBruteForce()
+  {
+    final ActivitySummary summary = ActivitySummary.compute( this.values, this.timestamps, MASKS, 1024 );
+    assertEquals( MASKS.length, summary.getGroupCount() );
+
+    for ( int parts : new int[] { 1, 16, 256, 1024 } )
+    {
+      for ( int g = 0; g < MASKS.length; g++ )
+      {
+        assertArrayEquals( countTransitions( MASKS[g], parts ), summary.getActivity( g, parts ) );
+      }
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testEmptyCapture()
+  {
+    final ActivitySummary summary = ActivitySummary.compute( new int[0], new long[0], MASKS, 100 );
+
+    assertEquals( 0L, summary.getLength() );
+    assertArrayEquals( new int[10], summary.getActivity( 0, 10 ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testTotalActivityIsPreserved()
+  {
+    final ActivitySummary summary = ActivitySummary.compute( this.values, this.timestamps, MASKS,
+        ActivitySummary.DEFAULT_RESOLUTION );
+
+    for ( int g = 0; g < MASKS.length; g++ )
+    {
+      final int expected = sum( countTransitions( MASKS[g], 1 ) );
+      for ( int parts : new int[] { 3, 300, 1000, 4096 } )
+      {
+        assertEquals( expected, sum( summary.getActivity( g, parts ) ) );
+      }
+    }
+  }
+
+  /**
+   * Counts the transitions of the given mask in a naive way.
+   */
+  private int[] countTransitions( final int aMask, final int aParts )
+  {
+    final long start = this.timestamps[0];
+    final long length = ( this.timestamps[this.timestamps.length - 1] + 1L ) - start;
+
+    final int[] result = new int[aParts];
+    for ( int i = 1; i < this.values.length; i++ )
+    {
+      if ( ( ( this.values[i] ^ this.values[i - 1] ) & aMask ) != 0 )
+      {
+        result[( int )( ( ( double )( this.timestamps[i] - start ) * aParts ) / length )]++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Adds up all given counts.
+   */
+  private static int sum( final int[] aCounts )
+  {
+    int result = 0;
+    for ( int count : aCounts )
+    {
+      result += count;
+    }
+    return result;
+  }
+}
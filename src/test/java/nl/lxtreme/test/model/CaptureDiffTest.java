@@ -0,0 +1,110 @@
+package nl.lxtreme.test.model;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+
+public class CaptureDiffTest
+{
+  // VARIABLES
+
+  private ExecutorService executor;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp()
+  {
+    this.executor = Executors.newFixedThreadPool( 4 );
+  }
+
+  /**
+   * 
+   */
+  @After
+  public void tearDown()
+  {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testCompareDifferentSampleMoments() throws Exception
+  {
+    // Capture A: bit 0 high in [10, 20); capture B: bit 0 high in [15, 20)...
+    final int[] valuesA = { 0, 1, 0, 0 };
+    final long[] tsA = { 0, 10, 20, 30 };
+    final int[] valuesB = { 0, 1, 0 };
+    final long[] tsB = { 0, 15, 20 };
+
+    final CaptureDiff diff = CaptureDiff.compare( valuesA, tsA, valuesB, tsB, 0x01, this.executor );
+
+    assertEquals( 1, diff.getDifferenceCount( 0 ) );
+    assertEquals( 10L, diff.getStartTimestamp( 0, 0 ) );
+    assertEquals( 15L, diff.getEndTimestamp( 0, 0 ) );
+    assertEquals( 0, diff.getDifferenceCount( 1 ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testCompareEqualCaptures() throws Exception
+  {
+    final int[] values = { 1, 2, 3, 4 };
+    final long[] ts = { 0, 1, 2, 3 };
+
+    assertTrue( CaptureDiff.compare( values, ts, values.clone(), ts.clone(), 0xFFFFFFFF, this.executor ).isEmpty() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testParallelCompareEqualsSequentialCompare() throws Exception
+  {
+    final Random rnd = new Random( 9876L );
+
+    final int size = 3 * CaptureDiff.MIN_CHUNK_SIZE + 5;
+    final int[] valuesA = new int[size];
+    final long[] tsA = new long[size];
+    final int[] valuesB = new int[size];
+    final long[] tsB = new long[size];
+    for ( int i = 0; i < size; i++ )
+    {
+      valuesA[i] = rnd.nextInt( 16 );
+      valuesB[i] = ( rnd.nextInt( 8 ) == 0 ) ? rnd.nextInt( 16 ) : valuesA[i];
+      tsA[i] = 2L * i;
+      tsB[i] = ( 2L * i ) + ( i % 2 );
+    }
+
+    final CaptureDiff diff = CaptureDiff.compare( valuesA, tsA, valuesB, tsB, 0x0F, this.executor );
+    final long end = Math.min( tsA[size - 1], tsB[size - 1] );
+    final long[][] expected = CaptureDiff.compare( valuesA, tsA, valuesB, tsB, 0x0F, 0L, end );
+
+    for ( int bit = 0; bit < 4; bit++ )
+    {
+      assertEquals( expected[bit].length / 2, diff.getDifferenceCount( bit ) );
+      for ( int i = 0; i < diff.getDifferenceCount( bit ); i++ )
+      {
+        assertEquals( expected[bit][2 * i], diff.getStartTimestamp( bit, i ) );
+        assertEquals( expected[bit][( 2 * i ) + 1], diff.getEndTimestamp( bit, i ) );
+      }
+    }
+
+    // Lookup of the first visible difference...
+    final int idx = diff.findFirstDifference( 0, 1000L );
+    assertTrue( diff.getEndTimestamp( 0, idx ) > 1000L );
+    assertTrue( ( idx == 0 ) || ( diff.getEndTimestamp( 0, idx - 1 ) <= 1000L ) );
+  }
+}
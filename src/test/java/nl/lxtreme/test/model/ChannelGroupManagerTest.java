@@ -0,0 +1,153 @@
+package nl.lxtreme.test.model;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+
+public class ChannelGroupManagerTest
+{
+  // VARIABLES
+
+  private ChannelGroupManager manager;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp()
+  {
+    this.manager = new ChannelGroupManager();
+    this.manager.dataModelChanged( new SampleDataModel( new int[] { 0, 1 }, new long[] { 0L, 1L }, 100 ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testAddChannelGroupTakesFirstUnassignedChannel()
+  {
+    final ChannelGroup cg = this.manager.getChannelGroups()[1];
+    this.manager.removeChannel( cg, cg.getChannels()[3] );
+    this.manager.removeChannel( cg, cg.getChannels()[0] );
+
+    final ChannelGroup newCG = this.manager.addChannelGroup( "New group" );
+    assertEquals( 1, newCG.getChannelCount() );
+    assertEquals( 8, newCG.getChannels()[0].getIndex() );
+    assertSame( newCG, this.manager.getChannelByIndex( 8 ).getChannelGroup() );
+    assertNull( this.manager.getChannelByIndex( 11 ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testChannelLookupsByIndex()
+  {
+    final Channel[] channels = this.manager.getAllChannels();
+    assertEquals( 32, channels.length );
+
+    for ( int i = 0; i < channels.length; i++ )
+    {
+      assertTrue( this.manager.isAssigned( i ) );
+      assertSame( channels[i], this.manager.getChannelByIndex( i ) );
+      assertSame( channels[i], this.manager.getChannel( i ) );
+      assertEquals( i, channels[i].getIndex() );
+    }
+
+    assertFalse( this.manager.isAssigned( -1 ) );
+    assertFalse( this.manager.isAssigned( 32 ) );
+    assertNull( this.manager.getChannelByIndex( -1 ) );
+    assertNull( this.manager.getChannelByIndex( 32 ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testDataModelChangedResetsChannelGroups()
+  {
+    this.manager.removeChannelGroup( "Group 2" );
+    this.manager.addChannelGroup( "Extra" );
+
+    this.manager.dataModelChanged( new SampleDataModel( new int[] { 0, 1 }, new long[] { 0L, 1L }, 100 ) );
+
+    final ChannelGroup[] groups = this.manager.getChannelGroups();
+    assertEquals( 4, groups.length );
+    for ( int i = 0; i < groups.length; i++ )
+    {
+      assertEquals( "Group " + ( i + 1 ), groups[i].getName() );
+      assertEquals( 8, groups[i].getChannelCount() );
+    }
+    assertTrue( this.manager.getUnassignedChannels().isEmpty() );
+
+    try
+    {
+      this.manager.addChannelGroup( "Extra" );
+      fail( "Expected IllegalStateException!" );
+    }
+    catch ( IllegalStateException exception )
+    {
+      // Ok; expected...
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testRemoveChannelGroupReleasesChannels()
+  {
+    this.manager.removeChannelGroup( "Group 3" );
+
+    assertEquals( 3, this.manager.getChannelGroups().length );
+    assertNull( this.manager.getChannelGroupByName( "Group 3" ) );
+    assertTrue( this.manager.canAddChannelGroup() );
+
+    final SortedSet<Channel> unassigned = this.manager.getUnassignedChannels();
+    assertEquals( 8, unassigned.size() );
+    assertEquals( 16, unassigned.first().getIndex() );
+    assertEquals( 23, unassigned.last().getIndex() );
+    assertEquals( 24, this.manager.getAssignedChannels().size() );
+
+    for ( int i = 16; i < 24; i++ )
+    {
+      assertFalse( this.manager.isAssigned( i ) );
+      assertNull( this.manager.getChannelByIndex( i ) );
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testUnassignedChannelSetsFollowAssignment()
+  {
+    assertEquals( 32, this.manager.getAssignedChannels().size() );
+    assertTrue( this.manager.getUnassignedChannels().isEmpty() );
+    assertFalse( this.manager.canAddChannelGroup() );
+
+    final ChannelGroup cg = this.manager.getChannelGroups()[0];
+    final Channel channel = cg.getChannels()[2];
+    this.manager.removeChannel( cg, channel );
+
+    assertEquals( 31, this.manager.getAssignedChannels().size() );
+    assertEquals( Collections.singleton( channel ), this.manager.getUnassignedChannels() );
+    assertFalse( cg.hasChannel( channel ) );
+    assertTrue( this.manager.canAddChannelGroup() );
+
+    // Moving it to another group assigns it again...
+    final ChannelGroup otherCG = this.manager.getChannelGroups()[2];
+    this.manager.addChannel( otherCG, channel );
+
+    assertTrue( otherCG.hasChannel( channel ) );
+    assertTrue( this.manager.isAssigned( channel.getIndex() ) );
+    assertTrue( this.manager.getUnassignedChannels().isEmpty() );
+    assertEquals( 32, this.manager.getAssignedChannels().size() );
+  }
+}
@@ -0,0 +1,59 @@
+package nl.lxtreme.test.model;
+
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+
+public class DataSnapshotTest
+{
+  // METHODS
+
+  /**
+   * 
+   */
+  @Test
+  public void testAbsoluteLength()
+  {
+    assertEquals( -1L, DataSnapshot.EMPTY.getAbsoluteLength() );
+
+    final DataSnapshot snapshot = new DataSnapshot( 1L, new int[] { 0, 1, 0 }, new long[] { 10L, 20L, 30L }, 100, 8 );
+    assertEquals( 21L, snapshot.getAbsoluteLength() );
+    assertEquals( 3, snapshot.getSampleCount() );
+    assertEquals( 100, snapshot.getSampleRate() );
+    assertEquals( 8, snapshot.getSampleWidth() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testMismatchingLengthsAreRejected()
+  {
+    try
+    {
+      new DataSnapshot( 1L, new int[2], new long[3], 100, 8 );
+      fail( "Expected IllegalArgumentException!" );
+    }
+    catch ( IllegalArgumentException exception )
+    {
+      // Ok; expected...
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testTimestampIndex()
+  {
+    final DataSnapshot snapshot = new DataSnapshot( 1L, new int[] { 0, 1, 0, 1 }, new long[] { 0L, 5L, 10L, 15L },
+        100, 8 );
+
+    assertEquals( 0, snapshot.getTimestampIndex( 0L ) );
+    assertEquals( 1, snapshot.getTimestampIndex( 5L ) );
+    assertEquals( 2, snapshot.getTimestampIndex( 10L ) );
+    assertEquals( 3, snapshot.getTimestampIndex( 15L ) );
+  }
+}
@@ -0,0 +1,156 @@
+package nl.lxtreme.test.model;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+
+public class GlitchDetectorTest
+{
+  // VARIABLES
+
+  private ExecutorService executor;
+  private int[] values;
+  private long[] timestamps;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp()
+  {
+    this.executor = Executors.newFixedThreadPool( 4 );
+
+    final Random rnd = new Random( 4321L );
+
+    final int size = 3 * GlitchDetector.MIN_CHUNK_SIZE + 11;
+    this.values = new int[size];
+    this.timestamps = new long[size];
+
+    int value = 0;
+    long timestamp = 0L;
+    for ( int i = 0; i < size; i++ )
+    {
+      // Toggle a few channels now and then...
+      if ( rnd.nextInt( 4 ) == 0 )
+      {
+        value ^= 1 << rnd.nextInt( 8 );
+      }
+      this.values[i] = value;
+      this.timestamps[i] = timestamp;
+      timestamp += 1 + rnd.nextInt( 3 );
+    }
+  }
+
+  /**
+   * 
+   */
+  @After
+  public void tearDown()
+  {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testDetectEqualsBruteForce() throws Exception
+  {
+    final int mask = 0x0F;
+    final long maxWidth = 12L;
+
+    final GlitchIndex index = new GlitchDetector().detect( this.values, this.timestamps, mask, maxWidth,
+        this.executor );
+
+    assertGlitchesEqual( bruteForce( mask, maxWidth ), index );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testIncrementalDetectEqualsFreshDetect() throws Exception
+  {
+    final GlitchDetector detector = new GlitchDetector();
+
+    detector.detect( this.values, this.timestamps, 0x03, 20L, this.executor );
+    // Smaller width, more channels...
+    final GlitchIndex index = detector.detect( this.values, this.timestamps, 0x1F, 8L, this.executor );
+
+    assertGlitchesEqual( bruteForce( 0x1F, 8L ), index );
+
+    // Only a smaller width...
+    assertGlitchesEqual( bruteForce( 0x1F, 5L ),
+        detector.detect( this.values, this.timestamps, 0x1F, 5L, this.executor ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testNavigation() throws Exception
+  {
+    final GlitchIndex index = new GlitchDetector().detect( this.values, this.timestamps, 0xFF, 6L, this.executor );
+    assertTrue( index.size() > 2 );
+
+    assertEquals( 0, index.findNext( -1L ) );
+    assertEquals( 1, index.findNext( index.getStartTimestamp( 0 ) ) );
+    assertEquals( -1, index.findPrevious( index.getStartTimestamp( 0 ) ) );
+    assertEquals( index.size() - 1, index.findPrevious( Long.MAX_VALUE ) );
+  }
+
+  /**
+   * Asserts that the given glitch index contains exactly the given glitches.
+   */
+  private void assertGlitchesEqual( final List<String> aExpected, final GlitchIndex aActual )
+  {
+    final List<String> actual = new ArrayList<String>();
+    for ( int i = 0; i < aActual.size(); i++ )
+    {
+      if ( i > 0 )
+      {
+        assertTrue( aActual.getStartTimestamp( i - 1 ) <= aActual.getStartTimestamp( i ) );
+      }
+      actual.add( aActual.getChannel( i ) + "@" + aActual.getStartTimestamp( i ) + "-" + aActual.getEndTimestamp( i ) );
+    }
+    Collections.sort( actual );
+    assertEquals( aExpected, actual );
+  }
+
+  /**
+   * Finds all glitches on the given channels, one channel at a time.
+   */
+  private List<String> bruteForce( final int aMask, final long aMaxWidth )
+  {
+    final List<String> result = new ArrayList<String>();
+    for ( int bit = 0; bit < 32; bit++ )
+    {
+      if ( ( aMask & ( 1 << bit ) ) == 0 )
+      {
+        continue;
+      }
+
+      int lastEdge = -1;
+      for ( int i = 1; i < this.values.length; i++ )
+      {
+        if ( ( ( this.values[i - 1] ^ this.values[i] ) & ( 1 << bit ) ) != 0 )
+        {
+          if ( ( lastEdge >= 0 ) && ( ( this.timestamps[i] - this.timestamps[lastEdge] ) < aMaxWidth ) )
+          {
+            result.add( bit + "@" + this.timestamps[lastEdge] + "-" + this.timestamps[i] );
+          }
+          lastEdge = i;
+        }
+      }
+    }
+    Collections.sort( result );
+    return result;
+  }
+}
@@ -0,0 +1,63 @@
+package nl.lxtreme.test.model;
+
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+
+public class PulseHistogramTest
+{
+  // METHODS
+
+  /**
+   * 
+   */
+  @Test
+  public void testBinBoundsContainWidth()
+  {
+    for ( long width = 1L; width < 100000L; width += 1 + ( width / 7 ) )
+    {
+      final int bin = PulseHistogram.getBin( width );
+      assertTrue( PulseHistogram.getBinLowerBound( bin ) <= width );
+      assertTrue( width < PulseHistogram.getBinUpperBound( bin ) );
+    }
+    assertTrue( PulseHistogram.getBin( Long.MAX_VALUE ) < PulseHistogram.BIN_COUNT );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testCachedHistogramIsReused() throws Exception
+  {
+    final int[] values = new int[] { 0, 1, 0, 1, 0 };
+    final long[] ts = new long[] { 0, 1, 2, 3, 4 };
+
+    final PulseHistogramCache cache = new PulseHistogramCache();
+    final PulseHistogram first = cache.getHistogram( values, ts, 1, 0, 4, null );
+
+    assertSame( first, cache.getHistogram( values, ts, 1, 0, 4, null ) );
+    assertNotSame( first, cache.getHistogram( values.clone(), ts, 1, 0, 4, null ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testSimpleClockSignal() throws Exception
+  {
+    // High for 2, low for 4 time units...
+    final int[] values = new int[] { 0, 1, 0, 1, 0, 1, 0 };
+    final long[] ts = new long[] { 0, 4, 6, 10, 12, 16, 18 };
+
+    final PulseHistogram histogram = PulseHistogram.compute( values, ts, 1, 0, values.length - 1, null );
+
+    assertEquals( 3L, histogram.getHighWidthCount( PulseHistogram.getBin( 2L ) ) );
+    assertEquals( 2L, histogram.getLowWidthCount( PulseHistogram.getBin( 4L ) ) );
+    assertEquals( 2L, histogram.getPeriodCount( PulseHistogram.getBin( 6L ) ) );
+    assertEquals( 5L, histogram.getPulseCount() );
+    assertEquals( 2L, histogram.getMinHighWidth() );
+    assertEquals( 6L, histogram.getMaxPeriod() );
+  }
+}
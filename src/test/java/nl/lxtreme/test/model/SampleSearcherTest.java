@@ -0,0 +1,169 @@
+package nl.lxtreme.test.model;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+
+public class SampleSearcherTest
+{
+  // VARIABLES
+
+  private int[] values;
+  private long[] timestamps;
+  private ExecutorService executor;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp()
+  {
+    final Random rnd = new Random( 2468L );
+
+    final int size = 3 * SampleSearcher.MIN_CHUNK_SIZE + 11;
+    this.values = new int[size];
+    this.timestamps = new long[size];
+
+    for ( int i = 0; i < size; i++ )
+    {
+      this.values[i] = rnd.nextInt();
+      this.timestamps[i] = 2L * i;
+    }
+
+    this.executor = Executors.newFixedThreadPool( 3 );
+  }
+
+  /**
+   * 
+   */
+  @After
+  public void tearDown()
+  {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testEdgeSearchWalksAllMatches() throws Exception
+  {
+    final SearchCondition condition = SearchCondition.createEdgeCondition( 0x0F00, 0x0001 );
+    final SearchResult result = SampleSearcher.search( this.values, this.timestamps, condition, this.executor );
+
+    final List<Long> expected = naiveSearch( condition );
+    assertEquals( expected.size(), result.getMatchCount() );
+
+    final List<Long> forward = new ArrayList<Long>();
+    for ( long ts = result.findNext( -1L ); ts >= 0L; ts = result.findNext( ts ) )
+    {
+      forward.add( Long.valueOf( ts ) );
+    }
+    assertEquals( expected, forward );
+
+    final List<Long> backward = new ArrayList<Long>();
+    final long end = this.timestamps[this.timestamps.length - 1] + 1L;
+    for ( long ts = result.findPrevious( end ); ts >= 0L; ts = result.findPrevious( ts ) )
+    {
+      backward.add( 0, Long.valueOf( ts ) );
+    }
+    assertEquals( expected, backward );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testFindNextAndPrevious() throws Exception
+  {
+    final SearchCondition condition = SearchCondition.createValueCondition( 0xFF, 0x5A );
+    final SearchResult result = SampleSearcher.search( this.values, this.timestamps, condition, this.executor );
+
+    final List<Long> expected = naiveSearch( condition );
+
+    final long middle = this.timestamps[this.timestamps.length / 2];
+    long next = -1L;
+    long previous = -1L;
+    for ( Long timestamp : expected )
+    {
+      if ( ( timestamp.longValue() > middle ) && ( next < 0L ) )
+      {
+        next = timestamp.longValue();
+      }
+      if ( timestamp.longValue() < middle )
+      {
+        previous = timestamp.longValue();
+      }
+    }
+
+    assertEquals( next, result.findNext( middle ) );
+    assertEquals( previous, result.findPrevious( middle ) );
+    assertEquals( -1L, result.findPrevious( 0L ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testPagedResultEqualsNaiveSearch() throws Exception
+  {
+    final SearchCondition condition = new SearchCondition( 0x0F, 0x03, 1 << 8, 1 << 9 );
+    final SearchResult result = SampleSearcher.search( this.values, this.timestamps, condition, this.executor );
+
+    final List<Long> expected = naiveSearch( condition );
+    assertEquals( expected.size(), result.getMatchCount() );
+
+    final List<Long> actual = new ArrayList<Long>();
+    for ( int page = 0; page < result.getPageCount(); page++ )
+    {
+      for ( long timestamp : result.getPage( page ) )
+      {
+        actual.add( Long.valueOf( timestamp ) );
+      }
+    }
+    assertEquals( expected, actual );
+  }
+
+  /**
+   * Searches the sample data sample by sample, channel by channel.
+   */
+  private List<Long> naiveSearch( final SearchCondition aCondition )
+  {
+    final List<Long> result = new ArrayList<Long>();
+    for ( int i = 0; i < this.values.length; i++ )
+    {
+      boolean match = true;
+      for ( int bit = 0; match && ( bit < 32 ); bit++ )
+      {
+        final int mask = 1 << bit;
+        final boolean current = ( this.values[i] & mask ) != 0;
+        final boolean previous = ( i > 0 ) && ( ( this.values[i - 1] & mask ) != 0 );
+
+        if ( ( aCondition.getMask() & mask ) != 0 )
+        {
+          match = current == ( ( aCondition.getValue() & mask ) != 0 );
+        }
+        if ( match && ( ( aCondition.getRisingEdges() & mask ) != 0 ) )
+        {
+          match = ( i > 0 ) && !previous && current;
+        }
+        if ( match && ( ( aCondition.getFallingEdges() & mask ) != 0 ) )
+        {
+          match = ( i > 0 ) && previous && !current;
+        }
+      }
+      if ( match )
+      {
+        result.add( Long.valueOf( this.timestamps[i] ) );
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,135 @@
+package nl.lxtreme.test.model;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+
+public class SignalMeasurementCacheTest
+{
+  // VARIABLES
+
+  private int[] values;
+  private long[] timestamps;
+  private ExecutorService executor;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp()
+  {
+    final Random rnd = new Random( 4321L );
+
+    final int size = 5 * SignalMeasurementCache.BLOCK_SIZE + 123;
+    this.values = new int[size];
+    this.timestamps = new long[size];
+
+    long timestamp = 0L;
+    for ( int i = 0; i < size; i++ )
+    {
+      // Make sure not all bits toggle on every sample...
+      this.values[i] = rnd.nextInt() & rnd.nextInt() & rnd.nextInt();
+      this.timestamps[i] = timestamp;
+      timestamp += 1 + rnd.nextInt( 3 );
+    }
+
+    this.executor = Executors.newFixedThreadPool( 2 );
+  }
+
+  /**
+   * 
+   */
+  @After
+  public void tearDown()
+  {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testDraggedCursorMeasurementEqualsFullMeasurement() throws Exception
+  {
+    final SignalMeasurementCache cache = new SignalMeasurementCache();
+
+    final int mask = 1 << 5;
+    final int startIdx = 1234;
+
+    for ( int endIdx = startIdx; endIdx < this.values.length; endIdx += 7919 )
+    {
+      final SignalMeasurement expected = SignalMeasurement.measure( this.values, this.timestamps, mask, startIdx,
+          endIdx );
+      final SignalMeasurement actual = cache.measure( this.values, this.timestamps, mask, startIdx, endIdx,
+          this.executor );
+
+      assertEquals( expected.getHighCount(), actual.getHighCount() );
+      assertEquals( expected.getHighTime(), actual.getHighTime() );
+      assertEquals( expected.getLowCount(), actual.getLowCount() );
+      assertEquals( expected.getLowTime(), actual.getLowTime() );
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testMeasureAllReusesPartiallyCachedBlocks() throws Exception
+  {
+    final SignalMeasurementCache cache = new SignalMeasurementCache();
+
+    final int endIdx = this.values.length - 1;
+    // Populate the cache for a single channel...
+    cache.measure( this.values, this.timestamps, 1 << 2, 17, endIdx, this.executor );
+
+    final int mask = 0x0000FFFF;
+    final SignalMeasurement[] actual = cache.measureAll( this.values, this.timestamps, mask, 17, endIdx,
+        this.executor );
+    final SignalMeasurement[] expected = SignalMeasurement.measureAll( this.values, this.timestamps, mask, 17,
+        endIdx );
+
+    for ( int bit = 0; bit < 16; bit++ )
+    {
+      assertEquals( expected[bit].getHighCount(), actual[bit].getHighCount() );
+      assertEquals( expected[bit].getHighTime(), actual[bit].getHighTime() );
+      assertEquals( expected[bit].getLowCount(), actual[bit].getLowCount() );
+      assertEquals( expected[bit].getLowTime(), actual[bit].getLowTime() );
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testEvictedBlocksAreMeasuredAgain() throws Exception
+  {
+    final SignalMeasurementCache cache = new SignalMeasurementCache();
+
+    final int mask = 0x000000FF;
+    final int endIdx = this.values.length - 1;
+    cache.measureAll( this.values, this.timestamps, mask, 17, endIdx, this.executor );
+
+    cache.evict( Integer.valueOf( 1 ) );
+    cache.evict( Integer.valueOf( 3 ) );
+
+    final SignalMeasurement[] actual = cache.measureAll( this.values, this.timestamps, mask, 18, endIdx,
+        this.executor );
+    final SignalMeasurement[] expected = SignalMeasurement.measureAll( this.values, this.timestamps, mask, 18,
+        endIdx );
+
+    for ( int bit = 0; bit < 8; bit++ )
+    {
+      assertEquals( expected[bit].getHighCount(), actual[bit].getHighCount() );
+      assertEquals( expected[bit].getHighTime(), actual[bit].getHighTime() );
+      assertEquals( expected[bit].getLowCount(), actual[bit].getLowCount() );
+      assertEquals( expected[bit].getLowTime(), actual[bit].getLowTime() );
+    }
+  }
+}
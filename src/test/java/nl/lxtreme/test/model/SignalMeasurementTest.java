@@ -0,0 +1,154 @@
+package nl.lxtreme.test.model;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+
+public class SignalMeasurementTest
+{
+  // VARIABLES
+
+  private int[] values;
+  private long[] timestamps;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp()
+  {
+    final Random rnd = new Random( 1234L );
+
+    final int size = 4 * SignalMeasurement.MIN_CHUNK_SIZE + 17;
+    this.values = new int[size];
+    this.timestamps = new long[size];
+
+    long timestamp = 0L;
+    for ( int i = 0; i < size; i++ )
+    {
+      this.values[i] = rnd.nextInt();
+      this.timestamps[i] = timestamp;
+      timestamp += 1 + rnd.nextInt( 5 );
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testBulkMeasurementEqualsSingleMeasurement() throws Exception
+  {
+    final int mask = 0xFFFF00FF;
+    final int endIdx = this.values.length - 1;
+
+    final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    try
+    {
+      final SignalMeasurement[] sequential = SignalMeasurement.measureAll( this.values, this.timestamps, mask, 0,
+          endIdx );
+      final SignalMeasurement[] parallel = SignalMeasurement.measureAll( this.values, this.timestamps, mask, 0,
+          endIdx, executor );
+
+      for ( int bit = 0; bit < 32; bit++ )
+      {
+        if ( ( mask & ( 1 << bit ) ) == 0 )
+        {
+          assertNull( sequential[bit] );
+          continue;
+        }
+
+        final SignalMeasurement expected = SignalMeasurement.measure( this.values, this.timestamps, 1 << bit, 0,
+            endIdx );
+        assertMeasurementEquals( expected, sequential[bit] );
+        assertMeasurementEquals( expected, parallel[bit] );
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testCombinedMeasurementEqualsSingleMeasurement()
+  {
+    final int mask = 1 << 3;
+    final int endIdx = this.values.length - 1;
+
+    final SignalMeasurement expected = SignalMeasurement.measure( this.values, this.timestamps, mask, 0, endIdx );
+
+    for ( int split = 1; split < endIdx; split += 997 )
+    {
+      final SignalMeasurement first = SignalMeasurement.measure( this.values, this.timestamps, mask, 0, split );
+      final SignalMeasurement second = SignalMeasurement.measure( this.values, this.timestamps, mask, split, endIdx );
+
+      assertMeasurementEquals( expected, SignalMeasurement.combine( first, second ) );
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testParallelMeasurementEqualsSingleMeasurement() throws Exception
+  {
+    final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    try
+    {
+      for ( int bit = 0; bit < 32; bit++ )
+      {
+        final int mask = 1 << bit;
+        final int endIdx = this.values.length - 1;
+
+        final SignalMeasurement expected = SignalMeasurement.measure( this.values, this.timestamps, mask, 0, endIdx );
+        final SignalMeasurement actual = SignalMeasurement.measure( this.values, this.timestamps, mask, 0, endIdx,
+            executor );
+
+        assertMeasurementEquals( expected, actual );
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testSimpleClockSignal()
+  {
+    final int[] clock = new int[] { 0, 1, 1, 0, 0, 1, 1, 0, 0 };
+    final long[] ts = new long[] { 0, 1, 2, 3, 4, 5, 6, 7, 8 };
+
+    final SignalMeasurement measurement = SignalMeasurement.measure( clock, ts, 1, 0, clock.length - 1 );
+
+    assertEquals( 2, measurement.getLowCount() );
+    assertEquals( 2, measurement.getHighCount() );
+    assertEquals( 2, measurement.getPulseCount() );
+    assertEquals( 3L, measurement.getLowTime() );
+    assertEquals( 4L, measurement.getHighTime() );
+  }
+
+  /**
+   * Asserts that two given measurements are equal.
+   */
+  private void assertMeasurementEquals( final SignalMeasurement aExpected, final SignalMeasurement aActual )
+  {
+    assertEquals( aExpected.getHighCount(), aActual.getHighCount() );
+    assertEquals( aExpected.getHighTime(), aActual.getHighTime() );
+    assertEquals( aExpected.getLowCount(), aActual.getLowCount() );
+    assertEquals( aExpected.getLowTime(), aActual.getLowTime() );
+  }
+}
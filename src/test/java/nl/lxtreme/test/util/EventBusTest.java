@@ -0,0 +1,215 @@
+package nl.lxtreme.test.util;
+
+
+import static org.junit.Assert.*;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+import nl.lxtreme.test.util.EventBus.Delivery;
+
+import org.junit.*;
+
+
+public class EventBusTest
+{
+  // INNER TYPES
+
+  static interface ITestListener extends EventListener
+  {
+    void changed( String aProperty, int aOldValue, int aNewValue );
+  }
+
+  static final class TestEvent extends EventBus.Event<ITestListener>
+  {
+    final int oldValue;
+    final int newValue;
+    final boolean coalescable;
+
+    TestEvent( final String aProperty, final int aOldValue, final int aNewValue, final boolean aCoalescable )
+    {
+      super( ITestListener.class, aProperty );
+      this.oldValue = aOldValue;
+      this.newValue = aNewValue;
+      this.coalescable = aCoalescable;
+    }
+
+    @Override
+    public EventBus.Event<ITestListener> coalesce( final EventBus.Event<ITestListener> aPrevious )
+    {
+      return new TestEvent( getPropertyName(), ( ( TestEvent )aPrevious ).oldValue, this.newValue, true );
+    }
+
+    @Override
+    public void dispatch( final ITestListener aListener )
+    {
+      aListener.changed( getPropertyName(), this.oldValue, this.newValue );
+    }
+
+    @Override
+    public Object getCoalesceKey()
+    {
+      return this.coalescable ? getPropertyName() : null;
+    }
+  }
+
+  static final class RecordingListener implements ITestListener
+  {
+    final List<String> received = new CopyOnWriteArrayList<String>();
+
+    @Override
+    public void changed( final String aProperty, final int aOldValue, final int aNewValue )
+    {
+      this.received.add( aProperty + ":" + aOldValue + "->" + aNewValue );
+    }
+  }
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Test
+  public void testAsyncDeliveryRunsOnExecutor() throws Exception
+  {
+    final CountDownLatch latch = new CountDownLatch( 1 );
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+    final EventBus bus = new EventBus( new Executor()
+    {
+      @Override
+      public void execute( final Runnable aTask )
+      {
+        tasks.add( aTask );
+        latch.countDown();
+      }
+    } );
+
+    final RecordingListener listener = new RecordingListener();
+    bus.subscribe( ITestListener.class, listener, Delivery.ASYNC );
+
+    postOnEDT( bus, new TestEvent( "a", 0, 1, true ) );
+
+    assertTrue( latch.await( 1, TimeUnit.SECONDS ) );
+    assertTrue( listener.received.isEmpty() );
+
+    tasks.get( 0 ).run();
+    assertEquals( Arrays.asList( "a:0->1" ), listener.received );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testBatchedEventsAreCoalesced() throws Exception
+  {
+    final EventBus bus = new EventBus();
+    final RecordingListener listener = new RecordingListener();
+    bus.subscribe( ITestListener.class, listener );
+
+    postOnEDT( bus, new TestEvent( "a", 0, 1, true ), new TestEvent( "b", 0, 5, true ),
+        new TestEvent( "a", 1, 2, true ), new TestEvent( "a", 2, 3, true ) );
+
+    assertEquals( Arrays.asList( "a:0->3", "b:0->5" ), listener.received );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testImmediateDeliveryIsSynchronous()
+  {
+    final EventBus bus = new EventBus();
+    final RecordingListener listener = new RecordingListener();
+    bus.subscribe( ITestListener.class, listener, Delivery.IMMEDIATE );
+
+    bus.post( new TestEvent( "a", 0, 1, true ) );
+    bus.post( new TestEvent( "a", 1, 2, true ) );
+
+    assertEquals( Arrays.asList( "a:0->1", "a:1->2" ), listener.received );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testNonCoalescableEventsKeepOrder() throws Exception
+  {
+    final EventBus bus = new EventBus();
+    final RecordingListener listener = new RecordingListener();
+    bus.subscribe( ITestListener.class, listener );
+
+    postOnEDT( bus, new TestEvent( "a", 0, 1, true ), new TestEvent( "x", 0, 0, false ),
+        new TestEvent( "a", 1, 2, true ), new TestEvent( "a", 2, 3, true ) );
+
+    assertEquals( Arrays.asList( "a:0->1", "x:0->0", "a:1->3" ), listener.received );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testPropertyFilter() throws Exception
+  {
+    final EventBus bus = new EventBus();
+    final RecordingListener listener = new RecordingListener();
+    bus.subscribe( ITestListener.class, listener, Delivery.BATCHED, "b" );
+
+    postOnEDT( bus, new TestEvent( "a", 0, 1, true ), new TestEvent( "b", 0, 1, true ), new TestEvent( null, 0, 1,
+        false ) );
+
+    assertEquals( Arrays.asList( "b:0->1", "null:0->1" ), listener.received );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testUnsubscribeDropsPendingEvents() throws Exception
+  {
+    final EventBus bus = new EventBus();
+    final RecordingListener listener = new RecordingListener();
+    bus.subscribe( ITestListener.class, listener );
+
+    EventQueue.invokeAndWait( new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        bus.post( new TestEvent( "a", 0, 1, true ) );
+        bus.unsubscribe( ITestListener.class, listener );
+      }
+    } );
+    postOnEDT( bus );
+
+    assertTrue( listener.received.isEmpty() );
+  }
+
+  /**
+   * Posts the given events on the EDT, and waits until they are flushed.
+   */
+  private static void postOnEDT( final EventBus aBus, final EventBus.Event<?>... aEvents ) throws Exception
+  {
+    EventQueue.invokeAndWait( new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        for ( EventBus.Event<?> event : aEvents )
+        {
+          aBus.post( event );
+        }
+      }
+    } );
+    // The flush is scheduled after the events are posted...
+    EventQueue.invokeAndWait( new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        // Nothing...
+      }
+    } );
+  }
+}
@@ -0,0 +1,63 @@
+package nl.lxtreme.test.util;
+
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+
+public class LatencyHistogramTest
+{
+  // METHODS
+
+  /**
+   * 
+   */
+  @Test
+  public void testBucketIndex()
+  {
+    assertEquals( 0, LatencyHistogram.getBucketIndex( 0L ) );
+    assertEquals( 1, LatencyHistogram.getBucketIndex( 1L ) );
+    assertEquals( 2, LatencyHistogram.getBucketIndex( 2L ) );
+    assertEquals( 2, LatencyHistogram.getBucketIndex( 3L ) );
+    assertEquals( 11, LatencyHistogram.getBucketIndex( 1024L ) );
+    assertEquals( LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.getBucketIndex( Long.MAX_VALUE ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testPercentiles()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for ( int i = 0; i < 99; i++ )
+    {
+      histogram.record( 100L );
+    }
+    histogram.record( 50000L );
+
+    assertEquals( 100, histogram.getCount() );
+    assertEquals( 50000L, histogram.getMax() );
+    assertEquals( 599.0, histogram.getMean(), 0.001 );
+    // Percentiles are accurate up to a factor two...
+    assertEquals( 127L, histogram.getPercentile( 50.0 ) );
+    assertEquals( 127L, histogram.getPercentile( 99.0 ) );
+    assertEquals( 50000L, histogram.getPercentile( 100.0 ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testReset()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record( 10L );
+    histogram.reset();
+
+    assertEquals( 0L, histogram.getCount() );
+    assertEquals( 0L, histogram.getMax() );
+    assertEquals( 0L, histogram.getPercentile( 99.0 ) );
+  }
+}
@@ -0,0 +1,123 @@
+package nl.lxtreme.test.util;
+
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+
+public class MemoryBudgetTest
+{
+  // INNER TYPES
+
+  /**
+   * Records all evicted keys.
+   */
+  static final class RecordingConsumer implements IMemoryConsumer
+  {
+    final List<Object> evicted = new ArrayList<Object>();
+
+    @Override
+    public void evict( final Object aKey )
+    {
+      this.evicted.add( aKey );
+    }
+  }
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Test
+  public void testEvictLeastRecentlyUsedFirst()
+  {
+    final MemoryBudget budget = new MemoryBudget( 300L );
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final MemoryBudget.Account account = budget.register( "test", 1, consumer );
+
+    account.allocate( "a", 100L );
+    account.allocate( "b", 100L );
+    account.allocate( "c", 100L );
+    account.touch( "a" );
+    account.allocate( "d", 100L );
+
+    assertEquals( Arrays.asList( "b" ), consumer.evicted );
+    assertEquals( 300L, budget.getUsedBytes() );
+    assertEquals( 300L, account.getUsedBytes() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testHeavierEntriesSurviveLonger()
+  {
+    final MemoryBudget budget = new MemoryBudget( 200L );
+    final RecordingConsumer cheap = new RecordingConsumer();
+    final RecordingConsumer expensive = new RecordingConsumer();
+    final MemoryBudget.Account cheapAccount = budget.register( "cheap", 1, cheap );
+    final MemoryBudget.Account expensiveAccount = budget.register( "expensive", 10, expensive );
+
+    expensiveAccount.allocate( "x", 100L );
+    cheapAccount.allocate( "a", 100L );
+    cheapAccount.allocate( "b", 100L );
+    cheapAccount.allocate( "c", 100L );
+
+    assertTrue( expensive.evicted.isEmpty() );
+    assertEquals( Arrays.asList( "a", "b" ), cheap.evicted );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testAllocationNeverEvictsItself()
+  {
+    final MemoryBudget budget = new MemoryBudget( 100L );
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final MemoryBudget.Account account = budget.register( "test", 1, consumer );
+
+    account.allocate( "a", 50L );
+    account.allocate( "b", 500L );
+
+    assertEquals( Arrays.asList( "a" ), consumer.evicted );
+    assertEquals( 500L, budget.getUsedBytes() );
+
+    // Resizing an entry only accounts for the difference...
+    account.allocate( "b", 80L );
+    assertEquals( 80L, budget.getUsedBytes() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testTrimAndRelease()
+  {
+    final MemoryBudget budget = new MemoryBudget( 1000L );
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final MemoryBudget.Account account = budget.register( "test", 1, consumer );
+
+    account.allocate( "a", 100L );
+    account.allocate( "b", 100L );
+    account.allocate( "c", 100L );
+
+    account.release( "c" );
+    assertEquals( 200L, budget.getUsedBytes() );
+    assertTrue( consumer.evicted.isEmpty() );
+
+    budget.trim( 100L );
+    assertEquals( Arrays.asList( "a" ), consumer.evicted );
+
+    budget.setBudget( 50L );
+    assertEquals( Arrays.asList( "a", "b" ), consumer.evicted );
+    assertEquals( 0L, budget.getUsedBytes() );
+
+    account.allocate( "d", 10L );
+    account.close();
+    assertEquals( 0L, budget.getUsedBytes() );
+  }
+}
@@ -0,0 +1,213 @@
+package nl.lxtreme.test.util;
+
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import nl.lxtreme.test.util.TaskScheduler.CancellationToken;
+import nl.lxtreme.test.util.TaskScheduler.ITask;
+import nl.lxtreme.test.util.TaskScheduler.Priority;
+
+import org.junit.*;
+
+
+public class TaskSchedulerTest
+{
+  // VARIABLES
+
+  private TaskScheduler scheduler;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp()
+  {
+    this.scheduler = new TaskScheduler();
+  }
+
+  /**
+   * 
+   */
+  @After
+  public void tearDown()
+  {
+    this.scheduler.shutdown();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testCancelByKey() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final Future<Boolean> task = this.scheduler.submit( Priority.BACKGROUND, "key", blockingTask( started ) );
+
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+    this.scheduler.cancel( "key" );
+
+    assertTrue( task.isCancelled() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testInteractiveTasksAreNotQueuedBehindBackgroundTasks() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch( 4 );
+    for ( int i = 0; i < 4; i++ )
+    {
+      this.scheduler.submit( Priority.BACKGROUND, null, blockingTask( started ) );
+    }
+
+    final Future<String> result = this.scheduler.submit( Priority.INTERACTIVE, null, new ITask<String>()
+    {
+      @Override
+      public String execute( final CancellationToken aToken )
+      {
+        return "hover";
+      }
+    } );
+
+    assertEquals( "hover", result.get( 5, TimeUnit.SECONDS ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testSupersededTaskIsCancelled() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final CancellationToken[] tokens = new CancellationToken[1];
+
+    final Future<Boolean> first = this.scheduler.submit( Priority.VISIBLE, "measure", new ITask<Boolean>()
+    {
+      @Override
+      public Boolean execute( final CancellationToken aToken ) throws Exception
+      {
+        tokens[0] = aToken;
+        started.countDown();
+        while ( !aToken.isCancelled() )
+        {
+          Thread.yield();
+        }
+        return Boolean.FALSE;
+      }
+    } );
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+
+    final Future<Boolean> second = this.scheduler.submit( Priority.VISIBLE, "measure", new ITask<Boolean>()
+    {
+      @Override
+      public Boolean execute( final CancellationToken aToken )
+      {
+        return Boolean.TRUE;
+      }
+    } );
+
+    assertTrue( first.isCancelled() );
+    assertTrue( tokens[0].isCancelled() );
+    assertEquals( Boolean.TRUE, second.get( 5, TimeUnit.SECONDS ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testTasksWithDifferentKeysAreNotCancelled() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final Future<Boolean> first = this.scheduler.submit( Priority.VISIBLE, "a", blockingTask( started ) );
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+
+    this.scheduler.submit( Priority.VISIBLE, "b", blockingTask( new CountDownLatch( 1 ) ) );
+
+    assertFalse( first.isCancelled() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testVisibleSubtasksOvertakePendingBackgroundSubtasks() throws Exception
+  {
+    final int cpuCount = Runtime.getRuntime().availableProcessors();
+    final ExecutorService background = this.scheduler.getComputeExecutor( Priority.BACKGROUND );
+    final ExecutorService visible = this.scheduler.getComputeExecutor( Priority.VISIBLE );
+
+    // Occupy all compute threads...
+    final CountDownLatch started = new CountDownLatch( cpuCount );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    for ( int i = 0; i < cpuCount; i++ )
+    {
+      background.execute( new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          started.countDown();
+          try
+          {
+            release.await();
+          }
+          catch ( InterruptedException exception )
+          {
+            Thread.currentThread().interrupt();
+          }
+        }
+      } );
+    }
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+
+    final int pendingCount = 10 * cpuCount;
+    final AtomicInteger backgroundRuns = new AtomicInteger();
+    for ( int i = 0; i < pendingCount; i++ )
+    {
+      background.execute( new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          backgroundRuns.incrementAndGet();
+        }
+      } );
+    }
+
+    final Future<Integer> result = visible.submit( new Callable<Integer>()
+    {
+      @Override
+      public Integer call()
+      {
+        return Integer.valueOf( backgroundRuns.get() );
+      }
+    } );
+    release.countDown();
+
+    // Only the subtasks taken by the other threads can have run before it...
+    assertTrue( result.get( 5, TimeUnit.SECONDS ).intValue() < cpuCount );
+  }
+
+  /**
+   * Creates a task that blocks until it is cancelled.
+   */
+  private static ITask<Boolean> blockingTask( final CountDownLatch aStarted )
+  {
+    return new ITask<Boolean>()
+    {
+      @Override
+      public Boolean execute( final CancellationToken aToken ) throws Exception
+      {
+        aStarted.countDown();
+        new CountDownLatch( 1 ).await();
+        return Boolean.TRUE;
+      }
+    };
+  }
+}
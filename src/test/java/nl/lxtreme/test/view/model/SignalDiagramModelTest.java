@@ -3,6 +3,11 @@ package nl.lxtreme.test.view.model;
 
 import static org.junit.Assert.*;
 
+import java.awt.*;
+import java.util.*;
+
+import nl.lxtreme.test.model.*;
+
 import org.junit.*;
 
 
@@ -362,6 +367,20 @@ public class SignalDiagramModelTest
     assertArrayEquals( "0 -> 2", new int[] { 2, 3, 1, 4 }, input );
   }
 
+  /**
+   * 
+   */
+  @Test
+  public void testLocationToTimestampBeyondIntegerRange()
+  {
+    final SignalDiagramModel model = new SignalDiagramModel( null );
+    model.setZoomFactor( 1000.0 );
+    model.setViewOffset( 3.0e12 );
+
+    assertEquals( 3000000000L, model.locationToTimestamp( new Point( 0, 0 ) ) );
+    assertEquals( 3000000001L, model.locationToTimestamp( new Point( 500, 0 ) ) );
+  }
+
   /**
    * 
    */
@@ -427,4 +446,54 @@ public class SignalDiagramModelTest
     SignalDiagramModel.shiftElements( input, 0, 2 );
     assertArrayEquals( "0 -> 2", new int[] { 2, 3, 1 }, input );
   }
+
+  /**
+   * 
+   */
+  @Test
+  public void testTimestampToCoordinateIsRelativeToViewOffset()
+  {
+    final SignalDiagramModel model = new SignalDiagramModel( null );
+    model.setZoomFactor( 1000.0 );
+    model.setViewOffset( 3.0e12 );
+
+    assertEquals( 0, model.timestampToCoordinate( 3000000000L ) );
+    assertEquals( 2000, model.timestampToCoordinate( 3000000002L ) );
+    // Coordinates far outside the view are clamped...
+    assertTrue( model.timestampToCoordinate( 0L ) < 0 );
+    assertEquals( SignalDiagramModel.toScreenCoordinate( -3.0e12 ), model.timestampToCoordinate( 0L ) );
+    assertTrue( SignalDiagramModel.toScreenCoordinate( -3.0e12 ) > Integer.MIN_VALUE / 2 );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testUpdateDataModelRetainsChannelsCursorsAndAnnotations()
+  {
+    final SignalDiagramModel model = new SignalDiagramModel( null );
+    model.setDataModel( new SampleDataModel( new int[] { 1, 2 }, new long[] { 0L, 1L }, 100 ) );
+
+    final ChannelGroupManager channelGroupManager = model.getChannelGroupManager();
+    channelGroupManager.getAllChannels()[3].setLabel( "CLK" );
+    channelGroupManager.removeChannelGroup( channelGroupManager.getChannelGroups()[1].getName() );
+    model.setCursor( 2, 1L );
+    model.addAnnotations( Collections.singletonList( new SimpleAnnotation( 0, "note", 0L, 1L ) ) );
+
+    model.updateDataModel( new SampleDataModel( new int[] { 1, 2, 3, 4 }, new long[] { 0L, 1L, 2L, 3L }, 100 ) );
+
+    assertEquals( 4, model.getSnapshot().getSampleCount() );
+    assertSame( channelGroupManager.getAllChannels()[3], model.getChannelGroupManager().getAllChannels()[3] );
+    assertEquals( "CLK", channelGroupManager.getAllChannels()[3].getLabel() );
+    assertEquals( 3, channelGroupManager.getChannelGroups().length );
+    assertEquals( 1L, model.getCursor( 2 ).getTimestamp() );
+    assertEquals( 1, model.getAnnotations().length );
+
+    // A new data model resets all of them...
+    model.setDataModel( new SampleDataModel( new int[] { 1, 2 }, new long[] { 0L, 1L }, 100 ) );
+
+    assertEquals( 4, model.getChannelGroupManager().getChannelGroups().length );
+    assertFalse( model.getCursor( 2 ).isDefined() );
+    assertEquals( 0, model.getAnnotations().length );
+  }
 }
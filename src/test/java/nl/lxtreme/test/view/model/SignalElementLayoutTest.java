@@ -0,0 +1,152 @@
+package nl.lxtreme.test.view.model;
+
+
+import static org.junit.Assert.*;
+
+import nl.lxtreme.test.model.*;
+import nl.lxtreme.test.view.model.SignalDiagramModel.SignalElementMeasurer;
+
+import org.junit.*;
+
+
+public class SignalElementLayoutTest
+{
+  // VARIABLES
+
+  private SignalDiagramModel model;
+
+  // METHODS
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp()
+  {
+    this.model = new SignalDiagramModel( null );
+
+    final SampleDataModel dataModel = new SampleDataModel( new int[] { 0, 1 }, new long[] { 0L, 1L }, 100 );
+    final ChannelGroupManager channelGroupManager = this.model.getChannelGroupManager();
+    channelGroupManager.dataModelChanged( dataModel );
+
+    // Vary the elements of the groups a bit...
+    final ChannelGroup[] groups = channelGroupManager.getChannelGroups();
+    groups[1].setVisible( false );
+    groups[2].setShowAnalogSignal( true );
+    groups[3].setGroupSummary( true );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testFindFirst()
+  {
+    final SignalElementLayout layout = SignalElementLayout.create( this.model );
+
+    final SignalElements all = layout.getSignalElements( 0, layout.getHeight(), SignalElementMeasurer.LOOSE_MEASURER );
+    final SignalElement second = all.get( 1 );
+
+    assertSame( all.get( 0 ), layout.findFirst( 0, 1 ) );
+    assertSame( second, layout.findFirst( second.getYposition() + 1, 1 ) );
+    assertNull( layout.findFirst( layout.getHeight() + 1, 10 ) );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testHeightIsSumOfElementHeights()
+  {
+    final SignalElementLayout layout = SignalElementLayout.create( this.model );
+    final SignalElements all = layout.getSignalElements( 0, layout.getHeight(), SignalElementMeasurer.LOOSE_MEASURER );
+
+    int height = 0;
+    for ( int i = 0; i < all.size(); i++ )
+    {
+      assertEquals( height, all.get( i ).getYposition() );
+      height += all.get( i ).getHeight();
+    }
+    assertEquals( height, layout.getHeight() );
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testLooseAndStrictLookupsEqualLinearScan()
+  {
+    final SignalElementLayout layout = SignalElementLayout.create( this.model );
+    final int height = layout.getHeight();
+
+    for ( SignalElementMeasurer measurer : new SignalElementMeasurer[] { SignalElementMeasurer.LOOSE_MEASURER,
+        SignalElementMeasurer.STRICT_MEASURER } )
+    {
+      final SignalElementMeasurer linear = linearScan( measurer );
+      for ( int y = -5; y < ( height + 5 ); y += 3 )
+      {
+        for ( int h : new int[] { 0, 1, 17, 100, height } )
+        {
+          assertSameElements( layout.getSignalElements( y, h, linear ), layout.getSignalElements( y, h, measurer ) );
+        }
+      }
+    }
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testSignalElementsView()
+  {
+    final SignalElementLayout layout = SignalElementLayout.create( this.model );
+    final SignalElements all = layout.getSignalElements( 0, layout.getHeight(), SignalElementMeasurer.LOOSE_MEASURER );
+
+    final SignalElement third = all.get( 2 );
+    final SignalElements view = layout.getSignalElements( third.getYposition(), 0,
+        SignalElementMeasurer.STRICT_MEASURER );
+
+    assertEquals( 1, view.size() );
+    assertSame( third, view.get( 0 ) );
+
+    try
+    {
+      view.get( 1 );
+      fail( "Expected IndexOutOfBoundsException!" );
+    }
+    catch ( IndexOutOfBoundsException exception )
+    {
+      // Ok; expected...
+    }
+
+    assertTrue( layout.getSignalElements( layout.getHeight() + 1, 10, SignalElementMeasurer.STRICT_MEASURER )
+        .isEmpty() );
+  }
+
+  /**
+   * Asserts that both views contain the same signal elements.
+   */
+  private static void assertSameElements( final SignalElements aExpected, final SignalElements aActual )
+  {
+    assertEquals( aExpected.size(), aActual.size() );
+    for ( int i = 0; i < aExpected.size(); i++ )
+    {
+      assertSame( aExpected.get( i ), aActual.get( i ) );
+    }
+  }
+
+  /**
+   * Wraps the given measurer, forcing the layout to use a linear scan.
+   */
+  private static SignalElementMeasurer linearScan( final SignalElementMeasurer aMeasurer )
+  {
+    return new SignalElementMeasurer()
+    {
+      @Override
+      public boolean signalElementFits( final int aYpos, final int aHeight, final int aMinY, final int aMaxY )
+      {
+        return aMeasurer.signalElementFits( aYpos, aHeight, aMinY, aMaxY );
+      }
+    };
+  }
+}